@@ -0,0 +1,214 @@
+package com.pjr22.serialization.compress;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * LZ77 block codec in the style of LZ4.
+ * <p>
+ * A compressed block is a sequence of sequences. Each sequence starts with a token byte whose
+ * high four bits hold the number of literal bytes and whose low four bits hold the match length
+ * minus four; a nibble of 15 means the length continues in following bytes, each adding up to
+ * 255. The literals follow, then a two-byte little-endian offset back into the decompressed
+ * output, then any match length continuation. The last sequence has literals only.
+ * <p>
+ * Matches are found with a single hash table of four-byte prefixes, which favours speed over
+ * ratio: repetitive text such as serialized class and field names compresses well at a small
+ * fraction of the CPU cost of DEFLATE.
+ * <p>
+ * Instances hold the match table and are not thread-safe.
+ */
+public class LzBlockCodec {
+
+    private static final int MIN_MATCH = 4;
+    private static final int MAX_OFFSET = 65535;
+    // Bytes at the end of a block that are always written as literals
+    private static final int LAST_LITERALS = 5;
+    private static final int HASH_BITS = 14;
+
+    // Position + 1 of the last occurrence of each four-byte prefix hash (0 = none)
+    private final int[] table = new int[1 << HASH_BITS];
+
+    /**
+     * Returns the largest compressed size of a block of the given length.
+     *
+     * @param length the uncompressed length
+     * @return the maximum compressed length
+     */
+    public static int maxCompressedLength(int length) {
+        return length + length / 255 + 16;
+    }
+
+    /**
+     * Compresses a block.
+     *
+     * @param src the data to compress
+     * @param srcOffset the start of the data
+     * @param length the length of the data
+     * @param dst the destination, with at least {@link #maxCompressedLength(int)} bytes available
+     * @param dstOffset the start of the destination
+     * @return the compressed length
+     */
+    public int compress(byte[] src, int srcOffset, int length, byte[] dst, int dstOffset) {
+        Arrays.fill(table, 0);
+        int end = srcOffset + length;
+        int matchLimit = end - LAST_LITERALS;
+        int anchor = srcOffset;
+        int ip = srcOffset;
+        int op = dstOffset;
+
+        while (ip + MIN_MATCH <= matchLimit) {
+            int sequence = readInt(src, ip);
+            int hash = hash(sequence);
+            int ref = table[hash] - 1 + srcOffset;
+            table[hash] = ip - srcOffset + 1;
+
+            if (ref < srcOffset || ip - ref > MAX_OFFSET || readInt(src, ref) != sequence) {
+                // Skip faster through data that does not compress
+                ip += 1 + ((ip - anchor) >>> 6);
+                continue;
+            }
+
+            int matchLength = MIN_MATCH;
+            while (ip + matchLength < matchLimit && src[ref + matchLength] == src[ip + matchLength]) {
+                matchLength++;
+            }
+
+            int tokenPosition = op;
+            op = writeSequence(src, anchor, ip - anchor, dst, op);
+            dst[op++] = (byte) (ip - ref);
+            dst[op++] = (byte) ((ip - ref) >>> 8);
+            op = writeMatchLength(dst, tokenPosition, matchLength - MIN_MATCH, op);
+
+            ip += matchLength;
+            anchor = ip;
+        }
+
+        // Last literals
+        op = writeSequence(src, anchor, end - anchor, dst, op);
+        return op - dstOffset;
+    }
+
+    /**
+     * Decompresses a block.
+     *
+     * @param src the compressed data
+     * @param srcOffset the start of the compressed data
+     * @param length the compressed length
+     * @param dst the destination
+     * @param dstOffset the start of the destination
+     * @param originalLength the decompressed length
+     * @throws IOException if the block is malformed
+     */
+    public static void decompress(byte[] src, int srcOffset, int length, byte[] dst, int dstOffset, int originalLength)
+            throws IOException {
+        int ip = srcOffset;
+        int end = srcOffset + length;
+        int op = dstOffset;
+        int dstEnd = dstOffset + originalLength;
+
+        try {
+            while (true) {
+                int token = src[ip++] & 0xFF;
+
+                int literalLength = token >>> 4;
+                if (literalLength == 15) {
+                    int b;
+                    do {
+                        b = src[ip++] & 0xFF;
+                        literalLength += b;
+                    } while (b == 255);
+                }
+                if (literalLength > end - ip || literalLength > dstEnd - op) {
+                    throw new IOException("Malformed compressed block: literals overrun");
+                }
+                System.arraycopy(src, ip, dst, op, literalLength);
+                ip += literalLength;
+                op += literalLength;
+                if (ip == end) {
+                    break;
+                }
+
+                int offset = (src[ip++] & 0xFF) | ((src[ip++] & 0xFF) << 8);
+                if (offset == 0 || offset > op - dstOffset) {
+                    throw new IOException("Malformed compressed block: invalid match offset " + offset);
+                }
+                int matchLength = token & 0x0F;
+                if (matchLength == 15) {
+                    int b;
+                    do {
+                        b = src[ip++] & 0xFF;
+                        matchLength += b;
+                    } while (b == 255);
+                }
+                matchLength += MIN_MATCH;
+                if (matchLength > dstEnd - op) {
+                    throw new IOException("Malformed compressed block: match overrun");
+                }
+                int ref = op - offset;
+                if (offset >= matchLength) {
+                    System.arraycopy(dst, ref, dst, op, matchLength);
+                    op += matchLength;
+                } else {
+                    // Overlapping match repeats the last offset bytes
+                    for (int i = 0; i < matchLength; i++) {
+                        dst[op++] = dst[ref++];
+                    }
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IOException("Malformed compressed block: truncated", e);
+        }
+        if (op != dstEnd) {
+            throw new IOException("Malformed compressed block: expected " + originalLength + " bytes, got " + (op - dstOffset));
+        }
+    }
+
+    /**
+     * Writes a token with the literal length (match length filled in later), the literal
+     * length continuation and the literals.
+     *
+     * @return the new output position
+     */
+    private static int writeSequence(byte[] src, int from, int literalLength, byte[] dst, int op) {
+        if (literalLength >= 15) {
+            dst[op++] = (byte) 0xF0;
+            op = writeLength(dst, op, literalLength - 15);
+        } else {
+            dst[op++] = (byte) (literalLength << 4);
+        }
+        System.arraycopy(src, from, dst, op, literalLength);
+        return op + literalLength;
+    }
+
+    /**
+     * Stores the match length in the token and writes its continuation.
+     *
+     * @return the new output position
+     */
+    private static int writeMatchLength(byte[] dst, int tokenPosition, int matchLength, int op) {
+        if (matchLength >= 15) {
+            dst[tokenPosition] |= 0x0F;
+            return writeLength(dst, op, matchLength - 15);
+        }
+        dst[tokenPosition] |= (byte) matchLength;
+        return op;
+    }
+
+    private static int writeLength(byte[] dst, int op, int length) {
+        while (length >= 255) {
+            dst[op++] = (byte) 255;
+            length -= 255;
+        }
+        dst[op++] = (byte) length;
+        return op;
+    }
+
+    private static int readInt(byte[] b, int i) {
+        return (b[i] & 0xFF) | (b[i + 1] & 0xFF) << 8 | (b[i + 2] & 0xFF) << 16 | (b[i + 3] & 0xFF) << 24;
+    }
+
+    private static int hash(int sequence) {
+        return (sequence * -1640531535) >>> (32 - HASH_BITS);
+    }
+}
@@ -0,0 +1,174 @@
+package com.pjr22.serialization.compress;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.CRC32C;
+
+/**
+ * Decompresses data written by {@link LzBlockOutputStream}, one block at a time.
+ * <p>
+ * Each block's CRC32C is verified after decompression; a mismatch, a truncated block or a
+ * missing end marker is reported as an IOException. Memory use is bounded by the block size.
+ */
+public class LzBlockInputStream extends InputStream {
+
+    private final InputStream in;
+    private final CRC32C checksum = new CRC32C();
+    private final byte[] header = new byte[12];
+    private byte[] block = new byte[0];
+    private byte[] compressed = new byte[0];
+    private int position;
+    private int limit;
+    private boolean ended;
+
+    /**
+     * Creates a decompressing stream and reads the stream header.
+     *
+     * @param in the stream to read compressed data from
+     * @throws IOException if the header is missing or not a compressed stream header
+     */
+    public LzBlockInputStream(InputStream in) throws IOException {
+        this.in = in;
+        readFully(header, 0, LzBlockOutputStream.MAGIC.length + 1);
+        if (!hasMagic(header, 0, LzBlockOutputStream.MAGIC.length + 1)) {
+            throw new IOException("Not a compressed stream");
+        }
+        if (header[LzBlockOutputStream.MAGIC.length] != LzBlockOutputStream.VERSION) {
+            throw new IOException("Unsupported compressed stream version: " + header[LzBlockOutputStream.MAGIC.length]);
+        }
+    }
+
+    /**
+     * Checks whether the data starts with a compressed stream header.
+     *
+     * @param data the data to check
+     * @return true if the data is a compressed stream
+     */
+    public static boolean isCompressed(byte[] data) {
+        return hasMagic(data, 0, data.length);
+    }
+
+    /**
+     * Returns a stream that yields the decompressed data if the given stream starts with a
+     * compressed stream header, or the original data otherwise.
+     *
+     * @param in the stream to inspect
+     * @return a decompressing stream or a stream with the original data
+     * @throws IOException if an I/O error occurs
+     */
+    public static InputStream decompressIfCompressed(InputStream in) throws IOException {
+        InputStream buffered = in.markSupported() ? in : new BufferedInputStream(in);
+        byte[] magic = new byte[LzBlockOutputStream.MAGIC.length];
+        buffered.mark(magic.length);
+        int n = buffered.readNBytes(magic, 0, magic.length);
+        buffered.reset();
+        return hasMagic(magic, 0, n) ? new LzBlockInputStream(buffered) : buffered;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (position == limit && !readBlock()) {
+            return -1;
+        }
+        return block[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (position == limit && !readBlock()) {
+            return -1;
+        }
+        int n = Math.min(len, limit - position);
+        System.arraycopy(block, position, b, off, n);
+        position += n;
+        return n;
+    }
+
+    @Override
+    public int available() {
+        return limit - position;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    /**
+     * Reads and decompresses the next block.
+     *
+     * @return false at the end marker
+     */
+    private boolean readBlock() throws IOException {
+        if (ended) {
+            return false;
+        }
+        readFully(header, 0, 4);
+        int compressedLength = readInt(header, 0);
+        if (compressedLength == 0) {
+            ended = true;
+            return false;
+        }
+        readFully(header, 4, 8);
+        int originalLength = readInt(header, 4);
+        int expectedChecksum = readInt(header, 8);
+        boolean stored = (compressedLength & LzBlockOutputStream.STORED_FLAG) != 0;
+        compressedLength &= ~LzBlockOutputStream.STORED_FLAG;
+        if (originalLength <= 0 || originalLength > 16 * 1024 * 1024
+                || compressedLength > LzBlockCodec.maxCompressedLength(originalLength)) {
+            throw new IOException("Invalid compressed block header");
+        }
+
+        if (block.length < originalLength) {
+            block = new byte[originalLength];
+        }
+        if (stored) {
+            if (compressedLength != originalLength) {
+                throw new IOException("Invalid stored block length");
+            }
+            readFully(block, 0, originalLength);
+        } else {
+            if (compressed.length < compressedLength) {
+                compressed = new byte[compressedLength];
+            }
+            readFully(compressed, 0, compressedLength);
+            LzBlockCodec.decompress(compressed, 0, compressedLength, block, 0, originalLength);
+        }
+
+        checksum.reset();
+        checksum.update(block, 0, originalLength);
+        if ((int) checksum.getValue() != expectedChecksum) {
+            throw new IOException("Compressed block checksum mismatch");
+        }
+        position = 0;
+        limit = originalLength;
+        return true;
+    }
+
+    private void readFully(byte[] b, int off, int len) throws IOException {
+        if (in.readNBytes(b, off, len) != len) {
+            throw new EOFException("Unexpected end of compressed stream");
+        }
+    }
+
+    private static boolean hasMagic(byte[] data, int offset, int length) {
+        if (length < LzBlockOutputStream.MAGIC.length) {
+            return false;
+        }
+        for (int i = 0; i < LzBlockOutputStream.MAGIC.length; i++) {
+            if (data[offset + i] != LzBlockOutputStream.MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int readInt(byte[] b, int offset) {
+        return (b[offset] & 0xFF) << 24 | (b[offset + 1] & 0xFF) << 16 | (b[offset + 2] & 0xFF) << 8 | (b[offset + 3] & 0xFF);
+    }
+}
@@ -0,0 +1,160 @@
+package com.pjr22.serialization.compress;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32C;
+
+/**
+ * Compresses data into framed blocks with {@link LzBlockCodec}.
+ * <p>
+ * The stream starts with the magic bytes {@code PJLZ} and a version byte. Data is collected
+ * into blocks of up to {@link #DEFAULT_BLOCK_SIZE} bytes; each block is written as a 4-byte
+ * big-endian compressed length, the 4-byte uncompressed length, the CRC32C of the uncompressed
+ * data and the payload. Blocks that do not shrink are stored as-is, marked by the high bit of
+ * the compressed length. A zero length ends the stream. {@link LzBlockInputStream} reads it back
+ * one block at a time.
+ * <p>
+ * {@link #flush()} ends the current block early; {@link #close()} writes the end marker and
+ * closes the underlying stream, {@link #finish()} writes the end marker without closing it.
+ */
+public class LzBlockOutputStream extends OutputStream {
+
+    /** Default uncompressed block size. */
+    public static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+
+    static final byte[] MAGIC = {'P', 'J', 'L', 'Z'};
+    static final byte VERSION = 1;
+    static final int STORED_FLAG = 0x80000000;
+
+    private final OutputStream out;
+    private final LzBlockCodec codec = new LzBlockCodec();
+    private final CRC32C checksum = new CRC32C();
+    private final byte[] block;
+    private final byte[] compressed;
+    private final byte[] header = new byte[12];
+    private int position;
+    private boolean finished;
+
+    /**
+     * Creates a compressing stream with the default block size.
+     *
+     * @param out the stream to write compressed data to
+     * @throws IOException if the stream header cannot be written
+     */
+    public LzBlockOutputStream(OutputStream out) throws IOException {
+        this(out, DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * Creates a compressing stream.
+     *
+     * @param out the stream to write compressed data to
+     * @param blockSize the uncompressed block size (at most 16 MB)
+     * @throws IOException if the stream header cannot be written
+     */
+    public LzBlockOutputStream(OutputStream out, int blockSize) throws IOException {
+        if (blockSize <= 0 || blockSize > 16 * 1024 * 1024) {
+            throw new IllegalArgumentException("Block size must be between 1 byte and 16 MB: " + blockSize);
+        }
+        this.out = out;
+        this.block = new byte[blockSize];
+        this.compressed = new byte[LzBlockCodec.maxCompressedLength(blockSize)];
+        out.write(MAGIC);
+        out.write(VERSION);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        checkOpen();
+        if (position == block.length) {
+            writeBlock();
+        }
+        block[position++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        checkOpen();
+        while (len > 0) {
+            if (position == block.length) {
+                writeBlock();
+            }
+            int n = Math.min(len, block.length - position);
+            System.arraycopy(b, off, block, position, n);
+            position += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * Writes the buffered data as a block and flushes the underlying stream.
+     */
+    @Override
+    public void flush() throws IOException {
+        if (!finished) {
+            writeBlock();
+        }
+        out.flush();
+    }
+
+    /**
+     * Writes the remaining data and the end marker without closing the underlying stream.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    public void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        writeBlock();
+        writeInt(header, 0, 0);
+        out.write(header, 0, 4);
+        out.flush();
+        finished = true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            finish();
+        } finally {
+            out.close();
+        }
+    }
+
+    private void writeBlock() throws IOException {
+        checkOpen();
+        if (position == 0) {
+            return;
+        }
+        checksum.reset();
+        checksum.update(block, 0, position);
+
+        int length = codec.compress(block, 0, position, compressed, 0);
+        boolean stored = length >= position;
+        writeInt(header, 0, stored ? (position | STORED_FLAG) : length);
+        writeInt(header, 4, position);
+        writeInt(header, 8, (int) checksum.getValue());
+        out.write(header, 0, 12);
+        if (stored) {
+            out.write(block, 0, position);
+        } else {
+            out.write(compressed, 0, length);
+        }
+        position = 0;
+    }
+
+    private void checkOpen() throws IOException {
+        if (finished) {
+            throw new IOException("Stream finished");
+        }
+    }
+
+    static void writeInt(byte[] b, int offset, int value) {
+        b[offset] = (byte) (value >>> 24);
+        b[offset + 1] = (byte) (value >>> 16);
+        b[offset + 2] = (byte) (value >>> 8);
+        b[offset + 3] = (byte) value;
+    }
+}
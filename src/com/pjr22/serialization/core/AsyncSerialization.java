@@ -0,0 +1,157 @@
+package com.pjr22.serialization.core;
+
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Runs serialization and deserialization on an executor and reports the results through
+ * CompletableFutures, so request threads are not held while large payloads are processed.
+ * <p>
+ * Serializers and deserializers keep per-document state, so every call gets its own
+ * {@link Serializer} (configured with this instance's key, starting ID, layout and compression)
+ * or {@link Deserializer}. Calls are therefore independent and may run concurrently. A failed
+ * future completes exceptionally with a {@link SerializationException}.
+ * <p>
+ * By default tasks run on virtual threads when the JDK provides them (Java 21 and later) and
+ * on the common ForkJoinPool otherwise; see {@link #defaultExecutor()}.
+ */
+public class AsyncSerialization {
+
+    private static final Executor DEFAULT_EXECUTOR = createDefaultExecutor();
+
+    private final String serializationKey;
+    private final int startingId;
+    private Executor executor = DEFAULT_EXECUTOR;
+    private Serializer.Layout layout = Serializer.Layout.NESTED;
+    private boolean compress;
+
+    /**
+     * Creates a new AsyncSerialization.
+     *
+     * @param serializationKey the prefix of the object IDs generated by each serialization
+     * @param startingId the starting value of the object ID counter of each serialization
+     */
+    public AsyncSerialization(String serializationKey, int startingId) {
+        this.serializationKey = serializationKey;
+        this.startingId = startingId;
+    }
+
+    /**
+     * Returns the executor used when none is configured: a virtual-thread-per-task executor
+     * if the running JDK has one, otherwise {@link ForkJoinPool#commonPool()}.
+     *
+     * @return the default executor
+     */
+    public static Executor defaultExecutor() {
+        return DEFAULT_EXECUTOR;
+    }
+
+    /**
+     * Selects the executor the tasks run on.
+     *
+     * @param executor the executor
+     * @return this instance
+     */
+    public AsyncSerialization withExecutor(Executor executor) {
+        this.executor = executor;
+        return this;
+    }
+
+    /**
+     * Selects the layout of serialized documents.
+     *
+     * @param layout the layout to write
+     * @return this instance
+     * @see Serializer#withLayout(Serializer.Layout)
+     */
+    public AsyncSerialization withLayout(Serializer.Layout layout) {
+        this.layout = layout;
+        return this;
+    }
+
+    /**
+     * Enables compression of serialized documents.
+     *
+     * @param compress true to compress the output
+     * @return this instance
+     * @see Serializer#withCompression(boolean)
+     */
+    public AsyncSerialization withCompression(boolean compress) {
+        this.compress = compress;
+        return this;
+    }
+
+    /**
+     * Serializes an object on the executor.
+     *
+     * @param object the object to serialize
+     * @return a future completed with the serialized bytes
+     */
+    public CompletableFuture<byte[]> serializeAsync(Object object) {
+        return submit(() -> new Serializer(serializationKey, startingId)
+            .withLayout(layout)
+            .withCompression(compress)
+            .serializeToBytes(object));
+    }
+
+    /**
+     * Deserializes the remaining bytes of a buffer on the executor. JSON, binary and compressed
+     * documents are accepted. The buffer must not be modified until the future completes; its
+     * position is not changed.
+     *
+     * @param <T> the type of the object
+     * @param data the buffer holding the document
+     * @param targetType the class to deserialize to
+     * @return a future completed with the deserialized object
+     */
+    public <T> CompletableFuture<T> deserializeAsync(ByteBuffer data, Class<T> targetType) {
+        ByteBuffer view = data.duplicate();
+        return submit(() -> new Deserializer<>(targetType).deserialize(view));
+    }
+
+    /**
+     * Work that may fail with a SerializationException.
+     */
+    private interface Task<R> {
+        R run() throws SerializationException;
+    }
+
+    private <R> CompletableFuture<R> submit(Task<R> task) {
+        CompletableFuture<R> future = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                try {
+                    future.complete(task.run());
+                } catch (SerializationException e) {
+                    future.completeExceptionally(e);
+                } catch (RuntimeException e) {
+                    future.completeExceptionally(new SerializationException("Unexpected error: " + e.getMessage(), e));
+                } catch (Error e) {
+                    future.completeExceptionally(e);
+                    throw e;
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(new SerializationException("Task rejected by executor", e));
+        }
+        return future;
+    }
+
+    /**
+     * Uses a virtual-thread-per-task executor where available. The library targets Java 17,
+     * so the factory method is looked up reflectively.
+     */
+    private static Executor createDefaultExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (Executor) factory.invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return ForkJoinPool.commonPool();
+        }
+    }
+}
@@ -0,0 +1,486 @@
+package com.pjr22.serialization.core;
+
+import com.pjr22.serialization.format.JsonFormatWriter;
+import com.pjr22.serialization.inspector.FieldClassifier;
+import com.pjr22.serialization.inspector.FieldInspector;
+import com.pjr22.serialization.util.ValueSerializer;
+
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Serializes successive states of one object graph, writing only what changed since the
+ * previous document.
+ * <p>
+ * The first call to {@link #serializeToBytes(Object)} writes a complete document in the
+ * nested layout and records the field values of every object in the graph, keyed by object
+ * identity. Each later call compares the graph with that snapshot and writes a patch:
+ * <pre>
+ * {"$patch":1,
+ *  "root":{"$ref":"app_1"},
+ *  "changes":[{"$id":"app_7","$class":"...","fields":{"hp":85,"target":{"$ref":"app_12"}}}],
+ *  "released":["app_9"]}
+ * </pre>
+ * "changes" holds only the changed fields of objects written before. Objects that are new
+ * to the graph are defined inside the values that reach them, as in any document. A list
+ * that only grew is written as {@code {"$append":[...]}}, and a map with a few changed entries
+ * as {@code {"$remove":[keys],"$put":{...}}}. "released" lists the objects that are no longer
+ * reachable; they are forgotten on both sides. The Deserializer that read the first document
+ * applies each patch, in order, to the graph it read when it is given the patch like any
+ * other document, and returns the root.
+ * <p>
+ * Changes are found by reading every reachable object's fields, so the cost of a patch
+ * follows the size of the graph, but only the changes are formatted and sent. Objects used
+ * as complex map keys are not compared. The root must be an object with fields. A
+ * DeltaSerializer is not thread-safe.
+ */
+public class DeltaSerializer {
+
+    private final String serializationKey;
+    private Serializer serializer;
+    // Field values of every object in the last document (null before the first document)
+    private Map<Object, Object[]> snapshots;
+
+    /**
+     * Constructs a new DeltaSerializer.
+     *
+     * @param serializationKey the key used to generate object IDs
+     * @param startingId the starting counter for object IDs
+     */
+    public DeltaSerializer(String serializationKey, int startingId) {
+        this.serializationKey = serializationKey;
+        this.serializer = new Serializer(serializationKey, startingId);
+    }
+
+    /**
+     * Serializes the current state of a graph: a complete document the first time, and a
+     * patch against the previous state after that.
+     *
+     * @param root the root object
+     * @return the UTF-8 encoded document
+     * @throws SerializationException if the root is not an object with fields or a
+     *         serialization error occurs
+     */
+    public byte[] serializeToBytes(Object root) throws SerializationException {
+        if (root == null || root instanceof Collection || root instanceof Map || root.getClass().isArray()
+                || isValue(root)) {
+            throw new SerializationException("Delta serialization needs an object root, not "
+                + (root == null ? "null" : root.getClass().getName()));
+        }
+        if (snapshots == null) {
+            byte[] document = serializer.serializeToBytes(root);
+            snapshots = new IdentityHashMap<>();
+            for (Object object : reachableObjects(root)) {
+                snapshots.put(object, capture(object));
+            }
+            return document;
+        }
+
+        // Compare every reachable object with its snapshot
+        Set<Object> reached = reachableObjects(root);
+        List<Change> changes = new ArrayList<>();
+        for (Object object : reached) {
+            Object[] snapshot = snapshots.get(object);
+            if (snapshot != null) {
+                Change change = compare(object, snapshot);
+                if (change != null) {
+                    changes.add(change);
+                }
+            }
+        }
+
+        List<String> released = new ArrayList<>();
+        Iterator<Object> known = snapshots.keySet().iterator();
+        while (known.hasNext()) {
+            Object object = known.next();
+            if (!reached.contains(object)) {
+                released.add(serializer.objectId(object));
+                serializer.release(object);
+                known.remove();
+            }
+        }
+
+        StringBuilder sb = new StringBuilder();
+        serializer.writePatch(root, changes, released, new JsonFormatWriter(sb));
+
+        // The objects written now are the state the next patch is compared with
+        for (Change change : changes) {
+            snapshots.put(change.object, capture(change.object));
+        }
+        for (Object object : reached) {
+            if (!snapshots.containsKey(object)) {
+                snapshots.put(object, capture(object));
+            }
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Discards the snapshot, so the next call writes a complete document. Object IDs
+     * continue from the current counter.
+     */
+    public void reset() {
+        serializer = new Serializer(serializationKey, serializer.getCounter());
+        snapshots = null;
+    }
+
+    /**
+     * Returns the objects reachable from the root through fields, collections, maps, arrays
+     * and atomic references - the objects a document gives IDs and fields to.
+     */
+    private static Set<Object> reachableObjects(Object root) throws SerializationException {
+        Set<Object> reached = Collections.newSetFromMap(new IdentityHashMap<>());
+        Deque<Object> pending = new ArrayDeque<>();
+        reached.add(root);
+        pending.push(root);
+        while (!pending.isEmpty()) {
+            Object object = pending.pop();
+            for (Field field : FieldInspector.getAllFields(object.getClass())) {
+                addReachable(read(field, object), reached, pending);
+            }
+        }
+        return reached;
+    }
+
+    private static void addReachable(Object value, Set<Object> reached, Deque<Object> pending) {
+        if (value == null) {
+            return;
+        }
+        Deque<Object> values = new ArrayDeque<>();
+        values.push(value);
+        while (!values.isEmpty()) {
+            Object current = values.pop();
+            if (isValue(current)) {
+                continue;
+            }
+            if (current instanceof AtomicReference) {
+                Object referenced = ((AtomicReference<?>) current).get();
+                if (referenced != null) {
+                    values.push(referenced);
+                }
+            } else if (current instanceof Collection) {
+                for (Object element : (Collection<?>) current) {
+                    if (element != null) {
+                        values.push(element);
+                    }
+                }
+            } else if (current instanceof Map) {
+                // Keys are not followed - complex keys are written in $mapKeys, not compared
+                for (Object mapValue : ((Map<?, ?>) current).values()) {
+                    if (mapValue != null) {
+                        values.push(mapValue);
+                    }
+                }
+            } else if (current instanceof Object[]) {
+                for (Object element : (Object[]) current) {
+                    if (element != null) {
+                        values.push(element);
+                    }
+                }
+            } else if (!current.getClass().isArray() && reached.add(current)) {
+                pending.push(current);
+            }
+        }
+    }
+
+    /**
+     * Records the field values of an object. Collections, maps and arrays are copied, so
+     * changes made in place are found; objects are kept by identity.
+     */
+    private static Object[] capture(Object object) throws SerializationException {
+        Field[] fields = FieldInspector.getAllFields(object.getClass());
+        Object[] values = new Object[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            values[i] = captureValue(read(fields[i], object));
+        }
+        return values;
+    }
+
+    private static Object captureValue(Object value) {
+        if (value == null || isSimple(value)) {
+            return value;
+        }
+        if (value instanceof AtomicBoolean || value instanceof AtomicInteger || value instanceof AtomicLong
+                || value instanceof AtomicReference) {
+            return new Held(captureValue(atomicValue(value)));
+        }
+        if (value instanceof Collection) {
+            List<Object> copy = new ArrayList<>(((Collection<?>) value).size());
+            for (Object element : (Collection<?>) value) {
+                copy.add(captureValue(element));
+            }
+            return copy;
+        }
+        if (value instanceof Map) {
+            Map<Object, Object> copy = new LinkedHashMap<>();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                copy.put(entry.getKey(), captureValue(entry.getValue()));
+            }
+            return copy;
+        }
+        if (value instanceof Object[]) {
+            Object[] array = (Object[]) value;
+            Object[] copy = new Object[array.length];
+            for (int i = 0; i < array.length; i++) {
+                copy[i] = captureValue(array[i]);
+            }
+            return copy;
+        }
+        if (value.getClass().isArray()) {
+            // Primitive array
+            return cloneArray(value);
+        }
+        if (ValueSerializer.canSerializeAsValue(value.getClass())) {
+            return new Held(ValueSerializer.serializeAsValue(value));
+        }
+        return value;
+    }
+
+    /**
+     * Checks whether a current value matches the value captured in a snapshot.
+     */
+    private static boolean same(Object captured, Object value) {
+        if (captured == null || value == null) {
+            return captured == value;
+        }
+        if (captured instanceof Held) {
+            Object held = ((Held) captured).value;
+            if (value instanceof AtomicBoolean || value instanceof AtomicInteger || value instanceof AtomicLong
+                    || value instanceof AtomicReference) {
+                return same(held, atomicValue(value));
+            }
+            return ValueSerializer.canSerializeAsValue(value.getClass())
+                && Objects.equals(held, ValueSerializer.serializeAsValue(value));
+        }
+        if (value instanceof Collection) {
+            if (!(captured instanceof List) || ((List<?>) captured).size() != ((Collection<?>) value).size()) {
+                return false;
+            }
+            Iterator<?> old = ((List<?>) captured).iterator();
+            for (Object element : (Collection<?>) value) {
+                if (!same(old.next(), element)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if (value instanceof Map) {
+            if (!(captured instanceof Map) || ((Map<?, ?>) captured).size() != ((Map<?, ?>) value).size()) {
+                return false;
+            }
+            Map<?, ?> old = (Map<?, ?>) captured;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                if (!old.containsKey(entry.getKey()) || !same(old.get(entry.getKey()), entry.getValue())) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if (value instanceof Object[]) {
+            if (!(captured instanceof Object[]) || ((Object[]) captured).length != ((Object[]) value).length) {
+                return false;
+            }
+            Object[] old = (Object[]) captured;
+            Object[] current = (Object[]) value;
+            for (int i = 0; i < current.length; i++) {
+                if (!same(old[i], current[i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if (value.getClass().isArray()) {
+            return Objects.deepEquals(captured, value);
+        }
+        if (isSimple(value)) {
+            return value.equals(captured);
+        }
+        return captured == value;
+    }
+
+    /**
+     * Compares an object with its snapshot, returning its changed fields or null.
+     */
+    private Change compare(Object object, Object[] snapshot) throws SerializationException {
+        Field[] fields = FieldInspector.getAllFields(object.getClass());
+        List<Field> changed = null;
+        List<Object> edits = null;
+        for (int i = 0; i < fields.length; i++) {
+            Object value = read(fields[i], object);
+            if (same(snapshot[i], value)) {
+                continue;
+            }
+            if (changed == null) {
+                changed = new ArrayList<>();
+                edits = new ArrayList<>();
+            }
+            changed.add(fields[i]);
+            edits.add(edit(fields[i], snapshot[i], value));
+        }
+        if (changed == null) {
+            return null;
+        }
+        return new Change(object, serializer.objectId(object), changed.toArray(new Field[0]), edits.toArray());
+    }
+
+    /**
+     * Describes a changed collection or map field as an edit when that is smaller than the
+     * field, or returns null to write the field in full.
+     */
+    private static Object edit(Field field, Object captured, Object value) {
+        FieldClassifier.FieldCategory category = FieldClassifier.classify(field);
+        if (category == FieldClassifier.FieldCategory.COLLECTION && value instanceof List && captured instanceof List) {
+            List<?> old = (List<?>) captured;
+            List<?> current = (List<?>) value;
+            if (current.size() <= old.size()) {
+                return null;
+            }
+            for (int i = 0; i < old.size(); i++) {
+                if (!same(old.get(i), current.get(i))) {
+                    return null;
+                }
+            }
+            return new Append(old.size());
+        }
+        if (category == FieldClassifier.FieldCategory.MAP && value instanceof Map && captured instanceof Map) {
+            Map<?, ?> old = (Map<?, ?>) captured;
+            Map<?, ?> current = (Map<?, ?>) value;
+            List<Object> removed = new ArrayList<>();
+            for (Object key : old.keySet()) {
+                if (!current.containsKey(key)) {
+                    if (!isSimpleKey(key)) {
+                        return null;
+                    }
+                    removed.add(key);
+                }
+            }
+            Map<Object, Object> put = new LinkedHashMap<>();
+            for (Map.Entry<?, ?> entry : current.entrySet()) {
+                Object key = entry.getKey();
+                if (!old.containsKey(key) || !same(old.get(key), entry.getValue())) {
+                    if (!isSimpleKey(key)) {
+                        return null;
+                    }
+                    put.put(key, entry.getValue());
+                }
+            }
+            return removed.size() + put.size() < current.size() ? new MapEdit(removed, put) : null;
+        }
+        return null;
+    }
+
+    private static Object read(Field field, Object object) throws SerializationException {
+        try {
+            return field.get(object);
+        } catch (IllegalAccessException e) {
+            throw new SerializationException("Error accessing field: " + field.getName(), e);
+        }
+    }
+
+    private static Object atomicValue(Object atomic) {
+        if (atomic instanceof AtomicBoolean) {
+            return ((AtomicBoolean) atomic).get();
+        } else if (atomic instanceof AtomicInteger) {
+            return ((AtomicInteger) atomic).get();
+        } else if (atomic instanceof AtomicLong) {
+            return ((AtomicLong) atomic).get();
+        }
+        return ((AtomicReference<?>) atomic).get();
+    }
+
+    private static Object cloneArray(Object array) {
+        int length = java.lang.reflect.Array.getLength(array);
+        Object copy = java.lang.reflect.Array.newInstance(array.getClass().getComponentType(), length);
+        System.arraycopy(array, 0, copy, 0, length);
+        return copy;
+    }
+
+    /**
+     * Checks whether a value is immutable and compared by equality: strings, boxed
+     * primitives, numbers and enums.
+     */
+    private static boolean isSimple(Object value) {
+        return value instanceof String || value instanceof Number || value instanceof Boolean
+            || value instanceof Character || value.getClass().isEnum();
+    }
+
+    /**
+     * Checks whether a value is written without fields of its own.
+     */
+    private static boolean isValue(Object value) {
+        return isSimple(value) || value instanceof AtomicBoolean || value instanceof AtomicInteger
+            || value instanceof AtomicLong || ValueSerializer.canSerializeAsValue(value.getClass());
+    }
+
+    private static boolean isSimpleKey(Object key) {
+        return key == null || isSimple(key) || ValueSerializer.canSerializeAsValue(key.getClass());
+    }
+
+    /**
+     * The captured contents of an atomic, or the value form of a value-serializable object.
+     */
+    private static final class Held {
+        final Object value;
+
+        Held(Object value) {
+            this.value = value;
+        }
+    }
+
+    /**
+     * The changed fields of an object, with the edit describing each (null = the whole value).
+     */
+    static final class Change {
+        final Object object;
+        final String id;
+        final Field[] fields;
+        final Object[] edits;
+
+        Change(Object object, String id, Field[] fields, Object[] edits) {
+            this.object = object;
+            this.id = id;
+            this.fields = fields;
+            this.edits = edits;
+        }
+    }
+
+    /**
+     * A list that kept its first {@code from} elements and grew.
+     */
+    static final class Append {
+        final int from;
+
+        Append(int from) {
+            this.from = from;
+        }
+    }
+
+    /**
+     * The keys removed from a map and the entries added or changed.
+     */
+    static final class MapEdit {
+        final List<Object> removed;
+        final Map<Object, Object> put;
+
+        MapEdit(List<Object> removed, Map<Object, Object> put) {
+            this.removed = removed;
+            this.put = put;
+        }
+    }
+}
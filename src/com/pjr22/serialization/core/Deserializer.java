@@ -1,28 +1,54 @@
 package com.pjr22.serialization.core;
 
+import com.pjr22.serialization.compress.LzBlockInputStream;
+import com.pjr22.serialization.format.BinaryFormatReader;
+import com.pjr22.serialization.format.FormatReader;
+import com.pjr22.serialization.format.JsonFormatReader;
 import com.pjr22.serialization.format.JsonParser;
+import com.pjr22.serialization.format.TreeBuilder;
+import com.pjr22.serialization.format.TreeFilter;
+import com.pjr22.serialization.format.NumericList;
 import com.pjr22.serialization.inspector.ConstructorAnalyzer;
 import com.pjr22.serialization.inspector.FieldInspector;
 import com.pjr22.serialization.registry.ObjectRegistry;
 import com.pjr22.serialization.util.CollectionFactory;
+import com.pjr22.serialization.util.StringPool;
 import com.pjr22.serialization.util.ValueSerializer;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.lang.reflect.Array;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.lang.reflect.Parameter;
 import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.ListIterator;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
@@ -46,6 +72,89 @@ public class Deserializer<T> {
     // Track unresolved references: maps target object ID to list of (source object, field) pairs
     // that need to be resolved after the target object is fully constructed
     private final Map<String, List<UnresolvedReference>> unresolvedReferences;
+
+    // Pool used to load large flat "objects" tables in parallel (null = sequential)
+    private ForkJoinPool parallelPool;
+
+    // Minimum number of table entries before a parallel load is attempted
+    private static final int PARALLEL_THRESHOLD = 1024;
+
+    // Field schemas declared by "$fields" in positional documents, by class name
+    private final Map<String, FieldSchema> fieldSchemas = new HashMap<>();
+
+    // Field paths to bind (null = everything), and how references into skipped fields resolve
+    private Projection projection;
+    private SkippedReferences skippedReferences = SkippedReferences.RESOLVE;
+
+    // Reads the current document again without the projection (null if it cannot be re-read
+    // or no document is being read), and the object definitions of that complete document by
+    // ID once it has been read
+    private DocumentSource wholeDocument;
+    private Map<String, Map<String, Object>> skippedDefinitions;
+
+    // Whether List and Map fields are bound on first access, the names of such fields by class
+    // name, and the unbound element or entry of such a field that defines each object ID
+    private boolean lazyCollections;
+    private final Map<String, Set<String>> lazyFieldNames = new HashMap<>();
+    private final Map<String, LazySlot> lazySlots = new HashMap<>();
+
+    // Pool the values of String fields, elements and keys are canonicalized through (null = none)
+    private StringPool stringPool;
+
+    // While reading into an existing graph: its root, the existing objects to bind each
+    // definition ID into, and the existing objects already claimed by an ID
+    private Object reuseRoot;
+    private Map<String, Object> reuseTargets;
+    private Set<Object> reuseClaimed;
+
+    /**
+     * How a reference to an object that is only defined inside a field left out by
+     * {@link #withProjection} is resolved.
+     */
+    public enum SkippedReferences {
+        /**
+         * The first such reference reads the document again without the projection, and the
+         * referenced objects are bound in full. Documents read from a {@link FormatReader}
+         * cannot be read again, so the reference fails.
+         */
+        RESOLVE,
+        /** The reference is bound as null and a warning is recorded. */
+        NULL
+    }
+
+    /**
+     * Reads the current document again as a complete tree.
+     */
+    private interface DocumentSource {
+        Object parse() throws IOException;
+    }
+
+    // Objects stored outside the current document, such as the rest of an indexed file (null = none)
+    private ObjectStore objectStore;
+    // Stored definitions enclosing an object under construction, bound once it is complete
+    private final Map<String, List<Map<String, Object>>> deferredLoads = new LinkedHashMap<>();
+    private int loadDepth;
+
+    /**
+     * Supplies the objects a document refers to but does not define. Used by
+     * {@link GraphFile} to load definitions from an indexed file as references reach them.
+     */
+    interface ObjectStore {
+        /**
+         * Returns the object with an ID bound by an earlier load, or null.
+         */
+        Object cached(String id);
+
+        /**
+         * Returns the parsed definition of an object, or null if the store does not have it.
+         */
+        Map<String, Object> definition(String id) throws SerializationException;
+
+        /**
+         * Returns the positional field names of a class, or null if they are not known.
+         */
+        String[] schema(String className);
+    }
     
     /**
      * Represents an unresolved reference that needs to be resolved after construction.
@@ -61,123 +170,1615 @@ public class Deserializer<T> {
     }
 
     /**
-     * Creates a new Deserializer for the specified target type.
+     * Creates a new Deserializer for the specified target type.
+     *
+     * @param targetType the class to deserialize to
+     */
+    public Deserializer(Class<T> targetType) {
+        this.targetType = targetType;
+        this.objectRegistry = new ObjectRegistry();
+        this.warnings = new ArrayList<>();
+        this.unresolvedReferences = new HashMap<>();
+    }
+
+    /**
+     * Enables parallel loading of the flat "objects" table format.
+     * Object construction and field binding are spread across the given pool when a table
+     * has at least 1024 entries and contains no nested object definitions; smaller or nested
+     * documents are still loaded on the calling thread. The result is identical either way.
+     *
+     * @param pool the pool to run on, or null to always load sequentially
+     * @return this deserializer
+     */
+    public Deserializer<T> withParallelism(ForkJoinPool pool) {
+        this.parallelPool = pool;
+        return this;
+    }
+
+    /**
+     * Binds only the given field paths and leaves every other field at the value the
+     * constructor gives it. Paths name fields from the root object down, separated by dots;
+     * a segment may end in {@code [*]} to apply the rest of the path to each element of a
+     * collection or array or each value of a map, for example
+     * {@code withProjection("name", "address.city", "effects[*].type")}. Selecting a field
+     * selects everything below it.
+     * <p>
+     * Fields that are not selected are skipped while the document is parsed, without
+     * building their contents. References to objects defined inside skipped fields are
+     * resolved by reading the document again ({@link SkippedReferences#RESOLVE}). The
+     * projection applies to nested-layout documents read by the {@code deserialize} methods;
+     * positional "$values" and the flat "objects" table are read in full. The document is
+     * kept for reading again only while it is bound, unless lazy collections are enabled.
+     * {@link #publishElements(InputStream)} does not accept a projection.
+     *
+     * @param paths the field paths to bind
+     * @return this deserializer
+     * @throws IllegalArgumentException if no paths are given or a path is malformed
+     */
+    public Deserializer<T> withProjection(String... paths) {
+        return withProjection(SkippedReferences.RESOLVE, paths);
+    }
+
+    /**
+     * Binds only the given field paths, resolving references into skipped fields with the
+     * given policy. See {@link #withProjection(String...)}.
+     *
+     * @param policy how references to objects defined inside skipped fields are resolved
+     * @param paths the field paths to bind
+     * @return this deserializer
+     * @throws IllegalArgumentException if no paths are given or a path is malformed
+     */
+    public Deserializer<T> withProjection(SkippedReferences policy, String... paths) {
+        this.projection = Projection.of(paths);
+        this.skippedReferences = policy;
+        return this;
+    }
+
+    /**
+     * Binds fields declared as {@code List}, {@code Collection} or {@code Map} on first
+     * access instead of while the document is read. Such fields are set to library-provided
+     * List and Map implementations that hold the parsed contents: a list binds each element
+     * the first time it is read, and a map binds its entries the first time anything other
+     * than its size is read. The objects defined inside such a field are bound only then,
+     * unless a reference from elsewhere in the document reaches them first.
+     * <p>
+     * The lazy collections bind through this deserializer, under a lock on it, so they can
+     * be read from any thread once published, and the deserializer keeps their contents
+     * reachable until it is discarded. Fields of other collection types, arrays, and fields
+     * in positional "$values" are bound as usual.
+     *
+     * @param lazy true to bind collection and map fields on first access
+     * @return this deserializer
+     */
+    public Deserializer<T> withLazyCollections(boolean lazy) {
+        this.lazyCollections = lazy;
+        return this;
+    }
+
+    /**
+     * Canonicalizes strings through a pool: the values of String fields and constructor
+     * parameters, and String collection elements, map values and map keys, are replaced with
+     * the pool's instance of an equal string. Graphs that hold many equal strings, such as
+     * names and tags, then keep one instance of each, which matters most for graphs kept in
+     * memory for a long time. A pool can be shared between deserializers and threads.
+     *
+     * @param pool the pool, or null to keep the strings as read
+     * @return this deserializer
+     */
+    public Deserializer<T> withStringPool(StringPool pool) {
+        this.stringPool = pool;
+        return this;
+    }
+
+    /**
+     * Returns the pool's instance of a string, or the string itself without a pool.
+     */
+    private String canonical(String value) {
+        return stringPool == null ? value : stringPool.intern(value);
+    }
+
+    /**
+     * Deserializes an object from the input stream.
+     * Both JSON and the binary format written by
+     * {@link com.pjr22.serialization.format.BinaryFormatWriter} are accepted, optionally
+     * compressed with {@link com.pjr22.serialization.compress.LzBlockOutputStream};
+     * compression and the binary format are recognized by their headers.
+     *
+     * @param inputStream the input stream to read from
+     * @return the deserialized object
+     * @throws SerializationException if a deserialization error occurs
+     */
+    public T deserialize(InputStream inputStream) throws SerializationException {
+        byte[] data;
+        try (InputStream in = inputStream) {
+            data = in.readAllBytes();
+            if (LzBlockInputStream.isCompressed(data)) {
+                try (InputStream decompressed = new LzBlockInputStream(new ByteArrayInputStream(data))) {
+                    data = decompressed.readAllBytes();
+                }
+            }
+        } catch (IOException e) {
+            throw new SerializationException("Error reading from input stream", e);
+        }
+        if (BinaryFormatReader.isBinary(data)) {
+            byte[] binary = data;
+            return deserialize(new BinaryFormatReader(binary), () -> TreeBuilder.build(new BinaryFormatReader(binary)));
+        }
+        return deserializeJson(data);
+    }
+
+    /**
+     * Deserializes an object from UTF-8 encoded JSON, parsing the bytes in place.
+     */
+    private T deserializeJson(byte[] data) throws SerializationException {
+        try {
+            return deserializeDocument(() -> JsonParser.parse(data, treeFilter()), () -> JsonParser.parse(data));
+        } catch (Exception e) {
+            // Decode only enough of the document for the message
+            String start = new String(data, 0, Math.min(data.length, 4 * 97 + 4), StandardCharsets.UTF_8);
+            String lengthLimitedJson = start.length() > 97 ? (start.substring(0, 97) + "...") : start;
+            String message = String.format("Error deserializing %s from '%s'", targetType.getSimpleName(), lengthLimitedJson);
+            throw new SerializationException(message, e);
+        }
+    }
+
+    /**
+     * Deserializes an object from a file.
+     * Uncompressed files are memory-mapped and parsed in place, without first reading them
+     * into a byte array or string; JSON files larger than 2 GB are mapped in segments of
+     * {@link JsonFormatReader#SEGMENT_SIZE} bytes. Binary documents must fit in a single
+     * mapping. Compressed files are decompressed as with {@link #deserialize(InputStream)}.
+     * <p>
+     * The mapping is released by the garbage collector once the document has been read, so
+     * the file may stay locked for a while on platforms that lock mapped files.
+     *
+     * @param path the file to read
+     * @return the deserialized object
+     * @throws SerializationException if the file cannot be read or a deserialization error occurs
+     */
+    public T deserialize(Path path) throws SerializationException {
+        return deserialize(mapFile(path), "file " + path, () -> Files.newInputStream(path));
+    }
+
+    /**
+     * Maps a file read-only in segments of {@link JsonFormatReader#SEGMENT_SIZE} bytes.
+     *
+     * @param path the file to map
+     * @return the segments, at least one
+     * @throws SerializationException if the file cannot be mapped
+     */
+    static ByteBuffer[] mapFile(Path path) throws SerializationException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            ByteBuffer[] segments = new ByteBuffer[(int) Math.max(1, (size + JsonFormatReader.SEGMENT_SIZE - 1) / JsonFormatReader.SEGMENT_SIZE)];
+            for (int i = 0; i < segments.length; i++) {
+                long position = (long) i * JsonFormatReader.SEGMENT_SIZE;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                    Math.min(JsonFormatReader.SEGMENT_SIZE, size - position));
+            }
+            return segments;
+        } catch (IOException e) {
+            throw new SerializationException("Error mapping file " + path, e);
+        }
+    }
+
+    /**
+     * Deserializes an object from the remaining bytes of a buffer, which may hold JSON, a binary
+     * document or compressed data. The buffer's position is not changed.
+     *
+     * @param buffer the buffer to read
+     * @return the deserialized object
+     * @throws SerializationException if a deserialization error occurs
+     */
+    public T deserialize(ByteBuffer buffer) throws SerializationException {
+        ByteBuffer data = buffer.slice();
+        return deserialize(new ByteBuffer[] {data}, "buffer", () -> new ByteBufferInputStream(data.duplicate()));
+    }
+
+    /**
+     * Source of the raw bytes of a document for the stream-based (compressed) path.
+     */
+    private interface StreamSource {
+        InputStream open() throws IOException;
+    }
+
+    /**
+     * Deserializes a document held in consecutive segments of
+     * {@link JsonFormatReader#SEGMENT_SIZE} bytes, detecting its format from the header.
+     */
+    private T deserialize(ByteBuffer[] segments, String source, StreamSource stream) throws SerializationException {
+        byte[] header = new byte[Math.min(8, segments[0].remaining())];
+        segments[0].get(0, header);
+        if (LzBlockInputStream.isCompressed(header)) {
+            try {
+                return deserialize(stream.open());
+            } catch (IOException e) {
+                throw new SerializationException("Error reading " + source, e);
+            }
+        }
+        if (BinaryFormatReader.isBinary(header)) {
+            if (segments.length > 1) {
+                throw new SerializationException("Binary document in " + source + " is larger than 2 GB");
+            }
+            ByteBuffer binary = segments[0];
+            return deserialize(new BinaryFormatReader(binary.duplicate()),
+                () -> TreeBuilder.build(new BinaryFormatReader(binary.duplicate())));
+        }
+        try {
+            return deserializeDocument(() -> JsonParser.parse(treeFilter(), segments), () -> JsonParser.parse(segments));
+        } catch (Exception e) {
+            throw new SerializationException("Error deserializing " + targetType.getSimpleName() + " from " + source, e);
+        }
+    }
+
+    /**
+     * Reads the remaining bytes of a buffer as a stream.
+     */
+    private static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+    }
+
+    /**
+     * Deserializes a document into an existing object graph instead of building a new one, so
+     * that refreshing a long-lived graph from a stream of documents does not allocate a copy of
+     * it each time. The root of the document is bound into {@code existing}, whose class must
+     * match it.
+     * <p>
+     * Each object definition in the document is bound into an existing object of the same class:
+     * first the object at the same position, that is the current value of the same field, the
+     * element at the same index of a collection or array, or the value under the same key of a
+     * map; otherwise the object this deserializer bound to the same ID from an earlier document.
+     * Definitions with no such object build a new one. Fields present in the document are
+     * overwritten; fields it does not mention keep their values. Collection and map fields that
+     * already hold a modifiable collection or map are cleared and refilled instead of being
+     * replaced. Arrays, values written as "$value" and atomic wrappers are still allocated.
+     *
+     * @param existing the root of the graph to update
+     * @param inputStream the input stream to read from
+     * @return {@code existing}, updated
+     * @throws SerializationException if the document root is not of the existing root's class,
+     *         or a deserialization error occurs
+     */
+    public T deserializeInto(T existing, InputStream inputStream) throws SerializationException {
+        if (existing == null) {
+            throw new SerializationException("No object to deserialize into");
+        }
+        reuseRoot = existing;
+        reuseTargets = new HashMap<>();
+        reuseClaimed = Collections.newSetFromMap(new IdentityHashMap<>());
+        try {
+            return deserialize(inputStream);
+        } finally {
+            reuseRoot = null;
+            reuseTargets = null;
+            reuseClaimed = null;
+        }
+    }
+
+    /**
+     * Deserializes an object from a JSON string.
+     *
+     * @param json the JSON string to deserialize from
+     * @return the deserialized object
+     * @throws SerializationException if a deserialization error occurs
+     */
+    T deserialize(String json) throws SerializationException {
+        try {
+            return deserializeDocument(() -> JsonParser.parse(json, treeFilter()), () -> JsonParser.parse(json));
+        } catch (Exception e) {
+            String lengthLimitedJson = (json != null && json.length() > 97) ? (json.substring(0, 97) + "...") : json;
+            String message = String.format("Error deserializing %s from '%s'", targetType.getSimpleName(), lengthLimitedJson);
+            throw new SerializationException(message, e);
+        }
+    }
+
+    /**
+     * Returns a publisher of the elements of a top-level JSON array, such as a serialized
+     * collection of records. Each element is parsed and deserialized as type {@code T} only
+     * when the subscriber requests it, so the parsed input held follows the outstanding demand
+     * rather than the document size. Elements are bound by this deserializer, so references
+     * between elements resolve; for that, every object with an ID stays reachable through this
+     * deserializer's registry, since any later element may refer to it. Memory for a
+     * document of many independent elements is released by discarding the deserializer, not
+     * the elements. Compressed input is accepted; binary documents are not.
+     * <p>
+     * The publisher accepts a single subscriber and closes the input stream when it completes,
+     * fails or is cancelled.
+     *
+     * @param inputStream the input stream holding the array
+     * @return a publisher of the elements
+     * @throws IllegalStateException if this deserializer has a projection, since the input
+     *         is read once and cannot be read again to resolve skipped references
+     */
+    public Flow.Publisher<T> publishElements(InputStream inputStream) {
+        if (projection != null) {
+            throw new IllegalStateException("Projections are not supported when publishing elements");
+        }
+        return new ElementPublisher<>(this, inputStream);
+    }
+
+    /**
+     * Deserializes an object from the tokens of a {@link FormatReader}.
+     * One top-level value is read; the reader is left positioned after it.
+     *
+     * @param reader the reader to read from
+     * @return the deserialized object
+     * @throws SerializationException if a deserialization error occurs
+     */
+    public T deserialize(FormatReader reader) throws SerializationException {
+        return deserialize(reader, null);
+    }
+
+    /**
+     * Deserializes an object from the tokens of a {@link FormatReader}, with a way to read
+     * the document again if references into fields skipped by the projection need it.
+     */
+    private T deserialize(FormatReader reader, DocumentSource whole) throws SerializationException {
+        try {
+            return deserializeDocument(() -> TreeBuilder.build(reader, treeFilter()), whole);
+        } catch (IOException e) {
+            throw new SerializationException("Error reading from format reader", e);
+        } catch (Exception e) {
+            throw new SerializationException("Error deserializing " + targetType.getSimpleName(), e);
+        }
+    }
+
+    /**
+     * Uses a store for the objects documents refer to but do not define. Definitions whose
+     * objects are already bound, by this deserializer or by the store's earlier loads, are
+     * reused instead of being built again.
+     *
+     * @param store the store
+     * @return this deserializer
+     */
+    Deserializer<T> withObjectStore(ObjectStore store) {
+        this.objectStore = store;
+        return this;
+    }
+
+    /**
+     * Returns the object with an ID, loading its definition from the object store and binding
+     * it if it is not bound yet.
+     *
+     * @param id the object ID
+     * @return the object
+     * @throws SerializationException if the store does not have the object or it cannot be bound
+     */
+    Object loadStored(String id) throws SerializationException {
+        Object object = objectRegistry.get(id);
+        if (object != null) {
+            return object == PLACEHOLDER ? new UnresolvedReferenceMarker(id) : object;
+        }
+        object = objectStore.cached(id);
+        if (object != null) {
+            objectRegistry.register(id, object);
+            return object;
+        }
+        if (deferredLoads.containsKey(id)) {
+            return new UnresolvedReferenceMarker(id);
+        }
+        Map<String, Object> definition = objectStore.definition(id);
+        if (definition == null) {
+            throw new SerializationException("Referenced object not found: " + id);
+        }
+        List<Map<String, Object>> definitions = flattenDefinitions(definition);
+        for (Map<String, Object> nested : definitions) {
+            if (objectRegistry.get((String) nested.get("$id")) == PLACEHOLDER) {
+                // The definition encloses an object still being constructed (the reference
+                // comes from inside it): bind it once that object is complete, and resolve the
+                // reference then
+                deferredLoads.put(id, definitions);
+                return new UnresolvedReferenceMarker(id);
+            }
+        }
+
+        loadDepth++;
+        try {
+            bindDefinitions(definitions);
+        } finally {
+            loadDepth--;
+        }
+        if (loadDepth == 0) {
+            while (!deferredLoads.isEmpty()) {
+                Iterator<Map.Entry<String, List<Map<String, Object>>>> it = deferredLoads.entrySet().iterator();
+                List<Map<String, Object>> deferred = it.next().getValue();
+                it.remove();
+                loadDepth++;
+                try {
+                    bindDefinitions(deferred);
+                } finally {
+                    loadDepth--;
+                }
+            }
+        }
+        return objectRegistry.get(id);
+    }
+
+    /**
+     * Returns the objects bound by this deserializer, by ID.
+     *
+     * @return the bound objects
+     */
+    Map<String, Object> boundObjects() {
+        Map<String, Object> bound = new HashMap<>();
+        for (String id : objectRegistry.getAllObjectIds()) {
+            Object object = objectRegistry.get(id);
+            if (object != PLACEHOLDER) {
+                bound.put(id, object);
+            }
+        }
+        return bound;
+    }
+
+    /**
+     * Checks whether the object with an ID is bound already, registering it if the object
+     * store bound it in an earlier load.
+     */
+    private boolean isBound(String id) {
+        if (objectRegistry.get(id) != null) {
+            return true;
+        }
+        if (objectStore == null) {
+            return false;
+        }
+        Object cached = objectStore.cached(id);
+        if (cached != null) {
+            objectRegistry.register(id, cached);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Parses and binds one document. The way to read it again and the definitions read from
+     * it are dropped once it is bound, so the deserializer does not keep the document, unless
+     * lazy collections may still resolve references into skipped fields.
+     *
+     * @param tree parses the document with the projection applied
+     * @param whole parses the document again without the projection, or null if it cannot
+     */
+    private T deserializeDocument(DocumentSource tree, DocumentSource whole) throws IOException, SerializationException {
+        wholeDocument = whole;
+        skippedDefinitions = null;
+        try {
+            return deserializeTree(tree.parse());
+        } finally {
+            if (!lazyCollections) {
+                wholeDocument = null;
+                skippedDefinitions = null;
+            }
+        }
+    }
+
+    /**
+     * Returns the filter applying the projection to the parse tree.
+     */
+    private TreeFilter treeFilter() {
+        return projection == null ? TreeFilter.ALL : projection.filter();
+    }
+
+    /**
+     * Resolves a reference to an object that is not in the document tree because the
+     * projection skipped the field defining it.
+     *
+     * @param refId the referenced object ID
+     * @return the referenced object, or null under {@link SkippedReferences#NULL}
+     * @throws SerializationException if the object cannot be found
+     */
+    private Object resolveSkippedReference(String refId) throws SerializationException {
+        if (skippedReferences == SkippedReferences.NULL) {
+            String warning = "Reference to " + refId + " inside a skipped field was set to null";
+            if (!warnings.contains(warning)) {
+                warnings.add(warning);
+            }
+            return null;
+        }
+        Map<String, Object> definition = skippedDefinitions().get(refId);
+        if (definition == null) {
+            throw new SerializationException("Referenced object not found: " + refId);
+        }
+        return deserializeObject(definition);
+    }
+
+    /**
+     * Reads the current document again without the projection, the first time it is needed,
+     * and returns its object definitions by ID. The field schemas of a positional document
+     * are declared from it as well, since a schema may be declared inside a skipped field.
+     *
+     * @return the definitions by ID; empty if the document cannot be read again
+     * @throws SerializationException if the document cannot be parsed
+     */
+    @SuppressWarnings("unchecked")
+    private Map<String, Map<String, Object>> skippedDefinitions() throws SerializationException {
+        if (skippedDefinitions != null) {
+            return skippedDefinitions;
+        }
+        skippedDefinitions = new HashMap<>();
+        if (wholeDocument == null) {
+            return skippedDefinitions;
+        }
+        Object tree;
+        try {
+            tree = resolveStringTable(wholeDocument.parse());
+        } catch (IOException | RuntimeException e) {
+            throw new SerializationException("Error reading the document again to resolve skipped references", e);
+        }
+        Deque<Object> pending = new ArrayDeque<>();
+        pending.push(tree);
+        while (!pending.isEmpty()) {
+            Object node = pending.pop();
+            if (node instanceof Map) {
+                Map<String, Object> map = (Map<String, Object>) node;
+                if (isObjectDefinition(map)) {
+                    skippedDefinitions.putIfAbsent((String) map.get("$id"), map);
+                    declareFieldSchema(map);
+                }
+                for (Object value : map.values()) {
+                    if (value instanceof Map || value instanceof List) {
+                        pending.push(value);
+                    }
+                }
+            } else if (node instanceof List && !(node instanceof NumericList)) {
+                for (Object element : (List<Object>) node) {
+                    if (element instanceof Map || element instanceof List) {
+                        pending.push(element);
+                    }
+                }
+            }
+        }
+        return skippedDefinitions;
+    }
+
+    /**
+     * Deserializes an object from a parsed document tree.
+     *
+     * @param parsed the document tree
+     * @return the deserialized object
+     * @throws SerializationException if a deserialization error occurs
+     */
+    @SuppressWarnings("unchecked")
+    T deserializeTree(Object parsed) throws SerializationException {
+        parsed = resolveStringTable(parsed);
+        if (reuseRoot != null) {
+            matchExistingObjects(parsed);
+        }
+        // Check if this is the "objects" array format (from DeserializerTest)
+        if (parsed instanceof Map) {
+            Map<String, Object> rootMap = (Map<String, Object>) parsed;
+            if (rootMap.containsKey("objects")) {
+                return deserializeObjectsArrayFormat(rootMap);
+            }
+            if (rootMap.containsKey("$patch")) {
+                return applyPatch(rootMap);
+            }
+        }
+
+        // Otherwise, it's the nested format from Serializer
+        if (parsed instanceof Map && isObjectDefinition((Map<String, Object>) parsed)) {
+            return (T) deserializeNested((Map<String, Object>) parsed);
+        }
+        return (T) deserializeObject(parsed);
+    }
+
+    /**
+     * Chooses the existing object each definition of a document is bound into when reading
+     * into an existing graph. The document is walked alongside the graph, pairing each
+     * definition with the object at the same position; definitions left unpaired are then
+     * matched by ID with the objects bound from earlier documents. An existing object is used
+     * for one definition only.
+     *
+     * @param parsed the document tree
+     * @throws SerializationException if the document root is not of the existing root's class
+     */
+    @SuppressWarnings("unchecked")
+    private void matchExistingObjects(Object parsed) throws SerializationException {
+        if (!(parsed instanceof Map) || !isObjectDefinition((Map<String, Object>) parsed)) {
+            throw new SerializationException("Document root is not an object definition to read into "
+                + reuseRoot.getClass().getName());
+        }
+        Object rootClass = ((Map<String, Object>) parsed).get("$class");
+        if (!reuseRoot.getClass().getName().equals(rootClass)) {
+            throw new SerializationException("Document root is a " + rootClass + ", not a "
+                + reuseRoot.getClass().getName());
+        }
+
+        // Classes of the definitions with no existing object at their position, by ID
+        Map<String, Object> unpaired = new LinkedHashMap<>();
+        // Pairs of a document node and the existing value at its position (or null)
+        Deque<Object[]> pending = new ArrayDeque<>();
+        pending.push(new Object[] {parsed, reuseRoot});
+        while (!pending.isEmpty()) {
+            Object[] pair = pending.pop();
+            Object node = pair[0];
+            Object current = pair[1];
+            List<Object[]> children = new ArrayList<>();
+
+            if (node instanceof Map && isObjectDefinition((Map<String, Object>) node)) {
+                Map<String, Object> definition = (Map<String, Object>) node;
+                String id = (String) definition.get("$id");
+                if (current != null && !definition.containsKey("$value")
+                        && current.getClass().getName().equals(definition.get("$class"))
+                        && reuseClaimed.add(current)) {
+                    reuseTargets.put(id, current);
+                } else {
+                    current = null;
+                    if (!definition.containsKey("$value")) {
+                        unpaired.put(id, definition.get("$class"));
+                    }
+                }
+                Map<String, Object> fields;
+                try {
+                    fields = definitionFields(definition);
+                } catch (SerializationException e) {
+                    // Bound as usual later; reported there if the schema is missing for good
+                    fields = Collections.emptyMap();
+                }
+                Map<String, Field> byName = new HashMap<>();
+                if (current != null) {
+                    for (Field field : FieldInspector.getAllFields(current.getClass())) {
+                        byName.put(field.getName(), field);
+                    }
+                }
+                for (Map.Entry<String, Object> entry : fields.entrySet()) {
+                    Field field = byName.get(entry.getKey());
+                    children.add(new Object[] {entry.getValue(), field == null ? null : fieldValue(current, field)});
+                }
+                if (definition.get("$mapKeys") instanceof Map) {
+                    for (Object key : ((Map<String, Object>) definition.get("$mapKeys")).values()) {
+                        children.add(new Object[] {key, null});
+                    }
+                }
+            } else if (node instanceof Map) {
+                Map<String, Object> map = (Map<String, Object>) node;
+                Map<String, Object> currentByKey = new HashMap<>();
+                if (current instanceof Map && !(current instanceof LazyMap)) {
+                    for (Map.Entry<?, ?> entry : ((Map<?, ?>) current).entrySet()) {
+                        currentByKey.put(String.valueOf(entry.getKey()), entry.getValue());
+                    }
+                }
+                for (Map.Entry<String, Object> entry : map.entrySet()) {
+                    children.add(new Object[] {entry.getValue(), currentByKey.get(entry.getKey())});
+                }
+            } else if (node instanceof List && !(node instanceof NumericList)) {
+                List<Object> list = (List<Object>) node;
+                Iterator<?> elements = null;
+                if (current instanceof Collection && !(current instanceof LazyList)) {
+                    elements = ((Collection<?>) current).iterator();
+                } else if (current instanceof Object[]) {
+                    elements = Arrays.asList((Object[]) current).iterator();
+                }
+                for (Object element : list) {
+                    children.add(new Object[] {element, elements != null && elements.hasNext() ? elements.next() : null});
+                }
+            }
+
+            // Visit children in document order, so positional schemas are declared before use
+            for (int i = children.size() - 1; i >= 0; i--) {
+                Object child = children.get(i)[0];
+                if (child instanceof Map || child instanceof List) {
+                    pending.push(children.get(i));
+                }
+            }
+        }
+
+        for (Map.Entry<String, Object> entry : unpaired.entrySet()) {
+            Object previous = objectRegistry.get(entry.getKey());
+            if (previous != null && previous.getClass().getName().equals(entry.getValue())
+                    && reuseClaimed.add(previous)) {
+                reuseTargets.put(entry.getKey(), previous);
+            }
+        }
+    }
+
+    /**
+     * Reads a field of an existing object, or returns null if it cannot be read.
+     */
+    private static Object fieldValue(Object object, Field field) {
+        try {
+            field.setAccessible(true);
+            return field.get(object);
+        } catch (IllegalAccessException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the existing collection or map of a field, emptied so that it can be refilled,
+     * when reading into an existing graph. Returns null if a new one should be built instead.
+     */
+    private <C> C emptiedForReuse(Object instance, Field field, Class<C> type) {
+        if (reuseTargets == null) {
+            return null;
+        }
+        Object current = fieldValue(instance, field);
+        if (!type.isInstance(current) || current instanceof LazyList || current instanceof LazyMap) {
+            return null;
+        }
+        try {
+            if (current instanceof Collection) {
+                ((Collection<?>) current).clear();
+            } else {
+                ((Map<?, ?>) current).clear();
+            }
+        } catch (UnsupportedOperationException e) {
+            return null;
+        }
+        return type.cast(current);
+    }
+
+    /**
+     * Unwraps a document written with a string table, {"$strings":[...],"root":...}, replacing
+     * each {"$s":index} in the document with the string from the table. Every use of a string
+     * gets the same instance. Other documents are returned unchanged.
+     *
+     * @param parsed the document tree
+     * @return the document without the string table
+     * @throws SerializationException if the document refers to a string the table does not have
+     */
+    @SuppressWarnings("unchecked")
+    private static Object resolveStringTable(Object parsed) throws SerializationException {
+        if (!(parsed instanceof Map) || !(((Map<String, Object>) parsed).get("$strings") instanceof List)) {
+            return parsed;
+        }
+        Map<String, Object> envelope = (Map<String, Object>) parsed;
+        List<Object> table = (List<Object>) envelope.get("$strings");
+        Object root = envelope.get("root");
+        if (isStringReference(root)) {
+            return tableString(table, root);
+        }
+
+        Deque<Object> pending = new ArrayDeque<>();
+        pending.push(root);
+        while (!pending.isEmpty()) {
+            Object node = pending.pop();
+            if (node instanceof Map) {
+                for (Map.Entry<String, Object> entry : ((Map<String, Object>) node).entrySet()) {
+                    Object value = entry.getValue();
+                    if (isStringReference(value)) {
+                        entry.setValue(tableString(table, value));
+                    } else if (value instanceof Map || value instanceof List) {
+                        pending.push(value);
+                    }
+                }
+            } else if (node instanceof List && !(node instanceof NumericList)) {
+                List<Object> list = (List<Object>) node;
+                for (int i = 0; i < list.size(); i++) {
+                    Object element = list.get(i);
+                    if (isStringReference(element)) {
+                        list.set(i, tableString(table, element));
+                    } else if (element instanceof Map || element instanceof List) {
+                        pending.push(element);
+                    }
+                }
+            }
+        }
+        return root;
+    }
+
+    private static boolean isStringReference(Object value) {
+        return value instanceof Map && ((Map<?, ?>) value).size() == 1 && ((Map<?, ?>) value).get("$s") instanceof Number;
+    }
+
+    private static Object tableString(List<Object> table, Object reference) throws SerializationException {
+        int index = ((Number) ((Map<?, ?>) reference).get("$s")).intValue();
+        if (index < 0 || index >= table.size()) {
+            throw new SerializationException("String table has no entry " + index);
+        }
+        return table.get(index);
+    }
+
+    /**
+     * Applies a patch written by {@link DeltaSerializer} to the objects this deserializer
+     * read from earlier documents of the same graph.
+     * <p>
+     * The objects defined in the patch are new to the graph; they are lifted out and bound
+     * together first, so they can refer to each other. The changed fields of existing
+     * objects are then set, lists with "$append" are extended and maps with "$remove" and
+     * "$put" are edited in place. Released objects are dropped from the registry.
+     *
+     * @param patch the parsed patch
+     * @return the root of the graph
+     * @throws SerializationException if the patch refers to objects this deserializer does not
+     *         have, or cannot be applied
+     */
+    @SuppressWarnings("unchecked")
+    private T applyPatch(Map<String, Object> patch) throws SerializationException {
+        List<Object> changes = patch.get("changes") instanceof List ? (List<Object>) patch.get("changes") : Collections.emptyList();
+        List<Object> root = new ArrayList<>(Collections.singletonList(patch.get("root")));
+        Set<String> seen = new HashSet<>();
+
+        List<Map<String, Object>> created = flattenDefinitions(TreeWalk.ofList(root), seen);
+        List<Object> targets = new ArrayList<>(changes.size());
+        for (Object entry : changes) {
+            if (!(entry instanceof Map) || !isObjectDefinition((Map<String, Object>) entry)) {
+                throw new SerializationException("Malformed patch entry: " + entry);
+            }
+            Map<String, Object> change = (Map<String, Object>) entry;
+            String id = (String) change.get("$id");
+            Object target = objectRegistry.get(id);
+            if (target == null) {
+                throw new SerializationException("Patch changes an object that was not read: " + id);
+            }
+            targets.add(target);
+            seen.add(id);
+            List<Map<String, Object>> nested = flattenDefinitions(TreeWalk.ofDefinition(change), seen);
+            // The last definition is the change itself
+            created.addAll(nested.subList(0, nested.size() - 1));
+        }
+        // Map key objects are written again with each object that has complex keys
+        created.removeIf(definition -> objectRegistry.get((String) definition.get("$id")) != null);
+        bindDefinitions(created);
+
+        for (int i = 0; i < targets.size(); i++) {
+            Object target = targets.get(i);
+            Map<String, Object> fields = (Map<String, Object>) ((Map<String, Object>) changes.get(i)).get("fields");
+            if (fields != null) {
+                applyChangedFields(target, fields);
+            }
+        }
+
+        if (patch.get("released") instanceof List) {
+            for (Object id : (List<Object>) patch.get("released")) {
+                objectRegistry.remove((String) id);
+            }
+        }
+        return (T) deserializeObject(root.get(0));
+    }
+
+    /**
+     * Sets the changed fields of an existing object from a patch.
+     */
+    @SuppressWarnings("unchecked")
+    private void applyChangedFields(Object target, Map<String, Object> changed) throws SerializationException {
+        for (Field field : FieldInspector.getAllFields(target.getClass())) {
+            if (!changed.containsKey(field.getName())) {
+                continue;
+            }
+            Object value = changed.get(field.getName());
+            field.setAccessible(true);
+            try {
+                Map<String, Object> edit = value instanceof Map ? (Map<String, Object>) value : null;
+                if (edit != null && Collection.class.isAssignableFrom(field.getType()) && edit.containsKey("$append")) {
+                    Collection<Object> collection = (Collection<Object>) field.get(target);
+                    for (Object item : (List<Object>) edit.get("$append")) {
+                        collection.add(item instanceof Map ? deserializeObject(item) : item);
+                    }
+                } else if (edit != null && Map.class.isAssignableFrom(field.getType()) && edit.containsKey("$put")) {
+                    Map<Object, Object> map = (Map<Object, Object>) field.get(target);
+                    Class<?> keyType = mapKeyType(field);
+                    for (Object key : (List<Object>) edit.get("$remove")) {
+                        map.remove(convertMapKey((String) key, keyType));
+                    }
+                    map.putAll((Map<Object, Object>) convertToMap(field, edit.get("$put")));
+                } else {
+                    setFieldValue(target, field, value);
+                }
+            } catch (IllegalAccessException e) {
+                throw new SerializationException("Error applying patch to field: " + field.getName(), e);
+            } catch (NullPointerException | UnsupportedOperationException | ClassCastException e) {
+                throw new SerializationException("Cannot edit field " + field.getName() + " of "
+                    + target.getClass().getName() + " in place", e);
+            }
+        }
+    }
+
+    /**
+     * Returns the declared key type of a map field (String if it is not declared).
+     */
+    private static Class<?> mapKeyType(Field field) {
+        java.lang.reflect.Type genericType = field.getGenericType();
+        if (genericType instanceof java.lang.reflect.ParameterizedType) {
+            java.lang.reflect.Type[] typeArgs = ((java.lang.reflect.ParameterizedType) genericType).getActualTypeArguments();
+            if (typeArgs.length >= 1 && typeArgs[0] instanceof Class) {
+                return (Class<?>) typeArgs[0];
+            }
+        }
+        return String.class;
+    }
+
+    /**
+     * Deserializes from the "objects" array format used by DeserializerTest.
+     * <p>
+     * The table is flat, so loading is split into two phases: every object is constructed and
+     * registered first, then fields and references are bound. Each phase touches one table entry
+     * at a time, which lets both phases run on a ForkJoinPool when one is configured through
+     * {@link #withParallelism(ForkJoinPool)}. Registration always happens in table order, and
+     * fields holding hashed collections of other entries are bound in a sequential pass after
+     * the parallel one, so the result is the same as a sequential load.
+     */
+    @SuppressWarnings("unchecked")
+    private T deserializeObjectsArrayFormat(Map<String, Object> rootMap) throws SerializationException {
+        List<Map<String, Object>> objectsList = (List<Map<String, Object>>) rootMap.get("objects");
+        int count = objectsList.size();
+
+        // Resolve classes and reserve every ID up front, so constructor arguments and fields can
+        // refer to any entry in the table regardless of its position
+        String[] ids = new String[count];
+        Class<?>[] classes = new Class<?>[count];
+        Map<String, Class<?>> classCache = new HashMap<>();
+        boolean flat = true;
+        for (int i = 0; i < count; i++) {
+            Map<String, Object> objData = objectsList.get(i);
+            String className = (String) objData.get("className");
+            Class<?> clazz = classCache.get(className);
+            if (clazz == null) {
+                try {
+                    clazz = Class.forName(className);
+                } catch (ClassNotFoundException e) {
+                    throw new SerializationException("Class not found: " + className, e);
+                }
+                classCache.put(className, clazz);
+            }
+            ids[i] = (String) objData.get("id");
+            classes[i] = clazz;
+            objectRegistry.register(ids[i], PLACEHOLDER);
+            if (objData.containsKey("serialVersionUID")) {
+                checkSerialVersionUID(clazz, objData.get("serialVersionUID"));
+            }
+            if (flat && parallelPool != null && containsObjectDefinition(objData.get("fields"))) {
+                // Nested object definitions register more objects while fields are bound, and
+                // complex map keys must be bound before the maps that hash them; neither is
+                // safe to do concurrently
+                flat = false;
+            }
+        }
+
+        boolean parallel = flat && parallelPool != null && count >= PARALLEL_THRESHOLD;
+        Object[] instances = new Object[count];
+
+        // First pass: create all objects
+        forEachEntry(count, parallel, i -> {
+            Map<String, Object> objData = objectsList.get(i);
+            if (objData.containsKey("value")) {
+                // JDK class written as a simple value
+                instances[i] = ValueSerializer.deserializeFromValue(objData.get("value"), classes[i]);
+                if (instances[i] == null) {
+                    throw new SerializationException("Cannot create " + classes[i].getName() + " from value: " + objData.get("value"));
+                }
+                return;
+            }
+            Map<String, Object> fields = (Map<String, Object>) objData.getOrDefault("fields", Collections.emptyMap());
+            Map<String, String> references = (Map<String, String>) objData.get("references");
+            if (references != null && !references.isEmpty()) {
+                // Let constructors see referenced objects as well; references to entries that are
+                // not constructed yet arrive as null and are bound in the second pass
+                Map<String, Object> constructorFields = new HashMap<>(fields);
+                for (Map.Entry<String, String> reference : references.entrySet()) {
+                    constructorFields.put(reference.getKey(), Collections.singletonMap("$ref", reference.getValue()));
+                }
+                fields = constructorFields;
+            }
+            instances[i] = createInstance(classes[i], fields);
+        });
+
+        // Register in table order so that identity does not depend on scheduling
+        for (int i = 0; i < count; i++) {
+            objectRegistry.register(ids[i], instances[i]);
+        }
+
+        // Second pass: set field values and resolve references. Sequential loads bind in reverse
+        // table order: tables written by the Serializer list objects in discovery order, so
+        // objects used as map keys or set elements are bound before the containers that hash them.
+        // Parallel loads leave fields that may hash other entries for a sequential pass afterwards
+        Map<String, Object>[] hashedFields = parallel ? new Map[count] : null;
+        forEachEntry(count, parallel, index -> {
+            int i = parallel ? index : count - 1 - index;
+            Map<String, Object> objData = objectsList.get(i);
+            if (objData.containsKey("value")) {
+                return;
+            }
+            Map<String, Object> fields = (Map<String, Object>) objData.getOrDefault("fields", Collections.emptyMap());
+            Map<String, String> references = (Map<String, String>) objData.getOrDefault("references", new HashMap<>());
+
+            if (parallel) {
+                hashedFields[i] = splitHashedFields(classes[i], fields);
+                if (hashedFields[i] != null) {
+                    fields = new HashMap<>(fields);
+                    fields.keySet().removeAll(hashedFields[i].keySet());
+                }
+            }
+            setFields(instances[i], classes[i], fields, references);
+            if (!references.isEmpty()) {
+                resolveReferences(instances[i], references);
+            }
+        });
+        if (parallel) {
+            for (int i = count - 1; i >= 0; i--) {
+                if (hashedFields[i] != null) {
+                    setFields(instances[i], classes[i], hashedFields[i], Collections.emptyMap());
+                }
+            }
+        }
+
+        // Return the first object that matches the target type
+        for (int i = 0; i < count; i++) {
+            if (classes[i].getName().equals(targetType.getName())) {
+                return (T) instances[i];
+            }
+        }
+
+        // If no exact match, try to find the first object
+        if (count > 0) {
+            return (T) instances[0];
+        }
+
+        throw new SerializationException("No objects found in JSON");
+    }
+
+    /**
+     * Runs an action for every table index, either in order on the calling thread or
+     * split across the configured ForkJoinPool.
+     */
+    private void forEachEntry(int count, boolean parallel, EntryAction action) throws SerializationException {
+        if (!parallel) {
+            for (int i = 0; i < count; i++) {
+                action.apply(i);
+            }
+            return;
+        }
+        try {
+            parallelPool.invoke(new EntryRangeTask(action, 0, count));
+        } catch (EntryFailure e) {
+            throw e.cause;
+        }
+    }
+
+    /**
+     * Checks whether a parsed value contains a nested object definition ($id and $class)
+     * or a map keyed by object references ("$ref:ID" keys).
+     */
+    @SuppressWarnings("unchecked")
+    private boolean containsObjectDefinition(Object value) {
+        if (value instanceof Map) {
+            Map<String, Object> map = (Map<String, Object>) value;
+            if (map.containsKey("$id") || map.containsKey("$mapKeys")) {
+                return true;
+            }
+            for (String key : map.keySet()) {
+                if (key.startsWith("$ref:")) {
+                    return true;
+                }
+            }
+            for (Object nested : map.values()) {
+                if (containsObjectDefinition(nested)) {
+                    return true;
+                }
+            }
+        } else if (value instanceof List && !(value instanceof NumericList)) {
+            for (Object nested : (List<?>) value) {
+                if (containsObjectDefinition(nested)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the fields of a table entry whose values may hash other table entries: references
+     * in a collection that is not a list or array, or in a container nested inside another
+     * container. Returns null if there are none.
+     */
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> splitHashedFields(Class<?> clazz, Map<String, Object> fields) {
+        Map<String, Object> hashed = null;
+        for (Field field : FieldInspector.getAllFields(clazz)) {
+            Object value = fields.get(field.getName());
+            boolean ordered;
+            if (value instanceof List && !(value instanceof NumericList)) {
+                Class<?> type = field.getType();
+                ordered = List.class.isAssignableFrom(type) || type.isArray()
+                    ? containsNestedReference(((List<Object>) value))
+                    : containsReference(value);
+            } else if (value instanceof Map && !((Map<String, Object>) value).containsKey("$ref")) {
+                ordered = containsNestedReference(((Map<String, Object>) value).values());
+            } else {
+                ordered = false;
+            }
+            if (ordered) {
+                if (hashed == null) {
+                    hashed = new HashMap<>();
+                }
+                hashed.put(field.getName(), value);
+            }
+        }
+        return hashed;
+    }
+
+    /**
+     * Checks whether any of the items of a container holds a reference below its top level.
+     */
+    private boolean containsNestedReference(Collection<Object> items) {
+        for (Object item : items) {
+            if (!(item instanceof Map && ((Map<?, ?>) item).containsKey("$ref")) && containsReference(item)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks whether a parsed value contains a {"$ref": id} object.
+     */
+    private boolean containsReference(Object value) {
+        if (value instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            if (map.containsKey("$ref")) {
+                return true;
+            }
+            for (Object nested : map.values()) {
+                if (containsReference(nested)) {
+                    return true;
+                }
+            }
+        } else if (value instanceof List && !(value instanceof NumericList)) {
+            for (Object nested : (List<?>) value) {
+                if (containsReference(nested)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Action applied to a single entry of the objects table.
+     */
+    @FunctionalInterface
+    private interface EntryAction {
+        void apply(int index) throws SerializationException;
+    }
+
+    /**
+     * Applies an EntryAction to a range of table indexes, splitting the range until it is
+     * small enough to run directly.
+     */
+    private static class EntryRangeTask extends RecursiveAction {
+        private static final int GRAIN = 256;
+
+        final EntryAction action;
+        final int from;
+        final int to;
+
+        EntryRangeTask(EntryAction action, int from, int to) {
+            this.action = action;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= GRAIN) {
+                for (int i = from; i < to; i++) {
+                    try {
+                        action.apply(i);
+                    } catch (SerializationException e) {
+                        throw new EntryFailure(e);
+                    }
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new EntryRangeTask(action, from, middle), new EntryRangeTask(action, middle, to));
+        }
+    }
+
+    /**
+     * Carries a SerializationException out of a ForkJoin task.
+     */
+    private static class EntryFailure extends RuntimeException {
+        final SerializationException cause;
+
+        EntryFailure(SerializationException cause) {
+            super(cause);
+            this.cause = cause;
+        }
+    }
+
+    /**
+     * Deserializes a document in the nested format produced by Serializer.
+     * <p>
+     * Object definitions are first lifted out of the parse tree by an iterative walk (see
+     * {@link #flattenDefinitions(Map)}), leaving {"$ref": id} in their place. The definitions
+     * are then created, registered and bound one at a time in post-order, so every nested
+     * object is complete before the object containing it is constructed - the same order the
+     * recursive reader used - without recursing once per level of the object graph.
+     *
+     * @param root the root object definition
+     * @return the root object
+     * @throws SerializationException if a deserialization error occurs
+     */
+    @SuppressWarnings("unchecked")
+    private Object deserializeNested(Map<String, Object> root) throws SerializationException {
+        bindDefinitions(flattenDefinitions(root));
+        return objectRegistry.get((String) root.get("$id"));
+    }
+
+    /**
+     * Creates, registers and binds object definitions in the order given.
+     *
+     * @param definitions the definitions lifted out of a document, in construction order
+     * @throws SerializationException if a deserialization error occurs
+     */
+    private void bindDefinitions(List<Map<String, Object>> definitions) throws SerializationException {
+        if (objectStore != null || lazyCollections) {
+            // A definition read again (such as an enclosing object reached by a reference)
+            // reuses the objects already bound instead of building copies
+            definitions.removeIf(definition -> isBound((String) definition.get("$id")));
+        }
+
+        // Reserve every ID, so references to objects that are still being built resolve to
+        // placeholders and are filled in once the target is registered
+        for (Map<String, Object> definition : definitions) {
+            objectRegistry.register((String) definition.get("$id"), PLACEHOLDER);
+            declareFieldSchema(definition);
+        }
+
+        Map<String, Class<?>> classCache = new HashMap<>();
+        for (Map<String, Object> definition : definitions) {
+            String objectId = (String) definition.get("$id");
+            String className = (String) definition.get("$class");
+            Class<?> clazz = classCache.get(className);
+            if (clazz == null) {
+                try {
+                    clazz = Class.forName(className);
+                } catch (ClassNotFoundException e) {
+                    throw new SerializationException("Class not found: " + className, e);
+                }
+                classCache.put(className, clazz);
+            }
+
+            // Simple value format (for JDK classes)
+            if (definition.containsKey("$value")) {
+                Object instance = ValueSerializer.deserializeFromValue(definition.get("$value"), clazz);
+                if (instance != null) {
+                    objectRegistry.register(objectId, instance);
+                    resolveUnresolvedReferences(objectId, instance);
+                    continue;
+                }
+                // Fallback to regular object deserialization
+            }
+
+            Map<String, Object> fields = definitionFields(definition);
+
+            // Check serialVersionUID
+            if (definition.containsKey("serialVersionUID")) {
+                checkSerialVersionUID(clazz, definition.get("serialVersionUID"));
+            }
+
+            Object instance = reuseTargets == null ? null : reuseTargets.get(objectId);
+            if (instance == null || instance.getClass() != clazz) {
+                instance = createInstance(clazz, fields);
+            }
+            objectRegistry.register(objectId, instance);
+
+            // Resolve any unresolved references to this object
+            resolveUnresolvedReferences(objectId, instance);
+
+            setFields(instance, clazz, fields, new HashMap<>());
+        }
+    }
+
+    /**
+     * Lifts every object definition out of a nested document.
+     * <p>
+     * The parse tree is walked with an explicit stack. Each nested definition is replaced in its
+     * parent by {"$ref": id}, and the definitions are returned in post-order: a definition comes
+     * after all definitions nested inside it, with those in its $mapKeys section first, then
+     * those in its fields. A definition that appears more than once (such as a key repeated in
+     * several $mapKeys sections) is kept only at its first occurrence.
+     * <p>
+     * With {@link #withLazyCollections(boolean) lazy collections}, the values of lazy fields
+     * are left as they are; the definitions inside them are bound when the field is accessed.
      *
-     * @param targetType the class to deserialize to
+     * @param root the root object definition
+     * @return the definitions in construction order, ending with the root
      */
-    public Deserializer(Class<T> targetType) {
-        this.targetType = targetType;
-        this.objectRegistry = new ObjectRegistry();
-        this.warnings = new ArrayList<>();
-        this.unresolvedReferences = new HashMap<>();
+    private List<Map<String, Object>> flattenDefinitions(Map<String, Object> root) {
+        Set<String> seen = new HashSet<>();
+        seen.add((String) root.get("$id"));
+        return flattenDefinitions(TreeWalk.ofDefinition(root), seen);
     }
 
     /**
-     * Deserializes an object from the input stream.
-     *
-     * @param inputStream the input stream to read from
-     * @return the deserialized object
-     * @throws SerializationException if a deserialization error occurs
+     * Lifts the object definitions out of the part of a parse tree below a walk.
      */
-    public T deserialize(InputStream inputStream) throws SerializationException {
-        try (InputStreamReader reader = new InputStreamReader(inputStream, StandardCharsets.UTF_8)) {
-            StringBuilder sb = new StringBuilder();
-            char[] buffer = new char[8192];
-            int charsRead;
-            while ((charsRead = reader.read(buffer)) != -1) {
-                sb.append(buffer, 0, charsRead);
-            }
-            String json = sb.toString();
-            return deserialize(json);
-        } catch (IOException e) {
-            throw new SerializationException("Error reading from input stream", e);
+    @SuppressWarnings("unchecked")
+    private List<Map<String, Object>> flattenDefinitions(TreeWalk start, Set<String> seen) {
+        List<Map<String, Object>> definitions = new ArrayList<>();
+        Deque<TreeWalk> stack = new ArrayDeque<>();
+        stack.push(start);
+
+        while (!stack.isEmpty()) {
+            TreeWalk walk = stack.peek();
+            if (!walk.hasNext()) {
+                stack.pop();
+                if (walk.definition != null) {
+                    definitions.add(walk.definition);
+                }
+                continue;
+            }
+
+            Object child = walk.next();
+            if (walk.lazyFields != null && walk.lazyFields.contains(walk.name()) && isLazyValue(child)) {
+                deferLazyValue(child);
+                continue;
+            }
+            if (child instanceof Map) {
+                Map<String, Object> map = (Map<String, Object>) child;
+                if (isObjectDefinition(map)) {
+                    String objectId = (String) map.get("$id");
+                    walk.replace(Collections.singletonMap("$ref", objectId));
+                    if (seen.add(objectId)) {
+                        stack.push(TreeWalk.ofDefinition(map));
+                    }
+                } else if (!map.containsKey("$ref") && !isBase64Marker(map)) {
+                    TreeWalk mapWalk = TreeWalk.ofMap(map);
+                    if (lazyCollections && walk.definition != null && walk.name().equals("fields")) {
+                        mapWalk.lazyFields = lazyFieldNames((String) walk.definition.get("$class"));
+                    }
+                    stack.push(mapWalk);
+                }
+            } else if (child instanceof List && !(child instanceof NumericList)) {
+                stack.push(TreeWalk.ofList((List<Object>) child));
+            }
         }
+        return definitions;
     }
 
     /**
-     * Deserializes an object from a JSON string.
-     *
-     * @param json the JSON string to deserialize from
-     * @return the deserialized object
-     * @throws SerializationException if a deserialization error occurs
+     * Checks if a parsed map is an object definition ($id and $class).
+     */
+    private boolean isObjectDefinition(Map<String, Object> map) {
+        return map.containsKey("$id") && map.containsKey("$class");
+    }
+
+    /**
+     * Checks whether a field is bound lazily: its declared type is List, Collection or Map.
+     */
+    private static boolean isLazyField(Field field) {
+        Class<?> type = field.getType();
+        return type == List.class || type == Collection.class || type == Map.class;
+    }
+
+    /**
+     * Checks whether a parsed field value can be bound lazily: a list, or a plain map.
      */
     @SuppressWarnings("unchecked")
-    private T deserialize(String json) throws SerializationException {
-        try {
-            Object parsed = JsonParser.parse(json);
+    private boolean isLazyValue(Object value) {
+        if (value instanceof List) {
+            return !(value instanceof NumericList);
+        }
+        if (value instanceof Map) {
+            Map<String, Object> map = (Map<String, Object>) value;
+            return !isObjectDefinition(map) && !map.containsKey("$ref") && !isBase64Marker(map);
+        }
+        return false;
+    }
 
-            // Check if this is the "objects" array format (from DeserializerTest)
-            if (parsed instanceof Map) {
-                Map<String, Object> rootMap = (Map<String, Object>) parsed;
-                if (rootMap.containsKey("objects")) {
-                    return deserializeObjectsArrayFormat(rootMap);
+    /**
+     * Returns the names of the lazily bound fields of a class.
+     */
+    private Set<String> lazyFieldNames(String className) {
+        Set<String> names = lazyFieldNames.get(className);
+        if (names == null) {
+            names = new HashSet<>();
+            try {
+                for (Field field : FieldInspector.getAllFields(Class.forName(className))) {
+                    if (isLazyField(field)) {
+                        names.add(field.getName());
+                    }
                 }
+            } catch (ClassNotFoundException e) {
+                // Reported when the definition is bound
+            }
+            lazyFieldNames.put(className, names);
+        }
+        return names;
+    }
+
+    /**
+     * Records the IDs of the objects defined inside each element or entry of the value of a
+     * lazy field, so a reference that reaches one of them first can bind just that element.
+     */
+    @SuppressWarnings("unchecked")
+    private void deferLazyValue(Object value) {
+        if (value instanceof List) {
+            List<Object> list = (List<Object>) value;
+            for (int i = 0; i < list.size(); i++) {
+                recordLazyDefinitions(list.get(i), new LazySlot(list, i, null));
+            }
+        } else {
+            for (Map.Entry<String, Object> entry : ((Map<String, Object>) value).entrySet()) {
+                recordLazyDefinitions(entry.getValue(), new LazySlot(null, 0, entry));
             }
+        }
+    }
 
-            // Otherwise, it's the nested format from Serializer
-            return (T) deserializeObject(parsed);
+    @SuppressWarnings("unchecked")
+    private void recordLazyDefinitions(Object element, LazySlot slot) {
+        Deque<Object> pending = new ArrayDeque<>();
+        pending.push(element);
+        while (!pending.isEmpty()) {
+            Object node = pending.pop();
+            Collection<Object> children;
+            if (node instanceof Map) {
+                Map<String, Object> map = (Map<String, Object>) node;
+                if (isObjectDefinition(map)) {
+                    lazySlots.put((String) map.get("$id"), slot);
+                }
+                children = map.values();
+            } else if (node instanceof List && !(node instanceof NumericList)) {
+                children = (List<Object>) node;
+            } else {
+                continue;
+            }
+            for (Object child : children) {
+                if (child instanceof Map || child instanceof List) {
+                    pending.push(child);
+                }
+            }
+        }
+    }
 
-        } catch (Exception e) {
-            String lengthLimitedJson = (json != null && json.length() > 97) ? (json.substring(0, 97) + "...") : json;
-            String message = String.format("Error deserializing %s from '%s'", targetType.getSimpleName(), lengthLimitedJson);
-            throw new SerializationException(message, e);
+    /**
+     * Binds the element of a lazy field value that defines an object, for a reference that
+     * reaches the object before its field is accessed.
+     *
+     * @param id the object ID
+     * @return the object (or PLACEHOLDER), or null if no lazy field value defines it
+     */
+    private Object bindLazyDefinition(String id) throws SerializationException {
+        LazySlot slot;
+        // The element may hold the object inside a lazy field of its own, recorded when it is bound
+        while (objectRegistry.get(id) == null && (slot = lazySlots.remove(id)) != null) {
+            bindDefinitions(flattenDefinitions(slot.walk(), new HashSet<>()));
         }
+        return objectRegistry.get(id);
     }
 
     /**
-     * Deserializes from the "objects" array format used by DeserializerTest.
+     * An element of a lazy list, or an entry of a lazy map, in the parse tree.
      */
-    @SuppressWarnings("unchecked")
-    private T deserializeObjectsArrayFormat(Map<String, Object> rootMap) throws SerializationException {
-        List<Map<String, Object>> objectsList = (List<Map<String, Object>>) rootMap.get("objects");
+    private static class LazySlot {
+        private final List<Object> list;
+        private final int index;
+        private final Map.Entry<String, Object> entry;
+
+        LazySlot(List<Object> list, int index, Map.Entry<String, Object> entry) {
+            this.list = list;
+            this.index = index;
+            this.entry = entry;
+        }
 
-        // First pass: create all objects and register them
-        for (Map<String, Object> objData : objectsList) {
-            String id = (String) objData.get("id");
-            String className = (String) objData.get("className");
-            Map<String, Object> fields = (Map<String, Object>) objData.get("fields");
-            Map<String, String> references = (Map<String, String>) objData.getOrDefault("references", new HashMap<>());
+        TreeWalk walk() {
+            return list != null ? TreeWalk.ofList(list.subList(index, index + 1))
+                : new TreeWalk(null, Collections.singletonList(entry).iterator(), null);
+        }
+    }
 
-            try {
-                Class<?> clazz = Class.forName(className);
-                Object instance = createInstance(clazz, fields);
-                objectRegistry.register(id, instance);
+    /**
+     * Binds one element of the parsed contents of a lazy list. The objects defined inside
+     * the element are bound first, and replaced by references in the parsed contents.
+     *
+     * @param elements the parsed contents
+     * @param index the index of the element
+     * @return the element
+     * @throws SerializationException if the element cannot be bound
+     */
+    Object bindLazyElement(List<Object> elements, int index) throws SerializationException {
+        Object item = elements.get(index);
+        if (item instanceof Map || item instanceof List) {
+            bindDefinitions(flattenDefinitions(TreeWalk.ofList(elements.subList(index, index + 1)), new HashSet<>()));
+            item = elements.get(index);
+        }
+        Object element = item instanceof Map ? deserializeObject(item) : item;
+        return element instanceof UnresolvedReferenceMarker ? null : element;
+    }
+
+    /**
+     * Binds the parsed contents of a lazy map.
+     *
+     * @param field the map field, for its key and value types
+     * @param entries the parsed contents
+     * @return the bound map
+     * @throws SerializationException if the map cannot be bound
+     */
+    @SuppressWarnings("unchecked")
+    Map<Object, Object> bindLazyMap(Field field, Map<String, Object> entries) throws SerializationException {
+        bindDefinitions(flattenDefinitions(TreeWalk.ofMap(entries), new HashSet<>()));
+        return (Map<Object, Object>) convertToMap(field, entries);
+    }
 
-                // Set field values
-                setFields(instance, clazz, fields, references);
+    /**
+     * Position in one map, list or object definition of a parse tree during
+     * {@link #flattenDefinitions(Map)}. Supports replacing the value most recently returned.
+     */
+    private static class TreeWalk {
+        final Map<String, Object> definition;
+        private final Iterator<Map.Entry<String, Object>> entries;
+        private final ListIterator<Object> elements;
+        private Map.Entry<String, Object> current;
+        // Fields whose values are left for lazy binding, when walking a "fields" section
+        Set<String> lazyFields;
+
+        private TreeWalk(Map<String, Object> definition, Iterator<Map.Entry<String, Object>> entries, ListIterator<Object> elements) {
+            this.definition = definition;
+            this.entries = entries;
+            this.elements = elements;
+        }
 
-            } catch (ClassNotFoundException e) {
-                throw new SerializationException("Class not found: " + className, e);
+        /**
+         * Walks the $mapKeys section and then the fields of an object definition.
+         */
+        static TreeWalk ofDefinition(Map<String, Object> definition) {
+            List<Map.Entry<String, Object>> sections = new ArrayList<>(2);
+            for (Map.Entry<String, Object> entry : definition.entrySet()) {
+                if (entry.getKey().equals("$mapKeys")) {
+                    sections.add(0, entry);
+                } else if (entry.getKey().equals("fields") || entry.getKey().equals("$values")) {
+                    sections.add(entry);
+                }
             }
+            return new TreeWalk(definition, sections.iterator(), null);
         }
 
-        // Second pass: resolve references
-        for (Map<String, Object> objData : objectsList) {
-            String id = (String) objData.get("id");
-            Map<String, String> references = (Map<String, String>) objData.getOrDefault("references", new HashMap<>());
+        static TreeWalk ofMap(Map<String, Object> map) {
+            return new TreeWalk(null, map.entrySet().iterator(), null);
+        }
 
-            Object instance = objectRegistry.get(id);
-            if (instance != null && !references.isEmpty()) {
-                resolveReferences(instance, references);
-            }
+        static TreeWalk ofList(List<Object> list) {
+            return new TreeWalk(null, null, list.listIterator());
         }
 
-        // Return the first object that matches the target type
-        for (Map<String, Object> objData : objectsList) {
-            String className = (String) objData.get("className");
-            if (className.equals(targetType.getName())) {
-                String id = (String) objData.get("id");
-                return (T) objectRegistry.get(id);
+        boolean hasNext() {
+            return entries != null ? entries.hasNext() : elements.hasNext();
+        }
+
+        Object next() {
+            if (entries != null) {
+                current = entries.next();
+                return current.getValue();
             }
+            return elements.next();
         }
 
-        // If no exact match, try to find the first object
-        if (!objectsList.isEmpty()) {
-            String id = (String) objectsList.get(0).get("id");
-            return (T) objectRegistry.get(id);
+        /**
+         * Returns the name of the map entry most recently returned.
+         */
+        String name() {
+            return current.getKey();
         }
 
-        throw new SerializationException("No objects found in JSON");
+        void replace(Object value) {
+            if (entries != null) {
+                current.setValue(value);
+            } else {
+                elements.set(value);
+            }
+        }
     }
 
     /**
@@ -192,11 +1793,25 @@ public class Deserializer<T> {
         if (parsed instanceof Map) {
             Map<String, Object> map = (Map<String, Object>) parsed;
 
+            // Check if this is a Base64-encoded byte[]
+            if (isBase64Marker(map)) {
+                return decodeBase64(map.get("$base64"));
+            }
+
             // Check if this is a reference
             if (map.containsKey("$ref")) {
                 String refId = (String) map.get("$ref");
                 Object referenced = objectRegistry.get(refId);
+                if (referenced == null && lazyCollections) {
+                    referenced = bindLazyDefinition(refId);
+                }
                 if (referenced == null) {
+                    if (objectStore != null) {
+                        return loadStored(refId);
+                    }
+                    if (projection != null) {
+                        return resolveSkippedReference(refId);
+                    }
                     throw new SerializationException("Referenced object not found: " + refId);
                 }
                 // If the referenced object is a placeholder (still being constructed),
@@ -231,7 +1846,7 @@ public class Deserializer<T> {
                             return instance;
                         } else {
                             // Fallback to regular object deserialization
-                                    Map<String, Object> fields = (Map<String, Object>) map.get("fields");
+                                    Map<String, Object> fields = definitionFields(map);
                                     Object existing = objectRegistry.get(objectId);
                                     if (existing != null) {
                                         return existing;
@@ -253,7 +1868,7 @@ public class Deserializer<T> {
                 }
 
                 // Regular object with fields
-                Map<String, Object> fields = (Map<String, Object>) map.get("fields");
+                Map<String, Object> fields = definitionFields(map);
 
                 // Check if already deserialized
                 Object existing = objectRegistry.get(objectId);
@@ -294,7 +1909,7 @@ public class Deserializer<T> {
             }
 
             // Regular map - return as is
-            return map;
+            return unescapeKeys(map);
         }
 
         if (parsed instanceof List) {
@@ -395,7 +2010,7 @@ public class Deserializer<T> {
 
         // Handle array types
         if (targetType.isArray()) {
-            if (value instanceof List) {
+            if (value instanceof List || value instanceof String || value instanceof Map) {
                 return convertToArray(targetType, value);
             }
             return value;
@@ -481,7 +2096,7 @@ public class Deserializer<T> {
         } else if (targetType == char.class || targetType == Character.class) {
             return convertToChar(value);
         } else if (targetType == String.class) {
-            return value.toString();
+            return canonical(value.toString());
         } else if (targetType == BigDecimal.class) {
             return convertToBigDecimal(value);
         } else if (targetType.isEnum()) {
@@ -524,6 +2139,10 @@ public class Deserializer<T> {
      * Sets field values on an instance.
      */
     private void setFields(Object instance, Class<?> clazz, Map<String, Object> fields, Map<String, String> references) throws SerializationException {
+        if (fields instanceof PositionalFields) {
+            setPositionalFields(instance, clazz, (PositionalFields) fields);
+            return;
+        }
         Field[] allFields = FieldInspector.getAllFields(clazz);
 
         for (Field field : allFields) {
@@ -542,9 +2161,187 @@ public class Deserializer<T> {
         }
     }
 
+    /**
+     * Sets the field values of a positional definition, binding each value to the field at
+     * its position in the class's schema without looking fields up by name.
+     */
+    private void setPositionalFields(Object instance, Class<?> clazz, PositionalFields fields) throws SerializationException {
+        Field[] slots = fields.schema.slots(clazz);
+        List<Object> values = fields.values;
+        for (int i = 0; i < slots.length; i++) {
+            Field field = slots[i];
+            if (field == null) {
+                // The field no longer exists in the class
+                continue;
+            }
+            try {
+                setFieldValue(instance, field, values.get(i));
+            } catch (IllegalAccessException e) {
+                trySetterMethod(instance, field, values.get(i));
+            }
+        }
+    }
+
+    /**
+     * Records the field schema of a positional object definition ("$fields"), so later
+     * definitions of the same class can give only their "$values".
+     *
+     * @param definition the object definition
+     * @throws SerializationException if the schema is malformed
+     */
+    @SuppressWarnings("unchecked")
+    private void declareFieldSchema(Map<String, Object> definition) throws SerializationException {
+        Object names = definition.get("$fields");
+        if (names == null) {
+            return;
+        }
+        if (!(names instanceof List)) {
+            throw new SerializationException("Malformed $fields in definition " + definition.get("$id"));
+        }
+        String className = (String) definition.get("$class");
+        fieldSchemas.put(className, new FieldSchema(((List<Object>) names).toArray(new String[0])));
+    }
+
+    /**
+     * Returns the field values of an object definition: its "fields" map, or for a positional
+     * definition a map view of its "$values" under the schema declared for its class.
+     *
+     * @param definition the object definition
+     * @return the field values by name
+     * @throws SerializationException if a positional definition has no matching schema
+     */
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> definitionFields(Map<String, Object> definition) throws SerializationException {
+        Object values = definition.get("$values");
+        if (values == null) {
+            return (Map<String, Object>) definition.getOrDefault("fields", Collections.emptyMap());
+        }
+        declareFieldSchema(definition);
+        String className = (String) definition.get("$class");
+        FieldSchema schema = fieldSchemas.get(className);
+        if (schema == null && projection != null) {
+            // The schema may be declared inside a field the projection skipped
+            skippedDefinitions();
+            schema = fieldSchemas.get(className);
+        }
+        if (schema == null && objectStore != null && objectStore.schema(className) != null) {
+            schema = new FieldSchema(objectStore.schema(className));
+            fieldSchemas.put(className, schema);
+        }
+        if (schema == null) {
+            throw new SerializationException("No $fields schema declared for class: " + className);
+        }
+        if (!(values instanceof List) || ((List<Object>) values).size() != schema.names.length) {
+            throw new SerializationException("Definition " + definition.get("$id") + " does not have the "
+                + schema.names.length + " values of the $fields schema of " + className);
+        }
+        return new PositionalFields(schema, (List<Object>) values);
+    }
+
+    /**
+     * The field names of a class in a positional document, in the order of each definition's
+     * "$values". The fields the names bind to are resolved once per class.
+     */
+    private static class FieldSchema {
+        final String[] names;
+        private Class<?> boundClass;
+        private Field[] slots;
+        private Map<String, Integer> indexes;
+
+        FieldSchema(String[] names) {
+            this.names = names;
+        }
+
+        /**
+         * Returns the field of each position, or null where the class has no such field.
+         * When the schema matches the class's current field order, this is the field array
+         * itself.
+         */
+        Field[] slots(Class<?> clazz) {
+            if (clazz != boundClass) {
+                Field[] fields = FieldInspector.getAllFields(clazz);
+                Field[] bound = new Field[names.length];
+                boolean sameOrder = fields.length == names.length;
+                for (int i = 0; i < names.length; i++) {
+                    if (sameOrder && fields[i].getName().equals(names[i])) {
+                        bound[i] = fields[i];
+                        continue;
+                    }
+                    sameOrder = false;
+                    for (Field field : fields) {
+                        if (field.getName().equals(names[i])) {
+                            bound[i] = field;
+                            break;
+                        }
+                    }
+                }
+                for (Field field : bound) {
+                    if (field != null) {
+                        field.setAccessible(true);
+                    }
+                }
+                slots = bound;
+                boundClass = clazz;
+            }
+            return slots;
+        }
+
+        int indexOf(String name) {
+            if (indexes == null) {
+                indexes = new HashMap<>();
+                for (int i = 0; i < names.length; i++) {
+                    indexes.put(names[i], i);
+                }
+            }
+            Integer index = indexes.get(name);
+            return index == null ? -1 : index;
+        }
+    }
+
+    /**
+     * Read-only map view of the values of a positional definition, for the code paths that
+     * look fields up by name (constructor selection and argument binding). Field binding uses
+     * {@link #setPositionalFields} instead.
+     */
+    private static class PositionalFields extends java.util.AbstractMap<String, Object> {
+        final FieldSchema schema;
+        final List<Object> values;
+
+        PositionalFields(FieldSchema schema, List<Object> values) {
+            this.schema = schema;
+            this.values = values;
+        }
+
+        @Override
+        public Object get(Object key) {
+            int index = key instanceof String ? schema.indexOf((String) key) : -1;
+            return index < 0 ? null : values.get(index);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return key instanceof String && schema.indexOf((String) key) >= 0;
+        }
+
+        @Override
+        public int size() {
+            return schema.names.length;
+        }
+
+        @Override
+        public Set<Map.Entry<String, Object>> entrySet() {
+            Map<String, Object> entries = new LinkedHashMap<>();
+            for (int i = 0; i < schema.names.length; i++) {
+                entries.put(schema.names[i], values.get(i));
+            }
+            return Collections.unmodifiableMap(entries).entrySet();
+        }
+    }
+
     /**
      * Sets a field value on an instance.
      */
+    @SuppressWarnings("unchecked")
     private void setFieldValue(Object instance, Field field, Object value) throws IllegalAccessException, SerializationException {
         Class<?> fieldType = field.getType();
         
@@ -642,17 +2439,21 @@ public class Deserializer<T> {
         } else if (fieldType == char.class || fieldType == Character.class) {
             field.set(instance, convertToChar(value));
         } else if (fieldType == String.class) {
-            field.set(instance, value.toString());
+            field.set(instance, canonical(value.toString()));
         } else if (fieldType == BigDecimal.class) {
             field.set(instance, convertToBigDecimal(value));
         } else if (fieldType.isEnum()) {
             field.set(instance, convertToEnum(fieldType, value));
         } else if (fieldType.isArray()) {
             field.set(instance, convertToArray(fieldType, value));
+        } else if (lazyCollections && isLazyField(field) && isLazyValue(value)) {
+            field.set(instance, value instanceof List ? new LazyList(this, (List<Object>) value) : new LazyMap(this, field, (Map<String, Object>) value));
         } else if (Collection.class.isAssignableFrom(fieldType)) {
-            field.set(instance, convertToCollection(fieldType, value));
+            Collection<Object> existing = value instanceof List ? emptiedForReuse(instance, field, Collection.class) : null;
+            field.set(instance, convertToCollection(fieldType, value, existing));
         } else if (Map.class.isAssignableFrom(fieldType)) {
-            field.set(instance, convertToMap(field, value));
+            Map<Object, Object> existing = value instanceof Map ? emptiedForReuse(instance, field, Map.class) : null;
+            field.set(instance, convertToMap(field, value, existing));
         } else if (value instanceof Map) {
             // This might be a nested object
             Object nested = deserializeObject(value);
@@ -715,7 +2516,7 @@ public class Deserializer<T> {
         } else if (targetType == char.class || targetType == Character.class) {
             return convertToChar(value);
         } else if (targetType == String.class) {
-            return value.toString();
+            return canonical(value.toString());
         }
 
         return value;
@@ -753,7 +2554,7 @@ public class Deserializer<T> {
         } else if (targetType == char.class || targetType == Character.class) {
             return convertToChar(value);
         } else if (targetType == String.class) {
-            return value.toString();
+            return canonical(value.toString());
         } else if (targetType == BigDecimal.class) {
             return convertToBigDecimal(value);
         } else if (targetType.isEnum()) {
@@ -866,7 +2667,7 @@ public class Deserializer<T> {
                         }
                     } else {
                         // Regular object with fields
-                        Map<String, Object> fields = (Map<String, Object>) objMap.get("fields");
+                        Map<String, Object> fields = definitionFields(objMap);
                         
                         // Check if already deserialized
                         Object existing = objectRegistry.get(objectId);
@@ -991,36 +2792,149 @@ public class Deserializer<T> {
     }
 
     @SuppressWarnings("unchecked")
-    private Object convertToArray(Class<?> arrayType, Object value) {
+    private Object convertToArray(Class<?> arrayType, Object value) throws SerializationException {
         if (value == null) return null;
+
+        Class<?> componentType = arrayType.getComponentType();
+
+        // byte[] is written as a Base64 string (or a $base64 marker in untyped positions);
+        // binary documents carry the bytes directly
+        if (componentType == byte.class) {
+            if (value instanceof byte[]) {
+                return value;
+            }
+            if (value instanceof String) {
+                return decodeBase64(value);
+            }
+            if (value instanceof Map && isBase64Marker((Map<String, Object>) value)) {
+                return decodeBase64(((Map<String, Object>) value).get("$base64"));
+            }
+        }
+
         if (!(value instanceof List)) return null;
 
+        // Numeric arrays parsed into a NumericList are copied without boxing
+        if (value instanceof NumericList) {
+            Object primitiveArray = ((NumericList) value).toPrimitiveArray(componentType);
+            if (primitiveArray != null) {
+                return primitiveArray;
+            }
+        }
+
         List<Object> list = (List<Object>) value;
-        Class<?> componentType = arrayType.getComponentType();
         Object array = Array.newInstance(componentType, list.size());
 
         for (int i = 0; i < list.size(); i++) {
-            Array.set(array, i, convertValue(list.get(i), componentType));
+            Object element = list.get(i);
+            if (element instanceof Map && !componentType.isPrimitive()) {
+                // Nested object, reference or Base64 marker
+                element = deserializeObject(element);
+            } else if (element instanceof List && componentType.isArray()) {
+                // Nested array (e.g. int[][])
+                element = convertToArray(componentType, element);
+            } else {
+                element = convertValue(element, componentType);
+            }
+            Array.set(array, i, element);
         }
 
         return array;
     }
 
+    /**
+     * Returns a plain parsed value with the second '$' removed from map keys that the
+     * Serializer escaped (see {@link #convertMapKey(String, Class)}). Maps without such keys
+     * are returned as they are.
+     */
     @SuppressWarnings("unchecked")
+    private static Object unescapeKeys(Object value) {
+        if (value instanceof Map) {
+            Map<String, Object> map = (Map<String, Object>) value;
+            Map<String, Object> copy = null;
+            for (Map.Entry<String, Object> entry : map.entrySet()) {
+                String key = entry.getKey();
+                Object nested = unescapeKeys(entry.getValue());
+                if (copy == null && (key.startsWith("$$") || nested != entry.getValue())) {
+                    copy = new LinkedHashMap<>();
+                    for (Map.Entry<String, Object> earlier : map.entrySet()) {
+                        if (earlier.getKey().equals(key)) {
+                            break;
+                        }
+                        copy.put(earlier.getKey(), earlier.getValue());
+                    }
+                }
+                if (copy != null) {
+                    copy.put(key.startsWith("$$") ? key.substring(1) : key, nested);
+                }
+            }
+            return copy != null ? copy : map;
+        }
+        if (value instanceof List && !(value instanceof NumericList)) {
+            List<Object> list = (List<Object>) value;
+            for (int i = 0; i < list.size(); i++) {
+                Object nested = unescapeKeys(list.get(i));
+                if (nested != list.get(i)) {
+                    List<Object> copy = new ArrayList<>(list);
+                    copy.set(i, nested);
+                    for (int j = i + 1; j < list.size(); j++) {
+                        copy.set(j, unescapeKeys(list.get(j)));
+                    }
+                    return copy;
+                }
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Checks if a parsed map is a Base64 marker object ({"$base64": "..."}) for a byte[].
+     */
+    private boolean isBase64Marker(Map<String, Object> map) {
+        return map.size() == 1 && map.containsKey("$base64");
+    }
+
+    /**
+     * Decodes a Base64 string into a byte array.
+     */
+    private byte[] decodeBase64(Object value) throws SerializationException {
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof byte[]) {
+            return (byte[]) value;
+        }
+        try {
+            return Base64.getDecoder().decode(value.toString());
+        } catch (IllegalArgumentException e) {
+            throw new SerializationException("Invalid Base64 data for byte[]", e);
+        }
+    }
+
     private Object convertToCollection(Class<?> collectionType, Object value) throws SerializationException {
+        return convertToCollection(collectionType, value, null);
+    }
+
+    /**
+     * Converts a parsed list to a collection, adding the elements to an existing collection
+     * if one is given.
+     */
+    @SuppressWarnings("unchecked")
+    private Object convertToCollection(Class<?> collectionType, Object value, Collection<Object> into) throws SerializationException {
         if (value == null) return null;
         if (!(value instanceof List)) return value;
 
         List<Object> list = (List<Object>) value;
         
         // Create the appropriate collection type based on the field type
-        Collection<Object> result = CollectionFactory.createCollection(collectionType);
+        Collection<Object> result = into != null ? into : CollectionFactory.createCollection(collectionType);
 
         for (Object item : list) {
             // If the item is a Map, it might be a nested object or reference
             if (item instanceof Map) {
                 Object deserialized = deserializeObject(item);
                 result.add(deserialized);
+            } else if (item instanceof String) {
+                result.add(canonical((String) item));
             } else {
                 result.add(item);
             }
@@ -1054,9 +2968,14 @@ public class Deserializer<T> {
             }
             throw new SerializationException("Referenced map key object not found: " + refId);
         }
+
+        // Keys of user data starting with '$' are written with a second '$'
+        if (keyString.startsWith("$$")) {
+            keyString = keyString.substring(1);
+        }
         
         if (keyType == String.class) {
-            return keyString;
+            return canonical(keyString);
         } else if (keyType == Long.class || keyType == long.class) {
             return convertToLong(keyString);
         } else if (keyType == Integer.class || keyType == int.class) {
@@ -1118,12 +3037,26 @@ public class Deserializer<T> {
         
         if (mapValue instanceof Map) {
             Map<String, Object> valueMap = (Map<String, Object>) mapValue;
+
+            // Check if this is a Base64-encoded byte[]
+            if (isBase64Marker(valueMap)) {
+                return decodeBase64(valueMap.get("$base64"));
+            }
             
             // Check if this is a reference to another object
             if (valueMap.containsKey("$ref")) {
                 String refId = (String) valueMap.get("$ref");
                 Object referenced = objectRegistry.get(refId);
+                if (referenced == null && lazyCollections) {
+                    referenced = bindLazyDefinition(refId);
+                }
                 if (referenced == null) {
+                    if (objectStore != null) {
+                        return loadStored(refId);
+                    }
+                    if (projection != null) {
+                        return resolveSkippedReference(refId);
+                    }
                     throw new SerializationException("Referenced object not found in map value: " + refId);
                 }
                 // If the referenced object is a placeholder (still being constructed),
@@ -1189,17 +3122,17 @@ public class Deserializer<T> {
             }
             
             // Otherwise, it's a nested map - return as-is
-            return mapValue;
+            return unescapeKeys(mapValue);
         } else if (mapValue instanceof List) {
             // List values may contain nested objects - deserialize each element
             List<Object> deserializedList = new ArrayList<>();
             for (Object item : (List<?>) mapValue) {
                 if (item instanceof Map) {
                     Map<String, Object> itemMap = (Map<String, Object>) item;
-                    if (itemMap.containsKey("$id") && itemMap.containsKey("$class")) {
+                    if (isObjectDefinition(itemMap) || itemMap.containsKey("$ref") || isBase64Marker(itemMap)) {
                         deserializedList.add(deserializeObject(item));
                     } else {
-                        deserializedList.add(item);
+                        deserializedList.add(unescapeKeys(item));
                     }
                 } else {
                     deserializedList.add(item);
@@ -1237,8 +3170,16 @@ public class Deserializer<T> {
         return mapValue;
     }
 
-    @SuppressWarnings("unchecked")
     private Object convertToMap(Field field, Object value) throws SerializationException {
+        return convertToMap(field, value, null);
+    }
+
+    /**
+     * Converts a parsed map to the value of a map field, putting the entries into an existing
+     * map if one is given.
+     */
+    @SuppressWarnings("unchecked")
+    private Object convertToMap(Field field, Object value, Map<Object, Object> into) throws SerializationException {
         if (value == null) return null;
         if (!(value instanceof Map)) return value;
 
@@ -1272,13 +3213,16 @@ public class Deserializer<T> {
         }
         
         // Create the result map with appropriate key types
-        Map<Object, Object> result = new LinkedHashMap<>();
+        Map<Object, Object> result = into != null ? into : new LinkedHashMap<>();
         for (Map.Entry<String, Object> entry : parsedMap.entrySet()) {
             // Convert the key to the appropriate type
             Object convertedKey = convertMapKey(entry.getKey(), keyType);
             
             // Deserialize the value based on its type (pass full Type for ParameterizedType support)
             Object mapValue = deserializeMapValue(entry.getValue(), valueType);
+            if (mapValue instanceof String) {
+                mapValue = canonical((String) mapValue);
+            }
             
             // Validate that deserialized value is the expected type
             if (expectedValueClass != null && mapValue != null && !expectedValueClass.isInstance(mapValue)) {
@@ -0,0 +1,110 @@
+package com.pjr22.serialization.core;
+
+import com.pjr22.serialization.format.JsonFeedParser;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Deserializes a sequence of JSON documents from bytes pushed to it as they arrive.
+ * <p>
+ * Intended for non-blocking I/O: the selector thread passes each chunk read from a channel
+ * to {@link #feed(ByteBuffer)}, which parses it with a {@link JsonFeedParser} and returns
+ * immediately. Parsing resumes with the next chunk, and each document is deserialized and
+ * passed to the handler as soon as it is complete. Documents may be separated by whitespace
+ * or newlines, as written by {@link SerializerStream} with NEWLINE framing.
+ * <p>
+ * Each document is deserialized independently with its own object registry. Only JSON is
+ * accepted; binary and compressed documents need the whole input and are read with
+ * {@link Deserializer#deserialize(java.io.InputStream)}. After an error, including one thrown
+ * by the handler, the feed rejects further input.
+ *
+ * @param <T> the type of the documents
+ */
+public class DeserializerFeed<T> {
+
+    private final Class<T> targetType;
+    private final Consumer<? super T> handler;
+    private final JsonFeedParser parser;
+    private final List<String> warnings = new ArrayList<>();
+
+    /**
+     * Creates a new DeserializerFeed.
+     *
+     * @param targetType the class of the documents
+     * @param handler receives each deserialized document
+     */
+    public DeserializerFeed(Class<T> targetType, Consumer<? super T> handler) {
+        this.targetType = targetType;
+        this.handler = handler;
+        this.parser = new JsonFeedParser(this::deserialize);
+    }
+
+    /**
+     * Parses the remaining bytes of a buffer and delivers any documents they complete.
+     * The buffer's position is advanced to its limit.
+     *
+     * @param data the bytes that have arrived
+     * @throws SerializationException if the input is malformed or a document cannot be deserialized
+     */
+    public void feed(ByteBuffer data) throws SerializationException {
+        try {
+            parser.feed(data);
+        } catch (UncheckedSerializationException e) {
+            throw e.getCause();
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            throw new SerializationException("Error parsing " + targetType.getSimpleName() + " input", e);
+        }
+    }
+
+    /**
+     * Signals the end of input.
+     *
+     * @throws SerializationException if the input ends inside a document
+     */
+    public void finish() throws SerializationException {
+        try {
+            parser.finish();
+        } catch (UncheckedSerializationException e) {
+            throw e.getCause();
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            throw new SerializationException("Error parsing " + targetType.getSimpleName() + " input", e);
+        }
+    }
+
+    /**
+     * Checks whether part of a document has been received but not yet delivered.
+     *
+     * @return true inside a document
+     */
+    public boolean hasPartialDocument() {
+        return parser.hasPartialDocument();
+    }
+
+    /**
+     * Returns the warnings generated by all documents deserialized so far.
+     *
+     * @return list of warning messages
+     */
+    public List<String> getWarnings() {
+        return new ArrayList<>(warnings);
+    }
+
+    private void deserialize(Object tree) {
+        Deserializer<T> deserializer = new Deserializer<>(targetType);
+        T document;
+        try {
+            document = deserializer.deserializeTree(tree);
+        } catch (SerializationException e) {
+            throw new UncheckedSerializationException(e);
+        } catch (RuntimeException e) {
+            throw new UncheckedSerializationException(
+                new SerializationException("Error deserializing " + targetType.getSimpleName(), e));
+        } finally {
+            warnings.addAll(deserializer.getWarnings());
+        }
+        handler.accept(document);
+    }
+}
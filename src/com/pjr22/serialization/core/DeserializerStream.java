@@ -0,0 +1,200 @@
+package com.pjr22.serialization.core;
+
+import com.pjr22.serialization.compress.LzBlockInputStream;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Reads a sequence of framed JSON documents written by {@link SerializerStream}.
+ * <p>
+ * Records are read and deserialized one at a time as the iterator or stream advances, so
+ * memory use is bounded by the largest record rather than by the length of the stream.
+ * Each record is deserialized independently with its own object registry.
+ * Deserialization errors are reported as {@link UncheckedSerializationException} and I/O
+ * errors as {@link UncheckedIOException}.
+ *
+ * @param <T> the type of the records
+ */
+public class DeserializerStream<T> implements Closeable, Iterable<T> {
+
+    private InputStream inputStream;
+    private boolean formatDetected;
+    private final Class<T> targetType;
+    private final SerializerStream.Framing framing;
+    private final List<String> warnings = new ArrayList<>();
+    private byte[] buffer = new byte[8192];
+
+    /**
+     * Creates a new DeserializerStream.
+     *
+     * @param inputStream the input stream to read records from
+     * @param targetType the class of the records
+     * @param framing how records are delimited
+     */
+    public DeserializerStream(InputStream inputStream, Class<T> targetType, SerializerStream.Framing framing) {
+        this.inputStream = new BufferedInputStream(inputStream);
+        this.targetType = targetType;
+        this.framing = framing;
+    }
+
+    /**
+     * Returns a lazy iterator over the remaining records.
+     * The records are consumed from the stream, so the iterator can only be traversed once.
+     *
+     * @return an iterator over the records
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return new Iterator<T>() {
+            private String next;
+
+            @Override
+            public boolean hasNext() {
+                if (next == null) {
+                    next = readRecord();
+                }
+                return next != null;
+            }
+
+            @Override
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                String json = next;
+                next = null;
+                Deserializer<T> deserializer = new Deserializer<>(targetType);
+                try {
+                    return deserializer.deserialize(json);
+                } catch (SerializationException e) {
+                    throw new UncheckedSerializationException(e);
+                } finally {
+                    warnings.addAll(deserializer.getWarnings());
+                }
+            }
+        };
+    }
+
+    /**
+     * Returns a lazy sequential stream over the remaining records.
+     * Closing the returned stream closes this DeserializerStream.
+     *
+     * @return a stream of the records
+     */
+    public Stream<T> stream() {
+        Spliterator<T> spliterator = Spliterators.spliteratorUnknownSize(iterator(), Spliterator.ORDERED);
+        return StreamSupport.stream(spliterator, false).onClose(() -> {
+            try {
+                close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * Returns the warnings generated by all records read so far.
+     *
+     * @return list of warning messages
+     */
+    public List<String> getWarnings() {
+        return new ArrayList<>(warnings);
+    }
+
+    /**
+     * Closes the underlying stream.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public void close() throws IOException {
+        inputStream.close();
+    }
+
+    /**
+     * Reads the next record as a string.
+     *
+     * @return the record, or null at the end of the stream
+     */
+    private String readRecord() {
+        try {
+            if (!formatDetected) {
+                // Streams written with compression start with the compressed stream header
+                inputStream = LzBlockInputStream.decompressIfCompressed(inputStream);
+                formatDetected = true;
+            }
+            return framing == SerializerStream.Framing.LENGTH_PREFIXED ? readLengthPrefixed() : readLine();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Reads the next non-blank line.
+     */
+    private String readLine() throws IOException {
+        while (true) {
+            int length = 0;
+            int b;
+            while ((b = inputStream.read()) != -1 && b != '\n') {
+                if (length == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, length * 2);
+                }
+                buffer[length++] = (byte) b;
+            }
+            if (length > 0 && buffer[length - 1] == '\r') {
+                length--;
+            }
+            String line = new String(buffer, 0, length, StandardCharsets.UTF_8);
+            if (!line.isBlank()) {
+                return line;
+            }
+            if (b == -1) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Reads the next length-prefixed record.
+     */
+    private String readLengthPrefixed() throws IOException {
+        int first = inputStream.read();
+        if (first == -1) {
+            return null;
+        }
+        int length = first << 24;
+        for (int shift = 16; shift >= 0; shift -= 8) {
+            int b = inputStream.read();
+            if (b == -1) {
+                throw new IOException("Truncated record length");
+            }
+            length |= b << shift;
+        }
+        if (length < 0) {
+            throw new IOException("Invalid record length: " + length);
+        }
+        if (length > buffer.length) {
+            buffer = new byte[Math.max(length, buffer.length * 2)];
+        }
+        int read = inputStream.readNBytes(buffer, 0, length);
+        if (read < length) {
+            throw new IOException("Truncated record: expected " + length + " bytes, got " + read);
+        }
+        return new String(buffer, 0, length, StandardCharsets.UTF_8);
+    }
+}
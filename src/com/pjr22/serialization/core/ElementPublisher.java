@@ -0,0 +1,191 @@
+package com.pjr22.serialization.core;
+
+import com.pjr22.serialization.compress.LzBlockInputStream;
+import com.pjr22.serialization.format.BinaryFormatReader;
+import com.pjr22.serialization.format.JsonFeedParser;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publishes the elements of a top-level JSON array one at a time, as the subscriber requests
+ * them. Created by {@link Deserializer#publishElements(InputStream)}.
+ * <p>
+ * Input is read in small chunks and parsed with a {@link JsonFeedParser} in array elements
+ * mode only while there is outstanding demand, so at most one chunk's worth of parsed
+ * elements is held besides the elements already delivered. Elements are bound by a single
+ * Deserializer, so references between elements resolve. As a deliberate limit, every object
+ * with an ID stays reachable through its registry for as long as the Deserializer is: any
+ * later element may refer to any earlier object, and that is only known once the input has
+ * been read, so the registry grows with the part of the document read so far.
+ * <p>
+ * Elements are delivered on the thread that calls {@link Flow.Subscription#request(long)}.
+ * The input can only be read once, so the publisher accepts a single subscriber.
+ *
+ * @param <T> the type of the elements
+ */
+class ElementPublisher<T> implements Flow.Publisher<T> {
+
+    private static final int CHUNK_SIZE = 8192;
+
+    private final Deserializer<T> deserializer;
+    private final InputStream input;
+    private final AtomicBoolean subscribed = new AtomicBoolean();
+
+    ElementPublisher(Deserializer<T> deserializer, InputStream input) {
+        this.deserializer = deserializer;
+        this.input = input;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super T> subscriber) {
+        if (!subscribed.compareAndSet(false, true)) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException("Publisher accepts a single subscriber"));
+            return;
+        }
+        ElementSubscription subscription = new ElementSubscription(subscriber);
+        subscriber.onSubscribe(subscription);
+    }
+
+    private class ElementSubscription implements Flow.Subscription {
+        private final Flow.Subscriber<? super T> subscriber;
+        private final AtomicLong demand = new AtomicLong();
+        // Serializes the delivery loop; increments record requests that arrive while it runs
+        private final AtomicInteger work = new AtomicInteger();
+        private final Deque<Object> parsed = new ArrayDeque<>();
+        private final JsonFeedParser parser = new JsonFeedParser(parsed::add, true);
+        private final byte[] chunk = new byte[CHUNK_SIZE];
+        private InputStream in;
+        private volatile boolean cancelled;
+        // Signalled from the delivery loop, so onError never overlaps another signal
+        private volatile IllegalArgumentException invalidRequest;
+        private boolean done;
+
+        ElementSubscription(Flow.Subscriber<? super T> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                if (invalidRequest == null) {
+                    invalidRequest = new IllegalArgumentException("Request must be positive: " + n);
+                }
+                drain();
+                return;
+            }
+            demand.getAndAccumulate(n, (current, added) -> current + added < 0 ? Long.MAX_VALUE : current + added);
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            drain();
+        }
+
+        private void drain() {
+            if (work.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            do {
+                if (invalidRequest != null && !done) {
+                    fail(invalidRequest);
+                }
+                if (cancelled && !done) {
+                    done = true;
+                    closeInput();
+                }
+                while (!done && demand.get() > 0) {
+                    T element;
+                    try {
+                        if (parsed.isEmpty()) {
+                            if (!readChunk()) {
+                                done = true;
+                                closeInput();
+                                subscriber.onComplete();
+                            }
+                            continue;
+                        }
+                        element = deserializer.deserializeTree(parsed.poll());
+                    } catch (SerializationException e) {
+                        fail(e);
+                        break;
+                    } catch (IOException e) {
+                        fail(new SerializationException("Error reading from input stream", e));
+                        break;
+                    } catch (RuntimeException e) {
+                        fail(new SerializationException("Error reading array elements", e));
+                        break;
+                    }
+                    if (demand.get() != Long.MAX_VALUE) {
+                        demand.decrementAndGet();
+                    }
+                    subscriber.onNext(element);
+                    if (cancelled || invalidRequest != null) {
+                        break;
+                    }
+                }
+                missed = work.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        /**
+         * Reads and parses the next chunk of input.
+         *
+         * @return false at the end of input
+         */
+        private boolean readChunk() throws IOException {
+            if (in == null) {
+                in = LzBlockInputStream.decompressIfCompressed(input);
+                if (!in.markSupported()) {
+                    in = new BufferedInputStream(in);
+                }
+                in.mark(8);
+                byte[] header = in.readNBytes(8);
+                in.reset();
+                if (BinaryFormatReader.isBinary(header)) {
+                    throw new IOException("Binary documents cannot be published element by element");
+                }
+            }
+            int n = in.read(chunk);
+            if (n < 0) {
+                parser.finish();
+                return !parsed.isEmpty();
+            }
+            parser.feed(chunk, 0, n);
+            return true;
+        }
+
+        private void fail(Exception e) {
+            done = true;
+            closeInput();
+            subscriber.onError(e);
+        }
+
+        private void closeInput() {
+            try {
+                input.close();
+            } catch (IOException e) {
+                // Nothing more is read from the input
+            }
+        }
+    }
+}
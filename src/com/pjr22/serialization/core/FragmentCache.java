@@ -0,0 +1,226 @@
+package com.pjr22.serialization.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Cache of the JSON text of object definitions that rarely change, such as configuration or
+ * catalogs referenced from every snapshot of a graph. A {@link Serializer} given the cache with
+ * {@link Serializer#withFragmentCache(FragmentCache)} keeps the text it writes for cacheable
+ * objects and, in later documents, copies it into the output instead of walking and formatting
+ * the objects again.
+ * <p>
+ * An object is cacheable if it was passed to {@link #markCacheable(Object)} or implements
+ * {@link Versioned}. Its fragment is its whole definition, including the objects defined inside
+ * it, and is kept only if it is self-contained: it must not refer to objects defined outside it
+ * or use complex map keys. Objects defined in a fragment get IDs of their own, of the form
+ * {@code key_f_N}, which they keep for as long as the fragment is cached, so fragments can be
+ * copied into documents of any serializer with the same key without clashing with its IDs, and
+ * later references to those objects use the same IDs. A fragment is not used in a document that
+ * has already defined one of its objects.
+ * <p>
+ * A fragment is dropped when {@link #markDirty(Object)} is called for any object defined in it,
+ * or, for a {@link Versioned} object, when its version changes. Changes that are not reported
+ * one of these ways are not seen. Fragments are evicted least recently used first once their
+ * total length exceeds the budget given to the constructor.
+ * <p>
+ * A FragmentCache is thread-safe and can be shared by several serializers.
+ */
+public class FragmentCache {
+
+    /**
+     * Implemented by objects that are cacheable without being marked. The version must change
+     * whenever the object or any object defined inside it changes.
+     */
+    public interface Versioned {
+
+        /**
+         * Returns the current version of the object.
+         *
+         * @return the version
+         */
+        long fragmentVersion();
+    }
+
+    /**
+     * The text of one cached definition, with the objects it defines and their IDs.
+     */
+    static final class Fragment {
+        final Object root;
+        final String json;
+        final Map<Object, String> defined;
+        final long version;
+
+        Fragment(Object root, String json, Map<Object, String> defined, long version) {
+            this.root = root;
+            this.json = json;
+            this.defined = defined;
+            this.version = version;
+        }
+    }
+
+    /**
+     * Wraps a key so that the LRU map compares objects by identity.
+     */
+    private static final class IdentityKey {
+        private final Object object;
+
+        IdentityKey(Object object) {
+            this.object = object;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof IdentityKey && ((IdentityKey) other).object == object;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(object);
+        }
+    }
+
+    private final long maxChars;
+    private long chars;
+    private int nextId = 1;
+    private final Set<Object> marked = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final LinkedHashMap<IdentityKey, Fragment> fragments = new LinkedHashMap<>(16, 0.75f, true);
+    // The fragments that define each object, so that marking it dirty drops all of them
+    private final Map<Object, List<Fragment>> containing = new IdentityHashMap<>();
+
+    /**
+     * Creates a cache.
+     *
+     * @param maxChars the maximum total length of the cached JSON text, in characters (bytes,
+     *                 for ASCII text)
+     */
+    public FragmentCache(long maxChars) {
+        if (maxChars <= 0) {
+            throw new IllegalArgumentException("Cache budget must be positive: " + maxChars);
+        }
+        this.maxChars = maxChars;
+    }
+
+    /**
+     * Marks an object as cacheable. The cache keeps a reference to the object.
+     *
+     * @param object the object
+     */
+    public synchronized void markCacheable(Object object) {
+        marked.add(object);
+    }
+
+    /**
+     * Reports that an object has changed, dropping every cached fragment that defines it.
+     *
+     * @param object the changed object
+     */
+    public synchronized void markDirty(Object object) {
+        List<Fragment> stale = containing.get(object);
+        if (stale != null) {
+            for (Fragment fragment : new ArrayList<>(stale)) {
+                remove(fragment);
+            }
+        }
+    }
+
+    /**
+     * Drops all cached fragments. Objects stay marked as cacheable.
+     */
+    public synchronized void clear() {
+        fragments.clear();
+        containing.clear();
+        chars = 0;
+    }
+
+    /**
+     * Returns the number of cached fragments.
+     *
+     * @return the number of fragments
+     */
+    public synchronized int size() {
+        return fragments.size();
+    }
+
+    /**
+     * Returns the total length of the cached JSON text, in characters.
+     *
+     * @return the cached length
+     */
+    public synchronized long getCachedChars() {
+        return chars;
+    }
+
+    synchronized boolean isCacheable(Object object) {
+        return object instanceof Versioned || marked.contains(object);
+    }
+
+    /**
+     * Returns the current fragment of an object, or null if it has none.
+     */
+    synchronized Fragment get(Object object) {
+        Fragment fragment = fragments.get(new IdentityKey(object));
+        if (fragment != null && object instanceof Versioned
+                && ((Versioned) object).fragmentVersion() != fragment.version) {
+            remove(fragment);
+            return null;
+        }
+        return fragment;
+    }
+
+    /**
+     * Reserves an ID for an object defined in a fragment being written.
+     */
+    synchronized String nextId(String serializationKey) {
+        return serializationKey + "_f_" + nextId++;
+    }
+
+    /**
+     * Caches the fragment of an object, replacing any earlier one, and evicts the least recently
+     * used fragments beyond the budget.
+     */
+    synchronized void put(Object object, String json, Map<Object, String> defined, long version) {
+        Fragment previous = fragments.get(new IdentityKey(object));
+        if (previous != null) {
+            remove(previous);
+        }
+        if (json.length() > maxChars) {
+            return;
+        }
+        Fragment fragment = new Fragment(object, json, defined, version);
+        fragments.put(new IdentityKey(object), fragment);
+        for (Object definedObject : defined.keySet()) {
+            containing.computeIfAbsent(definedObject, k -> new ArrayList<>(1)).add(fragment);
+        }
+        chars += json.length();
+
+        Iterator<Fragment> eldest = fragments.values().iterator();
+        while (chars > maxChars) {
+            Fragment evicted = eldest.next();
+            eldest.remove();
+            forget(evicted);
+        }
+    }
+
+    private void remove(Fragment fragment) {
+        fragments.remove(new IdentityKey(fragment.root));
+        forget(fragment);
+    }
+
+    private void forget(Fragment fragment) {
+        chars -= fragment.json.length();
+        for (Object definedObject : fragment.defined.keySet()) {
+            List<Fragment> list = containing.get(definedObject);
+            list.remove(fragment);
+            if (list.isEmpty()) {
+                containing.remove(definedObject);
+            }
+        }
+    }
+}
@@ -0,0 +1,467 @@
+package com.pjr22.serialization.core;
+
+import com.pjr22.serialization.inspector.ConstructorAnalyzer;
+import com.pjr22.serialization.inspector.FieldClassifier;
+import com.pjr22.serialization.inspector.FieldInspector;
+import com.pjr22.serialization.util.CollectionFactory;
+import com.pjr22.serialization.util.ValueSerializer;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Parameter;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Copies object graphs in memory, without encoding them as text and parsing them again.
+ * <p>
+ * A copy has the shape that serializing the graph and deserializing it would give: objects
+ * are created with the constructor the {@link Deserializer} would select, then every field
+ * the {@link Serializer} would write is copied. Objects referenced more than once, cycles and
+ * complex map keys are copied once and shared as in the original. Strings, boxed numbers,
+ * enums and immutable JDK values are shared rather than copied; other JDK values are copied
+ * through their {@link ValueSerializer} form. Unlike the text path, collections, maps and
+ * arrays referenced from several places also stay shared, and collections and maps keep their
+ * runtime class where it can be created, including the comparator of sorted ones.
+ * <p>
+ * The graph is walked with an explicit stack, so its depth is limited by heap rather than by
+ * the thread stack. Field metadata and the selected constructor are cached per class, and
+ * primitive fields are copied with primitive accessors. The copy is not synchronized with
+ * changes to the original made while it runs.
+ */
+public final class GraphCopier {
+
+    // Field metadata and constructor of each class copied so far
+    private static final Map<Class<?>, ClassPlan> PLANS = new ConcurrentHashMap<>();
+
+    // JDK value types that are immutable and shared between the original and the copy
+    private static final Set<Class<?>> IMMUTABLE_VALUES = Set.of(
+        String.class, Boolean.class, Character.class, Byte.class, Short.class, Integer.class,
+        Long.class, Float.class, Double.class, BigDecimal.class, BigInteger.class, UUID.class,
+        Locale.class, java.net.URI.class, java.util.Currency.class, Class.class);
+
+    // Copies by original object, and the originals in the order their copies were created
+    private final Map<Object, Object> copies = new IdentityHashMap<>();
+    private final List<Object> created = new ArrayList<>();
+
+    private GraphCopier() {
+    }
+
+    /**
+     * Returns a deep copy of an object graph.
+     *
+     * @param <T> the type of the root
+     * @param root the root of the graph, or null
+     * @return the copy of the root
+     * @throws SerializationException if an object cannot be created or a field cannot be copied
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T deepCopy(T root) throws SerializationException {
+        if (isShared(root)) {
+            return root;
+        }
+        GraphCopier copier = new GraphCopier();
+        copier.createCopies(root);
+        copier.fillCopies();
+        return (T) copier.copies.get(root);
+    }
+
+    /**
+     * How one field is copied.
+     */
+    private enum Kind {
+        BOOLEAN, BYTE, SHORT, CHAR, INT, LONG, FLOAT, DOUBLE,
+        // Immutable value shared by the copy
+        SHARED,
+        // Object, collection, map, array or atomic, replaced by its copy
+        REFERENCE
+    }
+
+    /**
+     * The copied fields of a class and the constructor its copies are created with.
+     */
+    private static final class ClassPlan {
+        final Field[] fields;
+        final Kind[] kinds;
+        final Constructor<?> constructor;
+        // Index into fields of each constructor parameter, or -1 for a default value
+        final int[] parameterFields;
+
+        ClassPlan(Class<?> clazz) throws SerializationException {
+            fields = FieldInspector.getAllFields(clazz);
+            kinds = new Kind[fields.length];
+            Map<String, Integer> indexes = new LinkedHashMap<>();
+            for (int i = 0; i < fields.length; i++) {
+                kinds[i] = kindOf(fields[i]);
+                indexes.put(fields[i].getName(), i);
+            }
+
+            // Same choice as Deserializer.createInstance
+            Constructor<?> selected = ConstructorAnalyzer.selectBestConstructor(clazz, indexes.keySet());
+            if (selected == null || selected.getParameterCount() == 0) {
+                try {
+                    selected = clazz.getDeclaredConstructor();
+                } catch (NoSuchMethodException e) {
+                    Constructor<?>[] constructors = clazz.getDeclaredConstructors();
+                    if (constructors.length == 0) {
+                        throw new SerializationException("No suitable constructor found for class: " + clazz.getName());
+                    }
+                    selected = constructors[0];
+                }
+            }
+            try {
+                selected.setAccessible(true);
+            } catch (RuntimeException e) {
+                throw new SerializationException("Cannot access constructor of class: " + clazz.getName(), e);
+            }
+            constructor = selected;
+            Parameter[] parameters = selected.getParameters();
+            parameterFields = new int[parameters.length];
+            for (int i = 0; i < parameters.length; i++) {
+                Integer index = indexes.get(parameters[i].getName());
+                parameterFields[i] = index != null && ConstructorAnalyzer.isTypeCompatible(
+                    parameters[i].getType(), fields[index].getType()) ? index : -1;
+            }
+        }
+
+        private static Kind kindOf(Field field) {
+            Class<?> type = field.getType();
+            if (type.isPrimitive()) {
+                if (type == int.class) return Kind.INT;
+                if (type == long.class) return Kind.LONG;
+                if (type == double.class) return Kind.DOUBLE;
+                if (type == float.class) return Kind.FLOAT;
+                if (type == boolean.class) return Kind.BOOLEAN;
+                if (type == short.class) return Kind.SHORT;
+                if (type == byte.class) return Kind.BYTE;
+                return Kind.CHAR;
+            }
+            switch (FieldClassifier.classify(field)) {
+                case PRIMITIVE:
+                case STRING:
+                case NUMBER:
+                case BIG_DECIMAL:
+                case ENUM:
+                    return Kind.SHARED;
+                default:
+                    return Kind.REFERENCE;
+            }
+        }
+    }
+
+    private static ClassPlan plan(Class<?> clazz) throws SerializationException {
+        ClassPlan plan = PLANS.get(clazz);
+        if (plan == null) {
+            plan = new ClassPlan(clazz);
+            PLANS.putIfAbsent(clazz, plan);
+        }
+        return plan;
+    }
+
+    /**
+     * Checks whether a value is shared by the copy instead of being copied.
+     */
+    private static boolean isShared(Object value) {
+        return value == null || value instanceof Enum || IMMUTABLE_VALUES.contains(value.getClass())
+            || value.getClass().getName().startsWith("java.time.");
+    }
+
+    /**
+     * Walks the graph depth first and creates the copy of each object once the objects it
+     * refers to have been visited, so constructor arguments can be their copies. An argument
+     * whose object is still being visited, in a cycle, is null until the fields are copied.
+     */
+    private void createCopies(Object root) throws SerializationException {
+        // Each frame holds an object and the values it refers to that remain to be visited
+        Deque<Object> objects = new ArrayDeque<>();
+        Deque<Children> children = new ArrayDeque<>();
+        Set<Object> visiting = Collections.newSetFromMap(new IdentityHashMap<>());
+        objects.push(root);
+        children.push(new Children(referencedValues(root)));
+        visiting.add(root);
+
+        while (!objects.isEmpty()) {
+            Children next = children.peek();
+            if (next.hasNext()) {
+                Object child = next.next();
+                if (!isShared(child) && !copies.containsKey(child) && visiting.add(child)) {
+                    objects.push(child);
+                    children.push(new Children(referencedValues(child)));
+                }
+                continue;
+            }
+            Object object = objects.pop();
+            children.pop();
+            copies.put(object, newCopy(object));
+            created.add(object);
+        }
+    }
+
+    /**
+     * The values an object refers to that remain to be visited.
+     */
+    private static final class Children {
+        private final Object[] values;
+        private int index;
+
+        Children(Object[] values) {
+            this.values = values;
+        }
+
+        boolean hasNext() {
+            return index < values.length;
+        }
+
+        Object next() {
+            return values[index++];
+        }
+    }
+
+    /**
+     * Returns the values an object refers to that may need copies of their own.
+     */
+    private static Object[] referencedValues(Object object) throws SerializationException {
+        if (object instanceof Collection) {
+            return ((Collection<?>) object).toArray();
+        }
+        if (object instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) object;
+            Object[] values = new Object[map.size() * 2];
+            int i = 0;
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                values[i++] = entry.getKey();
+                values[i++] = entry.getValue();
+            }
+            return values;
+        }
+        if (object instanceof Object[]) {
+            return (Object[]) object;
+        }
+        if (object instanceof AtomicReference) {
+            return new Object[] {((AtomicReference<?>) object).get()};
+        }
+        Class<?> clazz = object.getClass();
+        if (clazz.isArray() || isValue(clazz)) {
+            return new Object[0];
+        }
+        ClassPlan plan = plan(clazz);
+        List<Object> values = new ArrayList<>();
+        for (int i = 0; i < plan.fields.length; i++) {
+            if (plan.kinds[i] == Kind.REFERENCE) {
+                Object value = read(plan.fields[i], object);
+                if (!isShared(value)) {
+                    values.add(value);
+                }
+            }
+        }
+        return values.toArray();
+    }
+
+    /**
+     * Checks whether a class is a JDK value copied through its ValueSerializer form or an
+     * atomic holding a primitive.
+     */
+    private static boolean isValue(Class<?> clazz) {
+        return clazz == AtomicBoolean.class || clazz == AtomicInteger.class || clazz == AtomicLong.class
+            || ValueSerializer.canSerializeAsValue(clazz);
+    }
+
+    /**
+     * Creates the copy of an object. Objects with fields are constructed; their fields, and the
+     * contents of collections, maps and arrays, are filled in afterwards.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private Object newCopy(Object object) throws SerializationException {
+        Class<?> clazz = object.getClass();
+        if (clazz.isArray()) {
+            if (clazz.getComponentType().isPrimitive()) {
+                return cloneArray(object);
+            }
+            return Array.newInstance(clazz.getComponentType(), Array.getLength(object));
+        }
+        if (object instanceof SortedSet) {
+            return new TreeSet<>(((SortedSet<Object>) object).comparator());
+        }
+        if (object instanceof Collection) {
+            return CollectionFactory.createCollection(clazz);
+        }
+        if (object instanceof EnumMap) {
+            EnumMap map = new EnumMap((EnumMap) object);
+            map.clear();
+            return map;
+        }
+        if (object instanceof SortedMap) {
+            return new TreeMap<>(((SortedMap<Object, Object>) object).comparator());
+        }
+        if (object instanceof Map) {
+            try {
+                return clazz.getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                return new LinkedHashMap<>();
+            }
+        }
+        if (object instanceof AtomicReference) {
+            return new AtomicReference<>();
+        }
+        if (object instanceof AtomicBoolean) {
+            return new AtomicBoolean(((AtomicBoolean) object).get());
+        }
+        if (object instanceof AtomicInteger) {
+            return new AtomicInteger(((AtomicInteger) object).get());
+        }
+        if (object instanceof AtomicLong) {
+            return new AtomicLong(((AtomicLong) object).get());
+        }
+        if (ValueSerializer.canSerializeAsValue(clazz)) {
+            Object value = ValueSerializer.serializeAsValue(object);
+            if (value != null) {
+                Object copy = ValueSerializer.deserializeFromValue(value, clazz);
+                if (copy != null) {
+                    return copy;
+                }
+            }
+            return object;
+        }
+
+        ClassPlan plan = plan(clazz);
+        Object[] args = new Object[plan.parameterFields.length];
+        Class<?>[] types = plan.constructor.getParameterTypes();
+        for (int i = 0; i < args.length; i++) {
+            int index = plan.parameterFields[i];
+            Object value = index < 0 ? null : read(plan.fields[index], object);
+            if (!isShared(value)) {
+                // Null while the value is still being visited; set with the fields later
+                value = copies.get(value);
+            }
+            args[i] = value == null && types[i].isPrimitive() ? defaultValue(types[i]) : value;
+        }
+        try {
+            return plan.constructor.newInstance(args);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            throw new SerializationException("Error creating instance of class: " + clazz.getName(), e);
+        }
+    }
+
+    /**
+     * Copies the fields of every copied object, then fills the collections, maps and arrays
+     * in the order they were created, so that contained collections are complete before they
+     * are added to hashed ones.
+     */
+    @SuppressWarnings("unchecked")
+    private void fillCopies() throws SerializationException {
+        for (Object object : created) {
+            Class<?> clazz = object.getClass();
+            if (!clazz.isArray() && !(object instanceof Collection) && !(object instanceof Map)
+                    && !(object instanceof AtomicReference) && !isValue(clazz)) {
+                copyFields(plan(clazz), object, copies.get(object));
+            }
+        }
+        for (Object object : created) {
+            Object copy = copies.get(object);
+            if (object instanceof Object[]) {
+                Object[] source = (Object[]) object;
+                Object[] target = (Object[]) copy;
+                for (int i = 0; i < source.length; i++) {
+                    target[i] = copyOf(source[i]);
+                }
+            } else if (object instanceof Collection) {
+                Collection<Object> target = (Collection<Object>) copy;
+                for (Object element : (Collection<?>) object) {
+                    target.add(copyOf(element));
+                }
+            } else if (object instanceof Map) {
+                Map<Object, Object> target = (Map<Object, Object>) copy;
+                for (Map.Entry<?, ?> entry : ((Map<?, ?>) object).entrySet()) {
+                    target.put(copyOf(entry.getKey()), copyOf(entry.getValue()));
+                }
+            } else if (object instanceof AtomicReference) {
+                ((AtomicReference<Object>) copy).set(copyOf(((AtomicReference<?>) object).get()));
+            }
+        }
+    }
+
+    private void copyFields(ClassPlan plan, Object source, Object target) throws SerializationException {
+        Field[] fields = plan.fields;
+        Kind[] kinds = plan.kinds;
+        Field field = null;
+        try {
+            for (int i = 0; i < fields.length; i++) {
+                field = fields[i];
+                switch (kinds[i]) {
+                    case INT: field.setInt(target, field.getInt(source)); break;
+                    case LONG: field.setLong(target, field.getLong(source)); break;
+                    case DOUBLE: field.setDouble(target, field.getDouble(source)); break;
+                    case FLOAT: field.setFloat(target, field.getFloat(source)); break;
+                    case BOOLEAN: field.setBoolean(target, field.getBoolean(source)); break;
+                    case SHORT: field.setShort(target, field.getShort(source)); break;
+                    case BYTE: field.setByte(target, field.getByte(source)); break;
+                    case CHAR: field.setChar(target, field.getChar(source)); break;
+                    case SHARED: field.set(target, field.get(source)); break;
+                    default: field.set(target, copyOf(field.get(source))); break;
+                }
+            }
+        } catch (IllegalAccessException | RuntimeException e) {
+            throw new SerializationException("Error copying field: " + field.getName(), e);
+        }
+    }
+
+    /**
+     * Returns the copy of a value, or the value itself if it is shared.
+     */
+    private Object copyOf(Object value) {
+        if (isShared(value)) {
+            return value;
+        }
+        Object copy = copies.get(value);
+        return copy != null ? copy : value;
+    }
+
+    private static Object read(Field field, Object object) throws SerializationException {
+        try {
+            return field.get(object);
+        } catch (IllegalAccessException e) {
+            throw new SerializationException("Error accessing field: " + field.getName(), e);
+        }
+    }
+
+    private static Object cloneArray(Object array) {
+        int length = Array.getLength(array);
+        Object copy = Array.newInstance(array.getClass().getComponentType(), length);
+        System.arraycopy(array, 0, copy, 0, length);
+        return copy;
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (type == boolean.class) return false;
+        if (type == char.class) return '\0';
+        if (type == long.class) return 0L;
+        if (type == float.class) return 0.0f;
+        if (type == double.class) return 0.0;
+        if (type == byte.class) return (byte) 0;
+        if (type == short.class) return (short) 0;
+        return 0;
+    }
+}
@@ -0,0 +1,249 @@
+package com.pjr22.serialization.core;
+
+import com.pjr22.serialization.format.JsonFormatReader;
+import com.pjr22.serialization.format.JsonParser;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Random access to the objects of a file written by {@link Serializer#serialize(Object, Path)}
+ * with {@link Serializer#withIndex(boolean) an index}.
+ * <p>
+ * The file is memory-mapped and its index read into memory when it is opened. {@link #get}
+ * then parses and binds only the definition of the requested object, which includes the
+ * objects defined inside it. References to objects defined elsewhere in the file are followed
+ * through the index as binding reaches them. Note that a reference to an object enclosing the
+ * requested one loads that object's whole definition, once the requested object is complete.
+ * <p>
+ * Loaded objects are kept in a cache with least-recently-used eviction, and later loads reuse
+ * cached objects, so references between loaded objects share instances. An object evicted from
+ * the cache is loaded again as a new instance if it is requested later.
+ * <p>
+ * A GraphFile is thread-safe; loads are serialized.
+ */
+public class GraphFile implements Closeable {
+
+    /** Number of objects cached unless {@link #withCacheSize(int)} sets another limit. */
+    public static final int DEFAULT_CACHE_SIZE = 10_000;
+
+    private final Path file;
+    private final GraphIndex index;
+    private ByteBuffer[] segments;
+    private int cacheSize = DEFAULT_CACHE_SIZE;
+    private final Map<String, Object> cache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Object> eldest) {
+            return size() > cacheSize;
+        }
+    };
+
+    private final Deserializer.ObjectStore store = new Deserializer.ObjectStore() {
+        @Override
+        public Object cached(String id) {
+            return cache.get(id);
+        }
+
+        @Override
+        public Map<String, Object> definition(String id) throws SerializationException {
+            return readDefinition(id);
+        }
+
+        @Override
+        public String[] schema(String className) {
+            return index.schema(className);
+        }
+    };
+
+    private GraphFile(Path file, GraphIndex index, ByteBuffer[] segments) {
+        this.file = file;
+        this.index = index;
+        this.segments = segments;
+    }
+
+    /**
+     * Opens an indexed file.
+     *
+     * @param file the file, with its index next to it
+     * @return the opened file
+     * @throws SerializationException if the file or its index cannot be read, or they do not match
+     */
+    public static GraphFile open(Path file) throws SerializationException {
+        Path indexPath = GraphIndex.indexPath(file);
+        GraphIndex index;
+        try {
+            index = GraphIndex.read(indexPath);
+        } catch (NoSuchFileException e) {
+            throw new SerializationException("No index for file " + file + " (expected " + indexPath + ")", e);
+        } catch (IOException e) {
+            throw new SerializationException("Error reading index " + indexPath, e);
+        }
+
+        ByteBuffer[] segments = Deserializer.mapFile(file);
+        long length = 0;
+        for (ByteBuffer segment : segments) {
+            length += segment.remaining();
+        }
+        if (length != index.fileLength()) {
+            throw new SerializationException("Index " + indexPath + " does not match file " + file);
+        }
+        return new GraphFile(file, index, segments);
+    }
+
+    /**
+     * Sets the maximum number of loaded objects kept in the cache.
+     *
+     * @param maxObjects the cache size
+     * @return this file
+     */
+    public synchronized GraphFile withCacheSize(int maxObjects) {
+        if (maxObjects <= 0) {
+            throw new IllegalArgumentException("Cache size must be positive");
+        }
+        this.cacheSize = maxObjects;
+        return this;
+    }
+
+    /**
+     * Returns the IDs of all objects in the file.
+     *
+     * @return the object IDs
+     */
+    public Set<String> getIds() {
+        return Collections.unmodifiableSet(index.spans().keySet());
+    }
+
+    /**
+     * Checks whether the file defines an object.
+     *
+     * @param id the object ID
+     * @return true if the index has the object
+     */
+    public boolean contains(String id) {
+        return index.span(id) != null;
+    }
+
+    /**
+     * Returns an object, loading it from the file if it is not cached.
+     *
+     * @param id the object ID
+     * @return the object
+     * @throws SerializationException if the file has no such object or it cannot be loaded
+     * @throws IllegalStateException if the file is closed
+     */
+    public synchronized Object get(String id) throws SerializationException {
+        if (segments == null) {
+            throw new IllegalStateException("GraphFile is closed");
+        }
+        Object object = cache.get(id);
+        if (object != null) {
+            return object;
+        }
+        if (index.span(id) == null) {
+            throw new SerializationException("Object not found in index of " + file + ": " + id);
+        }
+
+        Deserializer<Object> loader = new Deserializer<>(Object.class).withObjectStore(store);
+        try {
+            object = loader.loadStored(id);
+        } catch (RuntimeException e) {
+            throw new SerializationException("Error loading object " + id + " from " + file, e);
+        }
+        cache.putAll(loader.boundObjects());
+        // The requested object is the most recently used
+        cache.put(id, object);
+        return object;
+    }
+
+    /**
+     * Returns an object of a given type, loading it from the file if it is not cached.
+     *
+     * @param <T> the type of the object
+     * @param id the object ID
+     * @param type the expected class of the object
+     * @return the object
+     * @throws SerializationException if the file has no such object, it cannot be loaded or it
+     *         is not of the expected type
+     * @throws IllegalStateException if the file is closed
+     */
+    public <T> T get(String id, Class<T> type) throws SerializationException {
+        Object object = get(id);
+        if (!type.isInstance(object)) {
+            throw new SerializationException("Object " + id + " is a " + object.getClass().getName()
+                + ", not a " + type.getName());
+        }
+        return type.cast(object);
+    }
+
+    /**
+     * Releases the mapping and the cache. The mapping itself is unmapped by the garbage
+     * collector once it is no longer referenced.
+     */
+    @Override
+    public synchronized void close() {
+        segments = null;
+        cache.clear();
+    }
+
+    /**
+     * Parses the definition of an object from its byte range in the file.
+     */
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> readDefinition(String id) throws SerializationException {
+        long[] span = index.span(id);
+        if (span == null) {
+            return null;
+        }
+        long offset = span[0];
+        ByteBuffer[] data;
+        if (offset == 0 && span[1] == index.fileLength()) {
+            // The root definition is the whole file
+            data = segments;
+        } else if (span[1] > Integer.MAX_VALUE) {
+            throw new SerializationException("Definition of " + id + " in " + file + " is larger than 2 GB");
+        } else {
+            data = new ByteBuffer[] {slice(offset, (int) span[1])};
+        }
+
+        Object tree;
+        try {
+            tree = JsonParser.parse(data);
+        } catch (IllegalArgumentException e) {
+            throw new SerializationException("Malformed definition of " + id + " in " + file, e);
+        }
+        if (!(tree instanceof Map)) {
+            throw new SerializationException("Index entry of " + id + " in " + file + " is not an object definition");
+        }
+        return (Map<String, Object>) tree;
+    }
+
+    /**
+     * Returns a buffer holding a byte range of the file.
+     */
+    private ByteBuffer slice(long offset, int length) {
+        int segment = (int) (offset / JsonFormatReader.SEGMENT_SIZE);
+        int position = (int) (offset % JsonFormatReader.SEGMENT_SIZE);
+        if (position + (long) length <= segments[segment].limit()) {
+            return segments[segment].slice(position, length);
+        } else {
+            // The definition crosses one or more segment boundaries - copy it out
+            byte[] bytes = new byte[length];
+            int copied = 0;
+            while (copied < length) {
+                int n = Math.min(segments[segment].limit() - position, length - copied);
+                segments[segment].get(position, bytes, copied, n);
+                copied += n;
+                segment++;
+                position = 0;
+            }
+            return ByteBuffer.wrap(bytes);
+        }
+    }
+}
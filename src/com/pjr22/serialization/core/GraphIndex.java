@@ -0,0 +1,236 @@
+package com.pjr22.serialization.core;
+
+import com.pjr22.serialization.format.JsonFormatWriter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Index of the object definitions in a serialized file, written next to the file by
+ * {@link Serializer#withIndex(boolean)} and read by {@link GraphFile}.
+ * <p>
+ * The index maps each object ID to the byte offset and length of its definition in the
+ * file, and holds the field names of every class written with positional fields, since a
+ * definition read on its own may not carry its class's "$fields". It is stored in the file
+ * named by {@link #indexPath(Path)}:
+ * <pre>
+ * magic "PJIX", version byte, length of the indexed file (long)
+ * schema count (int), then per schema: class name (UTF), name count (int), names (UTF)
+ * entry count (int), then per entry: object ID (UTF), offset (long), length (long)
+ * </pre>
+ */
+final class GraphIndex {
+
+    private static final byte[] MAGIC = {'P', 'J', 'I', 'X'};
+    private static final byte VERSION = 1;
+
+    // Object ID to {offset, length} in bytes
+    private final Map<String, long[]> spans;
+    private final Map<String, String[]> schemas;
+    private long fileLength;
+
+    GraphIndex() {
+        this.spans = new HashMap<>();
+        this.schemas = new LinkedHashMap<>();
+    }
+
+    /**
+     * Returns the path of the index of a file: the file name with ".idx" appended.
+     *
+     * @param file the indexed file
+     * @return the index path
+     */
+    static Path indexPath(Path file) {
+        return file.resolveSibling(file.getFileName() + ".idx");
+    }
+
+    /**
+     * Returns the offset and length of an object's definition.
+     *
+     * @param id the object ID
+     * @return {offset, length}, or null if the ID is not in the index
+     */
+    long[] span(String id) {
+        return spans.get(id);
+    }
+
+    /**
+     * Returns the positional field names of a class.
+     *
+     * @param className the class name
+     * @return the names, or null if the class was not written with positional fields
+     */
+    String[] schema(String className) {
+        return schemas.get(className);
+    }
+
+    Map<String, long[]> spans() {
+        return spans;
+    }
+
+    long fileLength() {
+        return fileLength;
+    }
+
+    void write(Path path) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+            out.write(MAGIC);
+            out.writeByte(VERSION);
+            out.writeLong(fileLength);
+            out.writeInt(schemas.size());
+            for (Map.Entry<String, String[]> schema : schemas.entrySet()) {
+                out.writeUTF(schema.getKey());
+                out.writeInt(schema.getValue().length);
+                for (String name : schema.getValue()) {
+                    out.writeUTF(name);
+                }
+            }
+            out.writeInt(spans.size());
+            for (Map.Entry<String, long[]> span : spans.entrySet()) {
+                out.writeUTF(span.getKey());
+                out.writeLong(span.getValue()[0]);
+                out.writeLong(span.getValue()[1]);
+            }
+        }
+    }
+
+    static GraphIndex read(Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            byte[] magic = new byte[MAGIC.length];
+            in.readFully(magic);
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new IOException("Not a graph index: " + path);
+            }
+            int version = in.readByte();
+            if (version != VERSION) {
+                throw new IOException("Unsupported graph index version: " + version);
+            }
+            GraphIndex index = new GraphIndex();
+            index.fileLength = in.readLong();
+            int schemaCount = in.readInt();
+            for (int i = 0; i < schemaCount; i++) {
+                String className = in.readUTF();
+                String[] names = new String[in.readInt()];
+                for (int j = 0; j < names.length; j++) {
+                    names[j] = in.readUTF();
+                }
+                index.schemas.put(className, names);
+            }
+            int entryCount = in.readInt();
+            for (int i = 0; i < entryCount; i++) {
+                String id = in.readUTF();
+                index.spans.put(id, new long[] {in.readLong(), in.readLong()});
+            }
+            return index;
+        }
+    }
+
+    /**
+     * Converts the character offsets recorded while writing to byte offsets in the UTF-8
+     * encoding of the document, and records the encoded length.
+     *
+     * @param json the document
+     * @param encodedLength the length of its UTF-8 encoding
+     */
+    void encodeOffsets(String json, long encodedLength) {
+        fileLength = encodedLength;
+        if (encodedLength == json.length()) {
+            // ASCII - characters and bytes coincide
+            return;
+        }
+        long[] offsets = new long[spans.size() * 2];
+        int n = 0;
+        for (long[] span : spans.values()) {
+            offsets[n++] = span[0];
+            offsets[n++] = span[0] + span[1];
+        }
+        Arrays.sort(offsets);
+
+        // One pass over the text, noting the byte position at each recorded offset
+        long[] bytePositions = new long[offsets.length];
+        long bytes = 0;
+        int next = 0;
+        for (int i = 0; i <= json.length() && next < offsets.length; i++) {
+            while (next < offsets.length && offsets[next] == i) {
+                bytePositions[next++] = bytes;
+            }
+            if (i < json.length()) {
+                char c = json.charAt(i);
+                if (c < 0x80) {
+                    bytes += 1;
+                } else if (c < 0x800) {
+                    bytes += 2;
+                } else if (Character.isHighSurrogate(c)) {
+                    // The pair encodes as four bytes, counted at the high surrogate
+                    bytes += 4;
+                } else if (!Character.isLowSurrogate(c)) {
+                    bytes += 3;
+                }
+            }
+        }
+        for (long[] span : spans.values()) {
+            long start = bytePositions[Arrays.binarySearch(offsets, span[0])];
+            long end = bytePositions[Arrays.binarySearch(offsets, span[0] + span[1])];
+            span[0] = start;
+            span[1] = end - start;
+        }
+    }
+
+    /**
+     * JSON writer that records the character range of every object definition it writes,
+     * and the field names of positional classes, in an index.
+     */
+    static final class IndexingWriter extends JsonFormatWriter {
+        private final StringBuilder sb;
+        private final GraphIndex index;
+        private String[] openIds = new String[16];
+        private int[] openStarts = new int[16];
+        private int depth;
+        private String className;
+
+        IndexingWriter(StringBuilder sb, GraphIndex index) {
+            super(sb);
+            this.sb = sb;
+            this.index = index;
+        }
+
+        @Override
+        public void beginObject(String id, String className) {
+            int before = sb.length();
+            super.beginObject(id, className);
+            // Skip the separator written before the definition
+            int start = sb.charAt(before) == ',' ? before + 1 : before;
+            if (depth == openIds.length) {
+                openIds = Arrays.copyOf(openIds, depth * 2);
+                openStarts = Arrays.copyOf(openStarts, depth * 2);
+            }
+            openIds[depth] = id;
+            openStarts[depth++] = start;
+            this.className = className;
+        }
+
+        @Override
+        public void beginPositionalFields(String[] names) {
+            super.beginPositionalFields(names);
+            if (names != null) {
+                index.schemas.put(className, names);
+            }
+        }
+
+        @Override
+        public void endObject() {
+            super.endObject();
+            depth--;
+            index.spans.put(openIds[depth], new long[] {openStarts[depth], sb.length() - openStarts[depth]});
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.pjr22.serialization.core;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * List set on fields bound by {@link Deserializer#withLazyCollections(boolean)}. It holds the
+ * parsed contents of the field and binds each element the first time it is read; the size is
+ * known without binding anything. Modifying the list binds every element first.
+ * <p>
+ * All access is synchronized on the deserializer that created the list, which also does the
+ * binding, so the list can be shared between threads once published.
+ */
+final class LazyList extends AbstractList<Object> implements RandomAccess {
+
+    // Marks an element that has not been bound yet
+    private static final Object UNBOUND = new Object();
+
+    private final Deserializer<?> owner;
+    // Parsed contents and bound elements, until every element is bound
+    private List<Object> parsed;
+    private Object[] elements;
+    private int unbound;
+    // The elements once all are bound
+    private ArrayList<Object> bound;
+
+    LazyList(Deserializer<?> owner, List<Object> parsed) {
+        this.owner = owner;
+        this.parsed = parsed;
+        this.elements = new Object[parsed.size()];
+        this.unbound = elements.length;
+        Arrays.fill(elements, UNBOUND);
+    }
+
+    @Override
+    public int size() {
+        synchronized (owner) {
+            return bound != null ? bound.size() : elements.length;
+        }
+    }
+
+    @Override
+    public Object get(int index) {
+        synchronized (owner) {
+            if (bound != null) {
+                return bound.get(index);
+            }
+            if (elements[index] == UNBOUND) {
+                elements[index] = bind(index);
+                if (--unbound == 0) {
+                    bound = new ArrayList<>(Arrays.asList(elements));
+                    parsed = null;
+                    elements = null;
+                }
+                return bound != null ? bound.get(index) : elements[index];
+            }
+            return elements[index];
+        }
+    }
+
+    @Override
+    public Object set(int index, Object element) {
+        synchronized (owner) {
+            return bindAll().set(index, element);
+        }
+    }
+
+    @Override
+    public void add(int index, Object element) {
+        synchronized (owner) {
+            bindAll().add(index, element);
+            modCount++;
+        }
+    }
+
+    @Override
+    public Object remove(int index) {
+        synchronized (owner) {
+            Object removed = bindAll().remove(index);
+            modCount++;
+            return removed;
+        }
+    }
+
+    private ArrayList<Object> bindAll() {
+        if (bound == null) {
+            for (int i = 0; i < elements.length; i++) {
+                if (elements[i] == UNBOUND) {
+                    elements[i] = bind(i);
+                }
+            }
+            bound = new ArrayList<>(Arrays.asList(elements));
+            parsed = null;
+            elements = null;
+        }
+        return bound;
+    }
+
+    private Object bind(int index) {
+        try {
+            return owner.bindLazyElement(parsed, index);
+        } catch (SerializationException e) {
+            throw new UncheckedSerializationException(e);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.pjr22.serialization.core;
+
+import java.lang.reflect.Field;
+import java.util.AbstractMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Map set on fields bound by {@link Deserializer#withLazyCollections(boolean)}. It holds the
+ * parsed contents of the field and binds all entries the first time anything other than its
+ * size is read, since binding one value means converting every key.
+ * <p>
+ * All access is synchronized on the deserializer that created the map, which also does the
+ * binding, so the map can be shared between threads once published.
+ */
+final class LazyMap extends AbstractMap<Object, Object> {
+
+    private final Deserializer<?> owner;
+    private final Field field;
+    // Parsed contents, until the entries are bound
+    private Map<String, Object> parsed;
+    private Map<Object, Object> bound;
+
+    LazyMap(Deserializer<?> owner, Field field, Map<String, Object> parsed) {
+        this.owner = owner;
+        this.field = field;
+        this.parsed = parsed;
+    }
+
+    @Override
+    public int size() {
+        synchronized (owner) {
+            return bound != null ? bound.size() : parsed.size();
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public Object get(Object key) {
+        synchronized (owner) {
+            return bindAll().get(key);
+        }
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        synchronized (owner) {
+            return bindAll().containsKey(key);
+        }
+    }
+
+    @Override
+    public Object put(Object key, Object value) {
+        synchronized (owner) {
+            return bindAll().put(key, value);
+        }
+    }
+
+    @Override
+    public Object remove(Object key) {
+        synchronized (owner) {
+            return bindAll().remove(key);
+        }
+    }
+
+    @Override
+    public void clear() {
+        synchronized (owner) {
+            bindAll().clear();
+        }
+    }
+
+    /**
+     * Returns the entries, binding them first. Iterating the entries is not synchronized,
+     * so concurrent readers must not modify the map.
+     */
+    @Override
+    public Set<Map.Entry<Object, Object>> entrySet() {
+        synchronized (owner) {
+            return bindAll().entrySet();
+        }
+    }
+
+    private Map<Object, Object> bindAll() {
+        if (bound == null) {
+            try {
+                bound = owner.bindLazyMap(field, parsed);
+            } catch (SerializationException e) {
+                throw new UncheckedSerializationException(e);
+            }
+            parsed = null;
+        }
+        return bound;
+    }
+}
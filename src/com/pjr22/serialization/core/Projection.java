@@ -0,0 +1,138 @@
+package com.pjr22.serialization.core;
+
+import com.pjr22.serialization.format.TreeFilter;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The field paths selected by {@link Deserializer#withProjection(String...)}, and the
+ * {@link TreeFilter} that leaves every other field out of the parse tree.
+ * <p>
+ * A path names fields from the root object down, separated by dots, such as
+ * {@code "address.city"}. A segment may end in {@code [*]} to mark that the field holds a
+ * collection, array or map; the rest of the path then applies to each element or value, as
+ * in {@code "effects[*].type"}. The marker is optional, since paths pass through containers
+ * either way. Selecting a field selects everything below it.
+ * <p>
+ * The filter works on the nested layout: members of an object definition's "fields" section
+ * that no path selects are skipped. Positional "$values", "$mapKeys" sections and the flat
+ * "objects" table are kept whole.
+ */
+final class Projection {
+
+    private final Node root = new Node();
+
+    private Projection() {
+    }
+
+    /**
+     * Parses field paths.
+     *
+     * @param paths the paths to select
+     * @return the projection
+     * @throws IllegalArgumentException if no paths are given or a path is malformed
+     */
+    static Projection of(String... paths) {
+        if (paths == null || paths.length == 0) {
+            throw new IllegalArgumentException("At least one field path is required");
+        }
+        Projection projection = new Projection();
+        for (String path : paths) {
+            projection.add(path);
+        }
+        return projection;
+    }
+
+    private void add(String path) {
+        if (path == null || path.isEmpty()) {
+            throw new IllegalArgumentException("Field path cannot be empty");
+        }
+        Node node = root;
+        for (String segment : path.split("\\.", -1)) {
+            if (node.whole) {
+                // An enclosing field is already selected in full
+                return;
+            }
+            while (segment.endsWith("[*]")) {
+                segment = segment.substring(0, segment.length() - 3);
+            }
+            if (segment.isEmpty() || segment.indexOf('[') >= 0 || segment.indexOf(']') >= 0) {
+                throw new IllegalArgumentException("Malformed field path: " + path);
+            }
+            node = node.children.computeIfAbsent(segment, name -> new Node());
+        }
+        node.whole = true;
+        node.children.clear();
+    }
+
+    /**
+     * Returns the filter for the top-level value of a document.
+     *
+     * @return the filter
+     */
+    TreeFilter filter() {
+        return root.rootFilter;
+    }
+
+    /**
+     * A selected position in the object graph: either selected in full, or narrowed to the
+     * fields in {@code children}. Each node keeps its filters, so filtering allocates nothing.
+     */
+    private static final class Node {
+        final Map<String, Node> children = new HashMap<>();
+        boolean whole;
+
+        // Applies to a value at this position: an object definition, or a container of them
+        final TreeFilter valueFilter = new TreeFilter() {
+            @Override
+            public TreeFilter member(String name) {
+                switch (name) {
+                    case "fields":
+                        return fieldsFilter;
+                    case "$values":
+                    case "$mapKeys":
+                        return ALL;
+                    default:
+                        // Definition metadata, or an entry of a plain map
+                        return this;
+                }
+            }
+
+            @Override
+            public TreeFilter element() {
+                return this;
+            }
+        };
+
+        // Applies to the "fields" section of an object definition at this position
+        final TreeFilter fieldsFilter = new TreeFilter() {
+            @Override
+            public TreeFilter member(String name) {
+                Node child = children.get(name);
+                if (child == null) {
+                    return SKIP;
+                }
+                return child.whole ? ALL : child.valueFilter;
+            }
+
+            @Override
+            public TreeFilter element() {
+                return this;
+            }
+        };
+
+        // Applies to the document root, which may be an objects table
+        final TreeFilter rootFilter = new TreeFilter() {
+            @Override
+            public TreeFilter member(String name) {
+                return name.equals("objects") ? ALL : valueFilter.member(name);
+            }
+
+            @Override
+            public TreeFilter element() {
+                return valueFilter;
+            }
+        };
+    }
+}
@@ -0,0 +1,88 @@
+package com.pjr22.serialization.core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Produces the JSON document for an object graph in chunks, for writing to non-blocking
+ * channels. Created by {@link Serializer#newTask(Object)}.
+ * <p>
+ * Each call to {@link #produce(ByteBuffer)} walks the graph only until it has filled the
+ * buffer, then suspends with its traversal state intact, so the document is never held in
+ * memory as a whole. Memory use is bounded by the buffer size plus the output of a single
+ * field or element. A typical driver calls {@code produce} when the selector reports the
+ * channel writable and writes the buffer until it is drained or the channel is full.
+ * <p>
+ * The document is written in the nested layout and is not compressed. After an exception
+ * the task cannot be resumed. Instances are not thread-safe.
+ */
+public class SerializationTask {
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private final Serializer.GraphWalk walk;
+    private final StringBuilder sb;
+    private boolean walkDone;
+    // Encoded output that did not fit in the last buffer
+    private byte[] pending = EMPTY;
+    private int pendingOffset;
+    private long produced;
+
+    SerializationTask(Serializer.GraphWalk walk, StringBuilder sb) {
+        this.walk = walk;
+        this.sb = sb;
+    }
+
+    /**
+     * Writes the next part of the document into the buffer, up to its remaining space.
+     *
+     * @param buffer the buffer to fill, starting at its position
+     * @return true once the whole document has been produced
+     * @throws SerializationException if a serialization error occurs
+     */
+    public boolean produce(ByteBuffer buffer) throws SerializationException {
+        try {
+            while (buffer.hasRemaining()) {
+                if (pendingOffset < pending.length) {
+                    int n = Math.min(buffer.remaining(), pending.length - pendingOffset);
+                    buffer.put(pending, pendingOffset, n);
+                    pendingOffset += n;
+                    produced += n;
+                    continue;
+                }
+                // Each character encodes to at least one byte, so this fills the buffer
+                while (!walkDone && sb.length() < buffer.remaining()) {
+                    walkDone = !walk.step();
+                }
+                if (sb.length() == 0) {
+                    break;
+                }
+                pending = sb.toString().getBytes(StandardCharsets.UTF_8);
+                pendingOffset = 0;
+                sb.setLength(0);
+            }
+        } catch (IOException e) {
+            throw new SerializationException("Error writing to format writer", e);
+        }
+        return isComplete();
+    }
+
+    /**
+     * Checks whether the whole document has been produced.
+     *
+     * @return true when complete
+     */
+    public boolean isComplete() {
+        return walkDone && sb.length() == 0 && pendingOffset == pending.length;
+    }
+
+    /**
+     * Returns the number of bytes produced so far.
+     *
+     * @return the byte count
+     */
+    public long getBytesProduced() {
+        return produced;
+    }
+}
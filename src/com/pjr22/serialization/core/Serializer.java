@@ -1,23 +1,40 @@
 package com.pjr22.serialization.core;
 
+import com.pjr22.serialization.compress.LzBlockOutputStream;
+import com.pjr22.serialization.format.FormatWriter;
+import com.pjr22.serialization.format.JsonFormatWriter;
 import com.pjr22.serialization.format.JsonSerializer;
 import com.pjr22.serialization.inspector.FieldClassifier;
 import com.pjr22.serialization.inspector.FieldInspector;
 import com.pjr22.serialization.registry.ObjectIdGenerator;
 import com.pjr22.serialization.registry.ObjectRegistry;
+import com.pjr22.serialization.util.DirectBufferPool;
 import com.pjr22.serialization.util.ValueSerializer;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
 import java.lang.reflect.Array;
 import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Base64;
 import java.util.Collection;
+import java.util.Deque;
 import java.util.HashSet;
 import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.UnaryOperator;
 
 /**
  * Serializes Java objects to JSON format.
@@ -25,6 +42,9 @@ import java.util.Set;
  */
 public class Serializer {
 
+    // Maximum number of direct buffers passed to one gathering write
+    private static final int CHANNEL_BATCH_BUFFERS = 16;
+
     private final ObjectIdGenerator idGenerator;
     private final ObjectRegistry objectRegistry;
     private final Map<Object, String> objectToIdMap;
@@ -35,6 +55,43 @@ public class Serializer {
     // Track which objects have maps with complex keys
     private final Set<String> objectsWithComplexMapKeys = new HashSet<>();
 
+    // Output layout (nested by default)
+    private Layout layout = Layout.NESTED;
+
+    // Whether byte, stream, buffer and channel output is compressed
+    private boolean compress;
+
+    // Whether fields are written as positional value arrays, and the classes whose field
+    // names have been declared in the current document
+    private boolean positionalFields;
+    private final Set<Class<?>> declaredSchemas = new HashSet<>();
+
+    // Whether serialize(Object, Path) writes an index of the object definitions
+    private boolean index;
+
+    // Whether repeated string values are written once into a string table
+    private boolean stringTable;
+
+    // Cached definitions, the writer of the current document when fragments can be used in it,
+    // and the fragments being captured, innermost first
+    private FragmentCache fragmentCache;
+    private JsonFormatWriter fragmentWriter;
+    private final Deque<Capture> captures = new ArrayDeque<>();
+
+    /**
+     * Layout of the serialized document.
+     */
+    public enum Layout {
+        /** Objects are written inline where first encountered and referenced by $ref afterwards */
+        NESTED,
+        /**
+         * Every object is one entry of a flat "objects" table, and objects refer to each other by ID.
+         * The table is written by an iterative graph walk, so document depth does not grow with the
+         * object graph, and it can be loaded in parallel by {@link Deserializer#withParallelism}.
+         */
+        OBJECT_TABLE
+    }
+
     /**
      * Creates a new Serializer with the specified serialization key and starting ID.
      *
@@ -47,6 +104,135 @@ public class Serializer {
         this.objectToIdMap = new IdentityHashMap<>();
     }
 
+    /**
+     * Selects the layout of the serialized document.
+     *
+     * @param layout the layout to write
+     * @return this serializer
+     */
+    public Serializer withLayout(Layout layout) {
+        this.layout = layout;
+        return this;
+    }
+
+    /**
+     * Enables compression of the output written by {@link #serialize(Object, OutputStream)},
+     * {@link #serializeToBytes(Object)} and the buffer and channel methods.
+     * The document is written through an {@link LzBlockOutputStream}; the Deserializer and
+     * DeserializerStream recognize compressed input and decompress it automatically.
+     *
+     * @param compress true to compress the output
+     * @return this serializer
+     */
+    public Serializer withCompression(boolean compress) {
+        this.compress = compress;
+        return this;
+    }
+
+    /**
+     * Writes the fields of each object as an array of values in {@link FieldInspector#getAllFields}
+     * order instead of a map from field names to values. The field names of a class are
+     * written once per document, as "$fields" on the first object of the class, and later
+     * objects carry only their "$values". This removes the repeated field names from
+     * collections of objects of the same class, and the Deserializer binds the values by
+     * position instead of looking each field up by name.
+     * <p>
+     * Applies to the nested layout; the objects table and the binary format keep named fields.
+     *
+     * @param positionalFields true to write positional fields
+     * @return this serializer
+     */
+    public Serializer withPositionalFields(boolean positionalFields) {
+        this.positionalFields = positionalFields;
+        return this;
+    }
+
+    /**
+     * Makes {@link #serialize(Object, Path)} write an index next to the file, mapping every
+     * object ID to the byte range of its definition, so {@link GraphFile} can load single
+     * objects without reading the whole file. Indexed files are written in the nested layout
+     * and cannot be compressed.
+     *
+     * @param index true to write the index
+     * @return this serializer
+     */
+    public Serializer withIndex(boolean index) {
+        this.index = index;
+        return this;
+    }
+
+    /**
+     * Writes each string value that repeats in a document once, into a string table before
+     * the document: {"$strings":[...],"root":...}. Each use of a string in the table is
+     * written as {"$s":index}. A string goes into the table only if that makes the document
+     * shorter, and a document without such strings is written as usual. The Deserializer
+     * decodes each string in the table once and shares the instance across all its uses.
+     * <p>
+     * Applies to JSON documents in the nested layout, other than indexed files and
+     * {@link #newTask(Object) tasks}. Field names and map keys are not put in the table; a
+     * map key "$s" is escaped like every map key starting with '$', so a map entry is never
+     * read back as a reference into the table.
+     *
+     * @param stringTable true to write a string table
+     * @return this serializer
+     */
+    public Serializer withStringTable(boolean stringTable) {
+        this.stringTable = stringTable;
+        return this;
+    }
+
+    /**
+     * Uses a cache of the JSON text of cacheable objects: definitions written once are copied
+     * into later documents instead of being walked and formatted again, until the cache reports
+     * them changed. See {@link FragmentCache} for which objects are cached and when a fragment
+     * is used.
+     * <p>
+     * Applies to JSON documents in the nested layout without positional fields, other than
+     * indexed files and {@link #newTask(Object) tasks}; other output ignores the cache.
+     *
+     * @param cache the cache, or null to write every object
+     * @return this serializer
+     */
+    public Serializer withFragmentCache(FragmentCache cache) {
+        this.fragmentCache = cache;
+        return this;
+    }
+
+    /**
+     * Serializes an object to a file, replacing its contents. If an index is enabled, it is
+     * written to the file's name with ".idx" appended.
+     *
+     * @param object the object to serialize
+     * @param file the file to write
+     * @throws SerializationException if a serialization error occurs or the file cannot be written
+     */
+    public void serialize(Object object, Path file) throws SerializationException {
+        if (!index) {
+            try (OutputStream out = Files.newOutputStream(file)) {
+                serialize(object, out);
+            } catch (IOException e) {
+                throw new SerializationException("Error writing file " + file, e);
+            }
+            return;
+        }
+        if (compress || layout != Layout.NESTED) {
+            throw new SerializationException("Indexed files must be uncompressed and in the nested layout");
+        }
+
+        StringBuilder sb = new StringBuilder();
+        GraphIndex graphIndex = new GraphIndex();
+        serialize(object, new GraphIndex.IndexingWriter(sb, graphIndex));
+        String json = sb.toString();
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        graphIndex.encodeOffsets(json, bytes.length);
+        try {
+            Files.write(file, bytes);
+            graphIndex.write(GraphIndex.indexPath(file));
+        } catch (IOException e) {
+            throw new SerializationException("Error writing file " + file, e);
+        }
+    }
+
     /**
      * Serializes an object to JSON format and writes it to the output stream.
      *
@@ -55,15 +241,240 @@ public class Serializer {
      * @throws SerializationException if a serialization error occurs
      */
     public void serialize(Object object, OutputStream outputStream) throws SerializationException {
-        try (OutputStreamWriter writer = new OutputStreamWriter(outputStream, StandardCharsets.UTF_8)) {
-            String json = serializeObject(object);
-            writer.write(json);
-            writer.flush();
+        try (OutputStream out = compress ? new LzBlockOutputStream(outputStream) : outputStream) {
+            out.write(serializeToString(object).getBytes(StandardCharsets.UTF_8));
+            out.flush();
         } catch (IOException e) {
             throw new SerializationException("Error writing to output stream", e);
         }
     }
 
+    /**
+     * Serializes an object and returns the encoded document, compressed if compression is
+     * enabled. The JSON text is encoded to UTF-8 once, without an intermediate stream.
+     *
+     * @param object the object to serialize
+     * @return the serialized bytes
+     * @throws SerializationException if a serialization error occurs
+     */
+    public byte[] serializeToBytes(Object object) throws SerializationException {
+        byte[] json = serializeToString(object).getBytes(StandardCharsets.UTF_8);
+        if (!compress) {
+            return json;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(json.length / 4 + 64);
+        try (LzBlockOutputStream compressed = new LzBlockOutputStream(out)) {
+            compressed.write(json);
+        } catch (IOException e) {
+            throw new SerializationException("Error compressing output", e);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Serializes an object into a buffer, starting at its position.
+     *
+     * @param object the object to serialize
+     * @param buffer the buffer to write to
+     * @throws SerializationException if a serialization error occurs or the document does not fit
+     */
+    public void serialize(Object object, ByteBuffer buffer) throws SerializationException {
+        serialize(object, buffer, full -> {
+            throw new UncheckedSerializationException(new SerializationException(
+                "Serialized document does not fit in a buffer of " + full.capacity() + " bytes"));
+        });
+    }
+
+    /**
+     * Serializes an object into a buffer, starting at its position. When the buffer is full,
+     * {@code overflow} is called with it and returns the buffer to continue in: the same buffer
+     * after its contents have been sent and it has been cleared, or a larger buffer holding a
+     * copy of the contents written so far.
+     *
+     * @param object the object to serialize
+     * @param buffer the buffer to write to
+     * @param overflow called with a full buffer; returns a buffer with space remaining
+     * @return the buffer the document ends in
+     * @throws SerializationException if a serialization error occurs
+     */
+    public ByteBuffer serialize(Object object, ByteBuffer buffer, UnaryOperator<ByteBuffer> overflow)
+            throws SerializationException {
+        byte[] bytes = serializeToBytes(object);
+        int offset = 0;
+        try {
+            while (true) {
+                int n = Math.min(buffer.remaining(), bytes.length - offset);
+                buffer.put(bytes, offset, n);
+                offset += n;
+                if (offset == bytes.length) {
+                    return buffer;
+                }
+                buffer = overflow.apply(buffer);
+                if (buffer == null || !buffer.hasRemaining()) {
+                    throw new SerializationException("Overflow handler returned no buffer space");
+                }
+            }
+        } catch (UncheckedSerializationException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Serializes an object and writes it to a channel. The document is copied into pooled
+     * direct buffers, which are written with a single gathering write where the channel
+     * supports it. The channel is not closed.
+     * <p>
+     * The channel must be in blocking mode, since writing continues until the whole document
+     * has been accepted. For non-blocking channels, use a {@link #newTask(Object) task} and
+     * write its chunks when the channel is ready.
+     *
+     * @param object the object to serialize
+     * @param channel the channel to write to
+     * @throws SerializationException if a serialization error occurs
+     * @throws IllegalArgumentException if the channel is a SelectableChannel in non-blocking mode
+     */
+    public void serialize(Object object, WritableByteChannel channel) throws SerializationException {
+        if (channel instanceof SelectableChannel && !((SelectableChannel) channel).isBlocking()) {
+            throw new IllegalArgumentException("Channel must be in blocking mode; use newTask for non-blocking channels");
+        }
+        byte[] bytes = serializeToBytes(object);
+        DirectBufferPool pool = DirectBufferPool.shared();
+        ByteBuffer[] batch = new ByteBuffer[(int) Math.min(CHANNEL_BATCH_BUFFERS,
+            ((long) bytes.length + pool.getBufferSize() - 1) / pool.getBufferSize())];
+        try {
+            int offset = 0;
+            while (offset < bytes.length) {
+                int count = 0;
+                while (count < batch.length && offset < bytes.length) {
+                    ByteBuffer buffer = batch[count] != null ? batch[count] : (batch[count] = pool.acquire());
+                    buffer.clear();
+                    int n = Math.min(buffer.remaining(), bytes.length - offset);
+                    buffer.put(bytes, offset, n).flip();
+                    offset += n;
+                    count++;
+                }
+                writeFully(channel, batch, count);
+            }
+        } catch (IOException e) {
+            throw new SerializationException("Error writing to channel", e);
+        } finally {
+            for (ByteBuffer buffer : batch) {
+                pool.release(buffer);
+            }
+        }
+    }
+
+    private static void writeFully(WritableByteChannel channel, ByteBuffer[] buffers, int count) throws IOException {
+        if (channel instanceof GatheringByteChannel) {
+            GatheringByteChannel gathering = (GatheringByteChannel) channel;
+            int first = 0;
+            while (first < count) {
+                gathering.write(buffers, first, count - first);
+                while (first < count && !buffers[first].hasRemaining()) {
+                    first++;
+                }
+            }
+        } else {
+            for (int i = 0; i < count; i++) {
+                while (buffers[i].hasRemaining()) {
+                    channel.write(buffers[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Serializes an object to a JSON string in the configured layout.
+     *
+     * @param object the object to serialize
+     * @return the JSON string representation
+     * @throws SerializationException if a serialization error occurs
+     */
+    String serializeToString(Object object) throws SerializationException {
+        return layout == Layout.OBJECT_TABLE ? serializeObjectTable(object) : serializeObject(object);
+    }
+
+    /**
+     * Serializes an object graph as a sequence of events on a {@link FormatWriter}.
+     * The graph is always written in the nested layout.
+     * <p>
+     * The object graph is walked with an explicit stack of frames instead of recursion, so the
+     * depth of the graph is limited by heap rather than by the thread stack. Each frame emits
+     * the events for one object, collection, map or array a piece at a time and pushes a new
+     * frame when it reaches a nested value.
+     *
+     * @param object the object to serialize
+     * @param writer the writer receiving the events
+     * @throws SerializationException if a serialization error occurs
+     */
+    public void serialize(Object object, FormatWriter writer) throws SerializationException {
+        GraphWalk walk = new GraphWalk(object, writer);
+        try {
+            while (walk.step()) {
+                // Each step emits the next piece of the document
+            }
+        } catch (IOException e) {
+            throw new SerializationException("Error writing to format writer", e);
+        }
+    }
+
+    /**
+     * Creates a task that produces the JSON document for an object in chunks, as a
+     * non-blocking channel accepts them. The task uses this serializer's object IDs and
+     * references, so the serializer must not be used for anything else until it completes.
+     *
+     * @param object the object to serialize
+     * @return the task
+     */
+    public SerializationTask newTask(Object object) {
+        StringBuilder sb = new StringBuilder();
+        return new SerializationTask(new GraphWalk(object, new JsonFormatWriter(sb)), sb);
+    }
+
+    /**
+     * The nested-layout walk of one object graph, advanced a frame step at a time. Between
+     * steps the walk is suspended with its traversal state on the frame stack, which lets
+     * {@link SerializationTask} stop whenever enough output has been produced.
+     */
+    final class GraphWalk {
+        private final Deque<Frame> stack = new ArrayDeque<>();
+        private final Object root;
+        private final FormatWriter out;
+        private boolean started;
+
+        GraphWalk(Object root, FormatWriter out) {
+            this.root = root;
+            this.out = out;
+            // Field schemas are declared once per document
+            declaredSchemas.clear();
+        }
+
+        /**
+         * Emits the next piece of the document.
+         *
+         * @return false once the document is complete
+         * @throws IOException if the writer fails
+         * @throws SerializationException if a field cannot be read
+         */
+        boolean step() throws IOException, SerializationException {
+            try {
+                if (!started) {
+                    started = true;
+                    writeObject(root, out, stack);
+                } else if (!stack.isEmpty()) {
+                    stack.peek().step(out, stack);
+                }
+            } catch (FieldAccessFailure e) {
+                throw e.cause;
+            }
+            if (stack.isEmpty()) {
+                out.flush();
+                return false;
+            }
+            return true;
+        }
+    }
+
     /**
      * Serializes an object to JSON format.
      *
@@ -72,20 +483,63 @@ public class Serializer {
      * @throws SerializationException if a serialization error occurs
      */
     private String serializeObject(Object object) throws SerializationException {
+        StringBuilder sb = new StringBuilder();
+        JsonFormatWriter writer = new JsonFormatWriter(sb, stringTable);
+        fragmentWriter = fragmentCache != null && !positionalFields ? writer : null;
+        try {
+            serialize(object, writer);
+        } finally {
+            fragmentWriter = null;
+            captures.clear();
+        }
+        writer.writeStringTable();
+        return sb.toString();
+    }
+
+    /**
+     * Writes an object in a position without a declared type. Simple cases are written
+     * directly; objects that need their fields written push a frame.
+     *
+     * @param object the object to write
+     * @param out the writer receiving the events
+     * @param stack the frame stack
+     * @throws IOException if the writer fails
+     */
+    private void writeObject(Object object, FormatWriter out, Deque<Frame> stack) throws IOException {
         if (object == null) {
-            return "null";
+            out.writeNull();
+            return;
+        }
+
+        // byte[] in an untyped position (collection element, map value, Object field) - write as
+        // tagged binary so the reader can recognize it without a declared type
+        if (object instanceof byte[]) {
+            out.writeTaggedBinary((byte[]) object);
+            return;
         }
 
         // Check if this object has already been serialized
         if (objectToIdMap.containsKey(object)) {
-            return "{\"$ref\":\"" + objectToIdMap.get(object) + "\"}";
+            for (Capture capture : captures) {
+                capture.external |= !capture.defined.containsKey(object);
+            }
+            out.reference(objectToIdMap.get(object));
+            return;
         }
 
         // Check if this is a JDK Map implementation - serialize as plain JSON map
         // JDK Maps (LinkedHashMap, HashMap, TreeMap, etc.) should be serialized as plain JSON maps,
         // not as objects with $id, $class, and fields metadata
         if (object instanceof Map) {
-            return serializeMap(object, null);
+            beginMap(object, null, out, stack);
+            return;
+        }
+
+        // Collections in untyped positions (such as a root list of records) are written as
+        // arrays, as collection fields are
+        if (object instanceof Collection) {
+            beginCollection(object, out, stack);
+            return;
         }
 
         // Check if this is a JDK class that can be serialized as a simple value
@@ -93,232 +547,734 @@ public class Serializer {
             Object value = ValueSerializer.serializeAsValue(object);
             if (value != null) {
                 // Serialize as a simple value with class metadata
-                String objectId = idGenerator.generateId();
-                objectToIdMap.put(object, objectId);
-                objectRegistry.register(objectId, object);
-                
-                StringBuilder sb = new StringBuilder();
-                sb.append("{");
-                sb.append("\"$id\":\"").append(objectId).append("\",");
-                sb.append("\"$class\":\"").append(object.getClass().getName()).append("\",");
-                sb.append("\"$value\":").append(JsonSerializer.serialize(value)).append("}");
-                return sb.toString();
+                String objectId = defineObject(object);
+                writeValueDefinition(objectId, object, value, out);
+                return;
             }
         }
 
+        // Copy the cached definition of a cacheable object, or capture it as it is written
+        if (fragmentWriter != null && fragmentCache.isCacheable(object)) {
+            FragmentCache.Fragment fragment = fragmentCache.get(object);
+            if (fragment != null && canSplice(fragment)) {
+                for (Map.Entry<Object, String> entry : fragment.defined.entrySet()) {
+                    objectToIdMap.put(entry.getKey(), entry.getValue());
+                    objectRegistry.register(entry.getValue(), entry.getKey());
+                    for (Capture capture : captures) {
+                        capture.defined.put(entry.getKey(), entry.getValue());
+                    }
+                }
+                fragmentWriter.writeEncoded(fragment.json);
+                return;
+            }
+            captures.push(new Capture(object, fragmentWriter.markValue()));
+            stack.push(new CaptureEndFrame());
+        }
+
         // Generate object ID and register it
-        String objectId = idGenerator.generateId();
+        String objectId = defineObject(object);
+
+        beginDefinition(objectId, object, out);
+        stack.push(new ObjectEndFrame(objectId, true));
+        stack.push(new FieldsFrame(object, objectId));
+    }
+
+    /**
+     * Assigns an ID to an object about to be defined and registers it. Objects defined inside
+     * a fragment being captured get IDs reserved by the fragment cache.
+     *
+     * @param object the object
+     * @return the object ID
+     */
+    private String defineObject(Object object) {
+        String objectId = captures.isEmpty()
+            ? idGenerator.generateId()
+            : fragmentCache.nextId(idGenerator.getSerializationKey());
         objectToIdMap.put(object, objectId);
         objectRegistry.register(objectId, object);
+        for (Capture capture : captures) {
+            capture.defined.put(object, objectId);
+        }
+        return objectId;
+    }
 
-        StringBuilder sb = new StringBuilder();
-        sb.append("{");
+    /**
+     * Checks that none of the objects a cached fragment defines has been written already.
+     */
+    private boolean canSplice(FragmentCache.Fragment fragment) {
+        for (Object object : fragment.defined.keySet()) {
+            if (objectToIdMap.containsKey(object) || mapKeyToIdMap.containsKey(object)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The definition of a cacheable object while it is written.
+     */
+    private static final class Capture {
+        final Object root;
+        final int start;
+        final Map<Object, String> defined = new IdentityHashMap<>();
+        // Set when the definition refers to an object defined outside it or uses complex map keys
+        boolean external;
+
+        Capture(Object root, int start) {
+            this.root = root;
+            this.start = start;
+        }
+    }
+
+    /**
+     * Stores the text of a captured definition once it is written, unless it is not
+     * self-contained.
+     */
+    private class CaptureEndFrame extends Frame {
+        @Override
+        void step(FormatWriter out, Deque<Frame> stack) {
+            stack.pop();
+            Capture capture = captures.pop();
+            if (!capture.external) {
+                Object root = capture.root;
+                long version = root instanceof FragmentCache.Versioned
+                    ? ((FragmentCache.Versioned) root).fragmentVersion() : 0;
+                fragmentCache.put(root, fragmentWriter.textSince(capture.start), capture.defined, version);
+            }
+        }
+    }
+
+    /**
+     * Starts an object definition, up to the start of its fields.
+     *
+     * @param objectId the object ID
+     * @param object the object
+     * @param out the writer receiving the events
+     * @throws IOException if the writer fails
+     */
+    private void beginDefinition(String objectId, Object object, FormatWriter out) throws IOException {
+        out.beginObject(objectId, object.getClass().getName());
+
+        // Add serialVersionUID if present
+        Long serialVersionUID = getSerialVersionUID(object.getClass());
+        if (serialVersionUID != null) {
+            out.serialVersionUID(serialVersionUID);
+        }
+
+        if (positionalFields) {
+            Class<?> clazz = object.getClass();
+            out.beginPositionalFields(declaredSchemas.add(clazz) ? fieldNames(clazz) : null);
+        } else {
+            out.beginFields();
+        }
+    }
+
+    /**
+     * Returns the names of the serialized fields of a class, in the order they are written.
+     */
+    private static String[] fieldNames(Class<?> clazz) {
+        Field[] fields = FieldInspector.getAllFields(clazz);
+        String[] names = new String[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            names[i] = fields[i].getName();
+        }
+        return names;
+    }
+
+    /**
+     * Writes the definition of a JDK object that is written as a simple value.
+     *
+     * @param objectId the object ID
+     * @param object the object
+     * @param value the simple value representing the object
+     * @param out the writer receiving the events
+     * @throws IOException if the writer fails
+     */
+    private void writeValueDefinition(String objectId, Object object, Object value, FormatWriter out) throws IOException {
+        out.beginObject(objectId, object.getClass().getName());
+        out.simpleValue();
+        writeScalar(value, out);
+        out.endObject();
+    }
+
+    /**
+     * Writes a simple value (see {@link #isSimpleType(Object)}) with the same representation
+     * {@link JsonSerializer#serialize(Object)} gives it.
+     *
+     * @param value the value to write
+     * @param out the writer receiving the events
+     * @throws IOException if the writer fails
+     */
+    private void writeScalar(Object value, FormatWriter out) throws IOException {
+        if (value == null) {
+            out.writeNull();
+        } else if (value instanceof Boolean) {
+            out.writeBoolean((Boolean) value);
+        } else if (value instanceof Byte || value instanceof Short || value instanceof Integer || value instanceof Long) {
+            out.writeLong(((Number) value).longValue());
+        } else if (value instanceof Float) {
+            out.writeFloat((Float) value);
+        } else if (value instanceof Double) {
+            out.writeDouble((Double) value);
+        } else if (value instanceof Character || value instanceof String) {
+            out.writeString(value.toString());
+        } else if (value instanceof Number) {
+            out.writeNumber((Number) value);
+        } else if (value instanceof java.util.concurrent.atomic.AtomicBoolean) {
+            out.writeBoolean(((java.util.concurrent.atomic.AtomicBoolean) value).get());
+        } else if (value instanceof java.util.concurrent.atomic.AtomicReference) {
+            writeScalar(((java.util.concurrent.atomic.AtomicReference<?>) value).get(), out);
+        } else if (value.getClass().isEnum()) {
+            out.writeString(((Enum<?>) value).name());
+        } else {
+            out.writeString(value.toString());
+        }
+    }
+
+    /**
+     * Writes a collection element or array element.
+     */
+    private void writeElement(Object element, FormatWriter out, Deque<Frame> stack) throws IOException {
+        if (isSimpleType(element)) {
+            // Simple type (or null)
+            writeScalar(element, out);
+        } else {
+            // Complex object - serialize as nested object
+            writeObject(element, out, stack);
+        }
+    }
+
+    /**
+     * Writes a map value.
+     */
+    private void writeMapValue(Object value, FormatWriter out, Deque<Frame> stack) throws IOException {
+        if (isSimpleType(value)) {
+            // Simple type (or null)
+            writeScalar(value, out);
+        } else if (value instanceof Collection) {
+            // Collection - serialize as array
+            beginCollection(value, out, stack);
+        } else if (value instanceof Map) {
+            // Nested Map - serialize as a plain map
+            // This handles JDK Map implementations (LinkedHashMap, HashMap, etc.)
+            // which should be serialized as plain maps, not as objects with metadata
+            // Pass null as parentObjectId since nested maps are JDK Maps, not custom objects
+            beginMap(value, null, out, stack);
+        } else if (value instanceof byte[]) {
+            // byte[] - serialize as tagged binary
+            out.writeTaggedBinary((byte[]) value);
+        } else if (value.getClass().isArray()) {
+            // Array - serialize as array
+            beginArray(value, out, stack);
+        } else {
+            // Complex object - serialize as nested object
+            writeObject(value, out, stack);
+        }
+    }
+
+    /**
+     * Starts writing a collection, handling nested objects.
+     */
+    private void beginCollection(Object collection, FormatWriter out, Deque<Frame> stack) throws IOException {
+        if (collection == null) {
+            out.writeNull();
+            return;
+        }
+        Collection<?> coll = (Collection<?>) collection;
+        out.beginArray(coll.size());
+        stack.push(new CollectionFrame(coll.iterator()));
+    }
+
+    /**
+     * Starts writing a map, handling nested objects.
+     *
+     * @param parentObjectId the ID of the object containing this map
+     */
+    private void beginMap(Object map, String parentObjectId, FormatWriter out, Deque<Frame> stack) throws IOException {
+        if (map == null) {
+            out.writeNull();
+            return;
+        }
+        Map<?, ?> mapObj = (Map<?, ?>) map;
+        out.beginMap(mapObj.size());
+        stack.push(new MapFrame(mapObj.entrySet().iterator(), parentObjectId));
+    }
+
+    /**
+     * Starts writing an array, handling nested objects.
+     */
+    private void beginArray(Object array, FormatWriter out, Deque<Frame> stack) throws IOException {
+        if (array == null) {
+            out.writeNull();
+            return;
+        }
+
+        // Primitive arrays (int[], double[], ...) are written without boxing each element
+        if (array.getClass().getComponentType().isPrimitive()) {
+            out.writePrimitiveArray(array);
+            return;
+        }
+
+        ArrayFrame frame = new ArrayFrame(array);
+        out.beginArray(frame.length);
+        stack.push(frame);
+    }
+
+    /**
+     * A unit of pending output on the serialization stack. Each call to {@link #step} emits
+     * the next piece of output; a frame pops itself when it is complete.
+     */
+    private abstract static class Frame {
+        abstract void step(FormatWriter out, Deque<Frame> stack) throws IOException;
+    }
+
+    /**
+     * Serializes an object graph as a flat "objects" table.
+     * Objects are assigned IDs in the order they are discovered and written breadth-first from a
+     * work queue, so the walk is iterative. Direct object fields are listed in each entry's
+     * "references" section; objects inside collections, maps, arrays and atomic references are
+     * written as {"$ref": id}. Complex map keys use the same "$ref:ID" key format as the nested
+     * layout and are ordinary table entries.
+     * <p>
+     * Roots that cannot be a table entry (maps, collections, arrays and simple values) are
+     * written in the nested layout.
+     *
+     * @param root the root object
+     * @return the JSON string representation
+     * @throws SerializationException if a serialization error occurs
+     */
+    private String serializeObjectTable(Object root) throws SerializationException {
+        if (root == null || root instanceof Map || root instanceof Collection ||
+            root.getClass().isArray() || isSimpleType(root)) {
+            return serializeObject(root);
+        }
+
+        Deque<Object> pending = new ArrayDeque<>();
+        tableReference(root, pending);
+
+        StringBuilder sb = new StringBuilder("{\"objects\":[");
+        boolean first = true;
+        while (!pending.isEmpty()) {
+            if (!first) {
+                sb.append(",");
+            }
+            first = false;
+            appendTableEntry(pending.poll(), pending, sb);
+        }
+        sb.append("]}");
+        return sb.toString();
+    }
+
+    /**
+     * Returns the table ID of an object, assigning one and queueing the object for output
+     * if it has not been seen before.
+     *
+     * @param object the object to reference
+     * @param pending the queue of objects still to be written
+     * @return the object's ID
+     */
+    private String tableReference(Object object, Deque<Object> pending) {
+        String objectId = objectToIdMap.get(object);
+        if (objectId == null) {
+            objectId = idGenerator.generateId();
+            objectToIdMap.put(object, objectId);
+            objectRegistry.register(objectId, object);
+            pending.add(object);
+        }
+        return objectId;
+    }
+
+    /**
+     * Appends one entry of the objects table.
+     *
+     * @param object the object to write
+     * @param pending the queue of objects still to be written
+     * @param sb the StringBuilder to append to
+     * @throws SerializationException if a serialization error occurs
+     */
+    private void appendTableEntry(Object object, Deque<Object> pending, StringBuilder sb) throws SerializationException {
+        sb.append("{\"id\":\"").append(objectToIdMap.get(object)).append("\",");
+        sb.append("\"className\":\"").append(object.getClass().getName()).append("\"");
+
+        // JDK classes that can be written as a simple value
+        if (ValueSerializer.canSerializeAsValue(object.getClass())) {
+            Object value = ValueSerializer.serializeAsValue(object);
+            if (value != null) {
+                sb.append(",\"value\":").append(JsonSerializer.serialize(value)).append("}");
+                return;
+            }
+        }
+
+        Long serialVersionUID = getSerialVersionUID(object.getClass());
+        if (serialVersionUID != null) {
+            sb.append(",\"serialVersionUID\":").append(serialVersionUID);
+        }
+
+        sb.append(",\"fields\":{");
+        StringBuilder references = new StringBuilder();
+        boolean first = true;
+
+        for (Field field : FieldInspector.getAllFields(object.getClass())) {
+            Object fieldValue;
+            try {
+                fieldValue = field.get(object);
+            } catch (IllegalAccessException e) {
+                throw new SerializationException("Error accessing field: " + field.getName(), e);
+            }
 
-        // Add object ID
-        sb.append("\"$id\":\"").append(objectId).append("\",");
+            FieldClassifier.FieldCategory category = FieldClassifier.classify(field);
+            if (fieldValue != null && ((category == FieldClassifier.FieldCategory.OBJECT_REFERENCE && isTableEntry(fieldValue)) ||
+                (category == FieldClassifier.FieldCategory.VALUE_SERIALIZABLE && ValueSerializer.serializeAsValue(fieldValue) == null))) {
+                // Direct object reference - goes into the references section
+                if (references.length() > 0) {
+                    references.append(",");
+                }
+                references.append("\"").append(field.getName()).append("\":\"")
+                          .append(tableReference(fieldValue, pending)).append("\"");
+                continue;
+            }
 
-        // Add class name
-        sb.append("\"$class\":\"").append(object.getClass().getName()).append("\",");
+            if (!first) {
+                sb.append(",");
+            }
+            first = false;
+            sb.append("\"").append(field.getName()).append("\":");
 
-        // Add serialVersionUID if present
-        Long serialVersionUID = getSerialVersionUID(object.getClass());
-        if (serialVersionUID != null) {
-            sb.append("\"serialVersionUID\":").append(serialVersionUID).append(",");
+            switch (category) {
+                case VALUE_SERIALIZABLE:
+                    sb.append(JsonSerializer.serialize(ValueSerializer.serializeAsValue(fieldValue)));
+                    break;
+                case ATOMIC_REFERENCE:
+                    Object refValue = fieldValue == null ? null : ((java.util.concurrent.atomic.AtomicReference<?>) fieldValue).get();
+                    appendTableValue(refValue, pending, sb);
+                    break;
+                case ARRAY:
+                    if (field.getType() == byte[].class) {
+                        sb.append(serializeBase64((byte[]) fieldValue));
+                    } else {
+                        appendTableValue(fieldValue, pending, sb);
+                    }
+                    break;
+                case COLLECTION:
+                case MAP:
+                case OBJECT_REFERENCE:
+                    appendTableValue(fieldValue, pending, sb);
+                    break;
+                default:
+                    // Native JSON types - serialize directly
+                    sb.append(JsonSerializer.serialize(fieldValue));
+                    break;
+            }
         }
-
-        // Serialize fields
-        sb.append("\"fields\":{");
-        serializeFields(object, objectId, sb);
         sb.append("}");
 
-        // Add $mapKeys section only if this object has maps with complex keys
-        if (objectsWithComplexMapKeys.contains(objectId)) {
-            sb.append(",");
-            serializeMapKeys(sb);
+        if (references.length() > 0) {
+            sb.append(",\"references\":{").append(references).append("}");
         }
-
         sb.append("}");
+    }
 
-        return sb.toString();
+    /**
+     * Checks whether a value of a field without a more specific type becomes an entry of the
+     * objects table. Collections, maps, arrays and simple values are written inline instead,
+     * as they are in a collection.
+     */
+    private boolean isTableEntry(Object value) {
+        return !isSimpleType(value) && !(value instanceof Collection) && !(value instanceof Map)
+            && !value.getClass().isArray();
     }
 
     /**
-     * Serializes all fields of an object.
+     * Appends a value in a position without a declared type (collection element, map value,
+     * array element or atomic reference) for the objects table. Objects become {"$ref": id}.
      *
-     * @param object the object whose fields to serialize
-     * @param objectId ID of the object being serialized
+     * @param value the value to write
+     * @param pending the queue of objects still to be written
      * @param sb the StringBuilder to append to
      * @throws SerializationException if a serialization error occurs
      */
-    private void serializeFields(Object object, String objectId, StringBuilder sb) throws SerializationException {
-        Field[] fields = FieldInspector.getAllFields(object.getClass());
-        boolean first = true;
-
-        for (Field field : fields) {
-            try {
+    private void appendTableValue(Object value, Deque<Object> pending, StringBuilder sb) throws SerializationException {
+        if (value == null || isSimpleType(value)) {
+            sb.append(JsonSerializer.serialize(value));
+        } else if (value instanceof byte[]) {
+            sb.append(serializeBase64Marker((byte[]) value));
+        } else if (value instanceof Collection) {
+            sb.append("[");
+            boolean first = true;
+            for (Object element : (Collection<?>) value) {
                 if (!first) {
                     sb.append(",");
                 }
                 first = false;
-
-                String fieldName = field.getName();
-                Object fieldValue = field.get(object);
-
-                sb.append("\"").append(fieldName).append("\":");
-
-                FieldClassifier.FieldCategory category = FieldClassifier.classify(field);
-
-                switch (category) {
-                    case PRIMITIVE:
-                    case STRING:
-                    case NUMBER:
-                    case BIG_DECIMAL:
-                    case ATOMIC_BOOLEAN:
-                    case ATOMIC_INTEGER:
-                    case ATOMIC_LONG:
-                    case ENUM:
-                        // Native JSON types - serialize directly
-                        sb.append(JsonSerializer.serialize(fieldValue));
-                        break;
-                    
-                    case VALUE_SERIALIZABLE:
-                        // Value-serializable types - serialize using ValueSerializer
-                        Object value = ValueSerializer.serializeAsValue(fieldValue);
-                        if (value != null) {
-                            // Serialize the value (which may be a String or Number)
-                            sb.append(JsonSerializer.serialize(value));
-                        } else {
-                            // Fallback to object serialization
-                            sb.append(serializeObject(fieldValue));
-                        }
-                        break;
-                    
-                    case ATOMIC_REFERENCE:
-                        // AtomicReference - extract the referenced value and serialize appropriately
-                        if (fieldValue == null) {
-                            sb.append("null");
-                        } else {
-                            Object refValue = ((java.util.concurrent.atomic.AtomicReference<?>) fieldValue).get();
-                            if (refValue == null) {
-                                sb.append("null");
-                            } else if (isSimpleType(refValue)) {
-                                // Simple type - use JsonSerializer
-                                sb.append(JsonSerializer.serialize(refValue));
-                            } else {
-                                // Complex object - serialize as nested object
-                                sb.append(serializeObject(refValue));
-                            }
-                        }
-                        break;
-
-                    case COLLECTION:
-                        // Collection - serialize elements, handling nested objects
-                        sb.append(serializeCollection(fieldValue));
-                        break;
-
-                    case MAP:
-                        // Map - serialize entries, handling nested objects
-                        // Pass the current object ID to track if this map has complex keys
-                        sb.append(serializeMap(fieldValue, objectId));
-                        break;
-
-                    case ARRAY:
-                        // Array - serialize elements, handling nested objects
-                        sb.append(serializeArray(fieldValue));
-                        break;
-
-                    case OBJECT_REFERENCE:
-                        // Object reference - serialize as nested object
-                        if (fieldValue == null) {
-                            sb.append("null");
-                        } else {
-                            sb.append(serializeObject(fieldValue));
-                        }
-                        break;
+                appendTableValue(element, pending, sb);
+            }
+            sb.append("]");
+        } else if (value.getClass().isArray()) {
+            if (value.getClass().getComponentType().isPrimitive()) {
+                JsonSerializer.appendPrimitiveArray(value, sb);
+            } else {
+                sb.append("[");
+                int length = Array.getLength(value);
+                for (int i = 0; i < length; i++) {
+                    if (i > 0) {
+                        sb.append(",");
+                    }
+                    appendTableValue(Array.get(value, i), pending, sb);
                 }
-            } catch (IllegalAccessException e) {
-                throw new SerializationException("Error accessing field: " + field.getName(), e);
+                sb.append("]");
+            }
+        } else if (value instanceof Map) {
+            sb.append("{");
+            boolean first = true;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                if (!first) {
+                    sb.append(",");
+                }
+                first = false;
+                Object key = entry.getKey();
+                String keyString;
+                if (key == null || isSimpleMapKey(key)) {
+                    keyString = simpleKeyString(key);
+                } else {
+                    // Complex object key - the key object is an ordinary table entry
+                    keyString = "$ref:" + tableReference(key, pending);
+                }
+                sb.append("\"").append(escapeJsonKey(keyString)).append("\":");
+                appendTableValue(entry.getValue(), pending, sb);
+            }
+            sb.append("}");
+        } else {
+            sb.append("{\"$ref\":\"").append(tableReference(value, pending)).append("\"}");
+        }
+    }
+
+    /**
+     * Writes the fields of an object, one field per step.
+     */
+    private class FieldsFrame extends Frame {
+        private final Object object;
+        private final String objectId;
+        private final Field[] fields;
+        private int index;
+
+        FieldsFrame(Object object, String objectId) {
+            this.object = object;
+            this.objectId = objectId;
+            this.fields = FieldInspector.getAllFields(object.getClass());
+        }
+
+        @Override
+        void step(FormatWriter out, Deque<Frame> stack) throws IOException {
+            if (index == fields.length) {
+                out.endFields();
+                stack.pop();
+                return;
             }
+            Field field = fields[index++];
+            writeField(object, objectId, field, out, stack);
         }
     }
 
     /**
-     * Serializes a collection, handling nested objects.
+     * Writes one field of an object: its name, then its value as its declared type calls for.
+     * Values that need frames of their own push them.
      *
-     * @param collection the collection to serialize
-     * @return the JSON string representation
-     * @throws SerializationException if a serialization error occurs
+     * @param object the object
+     * @param objectId the ID of the object
+     * @param field the field
+     * @param out the writer receiving the events
+     * @param stack the frame stack
+     * @throws IOException if the writer fails
      */
-    private String serializeCollection(Object collection) throws SerializationException {
-        if (collection == null) {
-            return "null";
+    private void writeField(Object object, String objectId, Field field, FormatWriter out, Deque<Frame> stack) throws IOException {
+        Object fieldValue;
+        try {
+            fieldValue = field.get(object);
+        } catch (IllegalAccessException e) {
+            throw new FieldAccessFailure(new SerializationException("Error accessing field: " + field.getName(), e));
         }
 
-        Collection<?> coll = (Collection<?>) collection;
-        StringBuilder sb = new StringBuilder("[");
-        boolean first = true;
+        out.field(field.getName());
+
+        FieldClassifier.FieldCategory category = FieldClassifier.classify(field);
+
+        switch (category) {
+            case PRIMITIVE:
+            case STRING:
+            case NUMBER:
+            case BIG_DECIMAL:
+            case ATOMIC_BOOLEAN:
+            case ATOMIC_INTEGER:
+            case ATOMIC_LONG:
+            case ENUM:
+                // Native types - serialize directly
+                writeScalar(fieldValue, out);
+                break;
+
+            case VALUE_SERIALIZABLE:
+                // Value-serializable types - serialize using ValueSerializer
+                Object value = ValueSerializer.serializeAsValue(fieldValue);
+                if (value != null) {
+                    // Serialize the value (which may be a String or Number)
+                    writeScalar(value, out);
+                } else {
+                    // Fallback to object serialization
+                    writeObject(fieldValue, out, stack);
+                }
+                break;
+
+            case ATOMIC_REFERENCE:
+                // AtomicReference - extract the referenced value and serialize appropriately
+                Object refValue = fieldValue == null ? null : ((java.util.concurrent.atomic.AtomicReference<?>) fieldValue).get();
+                writeElement(refValue, out, stack);
+                break;
+
+            case COLLECTION:
+                // Collection - serialize elements, handling nested objects
+                beginCollection(fieldValue, out, stack);
+                break;
+
+            case MAP:
+                // Map - serialize entries, handling nested objects
+                // Pass the current object ID to track if this map has complex keys
+                beginMap(fieldValue, objectId, out, stack);
+                break;
+
+            case ARRAY:
+                if (field.getType() == byte[].class) {
+                    // byte[] field - the declared type tells the reader to expect binary data
+                    if (fieldValue == null) {
+                        out.writeNull();
+                    } else {
+                        out.writeBinary((byte[]) fieldValue);
+                    }
+                } else {
+                    // Array - serialize elements, handling nested objects
+                    beginArray(fieldValue, out, stack);
+                }
+                break;
 
-        for (Object element : coll) {
-            if (!first) {
-                sb.append(",");
-            }
-            first = false;
+            case OBJECT_REFERENCE:
+                // Object reference - serialize as nested object
+                writeObject(fieldValue, out, stack);
+                break;
+        }
+    }
 
-            if (element == null) {
-                sb.append("null");
-            } else if (isSimpleType(element)) {
-                // Simple type - use JsonSerializer
-                sb.append(JsonSerializer.serialize(element));
-            } else {
-                // Complex object - serialize as nested object
-                sb.append(serializeObject(element));
+    /**
+     * Carries a SerializationException for an inaccessible field out of a frame step.
+     */
+    private static class FieldAccessFailure extends RuntimeException {
+        final SerializationException cause;
+
+        FieldAccessFailure(SerializationException cause) {
+            super(cause);
+            this.cause = cause;
+        }
+    }
+
+    /**
+     * Closes an object definition once its fields are written, adding the $mapKeys section
+     * if the object has maps with complex keys.
+     */
+    private class ObjectEndFrame extends Frame {
+        private final String objectId;
+        private final boolean allowMapKeys;
+        private boolean mapKeysWritten;
+
+        ObjectEndFrame(String objectId, boolean allowMapKeys) {
+            this.objectId = objectId;
+            this.allowMapKeys = allowMapKeys;
+        }
+
+        @Override
+        void step(FormatWriter out, Deque<Frame> stack) throws IOException {
+            if (mapKeysWritten) {
+                out.endMapKeys();
+            } else if (allowMapKeys && objectsWithComplexMapKeys.contains(objectId)) {
+                // Add $mapKeys section only if this object has maps with complex keys
+                mapKeysWritten = true;
+                out.beginMapKeys();
+                stack.push(new MapKeysFrame(new ArrayList<>(mapKeyToIdMap.entrySet())));
+                return;
             }
+            out.endObject();
+            stack.pop();
         }
+    }
 
-        sb.append("]");
-        return sb.toString();
+    /**
+     * Writes the elements of a collection.
+     */
+    private class CollectionFrame extends Frame {
+        private final Iterator<?> elements;
+
+        CollectionFrame(Iterator<?> elements) {
+            this.elements = elements;
+        }
+
+        @Override
+        void step(FormatWriter out, Deque<Frame> stack) throws IOException {
+            if (!elements.hasNext()) {
+                out.endArray();
+                stack.pop();
+                return;
+            }
+            writeElement(elements.next(), out, stack);
+        }
     }
 
     /**
-     * Serializes a map, handling nested objects.
-     *
-     * @param map the map to serialize
-     * @param parentObjectId the ID of the object containing this map
-     * @return the JSON string representation
-     * @throws SerializationException if a serialization error occurs
+     * Writes the elements of an object array.
      */
-    private String serializeMap(Object map, String parentObjectId) throws SerializationException {
-        if (map == null) {
-            return "null";
+    private class ArrayFrame extends Frame {
+        private final Object array;
+        private final int length;
+        private int index;
+
+        ArrayFrame(Object array) {
+            this.array = array;
+            this.length = Array.getLength(array);
         }
 
-        Map<?, ?> mapObj = (Map<?, ?>) map;
-        StringBuilder sb = new StringBuilder("{");
-        boolean first = true;
+        @Override
+        void step(FormatWriter out, Deque<Frame> stack) throws IOException {
+            if (index == length) {
+                out.endArray();
+                stack.pop();
+                return;
+            }
+            writeElement(Array.get(array, index++), out, stack);
+        }
+    }
 
-        for (Map.Entry<?, ?> entry : mapObj.entrySet()) {
-            if (!first) {
-                sb.append(",");
+    /**
+     * Writes the entries of a map.
+     */
+    private class MapFrame extends Frame {
+        private final Iterator<? extends Map.Entry<?, ?>> entries;
+        private final String parentObjectId;
+
+        MapFrame(Iterator<? extends Map.Entry<?, ?>> entries, String parentObjectId) {
+            this.entries = entries;
+            this.parentObjectId = parentObjectId;
+        }
+
+        @Override
+        void step(FormatWriter out, Deque<Frame> stack) throws IOException {
+            if (!entries.hasNext()) {
+                out.endMap();
+                stack.pop();
+                return;
             }
-            first = false;
 
-            // Key - serialize as string without double-quoting
+            Map.Entry<?, ?> entry = entries.next();
+
+            // Key - written in its string form
             Object key = entry.getKey();
-            String keyString;
-            // For enum keys, use the name() method to get the enum constant name
-            if (key != null && key.getClass().isEnum()) {
-                keyString = ((Enum<?>) key).name();
-            } else if (key != null && isSimpleMapKey(key)) {
-                // Simple map key (primitive, String, Number, Atomic, or value-serializable JDK type like UUID)
-                if (ValueSerializer.canSerializeAsValue(key.getClass())) {
-                    // Use ValueSerializer for canonical string representation (e.g., UUID, Date)
-                    Object serializedValue = ValueSerializer.serializeAsValue(key);
-                    keyString = serializedValue != null ? serializedValue.toString() : key.toString();
-                } else {
-                    // Standard simple types - use toString()
-                    keyString = key.toString();
-                }
-            } else if (key != null) {
+            if (isSimpleMapKey(key)) {
+                out.key(simpleKeyString(key));
+            } else {
                 // Complex object key - register and use reference
                 String keyId;
                 if (mapKeyToIdMap.containsKey(key)) {
@@ -329,81 +1285,86 @@ public class Serializer {
                     // Also register in the main object registry
                     objectRegistry.register(keyId, key);
                 }
-                keyString = "$ref:" + keyId;
+                for (Capture capture : captures) {
+                    capture.external = true;
+                }
+                out.referenceKey(keyId);
                 // Mark the parent object as having a map with complex keys
                 if (parentObjectId != null) {
                     objectsWithComplexMapKeys.add(parentObjectId);
                 }
-            } else {
-                keyString = "null";
             }
-            sb.append("\"").append(escapeJsonKey(keyString)).append("\":");
 
             // Value
-            Object value = entry.getValue();
-            if (value == null) {
-                sb.append("null");
-            } else if (isSimpleType(value)) {
-                // Simple type - use JsonSerializer
-                sb.append(JsonSerializer.serialize(value));
-            } else if (value instanceof Collection) {
-                // Collection - serialize as JSON array
-                sb.append(serializeCollection(value));
-            } else if (value instanceof Map) {
-                // Nested Map - serialize as JSON map (recursively)
-                // This handles JDK Map implementations (LinkedHashMap, HashMap, etc.)
-                // which should be serialized as plain JSON maps, not as objects with metadata
-                // Pass null as parentObjectId since nested maps are JDK Maps, not custom objects
-                sb.append(serializeMap(value, null));
-            } else if (value.getClass().isArray()) {
-                // Array - serialize as JSON array
-                sb.append(serializeArray(value));
-            } else {
-                // Complex object - serialize as nested object
-                sb.append(serializeObject(value));
-            }
+            writeMapValue(entry.getValue(), out, stack);
         }
-
-        sb.append("}");
-        return sb.toString();
     }
 
     /**
-     * Serializes an array, handling nested objects.
-     *
-     * @param array the array to serialize
-     * @return the JSON string representation
-     * @throws SerializationException if a serialization error occurs
+     * Writes the $mapKeys section containing complex objects used as map keys.
      */
-    private String serializeArray(Object array) throws SerializationException {
-        if (array == null) {
-            return "null";
-        }
+    private class MapKeysFrame extends Frame {
+        private final Iterator<Map.Entry<Object, String>> keys;
 
-        int length = Array.getLength(array);
-        StringBuilder sb = new StringBuilder("[");
-        boolean first = true;
+        MapKeysFrame(List<Map.Entry<Object, String>> keys) {
+            this.keys = keys.iterator();
+        }
 
-        for (int i = 0; i < length; i++) {
-            if (!first) {
-                sb.append(",");
+        @Override
+        void step(FormatWriter out, Deque<Frame> stack) throws IOException {
+            if (!keys.hasNext()) {
+                stack.pop();
+                return;
             }
-            first = false;
 
-            Object element = Array.get(array, i);
-            if (element == null) {
-                sb.append("null");
-            } else if (isSimpleType(element)) {
-                // Simple type - use JsonSerializer
-                sb.append(JsonSerializer.serialize(element));
-            } else {
-                // Complex object - serialize as nested object
-                sb.append(serializeObject(element));
+            Map.Entry<Object, String> entry = keys.next();
+            Object key = entry.getKey();
+            String keyId = entry.getValue();
+
+            out.mapKey(keyId);
+
+            // Check if this key can be serialized as a simple value (for JDK classes like UUID)
+            if (ValueSerializer.canSerializeAsValue(key.getClass())) {
+                Object value = ValueSerializer.serializeAsValue(key);
+                if (value != null) {
+                    writeValueDefinition(keyId, key, value, out);
+                    return;
+                }
             }
+
+            // Serialize the key object as a full object definition
+            // Note: We use the same ID that was generated for the map key reference for consistency
+            objectToIdMap.put(key, keyId);
+            objectRegistry.register(keyId, key);
+
+            beginDefinition(keyId, key, out);
+            stack.push(new ObjectEndFrame(keyId, false));
+            stack.push(new FieldsFrame(key, keyId));
         }
+    }
 
-        sb.append("]");
-        return sb.toString();
+    /**
+     * Serializes a byte array as a Base64 JSON string.
+     *
+     * @param bytes the byte array to serialize
+     * @return the JSON string representation
+     */
+    private String serializeBase64(byte[] bytes) {
+        if (bytes == null) {
+            return "null";
+        }
+        return "\"" + Base64.getEncoder().encodeToString(bytes) + "\"";
+    }
+
+    /**
+     * Serializes a byte array as a marker object holding a Base64 string, for positions
+     * where the reader has no declared type to tell it the string is binary data.
+     *
+     * @param bytes the byte array to serialize
+     * @return the JSON string representation
+     */
+    private String serializeBase64Marker(byte[] bytes) {
+        return "{\"$base64\":" + serializeBase64(bytes) + "}";
     }
 
     /**
@@ -486,6 +1447,37 @@ public class Serializer {
         return false;
     }
 
+    /**
+     * Returns the string form of a simple map key (see {@link #isSimpleMapKey(Object)}).
+     * A key starting with '$' gets a second '$', so that a map of user data can never read
+     * back as one of the format's markers, such as {"$base64": ...} or a "$ref:" key; the
+     * Deserializer removes it again.
+     *
+     * @param key the key
+     * @return the key as written in a JSON map
+     */
+    private static String simpleKeyString(Object key) {
+        String keyString = keyText(key);
+        return keyString.startsWith("$") ? "$" + keyString : keyString;
+    }
+
+    private static String keyText(Object key) {
+        if (key == null) {
+            return "null";
+        }
+        // For enum keys, use the name() method to get the enum constant name
+        if (key.getClass().isEnum()) {
+            return ((Enum<?>) key).name();
+        }
+        if (ValueSerializer.canSerializeAsValue(key.getClass())) {
+            // Use ValueSerializer for canonical string representation (e.g., UUID, Date)
+            Object serializedValue = ValueSerializer.serializeAsValue(key);
+            return serializedValue != null ? serializedValue.toString() : key.toString();
+        }
+        // Standard simple types - use toString()
+        return key.toString();
+    }
+
     /**
      * Escapes special characters in a string for JSON key use.
      *
@@ -533,67 +1525,6 @@ public class Serializer {
         return sb.toString();
     }
 
-    /**
-     * Serializes the $mapKeys section containing complex objects used as map keys.
-     *
-     * @param sb the StringBuilder to append to
-     * @throws SerializationException if a serialization error occurs
-     */
-    private void serializeMapKeys(StringBuilder sb) throws SerializationException {
-        sb.append("\"$mapKeys\":{");
-        boolean first = true;
-        
-        for (Map.Entry<Object, String> entry : mapKeyToIdMap.entrySet()) {
-            if (!first) {
-                sb.append(",");
-            }
-            first = false;
-            
-            Object key = entry.getKey();
-            String keyId = entry.getValue();
-            
-            sb.append("\"").append(keyId).append("\":");
-            
-            // Check if this key can be serialized as a simple value (for JDK classes like UUID)
-            if (ValueSerializer.canSerializeAsValue(key.getClass())) {
-                Object value = ValueSerializer.serializeAsValue(key);
-                if (value != null) {
-                    // Serialize as a simple value with class metadata
-                    sb.append("{");
-                    sb.append("\"$id\":\"").append(keyId).append("\",");
-                    sb.append("\"$class\":\"").append(key.getClass().getName()).append("\",");
-                    sb.append("\"$value\":").append(JsonSerializer.serialize(value)).append("}");
-                    continue;
-                }
-            }
-            
-            // Serialize the key object as a full object definition
-            // Note: We use the same ID that was generated in serializeMap() for consistency
-            String objectId = keyId; // Use the same ID as the map key reference
-            objectToIdMap.put(key, objectId);
-            objectRegistry.register(objectId, key);
-            
-            sb.append("{");
-            sb.append("\"$id\":\"").append(objectId).append("\",");
-            sb.append("\"$class\":\"").append(key.getClass().getName()).append("\",");
-            
-            // Add serialVersionUID if present
-            Long serialVersionUID = getSerialVersionUID(key.getClass());
-            if (serialVersionUID != null) {
-                sb.append("\"serialVersionUID\":").append(serialVersionUID).append(",");
-            }
-            
-            // Serialize fields
-            sb.append("\"fields\":{");
-            serializeFields(key, keyId, sb);
-            sb.append("}");
-            
-            sb.append("}");
-        }
-        
-        sb.append("}");
-    }
-
     /**
      * Gets the serialVersionUID from a class if it exists.
      * Skips JDK and system classes to avoid module system access restrictions.
@@ -621,6 +1552,172 @@ public class Serializer {
         }
     }
 
+    /**
+     * Returns the ID this serializer gave an object in an earlier document.
+     *
+     * @param object the object
+     * @return the ID, or null if the object has not been written
+     */
+    String objectId(Object object) {
+        return objectToIdMap.get(object);
+    }
+
+    /**
+     * Forgets an object, so it is written as a new object if it is met again.
+     *
+     * @param object the object
+     */
+    void release(Object object) {
+        String id = objectToIdMap.remove(object);
+        if (id != null) {
+            objectRegistry.remove(id);
+            objectsWithComplexMapKeys.remove(id);
+        }
+    }
+
+    /**
+     * Writes a patch document for {@link DeltaSerializer}: the root, the changed fields of
+     * objects written earlier, and the IDs of objects no longer in the graph. Objects not
+     * written before are defined where the patch first reaches them, and objects written
+     * before are referenced, as in any document.
+     *
+     * @param root the root object
+     * @param changes the changed objects
+     * @param released the IDs of objects that are no longer reachable
+     * @param out the writer receiving the events
+     * @throws SerializationException if a serialization error occurs
+     */
+    void writePatch(Object root, List<DeltaSerializer.Change> changes, List<String> released, FormatWriter out)
+            throws SerializationException {
+        Deque<Frame> stack = new ArrayDeque<>();
+        try {
+            out.beginMap(4);
+            out.key("$patch");
+            out.writeLong(1);
+            out.key("root");
+            stack.push(new PatchFrame(changes, released));
+            writeObject(root, out, stack);
+            while (!stack.isEmpty()) {
+                stack.peek().step(out, stack);
+            }
+            out.flush();
+        } catch (FieldAccessFailure e) {
+            throw e.cause;
+        } catch (IOException e) {
+            throw new SerializationException("Error writing patch", e);
+        }
+    }
+
+    /**
+     * Writes the "changes" and "released" sections of a patch, one changed object per step.
+     */
+    private class PatchFrame extends Frame {
+        private final int changeCount;
+        private final Iterator<DeltaSerializer.Change> changes;
+        private final List<String> released;
+        private boolean started;
+
+        PatchFrame(List<DeltaSerializer.Change> changes, List<String> released) {
+            this.changeCount = changes.size();
+            this.changes = changes.iterator();
+            this.released = released;
+        }
+
+        @Override
+        void step(FormatWriter out, Deque<Frame> stack) throws IOException {
+            if (!started) {
+                started = true;
+                out.key("changes");
+                out.beginArray(changeCount);
+                return;
+            }
+            if (changes.hasNext()) {
+                DeltaSerializer.Change change = changes.next();
+                out.beginObject(change.id, change.object.getClass().getName());
+                out.beginFields();
+                stack.push(new ObjectEndFrame(change.id, true));
+                stack.push(new ChangedFieldsFrame(change));
+                return;
+            }
+            out.endArray();
+            out.key("released");
+            out.beginArray(released.size());
+            for (String id : released) {
+                out.writeString(id);
+            }
+            out.endArray();
+            out.endMap();
+            stack.pop();
+        }
+    }
+
+    /**
+     * Writes the changed fields of an object in a patch, one field per step. A list that
+     * only grew is written as {"$append": [new elements]}, and a map with a few changed
+     * entries as {"$remove": [keys], "$put": {entries}}; other fields are written in full.
+     */
+    private class ChangedFieldsFrame extends Frame {
+        private final DeltaSerializer.Change change;
+        private int index;
+
+        ChangedFieldsFrame(DeltaSerializer.Change change) {
+            this.change = change;
+        }
+
+        @Override
+        void step(FormatWriter out, Deque<Frame> stack) throws IOException {
+            if (index == change.fields.length) {
+                out.endFields();
+                stack.pop();
+                return;
+            }
+            Field field = change.fields[index];
+            Object edit = change.edits[index++];
+            if (edit == null) {
+                writeField(change.object, change.id, field, out, stack);
+                return;
+            }
+
+            Object fieldValue;
+            try {
+                fieldValue = field.get(change.object);
+            } catch (IllegalAccessException e) {
+                throw new FieldAccessFailure(new SerializationException("Error accessing field: " + field.getName(), e));
+            }
+            out.field(field.getName());
+            if (edit instanceof DeltaSerializer.Append) {
+                List<?> list = (List<?>) fieldValue;
+                out.beginMap(1);
+                out.key("$append");
+                stack.push(new MapEndFrame());
+                beginCollection(new ArrayList<>(list.subList(((DeltaSerializer.Append) edit).from, list.size())), out, stack);
+            } else {
+                DeltaSerializer.MapEdit mapEdit = (DeltaSerializer.MapEdit) edit;
+                out.beginMap(2);
+                out.key("$remove");
+                out.beginArray(mapEdit.removed.size());
+                for (Object key : mapEdit.removed) {
+                    out.writeString(simpleKeyString(key));
+                }
+                out.endArray();
+                out.key("$put");
+                stack.push(new MapEndFrame());
+                beginMap(mapEdit.put, change.id, out, stack);
+            }
+        }
+    }
+
+    /**
+     * Closes a map once the frame above it has written its last value.
+     */
+    private static class MapEndFrame extends Frame {
+        @Override
+        void step(FormatWriter out, Deque<Frame> stack) throws IOException {
+            out.endMap();
+            stack.pop();
+        }
+    }
+
     /**
      * Returns the current object ID counter value.
      *
@@ -0,0 +1,148 @@
+package com.pjr22.serialization.core;
+
+import com.pjr22.serialization.compress.LzBlockOutputStream;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes many objects to one output stream as a sequence of framed JSON documents.
+ * <p>
+ * Each call to {@link #write(Object)} serializes one object graph as an independent document:
+ * references are only shared within a record. Object IDs keep counting across records, so
+ * every ID in the stream is unique. The underlying stream stays open until {@link #close()}.
+ * Read the records back with {@link DeserializerStream}.
+ */
+public class SerializerStream implements Closeable, Flushable {
+
+    /**
+     * How records are delimited in the stream.
+     */
+    public enum Framing {
+        /**
+         * One JSON document per line (newline-delimited JSON). The JSON writer escapes line
+         * breaks inside strings, so a record never spans more than one line.
+         */
+        NEWLINE,
+        /** Each document is preceded by its length in bytes as a 4-byte big-endian integer */
+        LENGTH_PREFIXED
+    }
+
+    private OutputStream outputStream;
+    private final Framing framing;
+    private final String serializationKey;
+    private int nextId;
+    private Serializer.Layout layout = Serializer.Layout.NESTED;
+    private boolean compress;
+    private boolean started;
+
+    /**
+     * Creates a new SerializerStream.
+     *
+     * @param outputStream the output stream to write records to
+     * @param serializationKey the prefix to use for all generated object IDs
+     * @param startingId the starting value for the object ID counter
+     * @param framing how records are delimited
+     */
+    public SerializerStream(OutputStream outputStream, String serializationKey, int startingId, Framing framing) {
+        this.outputStream = new BufferedOutputStream(outputStream);
+        this.serializationKey = serializationKey;
+        this.nextId = startingId;
+        this.framing = framing;
+    }
+
+    /**
+     * Selects the layout of each record.
+     *
+     * @param layout the layout to write
+     * @return this stream
+     */
+    public SerializerStream withLayout(Serializer.Layout layout) {
+        this.layout = layout;
+        return this;
+    }
+
+    /**
+     * Compresses the whole stream of records with an {@link LzBlockOutputStream}.
+     * Records are compressed in blocks as they are written, and {@link DeserializerStream}
+     * decompresses them block by block. Must be selected before the first record is written.
+     *
+     * @param compress true to compress the stream
+     * @return this stream
+     * @throws IllegalStateException if a record has already been written
+     */
+    public SerializerStream withCompression(boolean compress) {
+        if (started) {
+            throw new IllegalStateException("Compression must be selected before the first record is written");
+        }
+        this.compress = compress;
+        return this;
+    }
+
+    /**
+     * Serializes an object and writes it as the next record.
+     *
+     * @param object the object to serialize
+     * @throws SerializationException if a serialization error occurs
+     */
+    public void write(Object object) throws SerializationException {
+        Serializer serializer = new Serializer(serializationKey, nextId).withLayout(layout);
+        byte[] record = serializer.serializeToString(object).getBytes(StandardCharsets.UTF_8);
+        nextId = serializer.getCounter();
+
+        try {
+            if (!started) {
+                started = true;
+                if (compress) {
+                    outputStream = new LzBlockOutputStream(outputStream);
+                }
+            }
+            if (framing == Framing.LENGTH_PREFIXED) {
+                int length = record.length;
+                outputStream.write(length >>> 24);
+                outputStream.write(length >>> 16);
+                outputStream.write(length >>> 8);
+                outputStream.write(length);
+            }
+            outputStream.write(record);
+            if (framing == Framing.NEWLINE) {
+                outputStream.write('\n');
+            }
+        } catch (IOException e) {
+            throw new SerializationException("Error writing to output stream", e);
+        }
+    }
+
+    /**
+     * Returns the next object ID counter value.
+     *
+     * @return the counter value the next record starts from
+     */
+    public int getCounter() {
+        return nextId;
+    }
+
+    /**
+     * Flushes buffered records to the underlying stream.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public void flush() throws IOException {
+        outputStream.flush();
+    }
+
+    /**
+     * Flushes buffered records and closes the underlying stream.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public void close() throws IOException {
+        outputStream.close();
+    }
+}
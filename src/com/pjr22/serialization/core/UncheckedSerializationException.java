@@ -0,0 +1,27 @@
+package com.pjr22.serialization.core;
+
+/**
+ * Wraps a {@link SerializationException} where a checked exception cannot be thrown,
+ * such as from an {@link java.util.Iterator} or a {@link java.util.stream.Stream}.
+ */
+public class UncheckedSerializationException extends RuntimeException {
+
+    /**
+     * Constructs a new UncheckedSerializationException wrapping the specified cause.
+     *
+     * @param cause the serialization exception
+     */
+    public UncheckedSerializationException(SerializationException cause) {
+        super(cause.getMessage(), cause);
+    }
+
+    /**
+     * Returns the wrapped serialization exception.
+     *
+     * @return the cause of this exception
+     */
+    @Override
+    public synchronized SerializationException getCause() {
+        return (SerializationException) super.getCause();
+    }
+}
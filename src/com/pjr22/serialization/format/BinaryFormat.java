@@ -0,0 +1,69 @@
+package com.pjr22.serialization.format;
+
+/**
+ * Constants of the binary format written by {@link BinaryFormatWriter} and read by
+ * {@link BinaryFormatReader}.
+ * <p>
+ * Values start with a one-byte tag:
+ * <pre>
+ * NULL, FALSE, TRUE
+ * INTEGER        zigzag varint
+ * FLOAT          4 bytes IEEE 754
+ * DOUBLE         8 bytes IEEE 754
+ * NUMBER         length-prefixed decimal text (BigDecimal, BigInteger)
+ * STRING         length-prefixed UTF-8
+ * BINARY         length-prefixed bytes of a typed byte[]
+ * TAGGED_BINARY  length-prefixed bytes of a byte[] in an untyped position
+ * REFERENCE      id
+ * ARRAY          varint size, then size values
+ * MAP            varint size, then size entries of (name | END id) value
+ * OBJECT         id, class name, then sections until END:
+ *                SECTION_SERIAL_VERSION_UID zigzag varint
+ *                SECTION_FIELDS { name value }* END
+ *                SECTION_MAP_KEYS { id OBJECT }* END
+ *                SECTION_VALUE value
+ * LONG_ARRAY     varint size, then size zigzag varints
+ * DOUBLE_ARRAY   varint size, then size 8-byte doubles
+ * FLOAT_ARRAY    varint size, then size 4-byte floats
+ * </pre>
+ * A name is a varint code: 1 followed by length-prefixed UTF-8 for a name not seen before in
+ * the document, or k + 2 for the k-th distinct name. An id is a name followed by a varint v;
+ * v = 0 means the id is the name itself, otherwise the id is the name followed by v - 1.
+ */
+final class BinaryFormat {
+
+    /** Magic bytes at the start of every binary document. */
+    static final byte[] MAGIC = {'P', 'J', 'S', 'B'};
+
+    /** Format version following the magic bytes. */
+    static final byte VERSION = 1;
+
+    static final int NULL = 0;
+    static final int FALSE = 1;
+    static final int TRUE = 2;
+    static final int INTEGER = 3;
+    static final int FLOAT = 4;
+    static final int DOUBLE = 5;
+    static final int NUMBER = 6;
+    static final int STRING = 7;
+    static final int BINARY = 8;
+    static final int TAGGED_BINARY = 9;
+    static final int REFERENCE = 10;
+    static final int ARRAY = 11;
+    static final int MAP = 12;
+    static final int OBJECT = 13;
+    static final int LONG_ARRAY = 14;
+    static final int DOUBLE_ARRAY = 15;
+    static final int FLOAT_ARRAY = 16;
+
+    /** Ends an object, its fields or its map keys; introduces a reference key in a map. */
+    static final int END = 0;
+
+    static final int SECTION_SERIAL_VERSION_UID = 1;
+    static final int SECTION_FIELDS = 2;
+    static final int SECTION_MAP_KEYS = 3;
+    static final int SECTION_VALUE = 4;
+
+    private BinaryFormat() {
+    }
+}
@@ -0,0 +1,458 @@
+package com.pjr22.serialization.format;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * {@link FormatReader} for the binary format written by {@link BinaryFormatWriter}.
+ * <p>
+ * The reader presents a binary document with the same logical structure as the JSON format:
+ * an object is read as BEGIN_OBJECT, NAME "$id", its ID, NAME "$class", its class name,
+ * NAME "fields" and so on; a reference as an object with a single "$ref" member. This lets
+ * the Deserializer handle both formats with the same code. Typed and untyped byte arrays are
+ * returned as BINARY tokens rather than Base64 text.
+ */
+public class BinaryFormatReader implements FormatReader {
+
+    // Kinds of open containers
+    private static final int ARRAY = 0;
+    private static final int MAP = 1;
+    private static final int OBJECT = 2;
+    private static final int FIELDS = 3;
+    private static final int MAP_KEYS = 4;
+    private static final int LONG_ARRAY = 5;
+    private static final int DOUBLE_ARRAY = 6;
+    private static final int FLOAT_ARRAY = 7;
+
+    private final ByteBuffer buffer;
+
+    // Open containers, innermost last, with the number of elements or entries left
+    private int[] kinds = new int[16];
+    private int[] remaining = new int[16];
+    private int depth;
+
+    // Tokens produced ahead of time, e.g. the $id and $class members of an object
+    private final Token[] pendingTokens = new Token[4];
+    private final Object[] pendingValues = new Object[4];
+    private int pendingHead;
+    private int pendingCount;
+
+    // True after a NAME token, when the member value comes next
+    private boolean afterName;
+    private boolean started;
+
+    // Distinct names in order of first occurrence
+    private final List<String> names = new ArrayList<>();
+
+    // Value of the current token
+    private String stringValue;
+    private long longValue;
+    private double doubleValue;
+    private boolean booleanValue;
+    private byte[] binaryValue;
+
+    /**
+     * Creates a reader over a binary document.
+     *
+     * @param data the document bytes
+     */
+    public BinaryFormatReader(byte[] data) {
+        this(ByteBuffer.wrap(data));
+    }
+
+    /**
+     * Creates a reader over a binary document. The document is read from the buffer's
+     * position; the buffer is left positioned after the document.
+     *
+     * @param buffer the buffer holding the document
+     * @throws IllegalArgumentException if the buffer does not start with a binary document header
+     */
+    public BinaryFormatReader(ByteBuffer buffer) {
+        if (!isBinary(buffer)) {
+            throw new IllegalArgumentException("Not a binary document");
+        }
+        this.buffer = buffer;
+        buffer.position(buffer.position() + BinaryFormat.MAGIC.length);
+        int version = buffer.get();
+        if (version != BinaryFormat.VERSION) {
+            throw new IllegalArgumentException("Unsupported binary format version: " + version);
+        }
+    }
+
+    /**
+     * Checks whether the data starts with the binary document header.
+     *
+     * @param data the data to check
+     * @return true if the data is a binary document
+     */
+    public static boolean isBinary(byte[] data) {
+        return isBinary(ByteBuffer.wrap(data));
+    }
+
+    /**
+     * Checks whether the buffer's remaining content starts with the binary document header.
+     * The buffer position is not changed.
+     *
+     * @param buffer the buffer to check
+     * @return true if the content is a binary document
+     */
+    public static boolean isBinary(ByteBuffer buffer) {
+        if (buffer.remaining() <= BinaryFormat.MAGIC.length) {
+            return false;
+        }
+        for (int i = 0; i < BinaryFormat.MAGIC.length; i++) {
+            if (buffer.get(buffer.position() + i) != BinaryFormat.MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public Token next() {
+        try {
+            return readToken();
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Unexpected end of binary document");
+        }
+    }
+
+    @Override
+    public String getString() {
+        return stringValue;
+    }
+
+    @Override
+    public long getLong() {
+        return longValue;
+    }
+
+    @Override
+    public double getDouble() {
+        return doubleValue;
+    }
+
+    @Override
+    public boolean getBoolean() {
+        return booleanValue;
+    }
+
+    @Override
+    public byte[] getBinary() {
+        return binaryValue;
+    }
+
+    private Token readToken() {
+        if (pendingCount > 0) {
+            Token token = pendingTokens[pendingHead];
+            Object value = pendingValues[pendingHead];
+            pendingHead = (pendingHead + 1) % pendingTokens.length;
+            pendingCount--;
+            if (token == Token.BINARY) {
+                binaryValue = (byte[]) value;
+            } else if (token == Token.INTEGER) {
+                longValue = (Long) value;
+                doubleValue = longValue;
+            } else {
+                stringValue = (String) value;
+            }
+            return token;
+        }
+        if (afterName) {
+            afterName = false;
+            return readValue();
+        }
+        if (depth == 0) {
+            if (started) {
+                return Token.END_DOCUMENT;
+            }
+            started = true;
+            return readValue();
+        }
+
+        int top = depth - 1;
+        switch (kinds[top]) {
+            case ARRAY:
+                if (remaining[top] == 0) {
+                    depth--;
+                    return Token.END_ARRAY;
+                }
+                remaining[top]--;
+                return readValue();
+            case LONG_ARRAY:
+            case DOUBLE_ARRAY:
+            case FLOAT_ARRAY:
+                if (remaining[top] == 0) {
+                    depth--;
+                    return Token.END_ARRAY;
+                }
+                remaining[top]--;
+                return readPackedElement(kinds[top]);
+            case MAP:
+                if (remaining[top] == 0) {
+                    depth--;
+                    return Token.END_OBJECT;
+                }
+                remaining[top]--;
+                int code = readVarInt();
+                stringValue = code == BinaryFormat.END ? "$ref:" + readId() : name(code);
+                afterName = true;
+                return Token.NAME;
+            case OBJECT:
+                return readSection();
+            case FIELDS:
+                code = readVarInt();
+                if (code == BinaryFormat.END) {
+                    depth--;
+                    return Token.END_OBJECT;
+                }
+                stringValue = name(code);
+                afterName = true;
+                return Token.NAME;
+            default: // MAP_KEYS
+                code = readVarInt();
+                if (code == BinaryFormat.END) {
+                    depth--;
+                    return Token.END_OBJECT;
+                }
+                stringValue = id(name(code));
+                afterName = true;
+                return Token.NAME;
+        }
+    }
+
+    /**
+     * Reads the next section of an object definition and returns its member name.
+     */
+    private Token readSection() {
+        int section = buffer.get();
+        switch (section) {
+            case BinaryFormat.END:
+                depth--;
+                return Token.END_OBJECT;
+            case BinaryFormat.SECTION_SERIAL_VERSION_UID:
+                pending(Token.INTEGER, readVarLong());
+                stringValue = "serialVersionUID";
+                return Token.NAME;
+            case BinaryFormat.SECTION_FIELDS:
+                push(FIELDS, 0);
+                pending(Token.BEGIN_OBJECT, null);
+                stringValue = "fields";
+                return Token.NAME;
+            case BinaryFormat.SECTION_MAP_KEYS:
+                push(MAP_KEYS, 0);
+                pending(Token.BEGIN_OBJECT, null);
+                stringValue = "$mapKeys";
+                return Token.NAME;
+            case BinaryFormat.SECTION_VALUE:
+                afterName = true;
+                stringValue = "$value";
+                return Token.NAME;
+            default:
+                throw new IllegalArgumentException("Unknown object section " + section + " at position " + (buffer.position() - 1));
+        }
+    }
+
+    /**
+     * Reads the first token of a value: a scalar or the start of a container.
+     */
+    private Token readValue() {
+        int tag = buffer.get();
+        switch (tag) {
+            case BinaryFormat.NULL:
+                return Token.NULL;
+            case BinaryFormat.FALSE:
+                booleanValue = false;
+                return Token.BOOLEAN;
+            case BinaryFormat.TRUE:
+                booleanValue = true;
+                return Token.BOOLEAN;
+            case BinaryFormat.INTEGER:
+                longValue = readVarLong();
+                doubleValue = longValue;
+                return Token.INTEGER;
+            case BinaryFormat.FLOAT:
+                doubleValue = Float.intBitsToFloat(buffer.getInt());
+                return Token.FLOAT;
+            case BinaryFormat.DOUBLE:
+                doubleValue = buffer.getDouble();
+                return Token.FLOAT;
+            case BinaryFormat.NUMBER:
+                return readNumber(readString());
+            case BinaryFormat.STRING:
+                stringValue = readString();
+                return Token.STRING;
+            case BinaryFormat.BINARY:
+                binaryValue = readBytes();
+                return Token.BINARY;
+            case BinaryFormat.TAGGED_BINARY:
+                pending(Token.NAME, "$base64");
+                pending(Token.BINARY, readBytes());
+                pending(Token.END_OBJECT, null);
+                return Token.BEGIN_OBJECT;
+            case BinaryFormat.REFERENCE:
+                pending(Token.NAME, "$ref");
+                pending(Token.STRING, readId());
+                pending(Token.END_OBJECT, null);
+                return Token.BEGIN_OBJECT;
+            case BinaryFormat.ARRAY:
+                push(ARRAY, readVarInt());
+                return Token.BEGIN_ARRAY;
+            case BinaryFormat.LONG_ARRAY:
+                push(LONG_ARRAY, readVarInt());
+                return Token.BEGIN_ARRAY;
+            case BinaryFormat.DOUBLE_ARRAY:
+                push(DOUBLE_ARRAY, readVarInt());
+                return Token.BEGIN_ARRAY;
+            case BinaryFormat.FLOAT_ARRAY:
+                push(FLOAT_ARRAY, readVarInt());
+                return Token.BEGIN_ARRAY;
+            case BinaryFormat.MAP:
+                push(MAP, readVarInt());
+                return Token.BEGIN_OBJECT;
+            case BinaryFormat.OBJECT:
+                String id = readId();
+                String className = name(readVarInt());
+                push(OBJECT, 0);
+                pending(Token.NAME, "$id");
+                pending(Token.STRING, id);
+                pending(Token.NAME, "$class");
+                pending(Token.STRING, className);
+                return Token.BEGIN_OBJECT;
+            default:
+                throw new IllegalArgumentException("Unknown value tag " + tag + " at position " + (buffer.position() - 1));
+        }
+    }
+
+    private Token readPackedElement(int kind) {
+        if (kind == LONG_ARRAY) {
+            longValue = readVarLong();
+            doubleValue = longValue;
+            return Token.INTEGER;
+        }
+        doubleValue = kind == DOUBLE_ARRAY ? buffer.getDouble() : Float.intBitsToFloat(buffer.getInt());
+        return Token.FLOAT;
+    }
+
+    /**
+     * Interprets the decimal text of a NUMBER value the way the JSON reader would.
+     */
+    private Token readNumber(String text) {
+        try {
+            longValue = Long.parseLong(text);
+            doubleValue = longValue;
+            return Token.INTEGER;
+        } catch (NumberFormatException e) {
+            try {
+                doubleValue = Double.parseDouble(text);
+                return Token.FLOAT;
+            } catch (NumberFormatException e2) {
+                throw new IllegalArgumentException("Invalid number: " + text);
+            }
+        }
+    }
+
+    private void pending(Token token, Object value) {
+        int slot = (pendingHead + pendingCount) % pendingTokens.length;
+        pendingTokens[slot] = token;
+        pendingValues[slot] = value;
+        pendingCount++;
+    }
+
+    private void push(int kind, int size) {
+        if (depth == kinds.length) {
+            kinds = Arrays.copyOf(kinds, depth * 2);
+            remaining = Arrays.copyOf(remaining, depth * 2);
+        }
+        kinds[depth] = kind;
+        remaining[depth] = size;
+        depth++;
+    }
+
+    /**
+     * Resolves a name code, reading the name if it is new.
+     */
+    private String name(int code) {
+        if (code == 1) {
+            String name = readString();
+            names.add(name);
+            return name;
+        }
+        int index = code - 2;
+        if (index < 0 || index >= names.size()) {
+            throw new IllegalArgumentException("Invalid name reference " + code + " at position " + buffer.position());
+        }
+        return names.get(index);
+    }
+
+    private String readId() {
+        return id(name(readVarInt()));
+    }
+
+    /**
+     * Completes an id whose name has been read.
+     */
+    private String id(String name) {
+        long number = readUnsignedVarLong();
+        return number == 0 ? name : name + (number - 1);
+    }
+
+    private String readString() {
+        int length = readVarInt();
+        checkLength(length);
+        String value;
+        if (buffer.hasArray()) {
+            int offset = buffer.arrayOffset() + buffer.position();
+            value = new String(buffer.array(), offset, length, StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + length);
+        } else {
+            byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            value = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return value;
+    }
+
+    private byte[] readBytes() {
+        int length = readVarInt();
+        checkLength(length);
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    private void checkLength(int length) {
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IllegalArgumentException("Invalid length " + length + " at position " + buffer.position());
+        }
+    }
+
+    private int readVarInt() {
+        long value = readUnsignedVarLong();
+        if (value > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Size out of range at position " + buffer.position());
+        }
+        return (int) value;
+    }
+
+    private long readVarLong() {
+        long value = readUnsignedVarLong();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private long readUnsignedVarLong() {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint at position " + buffer.position());
+    }
+}
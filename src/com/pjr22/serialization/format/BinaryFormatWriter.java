@@ -0,0 +1,339 @@
+package com.pjr22.serialization.format;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * {@link FormatWriter} for the compact binary format, writing to an OutputStream.
+ * <p>
+ * A document starts with the magic bytes {@code PJSB} and a version byte, followed by one
+ * value. Every value starts with a one-byte tag (see {@link BinaryFormat}). Integers are
+ * zigzag varints, doubles and floats are raw IEEE 754 big-endian, strings are length-prefixed
+ * UTF-8 and byte arrays are stored raw. Class names, field names, map keys and ID prefixes
+ * are names: each distinct name is written once and later occurrences refer to it by index,
+ * so repeated classes and fields cost one or two bytes. IDs of the form {@code PREFIX_N} are
+ * written as the prefix name plus N as a varint.
+ * <p>
+ * Output is buffered internally; call {@link #flush()} (the Serializer does so at the end of
+ * a document) to push it to the stream. The writer is not thread-safe and writes one document.
+ */
+public class BinaryFormatWriter implements FormatWriter {
+
+    private final OutputStream out;
+    private final byte[] buffer = new byte[8192];
+    private int position;
+
+    // Names already written, mapped to their index in the reader's name table
+    private final Map<String, Integer> names = new HashMap<>();
+
+    /**
+     * Creates a writer for one binary document.
+     *
+     * @param out the stream to write to
+     */
+    public BinaryFormatWriter(OutputStream out) {
+        this.out = out;
+        for (byte b : BinaryFormat.MAGIC) {
+            buffer[position++] = b;
+        }
+        buffer[position++] = BinaryFormat.VERSION;
+    }
+
+    @Override
+    public void beginObject(String id, String className) throws IOException {
+        writeByte(BinaryFormat.OBJECT);
+        writeId(id);
+        writeName(className);
+    }
+
+    @Override
+    public void serialVersionUID(long serialVersionUID) throws IOException {
+        writeByte(BinaryFormat.SECTION_SERIAL_VERSION_UID);
+        writeVarLong(serialVersionUID);
+    }
+
+    @Override
+    public void beginFields() throws IOException {
+        writeByte(BinaryFormat.SECTION_FIELDS);
+    }
+
+    @Override
+    public void field(String name) throws IOException {
+        writeName(name);
+    }
+
+    @Override
+    public void endFields() throws IOException {
+        writeByte(BinaryFormat.END);
+    }
+
+    @Override
+    public void beginMapKeys() throws IOException {
+        writeByte(BinaryFormat.SECTION_MAP_KEYS);
+    }
+
+    @Override
+    public void mapKey(String id) throws IOException {
+        writeId(id);
+    }
+
+    @Override
+    public void endMapKeys() throws IOException {
+        writeByte(BinaryFormat.END);
+    }
+
+    @Override
+    public void simpleValue() throws IOException {
+        writeByte(BinaryFormat.SECTION_VALUE);
+    }
+
+    @Override
+    public void endObject() throws IOException {
+        writeByte(BinaryFormat.END);
+    }
+
+    @Override
+    public void reference(String id) throws IOException {
+        writeByte(BinaryFormat.REFERENCE);
+        writeId(id);
+    }
+
+    @Override
+    public void beginArray(int size) throws IOException {
+        writeByte(BinaryFormat.ARRAY);
+        writeVarInt(size);
+    }
+
+    @Override
+    public void endArray() {
+        // Arrays are length-prefixed
+    }
+
+    @Override
+    public void beginMap(int size) throws IOException {
+        writeByte(BinaryFormat.MAP);
+        writeVarInt(size);
+    }
+
+    @Override
+    public void key(String key) throws IOException {
+        writeName(key);
+    }
+
+    @Override
+    public void referenceKey(String id) throws IOException {
+        writeByte(BinaryFormat.END);
+        writeId(id);
+    }
+
+    @Override
+    public void endMap() {
+        // Maps are length-prefixed
+    }
+
+    @Override
+    public void writeNull() throws IOException {
+        writeByte(BinaryFormat.NULL);
+    }
+
+    @Override
+    public void writeBoolean(boolean value) throws IOException {
+        writeByte(value ? BinaryFormat.TRUE : BinaryFormat.FALSE);
+    }
+
+    @Override
+    public void writeLong(long value) throws IOException {
+        writeByte(BinaryFormat.INTEGER);
+        writeVarLong(value);
+    }
+
+    @Override
+    public void writeFloat(float value) throws IOException {
+        writeByte(BinaryFormat.FLOAT);
+        writeFixedInt(Float.floatToIntBits(value));
+    }
+
+    @Override
+    public void writeDouble(double value) throws IOException {
+        writeByte(BinaryFormat.DOUBLE);
+        writeFixedLong(Double.doubleToLongBits(value));
+    }
+
+    @Override
+    public void writeNumber(Number value) throws IOException {
+        // BigDecimal, BigInteger and other Number types keep their decimal text
+        writeByte(BinaryFormat.NUMBER);
+        writeBytes(value.toString().getBytes(StandardCharsets.US_ASCII));
+    }
+
+    @Override
+    public void writeString(String value) throws IOException {
+        writeByte(BinaryFormat.STRING);
+        writeBytes(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public void writeBinary(byte[] value) throws IOException {
+        writeByte(BinaryFormat.BINARY);
+        writeBytes(value);
+    }
+
+    @Override
+    public void writeTaggedBinary(byte[] value) throws IOException {
+        writeByte(BinaryFormat.TAGGED_BINARY);
+        writeBytes(value);
+    }
+
+    @Override
+    public void writePrimitiveArray(Object array) throws IOException {
+        if (array instanceof int[]) {
+            int[] values = (int[]) array;
+            writeByte(BinaryFormat.LONG_ARRAY);
+            writeVarInt(values.length);
+            for (int value : values) writeVarLong(value);
+        } else if (array instanceof long[]) {
+            long[] values = (long[]) array;
+            writeByte(BinaryFormat.LONG_ARRAY);
+            writeVarInt(values.length);
+            for (long value : values) writeVarLong(value);
+        } else if (array instanceof short[]) {
+            short[] values = (short[]) array;
+            writeByte(BinaryFormat.LONG_ARRAY);
+            writeVarInt(values.length);
+            for (short value : values) writeVarLong(value);
+        } else if (array instanceof double[]) {
+            double[] values = (double[]) array;
+            writeByte(BinaryFormat.DOUBLE_ARRAY);
+            writeVarInt(values.length);
+            for (double value : values) writeFixedLong(Double.doubleToLongBits(value));
+        } else if (array instanceof float[]) {
+            float[] values = (float[]) array;
+            writeByte(BinaryFormat.FLOAT_ARRAY);
+            writeVarInt(values.length);
+            for (float value : values) writeFixedInt(Float.floatToIntBits(value));
+        } else {
+            FormatWriter.super.writePrimitiveArray(array);
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.write(buffer, 0, position);
+        position = 0;
+        out.flush();
+    }
+
+    /**
+     * Writes a name, as a reference to an earlier occurrence if there is one.
+     * Codes: 1 = new name (length-prefixed UTF-8 follows), k + 2 = name number k.
+     */
+    private void writeName(String name) throws IOException {
+        Integer index = names.get(name);
+        if (index != null) {
+            writeVarInt(index + 2);
+            return;
+        }
+        names.put(name, names.size());
+        writeVarInt(1);
+        writeBytes(name.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Writes an object ID. IDs of the form PREFIX_N (N without leading zeros) are written as
+     * the name "PREFIX_" and N + 1; any other ID is written as a name and 0.
+     */
+    private void writeId(String id) throws IOException {
+        int split = id.lastIndexOf('_') + 1;
+        int digits = id.length() - split;
+        if (split > 0 && digits > 0 && digits <= 18 && (digits == 1 || id.charAt(split) != '0') && isDigits(id, split)) {
+            writeName(id.substring(0, split));
+            writeUnsignedVarLong(Long.parseLong(id, split, id.length(), 10) + 1);
+        } else {
+            writeName(id);
+            writeVarInt(0);
+        }
+    }
+
+    private static boolean isDigits(String s, int from) {
+        for (int i = from; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void writeBytes(byte[] bytes) throws IOException {
+        writeVarInt(bytes.length);
+        if (bytes.length > buffer.length - position) {
+            flushBuffer();
+            if (bytes.length > buffer.length) {
+                out.write(bytes);
+                return;
+            }
+        }
+        System.arraycopy(bytes, 0, buffer, position, bytes.length);
+        position += bytes.length;
+    }
+
+    private void writeByte(int b) throws IOException {
+        if (position == buffer.length) {
+            flushBuffer();
+        }
+        buffer[position++] = (byte) b;
+    }
+
+    /**
+     * Writes a non-negative int as an unsigned varint.
+     */
+    private void writeVarInt(int value) throws IOException {
+        writeUnsignedVarLong(value);
+    }
+
+    /**
+     * Writes a signed long as a zigzag varint.
+     */
+    private void writeVarLong(long value) throws IOException {
+        writeUnsignedVarLong((value << 1) ^ (value >> 63));
+    }
+
+    /**
+     * Writes a long as an unsigned varint, seven bits per byte, low bits first.
+     */
+    private void writeUnsignedVarLong(long value) throws IOException {
+        ensureCapacity(10);
+        while ((value & ~0x7FL) != 0) {
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+    }
+
+    private void writeFixedInt(int value) throws IOException {
+        ensureCapacity(4);
+        buffer[position++] = (byte) (value >>> 24);
+        buffer[position++] = (byte) (value >>> 16);
+        buffer[position++] = (byte) (value >>> 8);
+        buffer[position++] = (byte) value;
+    }
+
+    private void writeFixedLong(long value) throws IOException {
+        writeFixedInt((int) (value >>> 32));
+        writeFixedInt((int) value);
+    }
+
+    private void ensureCapacity(int bytes) throws IOException {
+        if (buffer.length - position < bytes) {
+            flushBuffer();
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        out.write(buffer, 0, position);
+        position = 0;
+    }
+}
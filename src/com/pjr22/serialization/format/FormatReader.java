@@ -0,0 +1,120 @@
+package com.pjr22.serialization.format;
+
+import java.io.IOException;
+
+/**
+ * Reads a serialized object graph as a stream of tokens.
+ * <p>
+ * A FormatReader presents the logical document structure that {@link FormatWriter} events
+ * describe: objects with named members (including the {@code $id}, {@code $class},
+ * {@code fields} and {@code $ref} members of the nested format), arrays and scalars. The
+ * {@link com.pjr22.serialization.core.Deserializer} builds its document tree from these
+ * tokens with {@link TreeBuilder}, so any reader can feed it regardless of the encoding.
+ * <p>
+ * Tokens are pulled one at a time with {@link #next()}; the value of the current token is
+ * available from the matching getter until the next call.
+ */
+public interface FormatReader {
+
+    /**
+     * The kinds of token a reader produces.
+     */
+    enum Token {
+        BEGIN_OBJECT,
+        END_OBJECT,
+        BEGIN_ARRAY,
+        END_ARRAY,
+        /** A member name inside an object; the member value follows. */
+        NAME,
+        STRING,
+        INTEGER,
+        FLOAT,
+        BOOLEAN,
+        NULL,
+        /** Raw bytes, from formats that store byte arrays natively. */
+        BINARY,
+        /** The top-level value is complete. */
+        END_DOCUMENT
+    }
+
+    /**
+     * Advances to the next token.
+     *
+     * @return the token
+     * @throws IOException if an I/O error occurs
+     * @throws IllegalArgumentException if the input is malformed
+     */
+    Token next() throws IOException;
+
+    /**
+     * Returns the value of the current NAME or STRING token.
+     *
+     * @return the string value
+     */
+    String getString();
+
+    /**
+     * Returns the value of the current INTEGER token.
+     *
+     * @return the integral value
+     */
+    long getLong();
+
+    /**
+     * Returns the value of the current FLOAT or INTEGER token as a double.
+     *
+     * @return the floating point value
+     */
+    double getDouble();
+
+    /**
+     * Returns the value of the current BOOLEAN token.
+     *
+     * @return the boolean value
+     */
+    boolean getBoolean();
+
+    /**
+     * Returns the value of the current BINARY token. Readers for formats without native
+     * binary values never produce BINARY tokens and need not override this method.
+     *
+     * @return the bytes
+     */
+    default byte[] getBinary() {
+        throw new IllegalStateException("This reader does not produce BINARY tokens");
+    }
+
+    /**
+     * Skips the value that starts with the given token, including everything nested in it.
+     *
+     * @param token the first token of the value (as returned by {@link #next()})
+     * @throws IOException if an I/O error occurs
+     */
+    default void skipValue(Token token) throws IOException {
+        int depth = 0;
+        while (true) {
+            if (token == Token.BEGIN_OBJECT || token == Token.BEGIN_ARRAY) {
+                depth++;
+            } else if (token == Token.END_OBJECT || token == Token.END_ARRAY) {
+                depth--;
+            } else if (token == Token.END_DOCUMENT) {
+                throw new IllegalArgumentException("Unexpected end of document");
+            }
+            if (depth == 0 && token != Token.NAME) {
+                return;
+            }
+            token = next();
+        }
+    }
+
+    /**
+     * Skips the next value, including everything nested in it. Readers can override this to
+     * pass over the encoded value without producing its tokens, for example without decoding
+     * the strings inside it.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    default void skipNextValue() throws IOException {
+        skipValue(next());
+    }
+}
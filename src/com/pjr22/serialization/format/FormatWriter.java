@@ -0,0 +1,283 @@
+package com.pjr22.serialization.format;
+
+import java.io.IOException;
+
+/**
+ * Receives the events of a serialized object graph and encodes them in a concrete format.
+ * <p>
+ * The {@link com.pjr22.serialization.core.Serializer} walks the object graph and decides what
+ * to write (object IDs, references, the $mapKeys section, Base64 for byte arrays); a
+ * FormatWriter only decides how it is encoded. {@link JsonFormatWriter} produces the JSON
+ * format; other implementations can produce more compact encodings, transcode or validate
+ * without repeating the graph logic.
+ * <p>
+ * Events are well nested. An object definition is written as
+ * <pre>
+ * beginObject(id, className) [serialVersionUID(uid)]
+ *     beginFields() { field(name) value }* endFields()
+ *     [beginMapKeys() { mapKey(id) objectDefinition }* endMapKeys()]
+ * endObject()
+ * </pre>
+ * where the fields may instead be started by {@code beginPositionalFields(names)},
+ * or, for JDK objects that are represented by a simple value, as
+ * {@code beginObject(id, className) simpleValue() value endObject()}. A value is a scalar,
+ * a reference, an object definition, an array ({@code beginArray(size) value* endArray()})
+ * or a map ({@code beginMap(size) { key(name) | referenceKey(id) value }* endMap()}).
+ */
+public interface FormatWriter {
+
+    /**
+     * Starts an object definition.
+     *
+     * @param id the object ID
+     * @param className the fully qualified class name
+     * @throws IOException if an I/O error occurs
+     */
+    void beginObject(String id, String className) throws IOException;
+
+    /**
+     * Writes the serialVersionUID of the object being defined.
+     *
+     * @param serialVersionUID the serialVersionUID value
+     * @throws IOException if an I/O error occurs
+     */
+    void serialVersionUID(long serialVersionUID) throws IOException;
+
+    /**
+     * Starts the fields of the object being defined.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    void beginFields() throws IOException;
+
+    /**
+     * Starts the fields of the object being defined as values in a fixed order, for documents
+     * that declare each class's field names once instead of naming every field of every
+     * object. The {@link #field(String)} events that follow come in the order of the schema.
+     * <p>
+     * The default implementation writes named fields, for formats without a positional
+     * encoding.
+     *
+     * @param names the field names of the class, on the first object of the class in the
+     *        document; null on later objects of the class
+     * @throws IOException if an I/O error occurs
+     */
+    default void beginPositionalFields(String[] names) throws IOException {
+        beginFields();
+    }
+
+    /**
+     * Starts a field; the field value follows.
+     *
+     * @param name the field name
+     * @throws IOException if an I/O error occurs
+     */
+    void field(String name) throws IOException;
+
+    /**
+     * Ends the fields of the object being defined.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    void endFields() throws IOException;
+
+    /**
+     * Starts the section of complex objects used as map keys.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    void beginMapKeys() throws IOException;
+
+    /**
+     * Starts a map key object; its object definition follows.
+     *
+     * @param id the ID the key is referenced by
+     * @throws IOException if an I/O error occurs
+     */
+    void mapKey(String id) throws IOException;
+
+    /**
+     * Ends the section of map key objects.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    void endMapKeys() throws IOException;
+
+    /**
+     * Marks the object being defined as represented by the simple value that follows.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    void simpleValue() throws IOException;
+
+    /**
+     * Ends an object definition.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    void endObject() throws IOException;
+
+    /**
+     * Writes a reference to an object defined elsewhere.
+     *
+     * @param id the referenced object ID
+     * @throws IOException if an I/O error occurs
+     */
+    void reference(String id) throws IOException;
+
+    /**
+     * Starts an array or collection.
+     *
+     * @param size the number of elements
+     * @throws IOException if an I/O error occurs
+     */
+    void beginArray(int size) throws IOException;
+
+    /**
+     * Ends an array or collection.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    void endArray() throws IOException;
+
+    /**
+     * Starts a map.
+     *
+     * @param size the number of entries
+     * @throws IOException if an I/O error occurs
+     */
+    void beginMap(int size) throws IOException;
+
+    /**
+     * Starts a map entry with a simple key; the entry value follows.
+     *
+     * @param key the key in its string form
+     * @throws IOException if an I/O error occurs
+     */
+    void key(String key) throws IOException;
+
+    /**
+     * Starts a map entry whose key is a complex object written in the map keys section;
+     * the entry value follows.
+     *
+     * @param id the ID of the key object
+     * @throws IOException if an I/O error occurs
+     */
+    void referenceKey(String id) throws IOException;
+
+    /**
+     * Ends a map.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    void endMap() throws IOException;
+
+    /**
+     * Writes a null value.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    void writeNull() throws IOException;
+
+    /**
+     * Writes a boolean value.
+     *
+     * @param value the value
+     * @throws IOException if an I/O error occurs
+     */
+    void writeBoolean(boolean value) throws IOException;
+
+    /**
+     * Writes an integral value.
+     *
+     * @param value the value
+     * @throws IOException if an I/O error occurs
+     */
+    void writeLong(long value) throws IOException;
+
+    /**
+     * Writes a float value.
+     *
+     * @param value the value
+     * @throws IOException if an I/O error occurs
+     */
+    void writeFloat(float value) throws IOException;
+
+    /**
+     * Writes a double value.
+     *
+     * @param value the value
+     * @throws IOException if an I/O error occurs
+     */
+    void writeDouble(double value) throws IOException;
+
+    /**
+     * Writes a number that does not fit a primitive type, such as a BigDecimal or BigInteger.
+     *
+     * @param value the value
+     * @throws IOException if an I/O error occurs
+     */
+    void writeNumber(Number value) throws IOException;
+
+    /**
+     * Writes a string value.
+     *
+     * @param value the value
+     * @throws IOException if an I/O error occurs
+     */
+    void writeString(String value) throws IOException;
+
+    /**
+     * Writes binary data in a position whose declared type (a byte[] field) identifies it.
+     *
+     * @param value the bytes
+     * @throws IOException if an I/O error occurs
+     */
+    void writeBinary(byte[] value) throws IOException;
+
+    /**
+     * Writes binary data in a position without a declared type (a collection element, map
+     * value or Object field), where the encoding itself must identify it as binary.
+     *
+     * @param value the bytes
+     * @throws IOException if an I/O error occurs
+     */
+    void writeTaggedBinary(byte[] value) throws IOException;
+
+    /**
+     * Writes an array of a primitive type other than byte[] as an array value.
+     * Implementations can override this to encode the elements without per-element events.
+     *
+     * @param array the primitive array
+     * @throws IOException if an I/O error occurs
+     */
+    default void writePrimitiveArray(Object array) throws IOException {
+        int length = java.lang.reflect.Array.getLength(array);
+        beginArray(length);
+        if (array instanceof int[]) {
+            for (int value : (int[]) array) writeLong(value);
+        } else if (array instanceof long[]) {
+            for (long value : (long[]) array) writeLong(value);
+        } else if (array instanceof double[]) {
+            for (double value : (double[]) array) writeDouble(value);
+        } else if (array instanceof float[]) {
+            for (float value : (float[]) array) writeFloat(value);
+        } else if (array instanceof short[]) {
+            for (short value : (short[]) array) writeLong(value);
+        } else if (array instanceof byte[]) {
+            for (byte value : (byte[]) array) writeLong(value);
+        } else if (array instanceof boolean[]) {
+            for (boolean value : (boolean[]) array) writeBoolean(value);
+        } else if (array instanceof char[]) {
+            for (char value : (char[]) array) writeString(String.valueOf(value));
+        }
+        endArray();
+    }
+
+    /**
+     * Flushes any buffered output.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    void flush() throws IOException;
+}
@@ -0,0 +1,560 @@
+package com.pjr22.serialization.format;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Incremental JSON parser that is pushed UTF-8 bytes as they arrive.
+ * <p>
+ * Each call to {@link #feed(ByteBuffer)} consumes all the given bytes and returns without
+ * waiting for more input. Parsing resumes where the previous call stopped, including in the
+ * middle of a string, number, literal or multi-byte character. Every complete top-level value
+ * is passed to the handler as soon as its last byte has been read, so a connection carrying a
+ * sequence of documents (separated by whitespace or newlines) is parsed without buffering whole
+ * messages first. The values are the same trees {@link TreeBuilder} produces.
+ * <p>
+ * In array elements mode the input is a top-level array and each of its elements is passed
+ * to the handler as soon as it is complete, instead of the whole array at the end. This lets
+ * very large arrays of records be processed one element at a time.
+ * <p>
+ * A top-level number is only known to be complete when a following byte arrives, or when
+ * {@link #finish()} is called at the end of input. A parser that has thrown an exception,
+ * including one thrown by the handler, rejects further input. Instances are not thread-safe.
+ */
+public class JsonFeedParser {
+
+    // Structural states
+    private static final int VALUE = 0;         // a value (at top level, after ':' or after ',' in an array)
+    private static final int FIRST_ELEMENT = 1; // after '[': a value or ']'
+    private static final int FIRST_MEMBER = 2;  // after '{': a name or '}'
+    private static final int NAME = 3;          // after ',' in an object
+    private static final int COLON = 4;         // after a name
+    private static final int NEXT = 5;          // after a value in a container: ',' or the closing bracket
+
+    // Token in progress
+    private static final int NONE = 0;
+    private static final int STRING = 1;
+    private static final int NUMBER = 2;
+    private static final int LITERAL = 3;
+
+    private final Consumer<Object> handler;
+    // Pass the elements of top-level arrays to the handler instead of the arrays
+    private final boolean arrayElements;
+
+    // Open containers (ArrayBuilder or LinkedHashMap) and the pending names of object members
+    private final Deque<Object> containers = new ArrayDeque<>();
+    private final Deque<String> names = new ArrayDeque<>();
+    private int state = VALUE;
+
+    private int token = NONE;
+    private long tokenStart;
+    // String contents decoded so far, and whether the string is a member name
+    private final StringBuilder text = new StringBuilder();
+    private boolean stringIsName;
+    // 0 outside an escape, 1 after a backslash, 2 to 5 while reading the digits of a unicode escape
+    private int escape;
+    private int unicode;
+    // Undecoded bytes of a string run, or the characters of a number, carried over between feeds
+    private byte[] pending = new byte[64];
+    private int pendingLength;
+    private String literal;
+    private int literalMatched;
+
+    // Offset of the current input array's index 0 in the whole input
+    private long base;
+    private long consumed;
+    private boolean failed;
+    private byte[] scratch;
+
+    /**
+     * Creates a parser.
+     *
+     * @param handler receives each complete top-level value
+     */
+    public JsonFeedParser(Consumer<Object> handler) {
+        this(handler, false);
+    }
+
+    /**
+     * Creates a parser, optionally in array elements mode.
+     *
+     * @param handler receives each complete top-level value, or each element of a top-level array
+     * @param arrayElements true if the input is a top-level array whose elements are passed to the handler
+     */
+    public JsonFeedParser(Consumer<Object> handler, boolean arrayElements) {
+        this.handler = handler;
+        this.arrayElements = arrayElements;
+    }
+
+    /**
+     * Parses the remaining bytes of a buffer. The buffer's position is advanced to its limit.
+     *
+     * @param data the bytes that have arrived
+     * @throws IllegalArgumentException if the input is malformed
+     * @throws IllegalStateException if the parser has already failed
+     */
+    public void feed(ByteBuffer data) {
+        if (data.hasArray()) {
+            feed(data.array(), data.arrayOffset() + data.position(), data.remaining());
+            data.position(data.limit());
+            return;
+        }
+        if (scratch == null) {
+            scratch = new byte[8192];
+        }
+        while (data.hasRemaining()) {
+            int n = Math.min(data.remaining(), scratch.length);
+            data.get(scratch, 0, n);
+            feed(scratch, 0, n);
+        }
+    }
+
+    /**
+     * Parses a range of bytes.
+     *
+     * @param data the array holding the bytes that have arrived
+     * @param offset the start of the range
+     * @param length the length of the range
+     * @throws IllegalArgumentException if the input is malformed
+     * @throws IllegalStateException if the parser has already failed
+     */
+    public void feed(byte[] data, int offset, int length) {
+        if (failed) {
+            throw new IllegalStateException("Parser has failed");
+        }
+        failed = true;
+        base = consumed - offset;
+        int end = offset + length;
+        int i = offset;
+        while (i < end) {
+            if (token != NONE) {
+                i = continueToken(data, i, end);
+                continue;
+            }
+            char c = (char) (data[i] & 0xFF);
+            if (Character.isWhitespace(c)) {
+                i++;
+                continue;
+            }
+            switch (state) {
+                case VALUE:
+                    startValue(c, i);
+                    break;
+                case FIRST_ELEMENT:
+                    if (c == ']') {
+                        closeContainer();
+                    } else {
+                        startValue(c, i);
+                    }
+                    break;
+                case FIRST_MEMBER:
+                case NAME:
+                    if (c == '}' && state == FIRST_MEMBER) {
+                        closeContainer();
+                    } else if (c == '"') {
+                        startString(true, i);
+                    } else {
+                        throw new IllegalArgumentException("Expected '\"' at position " + (base + i));
+                    }
+                    break;
+                case COLON:
+                    if (c != ':') {
+                        throw new IllegalArgumentException("Expected ':' at position " + (base + i));
+                    }
+                    state = VALUE;
+                    break;
+                default:
+                    boolean array = containers.peek() instanceof ArrayBuilder;
+                    if (c == ',') {
+                        state = array ? VALUE : NAME;
+                    } else if (c == (array ? ']' : '}')) {
+                        closeContainer();
+                    } else {
+                        throw new IllegalArgumentException("Expected ',' or '" + (array ? ']' : '}') + "' at position " + (base + i));
+                    }
+            }
+            if (token == NONE || token == STRING) {
+                // Numbers and literals are read by continueToken from their first character
+                i++;
+            }
+        }
+        consumed += length;
+        failed = false;
+    }
+
+    /**
+     * Signals the end of input. Completes a top-level number still waiting for a delimiter.
+     *
+     * @throws IllegalArgumentException if the input ends inside a document
+     */
+    public void finish() {
+        if (failed) {
+            throw new IllegalStateException("Parser has failed");
+        }
+        failed = true;
+        if (token == NUMBER && containers.isEmpty()) {
+            completeNumber();
+        }
+        if (hasPartialDocument()) {
+            throw new IllegalArgumentException("Unexpected end of JSON");
+        }
+        failed = false;
+    }
+
+    /**
+     * Checks whether part of a document has been read but not yet passed to the handler.
+     *
+     * @return true inside a document
+     */
+    public boolean hasPartialDocument() {
+        return token != NONE || !containers.isEmpty();
+    }
+
+    /**
+     * Starts the value beginning with the given character.
+     */
+    private void startValue(char c, int i) {
+        if (arrayElements && containers.isEmpty() && c != '[') {
+            throw new IllegalArgumentException("Expected '[' at position " + (base + i));
+        }
+        switch (c) {
+            case '{':
+                containers.push(new LinkedHashMap<String, Object>());
+                state = FIRST_MEMBER;
+                break;
+            case '[':
+                containers.push(new ArrayBuilder());
+                state = FIRST_ELEMENT;
+                break;
+            case '"':
+                startString(false, i);
+                break;
+            case 't':
+            case 'f':
+            case 'n':
+                token = LITERAL;
+                tokenStart = base + i;
+                literal = c == 't' ? "true" : c == 'f' ? "false" : "null";
+                literalMatched = 0;
+                break;
+            default:
+                if (c != '-' && (c < '0' || c > '9')) {
+                    throw new IllegalArgumentException("Unexpected character at position " + (base + i) + ": " + c);
+                }
+                token = NUMBER;
+                tokenStart = base + i;
+                pendingLength = 0;
+        }
+    }
+
+    private void startString(boolean name, int i) {
+        token = STRING;
+        tokenStart = base + i;
+        stringIsName = name;
+        escape = 0;
+        pendingLength = 0;
+        text.setLength(0);
+    }
+
+    /**
+     * Continues the token in progress from position {@code i}.
+     *
+     * @return the position after the consumed bytes
+     */
+    private int continueToken(byte[] data, int i, int end) {
+        switch (token) {
+            case STRING:
+                return continueString(data, i, end);
+            case NUMBER:
+                while (i < end && isNumberChar(data[i])) {
+                    appendPending(data, i, 1);
+                    i++;
+                }
+                if (i < end) {
+                    completeNumber();
+                }
+                return i;
+            default:
+                while (i < end && literalMatched < literal.length()) {
+                    if (data[i] != literal.charAt(literalMatched)) {
+                        throw new IllegalArgumentException("Unexpected character at position " + (base + i) + ": " + (char) (data[i] & 0xFF));
+                    }
+                    literalMatched++;
+                    i++;
+                }
+                if (literalMatched == literal.length()) {
+                    token = NONE;
+                    addValue(literal.equals("null") ? null : Boolean.valueOf(literal.equals("true")));
+                }
+                return i;
+        }
+    }
+
+    private int continueString(byte[] data, int i, int end) {
+        int start = i;
+        while (i < end) {
+            byte b = data[i];
+            if (escape == 0) {
+                if (b == '"') {
+                    String value;
+                    if (text.length() == 0 && pendingLength == 0) {
+                        // Fast path: the whole string arrived in one piece without escapes
+                        value = new String(data, start, i - start, StandardCharsets.UTF_8);
+                    } else {
+                        decodeRun(data, start, i);
+                        value = text.toString();
+                    }
+                    token = NONE;
+                    if (stringIsName) {
+                        names.push(value);
+                        state = COLON;
+                    } else {
+                        addValue(value);
+                    }
+                    return i + 1;
+                }
+                if (b == '\\') {
+                    decodeRun(data, start, i);
+                    escape = 1;
+                }
+            } else if (escape == 1) {
+                escape = 0;
+                switch (b) {
+                    case 'b':
+                        text.append('\b');
+                        break;
+                    case 'f':
+                        text.append('\f');
+                        break;
+                    case 'n':
+                        text.append('\n');
+                        break;
+                    case 'r':
+                        text.append('\r');
+                        break;
+                    case 't':
+                        text.append('\t');
+                        break;
+                    case 'u':
+                        escape = 2;
+                        unicode = 0;
+                        break;
+                    default:
+                        text.append((char) (b & 0xFF));
+                }
+                start = i + 1;
+            } else {
+                int digit = Character.digit(b, 16);
+                if (digit < 0) {
+                    throw new IllegalArgumentException("Invalid unicode escape at position " + (base + i));
+                }
+                unicode = unicode * 16 + digit;
+                if (++escape == 6) {
+                    text.append((char) unicode);
+                    escape = 0;
+                }
+                start = i + 1;
+            }
+            i++;
+        }
+        // Keep the undecoded tail; it may end inside a multi-byte character
+        if (escape == 0) {
+            appendPending(data, start, end - start);
+        }
+        return end;
+    }
+
+    /**
+     * Decodes the carried-over bytes and the run of bytes up to {@code to} into the string text.
+     * Runs end at a quote or backslash, which never occur inside a multi-byte character.
+     */
+    private void decodeRun(byte[] data, int from, int to) {
+        if (pendingLength > 0) {
+            appendPending(data, from, to - from);
+            text.append(new String(pending, 0, pendingLength, StandardCharsets.UTF_8));
+            pendingLength = 0;
+        } else if (to > from) {
+            text.append(new String(data, from, to - from, StandardCharsets.UTF_8));
+        }
+    }
+
+    private void appendPending(byte[] data, int from, int count) {
+        if (pendingLength + count > pending.length) {
+            pending = Arrays.copyOf(pending, Math.max(pending.length * 2, pendingLength + count));
+        }
+        System.arraycopy(data, from, pending, pendingLength, count);
+        pendingLength += count;
+    }
+
+    private static boolean isNumberChar(byte b) {
+        return (b >= '0' && b <= '9') || b == '-' || b == '+' || b == '.' || b == 'e' || b == 'E';
+    }
+
+    /**
+     * Converts the collected number characters, with the same rules as {@link JsonFormatReader}.
+     */
+    private void completeNumber() {
+        token = NONE;
+        int n = pendingLength;
+        int p = pending[0] == '-' ? 1 : 0;
+        int digitsStart = p;
+        if (p < n && pending[p] == '0') {
+            p++;
+        } else {
+            while (p < n && pending[p] >= '0' && pending[p] <= '9') {
+                p++;
+            }
+        }
+        boolean hasDigits = p > digitsStart;
+        boolean floating = false;
+        if (p < n && pending[p] == '.') {
+            floating = true;
+            p++;
+            while (p < n && pending[p] >= '0' && pending[p] <= '9') {
+                p++;
+            }
+        }
+        if (p < n && (pending[p] == 'e' || pending[p] == 'E')) {
+            floating = true;
+            p++;
+            if (p < n && (pending[p] == '+' || pending[p] == '-')) {
+                p++;
+            }
+            while (p < n && pending[p] >= '0' && pending[p] <= '9') {
+                p++;
+            }
+        }
+        String number = new String(pending, 0, n, StandardCharsets.ISO_8859_1);
+        try {
+            if (p != n || (!floating && !hasDigits)) {
+                throw new NumberFormatException();
+            }
+            Object top = containers.peek();
+            if (arrayElements && containers.size() == 1) {
+                // Elements of the top-level array go to the handler
+                top = null;
+            }
+            if (floating) {
+                double value = Double.parseDouble(number);
+                if (top instanceof ArrayBuilder) {
+                    ((ArrayBuilder) top).addDouble(value);
+                    state = NEXT;
+                } else {
+                    addValue(value);
+                }
+            } else {
+                long value = Long.parseLong(number);
+                if (top instanceof ArrayBuilder) {
+                    ((ArrayBuilder) top).addLong(value);
+                    state = NEXT;
+                } else {
+                    addValue(TreeBuilder.box(value));
+                }
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid number at position " + tokenStart + ": " + number);
+        }
+    }
+
+    private void closeContainer() {
+        Object container = containers.pop();
+        if (arrayElements && containers.isEmpty()) {
+            // The elements have already been passed to the handler
+            state = VALUE;
+            return;
+        }
+        addValue(container instanceof ArrayBuilder ? ((ArrayBuilder) container).build() : container);
+    }
+
+    /**
+     * Adds a complete value to the enclosing container, or passes it to the handler at top level
+     * (or as an element of the top-level array in array elements mode).
+     */
+    @SuppressWarnings("unchecked")
+    private void addValue(Object value) {
+        if (containers.isEmpty()) {
+            state = VALUE;
+            handler.accept(value);
+            return;
+        }
+        if (arrayElements && containers.size() == 1) {
+            state = NEXT;
+            handler.accept(value);
+            return;
+        }
+        Object container = containers.peek();
+        if (container instanceof ArrayBuilder) {
+            ((ArrayBuilder) container).add(value);
+        } else {
+            ((Map<String, Object>) container).put(names.pop(), value);
+        }
+        state = NEXT;
+    }
+
+    /**
+     * Collects the elements of an array. A leading run of numbers of one kind is kept in a
+     * primitive buffer, as {@link TreeBuilder} does, and becomes a {@link NumericList} if it
+     * makes up the whole array.
+     */
+    private static final class ArrayBuilder {
+        private long[] longs;
+        private double[] doubles;
+        private int count;
+        private List<Object> list;
+
+        void addLong(long value) {
+            if (list != null || doubles != null) {
+                add(TreeBuilder.box(value));
+                return;
+            }
+            if (longs == null) {
+                longs = new long[16];
+            } else if (count == longs.length) {
+                longs = Arrays.copyOf(longs, count * 2);
+            }
+            longs[count++] = value;
+        }
+
+        void addDouble(double value) {
+            if (list != null || longs != null) {
+                add(value);
+                return;
+            }
+            if (doubles == null) {
+                doubles = new double[16];
+            } else if (count == doubles.length) {
+                doubles = Arrays.copyOf(doubles, count * 2);
+            }
+            doubles[count++] = value;
+        }
+
+        void add(Object value) {
+            if (list == null) {
+                list = new ArrayList<>(Math.max(count * 2, 10));
+                if (count > 0) {
+                    list.addAll(numbers());
+                }
+            }
+            list.add(value);
+        }
+
+        List<Object> build() {
+            if (list != null) {
+                return list;
+            }
+            return count == 0 ? new ArrayList<>() : numbers();
+        }
+
+        private NumericList numbers() {
+            return doubles != null ? new NumericList(doubles, count) : new NumericList(longs, count);
+        }
+    }
+}
@@ -0,0 +1,611 @@
+package com.pjr22.serialization.format;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * {@link FormatReader} for JSON text encoded as UTF-8.
+ * <p>
+ * The reader tokenizes the bytes in place: structural characters, numbers and literals are
+ * ASCII, so only string contents are decoded. Input can be a byte array, a string (encoded
+ * once up front) or a sequence of ByteBuffer segments such as memory-mapped regions of a
+ * file, which lets documents larger than 2 GB be read without copying them onto the heap.
+ * <p>
+ * Open containers are tracked in a pair of arrays rather than by recursion, so nesting depth
+ * is limited by heap rather than by the thread stack. Integral numbers are accumulated
+ * directly from their digits without boxing.
+ */
+public class JsonFormatReader implements FormatReader {
+
+    /** Default size of every segment except the last when reading from multiple buffers. */
+    public static final int SEGMENT_SIZE = 1 << 30;
+
+    // Input: a single heap array, or segments of 1 << segmentShift bytes
+    private final byte[] array;
+    private final ByteBuffer[] segments;
+    private final int segmentShift;
+    private final int segmentMask;
+    private final long length;
+    private long index;
+
+    // Open containers: true for arrays, false for objects, and whether each has elements yet
+    private boolean[] inArray = new boolean[16];
+    private boolean[] hasElements = new boolean[16];
+    private int depth;
+
+    // True after a NAME token, when the member value comes next
+    private boolean afterName;
+
+    // True once the top-level value is complete
+    private boolean documentDone;
+
+    // Value of the current token
+    private String stringValue;
+    private boolean booleanValue;
+
+    // Result of the last scanNumber() call
+    private long scannedLong;
+    private double scannedDouble;
+
+    /**
+     * Creates a reader over a JSON string.
+     *
+     * @param json the JSON text
+     */
+    public JsonFormatReader(String json) {
+        this(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Creates a reader over UTF-8 encoded JSON.
+     *
+     * @param data the JSON bytes (used directly, not copied)
+     */
+    public JsonFormatReader(byte[] data) {
+        this.array = data;
+        this.segments = null;
+        this.segmentShift = 0;
+        this.segmentMask = 0;
+        this.length = data.length;
+    }
+
+    /**
+     * Creates a reader over UTF-8 encoded JSON held in consecutive buffers, read from each
+     * buffer's position to its limit. Every buffer except the last must hold exactly
+     * {@link #SEGMENT_SIZE} bytes.
+     *
+     * @param segments the buffers
+     */
+    public JsonFormatReader(ByteBuffer... segments) {
+        this(segments, SEGMENT_SIZE);
+    }
+
+    /**
+     * Creates a reader over UTF-8 encoded JSON held in consecutive buffers, read from each
+     * buffer's position to its limit. Every buffer except the last must hold exactly
+     * {@code segmentSize} bytes.
+     *
+     * @param segments the buffers
+     * @param segmentSize the size of each full segment, a power of two
+     */
+    public JsonFormatReader(ByteBuffer[] segments, int segmentSize) {
+        if (segmentSize <= 0 || Integer.bitCount(segmentSize) != 1) {
+            throw new IllegalArgumentException("Segment size must be a power of two: " + segmentSize);
+        }
+        long total = 0;
+        ByteBuffer[] slices = new ByteBuffer[segments.length];
+        for (int i = 0; i < segments.length; i++) {
+            slices[i] = segments[i].slice();
+            if (i < segments.length - 1 && slices[i].remaining() != segmentSize) {
+                throw new IllegalArgumentException("Segment " + i + " does not hold " + segmentSize + " bytes");
+            }
+            total += slices[i].remaining();
+        }
+        this.array = null;
+        this.segments = slices;
+        this.segmentShift = Integer.numberOfTrailingZeros(segmentSize);
+        this.segmentMask = segmentSize - 1;
+        this.length = total;
+    }
+
+    @Override
+    public Token next() {
+        skipWhitespace();
+        if (depth == 0) {
+            if (documentDone) {
+                if (index < length) {
+                    throw new IllegalArgumentException("Unexpected character at position " + index + ": " + charAt(index));
+                }
+                return Token.END_DOCUMENT;
+            }
+            return readValue();
+        }
+        if (afterName) {
+            afterName = false;
+            return readValue();
+        }
+
+        boolean array = inArray[depth - 1];
+        if (index >= length) {
+            throw new IllegalArgumentException(array ? "Unexpected end of array" : "Unexpected end of object");
+        }
+        char c = charAt(index);
+        if (c == (array ? ']' : '}')) {
+            index++;
+            depth--;
+            documentDone = depth == 0;
+            return array ? Token.END_ARRAY : Token.END_OBJECT;
+        }
+        if (hasElements[depth - 1]) {
+            if (c != ',') {
+                throw new IllegalArgumentException("Expected ',' or '" + (array ? ']' : '}') + "' at position " + index);
+            }
+            index++; // skip comma
+        }
+        hasElements[depth - 1] = true;
+        if (array) {
+            return readValue();
+        }
+        stringValue = parseKey();
+        afterName = true;
+        return Token.NAME;
+    }
+
+    @Override
+    public String getString() {
+        return stringValue;
+    }
+
+    @Override
+    public long getLong() {
+        return scannedLong;
+    }
+
+    @Override
+    public double getDouble() {
+        return scannedDouble;
+    }
+
+    @Override
+    public boolean getBoolean() {
+        return booleanValue;
+    }
+
+    /**
+     * Skips a member value by scanning its bytes: strings are passed over without being
+     * decoded and numbers without being converted. The skipped value is checked only for
+     * balanced brackets and terminated strings. Values that are not member values are
+     * skipped token by token.
+     */
+    @Override
+    public void skipNextValue() throws IOException {
+        if (!afterName) {
+            skipValue(next());
+            return;
+        }
+        afterName = false;
+        skipWhitespace();
+        int nesting = 0;
+        do {
+            if (index >= length) {
+                throw new IllegalArgumentException("Unexpected end of JSON");
+            }
+            int b = byteAt(index);
+            if (b == '"') {
+                skipString();
+            } else if (b == '{' || b == '[') {
+                nesting++;
+                index++;
+            } else if (b == '}' || b == ']') {
+                if (nesting == 0) {
+                    throw new IllegalArgumentException("Unexpected character at position " + index + ": " + (char) b);
+                }
+                nesting--;
+                index++;
+            } else if (nesting == 0) {
+                // Number or literal
+                long start = index;
+                while (index < length && (b = byteAt(index)) != ',' && b != '}' && b != ']'
+                        && !Character.isWhitespace(b)) {
+                    index++;
+                }
+                if (index == start) {
+                    throw new IllegalArgumentException("Unexpected character at position " + index + ": " + (char) b);
+                }
+            } else {
+                index++;
+            }
+        } while (nesting > 0);
+    }
+
+    /**
+     * Returns the current position in the input.
+     *
+     * @return the byte offset
+     */
+    public long getPosition() {
+        return index;
+    }
+
+    /**
+     * Reads the first token of a value: a scalar or the start of a container.
+     *
+     * @return the token
+     */
+    private Token readValue() {
+        skipWhitespace();
+        if (index >= length) {
+            throw new IllegalArgumentException("Unexpected end of JSON");
+        }
+        char c = charAt(index);
+        Token token;
+        switch (c) {
+            case '[':
+            case '{':
+                index++;
+                push(c == '[');
+                return c == '[' ? Token.BEGIN_ARRAY : Token.BEGIN_OBJECT;
+            case 'n':
+                parseNull();
+                token = Token.NULL;
+                break;
+            case 't':
+            case 'f':
+                booleanValue = parseBoolean();
+                token = Token.BOOLEAN;
+                break;
+            case '"':
+                stringValue = parseString();
+                token = Token.STRING;
+                break;
+            case '-':
+            case '0':
+            case '1':
+            case '2':
+            case '3':
+            case '4':
+            case '5':
+            case '6':
+            case '7':
+            case '8':
+            case '9':
+                if (scanNumber()) {
+                    token = Token.FLOAT;
+                } else {
+                    scannedDouble = scannedLong;
+                    token = Token.INTEGER;
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unexpected character at position " + index + ": " + c);
+        }
+        documentDone = depth == 0;
+        return token;
+    }
+
+    /**
+     * Opens a container.
+     */
+    private void push(boolean array) {
+        if (depth == inArray.length) {
+            inArray = Arrays.copyOf(inArray, depth * 2);
+            hasElements = Arrays.copyOf(hasElements, depth * 2);
+        }
+        inArray[depth] = array;
+        hasElements[depth] = false;
+        depth++;
+    }
+
+    /**
+     * Parses an object key and the colon that follows it.
+     *
+     * @return the key
+     */
+    private String parseKey() {
+        skipWhitespace();
+        if (index >= length || charAt(index) != '"') {
+            throw new IllegalArgumentException("Expected '\"' for object key at position " + index);
+        }
+        String key = parseString();
+
+        skipWhitespace();
+        if (index >= length || charAt(index) != ':') {
+            throw new IllegalArgumentException("Expected ':' after object key at position " + index);
+        }
+        index++; // skip colon
+        return key;
+    }
+
+    /**
+     * Moves past a string without decoding it.
+     */
+    private void skipString() {
+        index++; // skip opening quote
+        while (index < length) {
+            int b = byteAt(index);
+            if (b == '"') {
+                index++;
+                return;
+            }
+            index += b == '\\' ? 2 : 1;
+        }
+        throw new IllegalArgumentException("Unexpected end of string at position " + index);
+    }
+
+    /**
+     * Parses a JSON null value.
+     */
+    private void parseNull() {
+        if (matches("null")) {
+            index += 4;
+            return;
+        }
+        throw new IllegalArgumentException("Expected 'null' at position " + index);
+    }
+
+    /**
+     * Parses a JSON boolean value.
+     *
+     * @return the parsed boolean
+     */
+    private boolean parseBoolean() {
+        if (matches("true")) {
+            index += 4;
+            return true;
+        }
+        if (matches("false")) {
+            index += 5;
+            return false;
+        }
+        throw new IllegalArgumentException("Expected 'true' or 'false' at position " + index);
+    }
+
+    /**
+     * Parses a JSON string value.
+     *
+     * @return the parsed string
+     */
+    private String parseString() {
+        if (charAt(index) != '"') {
+            throw new IllegalArgumentException("Expected '\"' at position " + index);
+        }
+        index++; // skip opening quote
+
+        // Fast path: strings without escapes (including long Base64 payloads) are decoded in one step
+        long start = index;
+        while (index < length) {
+            int b = byteAt(index);
+            if (b == '"') {
+                index++; // skip closing quote
+                return text(start, index - 1);
+            }
+            if (b == '\\') {
+                break;
+            }
+            index++;
+        }
+
+        StringBuilder sb = new StringBuilder((int) Math.min(index - start + 16, Integer.MAX_VALUE - 8));
+        sb.append(text(start, index));
+        while (index < length) {
+            int b = byteAt(index);
+            if (b == '"') {
+                index++; // skip closing quote
+                return sb.toString();
+            }
+            if (b != '\\') {
+                // Decode the run of bytes up to the next quote or escape
+                long runStart = index;
+                while (index < length && byteAt(index) != '"' && byteAt(index) != '\\') {
+                    index++;
+                }
+                sb.append(text(runStart, index));
+                continue;
+            }
+            index++;
+            if (index >= length) {
+                throw new IllegalArgumentException("Unexpected end of string at position " + index);
+            }
+            char c = charAt(index);
+            switch (c) {
+                case '"':
+                    sb.append('"');
+                    break;
+                case '\\':
+                    sb.append('\\');
+                    break;
+                case '/':
+                    sb.append('/');
+                    break;
+                case 'b':
+                    sb.append('\b');
+                    break;
+                case 'f':
+                    sb.append('\f');
+                    break;
+                case 'n':
+                    sb.append('\n');
+                    break;
+                case 'r':
+                    sb.append('\r');
+                    break;
+                case 't':
+                    sb.append('\t');
+                    break;
+                case 'u':
+                    if (index + 4 >= length) {
+                        throw new IllegalArgumentException("Invalid unicode escape at position " + index);
+                    }
+                    String hex = text(index + 1, index + 5);
+                    try {
+                        int codePoint = Integer.parseInt(hex, 16);
+                        sb.append((char) codePoint);
+                        index += 4;
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("Invalid unicode escape at position " + index + ": \\u" + hex);
+                    }
+                    break;
+                default:
+                    sb.append(c);
+            }
+            index++;
+        }
+        throw new IllegalArgumentException("Unterminated string");
+    }
+
+    /**
+     * Scans a JSON number at the current position without boxing it.
+     * Integral values are accumulated directly from the digits; only numbers with a
+     * fraction or exponent go through {@link Double#parseDouble(String)}.
+     * The result is left in {@link #scannedLong} or {@link #scannedDouble}.
+     *
+     * @return true if the number is floating point, false if it is integral
+     */
+    private boolean scanNumber() {
+        long start = index;
+        boolean negative = false;
+
+        // Handle optional minus sign
+        if (index < length && charAt(index) == '-') {
+            negative = true;
+            index++;
+        }
+
+        // Handle integer part, accumulating negatively so that Long.MIN_VALUE fits
+        long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        long multiplyMin = limit / 10;
+        long accumulator = 0;
+        boolean overflow = false;
+        long digitsStart = index;
+        if (index < length && charAt(index) == '0') {
+            index++;
+        } else {
+            while (index < length) {
+                char c = charAt(index);
+                if (c < '0' || c > '9') {
+                    break;
+                }
+                int digit = c - '0';
+                if (accumulator < multiplyMin) {
+                    overflow = true;
+                } else {
+                    accumulator *= 10;
+                    if (accumulator < limit + digit) {
+                        overflow = true;
+                    } else {
+                        accumulator -= digit;
+                    }
+                }
+                index++;
+            }
+        }
+        boolean hasDigits = index > digitsStart;
+
+        // Handle fractional part
+        boolean hasFraction = false;
+        if (index < length && charAt(index) == '.') {
+            hasFraction = true;
+            index++;
+            while (index < length && Character.isDigit(charAt(index))) {
+                index++;
+            }
+        }
+
+        // Handle exponent part
+        boolean hasExponent = false;
+        if (index < length && (charAt(index) == 'e' || charAt(index) == 'E')) {
+            hasExponent = true;
+            index++;
+            if (index < length && (charAt(index) == '+' || charAt(index) == '-')) {
+                index++;
+            }
+            while (index < length && Character.isDigit(charAt(index))) {
+                index++;
+            }
+        }
+
+        if (hasFraction || hasExponent) {
+            String numberStr = text(start, index);
+            try {
+                scannedDouble = Double.parseDouble(numberStr);
+                return true;
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid number at position " + start + ": " + numberStr);
+            }
+        }
+        if (!hasDigits || overflow) {
+            throw new IllegalArgumentException("Invalid number at position " + start + ": " + text(start, index));
+        }
+        scannedLong = negative ? accumulator : -accumulator;
+        return false;
+    }
+
+    /**
+     * Returns the byte at a position as a signed value.
+     */
+    private int byteAt(long i) {
+        if (array != null) {
+            return array[(int) i];
+        }
+        return segments[(int) (i >>> segmentShift)].get((int) (i & segmentMask));
+    }
+
+    /**
+     * Returns the byte at a position as a character. Bytes of multi-byte UTF-8 sequences map
+     * to characters above 0x7F, which never match a structural character.
+     */
+    private char charAt(long i) {
+        return (char) (byteAt(i) & 0xFF);
+    }
+
+    /**
+     * Checks whether the input continues with the given ASCII literal.
+     */
+    private boolean matches(String literal) {
+        if (index + literal.length() > length) {
+            return false;
+        }
+        for (int i = 0; i < literal.length(); i++) {
+            if (byteAt(index + i) != literal.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Decodes the UTF-8 bytes between two positions.
+     */
+    private String text(long from, long to) {
+        int count = (int) (to - from);
+        if (array != null) {
+            return new String(array, (int) from, count, StandardCharsets.UTF_8);
+        }
+        int segment = (int) (from >>> segmentShift);
+        int offset = (int) (from & segmentMask);
+        ByteBuffer buffer = segments[segment];
+        if (buffer.hasArray() && offset + count <= buffer.limit()) {
+            return new String(buffer.array(), buffer.arrayOffset() + offset, count, StandardCharsets.UTF_8);
+        }
+        byte[] bytes = new byte[count];
+        if (offset + count <= buffer.limit()) {
+            buffer.get(offset, bytes, 0, count);
+        } else {
+            for (int i = 0; i < count; i++) {
+                bytes[i] = (byte) byteAt(from + i);
+            }
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Skips whitespace characters.
+     */
+    private void skipWhitespace() {
+        while (index < length && Character.isWhitespace(charAt(index))) {
+            index++;
+        }
+    }
+}
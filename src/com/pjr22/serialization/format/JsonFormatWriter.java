@@ -0,0 +1,387 @@
+package com.pjr22.serialization.format;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link FormatWriter} for the JSON format, appending to a StringBuilder.
+ * <p>
+ * Object definitions are written as {"$id":...,"$class":...,"fields":{...}}, references as
+ * {"$ref":...}, complex map keys as "$ref:ID", typed binary data as a Base64 string and
+ * untyped binary data as {"$base64":...}. Positional fields are written as
+ * "$values":[...], preceded on the first object of each class by "$fields":[names].
+ * <p>
+ * With a string table, string values that repeat are moved into a table written before the
+ * document, {"$strings":[...],"root":...}, and each use is written as {"$s":index}.
+ */
+public class JsonFormatWriter implements FormatWriter {
+
+    private final StringBuilder sb;
+
+    // Open arrays and keyed containers (maps, fields, map keys), innermost last
+    private boolean[] arrayContext = new boolean[16];
+    private int[] counts = new int[16];
+    private int depth;
+
+    // True after "$value": - the value that follows needs no separator even inside an array
+    private boolean afterSimpleValue;
+
+    // With a string table, the string values written so far and where their text starts
+    private final boolean stringTable;
+    private List<String> strings;
+    private int[] stringStarts;
+
+    /**
+     * Creates a writer appending to the given StringBuilder.
+     *
+     * @param sb the StringBuilder to append to
+     */
+    public JsonFormatWriter(StringBuilder sb) {
+        this(sb, false);
+    }
+
+    /**
+     * Creates a writer appending to the given StringBuilder, optionally collecting string
+     * values for a string table. The table is written by {@link #writeStringTable()} once the
+     * document is complete.
+     *
+     * @param sb the StringBuilder to append to
+     * @param stringTable true to collect string values for a string table
+     */
+    public JsonFormatWriter(StringBuilder sb, boolean stringTable) {
+        this.sb = sb;
+        this.stringTable = stringTable;
+        if (stringTable) {
+            strings = new ArrayList<>();
+            stringStarts = new int[64];
+        }
+    }
+
+    @Override
+    public void beginObject(String id, String className) {
+        beforeValue();
+        sb.append("{\"$id\":\"").append(id).append("\",\"$class\":\"").append(className).append('"');
+    }
+
+    @Override
+    public void serialVersionUID(long serialVersionUID) {
+        sb.append(",\"serialVersionUID\":").append(serialVersionUID);
+    }
+
+    @Override
+    public void beginFields() {
+        sb.append(",\"fields\":{");
+        push(false);
+    }
+
+    @Override
+    public void beginPositionalFields(String[] names) {
+        if (names != null) {
+            sb.append(",\"$fields\":[");
+            for (int i = 0; i < names.length; i++) {
+                if (i > 0) {
+                    sb.append(',');
+                }
+                sb.append('"').append(names[i]).append('"');
+            }
+            sb.append(']');
+        }
+        sb.append(",\"$values\":[");
+        push(true);
+    }
+
+    @Override
+    public void field(String name) {
+        if (arrayContext[depth - 1]) {
+            // Positional fields - the value's separator is written by beforeValue
+            return;
+        }
+        beforeKey();
+        sb.append('"').append(name).append("\":");
+    }
+
+    @Override
+    public void endFields() {
+        sb.append(arrayContext[--depth] ? ']' : '}');
+    }
+
+    @Override
+    public void beginMapKeys() {
+        sb.append(",\"$mapKeys\":{");
+        push(false);
+    }
+
+    @Override
+    public void mapKey(String id) {
+        beforeKey();
+        sb.append('"').append(id).append("\":");
+    }
+
+    @Override
+    public void endMapKeys() {
+        depth--;
+        sb.append('}');
+    }
+
+    @Override
+    public void simpleValue() {
+        sb.append(",\"$value\":");
+        afterSimpleValue = true;
+    }
+
+    @Override
+    public void endObject() {
+        sb.append('}');
+    }
+
+    @Override
+    public void reference(String id) {
+        beforeValue();
+        sb.append("{\"$ref\":\"").append(id).append("\"}");
+    }
+
+    @Override
+    public void beginArray(int size) {
+        beforeValue();
+        sb.append('[');
+        push(true);
+    }
+
+    @Override
+    public void endArray() {
+        depth--;
+        sb.append(']');
+    }
+
+    @Override
+    public void beginMap(int size) {
+        beforeValue();
+        sb.append('{');
+        push(false);
+    }
+
+    @Override
+    public void key(String key) {
+        beforeKey();
+        sb.append('"').append(JsonSerializer.escapeJson(key)).append("\":");
+    }
+
+    @Override
+    public void referenceKey(String id) {
+        key("$ref:" + id);
+    }
+
+    @Override
+    public void endMap() {
+        depth--;
+        sb.append('}');
+    }
+
+    @Override
+    public void writeNull() {
+        beforeValue();
+        sb.append("null");
+    }
+
+    @Override
+    public void writeBoolean(boolean value) {
+        beforeValue();
+        sb.append(value);
+    }
+
+    @Override
+    public void writeLong(long value) {
+        beforeValue();
+        sb.append(value);
+    }
+
+    @Override
+    public void writeFloat(float value) {
+        beforeValue();
+        sb.append(value);
+    }
+
+    @Override
+    public void writeDouble(double value) {
+        beforeValue();
+        sb.append(value);
+    }
+
+    @Override
+    public void writeNumber(Number value) {
+        beforeValue();
+        sb.append(value);
+    }
+
+    @Override
+    public void writeString(String value) {
+        beforeValue();
+        if (stringTable) {
+            if (strings.size() == stringStarts.length) {
+                stringStarts = Arrays.copyOf(stringStarts, stringStarts.length * 2);
+            }
+            stringStarts[strings.size()] = sb.length();
+            strings.add(value);
+        }
+        sb.append('"').append(JsonSerializer.escapeJson(value)).append('"');
+    }
+
+    @Override
+    public void writeBinary(byte[] value) {
+        beforeValue();
+        sb.append('"').append(Base64.getEncoder().encodeToString(value)).append('"');
+    }
+
+    @Override
+    public void writeTaggedBinary(byte[] value) {
+        beforeValue();
+        sb.append("{\"$base64\":\"").append(Base64.getEncoder().encodeToString(value)).append("\"}");
+    }
+
+    @Override
+    public void writePrimitiveArray(Object array) {
+        beforeValue();
+        JsonSerializer.appendPrimitiveArray(array, sb);
+    }
+
+    @Override
+    public void flush() {
+        // Nothing is buffered
+    }
+
+    /**
+     * Writes the separator for the next value and returns the position where the value will
+     * start, so that its text can be taken with {@link #textSince(int)} once it is written.
+     *
+     * @return the position of the next value
+     */
+    public int markValue() {
+        beforeValue();
+        afterSimpleValue = true;
+        return sb.length();
+    }
+
+    /**
+     * Returns the text written since a position returned by {@link #markValue()}.
+     *
+     * @param mark the position
+     * @return the text
+     */
+    public String textSince(int mark) {
+        return sb.substring(mark);
+    }
+
+    /**
+     * Writes a value that is already encoded, such as text returned by {@link #textSince(int)}.
+     *
+     * @param json the encoded value
+     */
+    public void writeEncoded(String json) {
+        beforeValue();
+        sb.append(json);
+    }
+
+    /**
+     * Moves the string values that repeat in the document written so far into a string table,
+     * replacing the contents of the StringBuilder with {"$strings":[...],"root":document}.
+     * A string goes into the table only if that makes the document shorter; if none does,
+     * the document is left as it is. Strings are numbered in the order of their first use.
+     * Strings copied in with {@link #writeEncoded(String)} and map keys are not collected.
+     */
+    public void writeStringTable() {
+        if (!stringTable || strings.isEmpty()) {
+            return;
+        }
+        Map<String, int[]> counts = new HashMap<>();
+        for (String value : strings) {
+            counts.computeIfAbsent(value, k -> new int[] {0, -1})[0]++;
+        }
+
+        // Decide at each string's first use, when its index would be assigned
+        StringBuilder table = new StringBuilder();
+        int tableSize = 0;
+        for (int i = 0; i < strings.size(); i++) {
+            int[] entry = counts.get(strings.get(i));
+            if (entry[0] < 2 || entry[1] != -1) {
+                continue;
+            }
+            int start = stringStarts[i];
+            int length = stringEnd(start) - start;
+            int referenceLength = 7 + Integer.toString(tableSize).length();
+            if (length + 1 + entry[0] * referenceLength < entry[0] * length) {
+                if (tableSize > 0) {
+                    table.append(',');
+                }
+                table.append(sb, start, start + length);
+                entry[1] = tableSize++;
+            } else {
+                entry[0] = 1;
+            }
+        }
+        if (tableSize == 0) {
+            return;
+        }
+
+        StringBuilder document = new StringBuilder(sb.length() + table.length() + 24);
+        document.append("{\"$strings\":[").append(table).append("],\"root\":");
+        int copied = 0;
+        for (int i = 0; i < strings.size(); i++) {
+            int index = counts.get(strings.get(i))[1];
+            if (index == -1) {
+                continue;
+            }
+            int start = stringStarts[i];
+            document.append(sb, copied, start).append("{\"$s\":").append(index).append('}');
+            copied = stringEnd(start);
+        }
+        document.append(sb, copied, sb.length()).append('}');
+        sb.setLength(0);
+        sb.append(document);
+    }
+
+    /**
+     * Returns the position after the closing quote of the string starting at a position.
+     */
+    private int stringEnd(int start) {
+        int i = start + 1;
+        while (sb.charAt(i) != '"') {
+            i += sb.charAt(i) == '\\' ? 2 : 1;
+        }
+        return i + 1;
+    }
+
+    /**
+     * Writes the separator before a value in an array.
+     */
+    private void beforeValue() {
+        if (afterSimpleValue) {
+            afterSimpleValue = false;
+            return;
+        }
+        if (depth > 0 && arrayContext[depth - 1] && counts[depth - 1]++ > 0) {
+            sb.append(',');
+        }
+    }
+
+    /**
+     * Writes the separator before a key in a map, fields or map keys section.
+     */
+    private void beforeKey() {
+        if (counts[depth - 1]++ > 0) {
+            sb.append(',');
+        }
+    }
+
+    private void push(boolean array) {
+        if (depth == counts.length) {
+            counts = Arrays.copyOf(counts, depth * 2);
+            arrayContext = Arrays.copyOf(arrayContext, depth * 2);
+        }
+        arrayContext[depth] = array;
+        counts[depth++] = 0;
+    }
+}
@@ -101,6 +101,12 @@ public class JsonSerializer {
             return "null";
         }
 
+        if (array.getClass().getComponentType().isPrimitive()) {
+            StringBuilder sb = new StringBuilder();
+            appendPrimitiveArray(array, sb);
+            return sb.toString();
+        }
+
         int length = java.lang.reflect.Array.getLength(array);
         StringBuilder sb = new StringBuilder("[");
         for (int i = 0; i < length; i++) {
@@ -114,6 +120,70 @@ public class JsonSerializer {
         return sb.toString();
     }
 
+    /**
+     * Appends a primitive array to a StringBuilder as a JSON array.
+     * Each component type has its own loop so elements are written without boxing.
+     *
+     * @param array the primitive array to serialize (int[], long[], double[], etc.)
+     * @param sb the StringBuilder to append to
+     * @throws IllegalArgumentException if the array is not a primitive array
+     */
+    public static void appendPrimitiveArray(Object array, StringBuilder sb) {
+        sb.append('[');
+        if (array instanceof int[]) {
+            int[] values = (int[]) array;
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) sb.append(',');
+                sb.append(values[i]);
+            }
+        } else if (array instanceof long[]) {
+            long[] values = (long[]) array;
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) sb.append(',');
+                sb.append(values[i]);
+            }
+        } else if (array instanceof double[]) {
+            double[] values = (double[]) array;
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) sb.append(',');
+                sb.append(values[i]);
+            }
+        } else if (array instanceof float[]) {
+            float[] values = (float[]) array;
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) sb.append(',');
+                sb.append(values[i]);
+            }
+        } else if (array instanceof short[]) {
+            short[] values = (short[]) array;
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) sb.append(',');
+                sb.append(values[i]);
+            }
+        } else if (array instanceof byte[]) {
+            byte[] values = (byte[]) array;
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) sb.append(',');
+                sb.append(values[i]);
+            }
+        } else if (array instanceof boolean[]) {
+            boolean[] values = (boolean[]) array;
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) sb.append(',');
+                sb.append(values[i]);
+            }
+        } else if (array instanceof char[]) {
+            char[] values = (char[]) array;
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) sb.append(',');
+                sb.append('"').append(escapeJson(values[i])).append('"');
+            }
+        } else {
+            throw new IllegalArgumentException("Not a primitive array: " + array.getClass().getName());
+        }
+        sb.append(']');
+    }
+
     /**
      * Serializes a collection to JSON array format.
      *
@@ -177,7 +247,7 @@ public class JsonSerializer {
      * @param str the string to escape
      * @return the escaped string
      */
-    private static String escapeJson(String str) {
+    static String escapeJson(String str) {
         if (str == null) {
             return "";
         }
@@ -0,0 +1,210 @@
+package com.pjr22.serialization.format;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * List of JSON numbers backed by a primitive array.
+ * <p>
+ * {@link JsonParser} produces this list for arrays that contain only integral numbers or only
+ * floating point numbers, so large numeric arrays are parsed without boxing each element.
+ * Element access through {@link #get(int)} boxes on demand and returns the same types the
+ * parser returns for standalone numbers (Integer or Long for integral values, Double otherwise).
+ * Callers that know the target component type can copy the values straight into a primitive
+ * array with {@link #toPrimitiveArray(Class)}.
+ * <p>
+ * The list is mutable; the first modification switches it to a boxed backing list.
+ */
+public final class NumericList extends AbstractList<Object> implements RandomAccess {
+
+    private long[] longs;
+    private double[] doubles;
+    private int size;
+    private List<Object> boxed;
+
+    /**
+     * Creates a list backed by integral values.
+     *
+     * @param values the values (the array is used directly, not copied)
+     * @param size the number of valid entries in the array
+     */
+    NumericList(long[] values, int size) {
+        this.longs = values;
+        this.size = size;
+    }
+
+    /**
+     * Creates a list backed by floating point values.
+     *
+     * @param values the values (the array is used directly, not copied)
+     * @param size the number of valid entries in the array
+     */
+    NumericList(double[] values, int size) {
+        this.doubles = values;
+        this.size = size;
+    }
+
+    /**
+     * Returns true if the list holds floating point values, false if it holds integral values.
+     *
+     * @return true for floating point values
+     */
+    public boolean isFloatingPoint() {
+        return doubles != null;
+    }
+
+    /**
+     * Returns an element as a long without boxing.
+     *
+     * @param index the element index
+     * @return the element value
+     */
+    public long getLong(int index) {
+        if (boxed != null) {
+            return ((Number) boxed.get(index)).longValue();
+        }
+        checkIndex(index);
+        return longs != null ? longs[index] : (long) doubles[index];
+    }
+
+    /**
+     * Returns an element as a double without boxing.
+     *
+     * @param index the element index
+     * @return the element value
+     */
+    public double getDouble(int index) {
+        if (boxed != null) {
+            return ((Number) boxed.get(index)).doubleValue();
+        }
+        checkIndex(index);
+        return longs != null ? longs[index] : doubles[index];
+    }
+
+    /**
+     * Copies the values into a new primitive array of the given component type.
+     * Conversions follow the usual Java narrowing rules, matching {@code Number.intValue()} etc.
+     *
+     * @param componentType the primitive component type (byte, short, int, long, float or double)
+     * @return the new array, or null if the component type is not a numeric primitive
+     *         or the list has been modified
+     */
+    public Object toPrimitiveArray(Class<?> componentType) {
+        if (boxed != null) {
+            return null;
+        }
+        if (componentType == int.class) {
+            int[] result = new int[size];
+            if (longs != null) {
+                for (int i = 0; i < size; i++) result[i] = (int) longs[i];
+            } else {
+                for (int i = 0; i < size; i++) result[i] = (int) doubles[i];
+            }
+            return result;
+        } else if (componentType == long.class) {
+            long[] result = new long[size];
+            if (longs != null) {
+                System.arraycopy(longs, 0, result, 0, size);
+            } else {
+                for (int i = 0; i < size; i++) result[i] = (long) doubles[i];
+            }
+            return result;
+        } else if (componentType == double.class) {
+            double[] result = new double[size];
+            if (doubles != null) {
+                System.arraycopy(doubles, 0, result, 0, size);
+            } else {
+                for (int i = 0; i < size; i++) result[i] = longs[i];
+            }
+            return result;
+        } else if (componentType == float.class) {
+            float[] result = new float[size];
+            if (doubles != null) {
+                for (int i = 0; i < size; i++) result[i] = (float) doubles[i];
+            } else {
+                for (int i = 0; i < size; i++) result[i] = longs[i];
+            }
+            return result;
+        } else if (componentType == short.class) {
+            short[] result = new short[size];
+            if (longs != null) {
+                for (int i = 0; i < size; i++) result[i] = (short) longs[i];
+            } else {
+                for (int i = 0; i < size; i++) result[i] = (short) (int) doubles[i];
+            }
+            return result;
+        } else if (componentType == byte.class) {
+            byte[] result = new byte[size];
+            if (longs != null) {
+                for (int i = 0; i < size; i++) result[i] = (byte) longs[i];
+            } else {
+                for (int i = 0; i < size; i++) result[i] = (byte) (int) doubles[i];
+            }
+            return result;
+        }
+        return null;
+    }
+
+    @Override
+    public Object get(int index) {
+        if (boxed != null) {
+            return boxed.get(index);
+        }
+        checkIndex(index);
+        if (doubles != null) {
+            return doubles[index];
+        }
+        long value = longs[index];
+        if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+            return (int) value;
+        }
+        return value;
+    }
+
+    @Override
+    public int size() {
+        return boxed != null ? boxed.size() : size;
+    }
+
+    @Override
+    public Object set(int index, Object element) {
+        return inflate().set(index, element);
+    }
+
+    @Override
+    public void add(int index, Object element) {
+        inflate().add(index, element);
+        modCount++;
+    }
+
+    @Override
+    public Object remove(int index) {
+        Object removed = inflate().remove(index);
+        modCount++;
+        return removed;
+    }
+
+    /**
+     * Switches to a boxed backing list so that the list can be modified.
+     */
+    private List<Object> inflate() {
+        if (boxed == null) {
+            List<Object> list = new ArrayList<>(Math.max(size, 10));
+            for (int i = 0; i < size; i++) {
+                list.add(get(i));
+            }
+            boxed = list;
+            longs = null;
+            doubles = null;
+        }
+        return boxed;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+}
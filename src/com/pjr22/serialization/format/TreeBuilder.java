@@ -0,0 +1,222 @@
+package com.pjr22.serialization.format;
+
+import com.pjr22.serialization.format.FormatReader.Token;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds the document tree the Deserializer works on from the tokens of a {@link FormatReader}.
+ * <p>
+ * Objects become LinkedHashMaps, arrays become Lists, integral numbers become Integer or Long,
+ * floating point numbers become Double and binary values stay byte arrays. Arrays whose
+ * elements are all integral numbers or all floating point numbers are collected into a
+ * primitive-backed {@link NumericList}. Containers are tracked with an explicit stack, so
+ * nesting depth is limited by heap rather than by the thread stack.
+ * <p>
+ * A {@link TreeFilter} can leave members out of the tree; their values are skipped by the
+ * reader without being built.
+ */
+public final class TreeBuilder {
+
+    private final FormatReader reader;
+    private final TreeFilter filter;
+    private Token token;
+
+    private TreeBuilder(FormatReader reader, TreeFilter filter) {
+        this.reader = reader;
+        this.filter = filter;
+    }
+
+    /**
+     * Reads one value from the reader and returns it as a tree.
+     * The reader is left positioned after the value.
+     *
+     * @param reader the reader to read from
+     * @return the value
+     * @throws IOException if an I/O error occurs
+     * @throws IllegalArgumentException if the input is malformed
+     */
+    public static Object build(FormatReader reader) throws IOException {
+        return new TreeBuilder(reader, TreeFilter.ALL).build();
+    }
+
+    /**
+     * Reads one value from the reader and returns it as a tree, leaving out the members the
+     * filter skips. The reader is left positioned after the value.
+     *
+     * @param reader the reader to read from
+     * @param filter the filter for the top-level value
+     * @return the value
+     * @throws IOException if an I/O error occurs
+     * @throws IllegalArgumentException if the input is malformed
+     */
+    public static Object build(FormatReader reader, TreeFilter filter) throws IOException {
+        return new TreeBuilder(reader, filter).build();
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object build() throws IOException {
+        Deque<Object> containers = new ArrayDeque<>();
+        Deque<String> keys = new ArrayDeque<>();
+        // Filters of the open containers, and of the member value that follows a NAME
+        boolean filtering = filter != TreeFilter.ALL;
+        Deque<TreeFilter> filters = new ArrayDeque<>();
+        TreeFilter memberFilter = filter;
+
+        token = reader.next();
+        while (true) {
+            Object value;
+            switch (token) {
+                case BEGIN_ARRAY:
+                    token = reader.next();
+                    if (token == Token.END_ARRAY) {
+                        value = new ArrayList<>();
+                        break;
+                    }
+                    List<Object> list = null;
+                    if (token == Token.INTEGER || token == Token.FLOAT) {
+                        list = readNumbers();
+                    }
+                    if (list instanceof NumericList) {
+                        value = list;
+                        break;
+                    }
+                    // Read the (remaining) elements as a regular array
+                    if (filtering) {
+                        filters.push(valueFilter(containers, filters, memberFilter));
+                    }
+                    containers.push(list != null ? list : new ArrayList<>());
+                    continue;
+                case BEGIN_OBJECT:
+                    if (filtering) {
+                        filters.push(valueFilter(containers, filters, memberFilter));
+                    }
+                    containers.push(new LinkedHashMap<String, Object>());
+                    token = reader.next();
+                    continue;
+                case NAME:
+                    if (filtering) {
+                        memberFilter = filters.peek().member(reader.getString());
+                        if (memberFilter == TreeFilter.SKIP) {
+                            reader.skipNextValue();
+                            token = reader.next();
+                            continue;
+                        }
+                    }
+                    keys.push(reader.getString());
+                    token = reader.next();
+                    continue;
+                case END_ARRAY:
+                case END_OBJECT:
+                    if (containers.isEmpty()) {
+                        throw new IllegalArgumentException("Unexpected " + token);
+                    }
+                    value = containers.pop();
+                    if (filtering) {
+                        filters.pop();
+                    }
+                    break;
+                case STRING:
+                    value = reader.getString();
+                    break;
+                case INTEGER:
+                    value = box(reader.getLong());
+                    break;
+                case FLOAT:
+                    value = reader.getDouble();
+                    break;
+                case BOOLEAN:
+                    value = reader.getBoolean();
+                    break;
+                case NULL:
+                    value = null;
+                    break;
+                case BINARY:
+                    value = reader.getBinary();
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unexpected end of document");
+            }
+
+            // Add the value to the enclosing container
+            if (containers.isEmpty()) {
+                return value;
+            }
+            Object container = containers.peek();
+            if (container instanceof List) {
+                ((List<Object>) container).add(value);
+            } else {
+                ((Map<String, Object>) container).put(keys.pop(), value);
+            }
+            token = reader.next();
+        }
+    }
+
+    /**
+     * Returns the filter of a value that starts a container: the root filter at the top
+     * level, the element filter of an enclosing array, or the filter of the member it is the
+     * value of.
+     */
+    private TreeFilter valueFilter(Deque<Object> containers, Deque<TreeFilter> filters, TreeFilter memberFilter) {
+        if (containers.isEmpty()) {
+            return filter;
+        }
+        return containers.peek() instanceof List ? filters.peek().element() : memberFilter;
+    }
+
+    /**
+     * Reads the leading run of numbers of one kind in an array into a primitive buffer.
+     * Returns a complete {@link NumericList} if the run ends the array (the END_ARRAY token is
+     * consumed). Otherwise returns the boxed numbers read so far, with the current token left
+     * at the first element that did not fit, so the caller can continue generically.
+     *
+     * @return a NumericList for the whole array, or an ArrayList with the leading elements
+     */
+    private List<Object> readNumbers() throws IOException {
+        Token kind = token;
+        long[] longs = kind == Token.INTEGER ? new long[16] : null;
+        double[] doubles = kind == Token.FLOAT ? new double[16] : null;
+        int count = 0;
+
+        while (token == kind) {
+            if (longs != null) {
+                if (count == longs.length) {
+                    longs = Arrays.copyOf(longs, count * 2);
+                }
+                longs[count++] = reader.getLong();
+            } else {
+                if (count == doubles.length) {
+                    doubles = Arrays.copyOf(doubles, count * 2);
+                }
+                doubles[count++] = reader.getDouble();
+            }
+            token = reader.next();
+        }
+
+        NumericList numbers = doubles != null ? new NumericList(doubles, count) : new NumericList(longs, count);
+        if (token == Token.END_ARRAY) {
+            return numbers;
+        }
+        // Mixed elements - fall back to boxed values
+        List<Object> list = new ArrayList<>(Math.max(count * 2, 10));
+        list.addAll(numbers);
+        return list;
+    }
+
+    /**
+     * Boxes an integral number as Integer when it fits, Long otherwise.
+     */
+    static Object box(long value) {
+        if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+            return (int) value;
+        }
+        return value;
+    }
+}
@@ -0,0 +1,55 @@
+package com.pjr22.serialization.format;
+
+/**
+ * Selects the parts of a document that {@link TreeBuilder} builds.
+ * <p>
+ * A filter applies to one object or array of the document. For each member of an object it
+ * returns the filter for the member's value; a member whose filter is {@link #SKIP} is
+ * skipped with {@link FormatReader#skipNextValue()} and never built. The elements of an
+ * array all use the filter returned by {@link #element()}. Filters are consulted once per
+ * member, so implementations should return shared instances rather than allocate.
+ */
+public interface TreeFilter {
+
+    /** Builds everything: every member and element is kept. */
+    TreeFilter ALL = new TreeFilter() {
+        @Override
+        public TreeFilter member(String name) {
+            return this;
+        }
+
+        @Override
+        public TreeFilter element() {
+            return this;
+        }
+    };
+
+    /** Returned by {@link #member(String)} for a member whose value is skipped. */
+    TreeFilter SKIP = new TreeFilter() {
+        @Override
+        public TreeFilter member(String name) {
+            return this;
+        }
+
+        @Override
+        public TreeFilter element() {
+            return this;
+        }
+    };
+
+    /**
+     * Returns the filter for the value of a member of the object this filter applies to.
+     *
+     * @param name the member name
+     * @return the filter for the value, or {@link #SKIP} to leave the member out
+     */
+    TreeFilter member(String name);
+
+    /**
+     * Returns the filter for the elements of the array this filter applies to. Elements
+     * cannot be skipped, so this never returns {@link #SKIP}.
+     *
+     * @return the filter for each element
+     */
+    TreeFilter element();
+}
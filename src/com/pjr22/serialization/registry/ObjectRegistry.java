@@ -52,6 +52,16 @@ public class ObjectRegistry {
         return registry.containsKey(objectId);
     }
 
+    /**
+     * Removes the object registered with the given object ID.
+     *
+     * @param objectId the unique object ID
+     * @return the removed object, or null if no object was registered with the ID
+     */
+    public Object remove(String objectId) {
+        return registry.remove(objectId);
+    }
+
     /**
      * Clears all registered objects from the registry.
      */
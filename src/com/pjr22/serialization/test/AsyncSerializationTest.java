@@ -0,0 +1,88 @@
+package com.pjr22.serialization.test;
+
+import com.pjr22.serialization.core.AsyncSerialization;
+import com.pjr22.serialization.core.SerializationException;
+import com.pjr22.serialization.core.Serializer;
+import com.pjr22.serialization.format.BinaryFormatWriter;
+import com.pjr22.serialization.test.data.Roster;
+import com.pjr22.serialization.test.data.RosterFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Tests for the CompletableFuture-based AsyncSerialization API.
+ */
+public class AsyncSerializationTest extends TestCase {
+
+    public void testConcurrentRoundTrips() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            AsyncSerialization async = new AsyncSerialization("ASYNC", 1).withExecutor(executor);
+            List<CompletableFuture<Roster>> futures = new ArrayList<>();
+            for (int i = 1; i <= 20; i++) {
+                futures.add(async.serializeAsync(RosterFactory.withSharedAddress(i))
+                    .thenCompose(bytes -> async.deserializeAsync(ByteBuffer.wrap(bytes), Roster.class)));
+            }
+            for (int i = 1; i <= 20; i++) {
+                assertEquals(i, futures.get(i - 1).get().getMembers().size(), "Each round trip should be independent");
+            }
+
+            byte[] expected = new Serializer("ASYNC", 1).serializeToBytes(RosterFactory.withSharedAddress(5));
+            assertTrue(Arrays.equals(expected, async.serializeAsync(RosterFactory.withSharedAddress(5)).get()),
+                "Each call should use a fresh serializer");
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    public void testDefaultExecutorAndFormats() throws Exception {
+        AsyncSerialization async = new AsyncSerialization("ASYNC", 1).withCompression(true);
+        assertTrue(AsyncSerialization.defaultExecutor() != null, "A default executor should be available");
+
+        byte[] compressed = async.serializeAsync(RosterFactory.withSharedAddress(3)).get();
+        assertEquals(3, async.deserializeAsync(ByteBuffer.wrap(compressed), Roster.class).get().getMembers().size(),
+            "Compressed documents should deserialize");
+
+        ByteArrayOutputStream binary = new ByteArrayOutputStream();
+        new Serializer("ASYNC", 1).serialize(RosterFactory.withSharedAddress(4), new BinaryFormatWriter(binary));
+        ByteBuffer direct = ByteBuffer.allocateDirect(binary.size()).put(binary.toByteArray()).flip();
+        assertEquals(4, async.deserializeAsync(direct, Roster.class).get().getMembers().size(),
+            "Binary documents in direct buffers should deserialize");
+        assertEquals(0, direct.position(), "The buffer position should not change");
+    }
+
+    public void testFailureIsReported() throws InterruptedException {
+        AsyncSerialization async = new AsyncSerialization("ASYNC", 1);
+        CompletableFuture<Roster> future = async.deserializeAsync(
+            ByteBuffer.wrap("{\"$class\": ".getBytes(StandardCharsets.UTF_8)), Roster.class);
+        try {
+            future.get();
+            fail("Malformed input should fail the future");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof SerializationException, "Failure should be a SerializationException");
+        }
+
+        Executor rejecting = task -> {
+            throw new RejectedExecutionException("shut down");
+        };
+        CompletableFuture<byte[]> rejected = new AsyncSerialization("ASYNC", 1).withExecutor(rejecting)
+            .serializeAsync(RosterFactory.withSharedAddress(1));
+        assertTrue(rejected.isCompletedExceptionally(), "Rejected tasks should fail the future");
+    }
+
+    public static void main(String[] args) {
+        AsyncSerializationTest test = new AsyncSerializationTest();
+        test.run();
+    }
+}
@@ -0,0 +1,163 @@
+package com.pjr22.serialization.test;
+
+import com.pjr22.serialization.core.Deserializer;
+import com.pjr22.serialization.core.SerializationException;
+import com.pjr22.serialization.core.Serializer;
+import com.pjr22.serialization.format.BinaryFormatReader;
+import com.pjr22.serialization.format.BinaryFormatWriter;
+import com.pjr22.serialization.test.data.Address;
+import com.pjr22.serialization.test.data.Effect;
+import com.pjr22.serialization.test.data.ImmutablePerson;
+import com.pjr22.serialization.test.data.PersonWithAtomic;
+import com.pjr22.serialization.test.data.PersonWithCircularReference;
+import com.pjr22.serialization.test.data.PersonWithEffectMap;
+import com.pjr22.serialization.test.data.PersonWithSerialVersionUID;
+import com.pjr22.serialization.test.data.PersonWithUUID;
+import com.pjr22.serialization.test.data.PersonWithVariousCollections;
+import com.pjr22.serialization.test.data.ReplayRecord;
+import com.pjr22.serialization.test.data.Roster;
+import com.pjr22.serialization.test.data.RosterFactory;
+import com.pjr22.serialization.test.data.StatTable;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Tests for the binary format written by BinaryFormatWriter and read by BinaryFormatReader.
+ * Most tests check that a binary round trip gives the same object graph as a JSON round trip.
+ */
+public class BinaryFormatTest extends TestCase {
+
+    public void testSharedReferences() throws SerializationException {
+        Roster roster = RosterFactory.withMixedAddresses(3);
+        Roster result = binaryRoundTrip(roster, Roster.class);
+
+        assertEquals(3, result.getMembers().size(), "All members should be loaded");
+        assertTrue(result.getMembers().get(0).getAddress() == result.getMembers().get(2).getAddress(),
+            "Shared address should be one instance");
+        assertSameAsJson(roster, Roster.class);
+    }
+
+    public void testCircularReferences() throws SerializationException {
+        PersonWithCircularReference parent = new PersonWithCircularReference("Parent");
+        PersonWithCircularReference child = new PersonWithCircularReference("Child", parent);
+        parent.addChild(child);
+
+        PersonWithCircularReference result = binaryRoundTrip(parent, PersonWithCircularReference.class);
+        assertTrue(result.getChildren().get(0).getParent() == result, "Child should point back to the parent");
+    }
+
+    public void testComplexMapKeys() throws SerializationException {
+        PersonWithEffectMap person = new PersonWithEffectMap();
+        person.setName("Hero");
+        Effect effect = new Effect("increased strength", Effect.Attribute.Strength, 0.02, 1200, 123456,
+            Effect.Type.FORTIFY_ATTRIBUTE, 0, 5);
+        person.getActiveEffects().put(effect, 7);
+
+        PersonWithEffectMap result = binaryRoundTrip(person, PersonWithEffectMap.class);
+        assertEquals(Integer.valueOf(7), result.getActiveEffects().get(effect), "Effect key should hash to its value");
+        assertSameAsJson(person, PersonWithEffectMap.class);
+    }
+
+    public void testValueTypesAndImmutables() throws SerializationException {
+        PersonWithUUID person = new PersonWithUUID("Carol", UUID.randomUUID(), UUID.randomUUID());
+        assertEquals(person.getId(), binaryRoundTrip(person, PersonWithUUID.class).getId(), "UUID should round trip");
+
+        ImmutablePerson immutable = binaryRoundTrip(new ImmutablePerson("Dana", 41, true), ImmutablePerson.class);
+        assertEquals("Dana", immutable.getName(), "Constructor-bound name should match");
+        assertEquals(41, immutable.getAge(), "Constructor-bound age should match");
+
+        assertSameAsJson(new PersonWithSerialVersionUID("Eve", 33), PersonWithSerialVersionUID.class);
+        assertSameAsJson(new PersonWithAtomic("Frank", 5, true, new Address("2 Elm St", "Shelbyville", "54321")),
+            PersonWithAtomic.class);
+    }
+
+    public void testArraysAndBinaryData() throws SerializationException {
+        StatTable table = new StatTable("stats", new int[] {1, -2, 300000}, new long[] {Long.MIN_VALUE, Long.MAX_VALUE},
+            new double[] {0.5, -1.25}, new float[] {0.1f, 2.5f}, new short[] {7, -7}, new boolean[] {true, false},
+            new char[] {'a', 'z'});
+        StatTable tableResult = binaryRoundTrip(table, StatTable.class);
+        assertTrue(Arrays.equals(table.getTimestamps(), tableResult.getTimestamps()), "long[] should round trip");
+        assertTrue(Arrays.equals(table.getRatios(), tableResult.getRatios()), "float[] should round trip");
+        assertSameAsJson(table, StatTable.class);
+
+        Map<String, byte[]> attachments = new HashMap<>();
+        attachments.put("icon", new byte[] {1, 2, 3});
+        ReplayRecord record = new ReplayRecord("replay", new byte[] {9, 8, 7}, Arrays.asList(new byte[] {4, 5}), attachments);
+        ReplayRecord result = binaryRoundTrip(record, ReplayRecord.class);
+        assertTrue(Arrays.equals(record.getPayload(), result.getPayload()), "Payload should round trip");
+        assertTrue(Arrays.equals(new byte[] {4, 5}, result.getFrames().get(0)), "Frames should round trip");
+        assertTrue(Arrays.equals(new byte[] {1, 2, 3}, result.getAttachments().get("icon")), "Attachments should round trip");
+    }
+
+    public void testCollections() throws SerializationException {
+        PersonWithVariousCollections person = new PersonWithVariousCollections();
+        person.setName("Grace");
+        person.getActiveEffects().add("haste");
+        person.getActiveEffects().add("shield");
+        assertSameAsJson(person, PersonWithVariousCollections.class);
+    }
+
+    public void testBinaryIsSmallerThanJson() throws SerializationException {
+        Roster roster = RosterFactory.withMixedAddresses(500);
+        int jsonSize = serializeJson(roster).getBytes(StandardCharsets.UTF_8).length;
+        int binarySize = serializeBinary(roster).length;
+        assertTrue(binarySize * 3 < jsonSize, "Binary output (" + binarySize + " bytes) should be well below JSON ("
+            + jsonSize + " bytes)");
+    }
+
+    public void testStreamDeserializerDetectsBinary() throws SerializationException {
+        byte[] data = serializeBinary(RosterFactory.withMixedAddresses(3));
+        assertTrue(BinaryFormatReader.isBinary(data), "Binary documents should be recognized");
+        Roster result = new Deserializer<>(Roster.class).deserialize(new ByteArrayInputStream(data));
+        assertEquals(3, result.getMembers().size(), "Members should be loaded from the detected binary document");
+    }
+
+    public void testTruncatedDocumentIsRejected() throws SerializationException {
+        byte[] data = serializeBinary(RosterFactory.withMixedAddresses(3));
+        try {
+            new Deserializer<>(Roster.class).deserialize(new BinaryFormatReader(Arrays.copyOf(data, data.length / 2)));
+            fail("Truncated document should be rejected");
+        } catch (SerializationException e) {
+            assertTrue(e.getCause() instanceof IllegalArgumentException, "Truncation should be reported as malformed input");
+        }
+    }
+
+    /**
+     * Checks that a binary round trip produces the same object graph as a JSON round trip,
+     * by serializing both results to JSON.
+     */
+    private <T> void assertSameAsJson(T object, Class<T> type) throws SerializationException {
+        T fromJson = new Deserializer<>(type).deserialize(
+            new ByteArrayInputStream(serializeJson(object).getBytes(StandardCharsets.UTF_8)));
+        T fromBinary = binaryRoundTrip(object, type);
+        assertEquals(serializeJson(fromJson), serializeJson(fromBinary),
+            type.getSimpleName() + " should round trip through binary as it does through JSON");
+    }
+
+    private <T> T binaryRoundTrip(T object, Class<T> type) throws SerializationException {
+        return new Deserializer<>(type).deserialize(new BinaryFormatReader(serializeBinary(object)));
+    }
+
+    private byte[] serializeBinary(Object object) throws SerializationException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new Serializer("BIN", 1).serialize(object, new BinaryFormatWriter(out));
+        return out.toByteArray();
+    }
+
+    private String serializeJson(Object object) throws SerializationException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new Serializer("BIN", 1).serialize(object, out);
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    public static void main(String[] args) {
+        BinaryFormatTest test = new BinaryFormatTest();
+        test.run();
+    }
+}
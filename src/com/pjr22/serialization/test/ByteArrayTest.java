@@ -0,0 +1,129 @@
+package com.pjr22.serialization.test;
+
+import com.pjr22.serialization.core.Deserializer;
+import com.pjr22.serialization.core.SerializationException;
+import com.pjr22.serialization.core.Serializer;
+import com.pjr22.serialization.test.data.ReplayRecord;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests for Base64 encoding of byte[] fields and byte arrays in collections and maps.
+ */
+public class ByteArrayTest extends TestCase {
+
+    static class Untyped {
+        private List<Object> items = new ArrayList<>();
+        private Map<String, Object> values = new LinkedHashMap<>();
+
+        Untyped() {
+        }
+    }
+
+    public void testByteArrayFieldIsWrittenAsBase64() throws SerializationException {
+        byte[] payload = new byte[]{0, 1, 2, (byte) 0xFF, 127, -128};
+        ReplayRecord record = new ReplayRecord("replay", payload, null, null);
+
+        String json = serialize(record);
+
+        String expected = "\"payload\":\"" + Base64.getEncoder().encodeToString(payload) + "\"";
+        assertTrue(json.contains(expected), "byte[] field should be written as a Base64 string: " + json);
+    }
+
+    public void testByteArrayFieldRoundTrip() throws SerializationException {
+        byte[] payload = new byte[300_000];
+        for (int i = 0; i < payload.length; i++) {
+            payload[i] = (byte) (i * 7);
+        }
+        ReplayRecord original = new ReplayRecord("replay", payload, null, null);
+
+        ReplayRecord result = deserialize(serialize(original));
+
+        assertEquals("replay", result.getName(), "Name should match");
+        assertTrue(Arrays.equals(payload, result.getPayload()), "Payload should round trip");
+    }
+
+    public void testByteArraysInCollectionsAndMapsRoundTrip() throws SerializationException {
+        List<byte[]> frames = new ArrayList<>();
+        frames.add(new byte[]{1, 2, 3});
+        frames.add(new byte[0]);
+        Map<String, byte[]> attachments = new LinkedHashMap<>();
+        attachments.put("thumb", new byte[]{9, 8, 7});
+        ReplayRecord original = new ReplayRecord("replay", null, frames, attachments);
+
+        String json = serialize(original);
+        ReplayRecord result = deserialize(json);
+
+        assertTrue(json.contains("{\"$base64\":\"AQID\"}"), "Collection element should use the Base64 marker");
+        assertNull(result.getPayload(), "Null payload should stay null");
+        assertEquals(2, result.getFrames().size(), "Frame count should match");
+        assertTrue(Arrays.equals(new byte[]{1, 2, 3}, result.getFrames().get(0)), "First frame should match");
+        assertEquals(0, result.getFrames().get(1).length, "Empty frame should stay empty");
+        assertTrue(Arrays.equals(new byte[]{9, 8, 7}, result.getAttachments().get("thumb")), "Map value should match");
+    }
+
+    @SuppressWarnings("unchecked")
+    public void testUserMapLikeMarkerIsNotDecoded() throws SerializationException {
+        Map<String, Object> lookalike = new LinkedHashMap<>();
+        lookalike.put("$base64", "AAEC");
+        Untyped original = new Untyped();
+        original.items.add(lookalike);
+        original.items.add(new byte[]{0, 1, 2});
+        original.values.put("$base64", "AAEC");
+
+        for (Serializer.Layout layout : Serializer.Layout.values()) {
+            byte[] data = new Serializer("BIN", 1).withLayout(layout).serializeToBytes(original);
+            Untyped result = new Deserializer<>(Untyped.class).deserialize(new ByteArrayInputStream(data));
+
+            assertTrue(result.items.get(0) instanceof Map, "User map should stay a map in " + layout);
+            assertEquals("AAEC", ((Map<String, Object>) result.items.get(0)).get("$base64"), "User key should round trip in " + layout);
+            assertTrue(Arrays.equals(new byte[]{0, 1, 2}, (byte[]) result.items.get(1)), "Real byte[] should still decode in " + layout);
+            assertEquals("AAEC", result.values.get("$base64"), "Map field key should round trip in " + layout);
+        }
+    }
+
+    public void testNumericByteArrayIsStillAccepted() throws SerializationException {
+        String json = "{\"$id\":\"OLD_1\",\"$class\":\"com.pjr22.serialization.test.data.ReplayRecord\","
+            + "\"fields\":{\"name\":\"old\",\"payload\":[1,2,-3],\"frames\":null,\"attachments\":null}}";
+
+        ReplayRecord result = deserialize(json);
+
+        assertTrue(Arrays.equals(new byte[]{1, 2, -3}, result.getPayload()), "Numeric byte arrays should still deserialize");
+    }
+
+    public void testInvalidBase64IsReported() {
+        String json = "{\"$id\":\"BAD_1\",\"$class\":\"com.pjr22.serialization.test.data.ReplayRecord\","
+            + "\"fields\":{\"name\":\"bad\",\"payload\":\"not*base64\",\"frames\":null,\"attachments\":null}}";
+        try {
+            deserialize(json);
+            fail("Invalid Base64 should fail");
+        } catch (SerializationException e) {
+            // expected
+        }
+    }
+
+    private String serialize(Object object) throws SerializationException {
+        Serializer serializer = new Serializer("BIN", 1);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        serializer.serialize(object, outputStream);
+        return outputStream.toString(StandardCharsets.UTF_8);
+    }
+
+    private ReplayRecord deserialize(String json) throws SerializationException {
+        Deserializer<ReplayRecord> deserializer = new Deserializer<>(ReplayRecord.class);
+        return deserializer.deserialize(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    public static void main(String[] args) {
+        ByteArrayTest test = new ByteArrayTest();
+        test.run();
+    }
+}
@@ -0,0 +1,115 @@
+package com.pjr22.serialization.test;
+
+import com.pjr22.serialization.core.Deserializer;
+import com.pjr22.serialization.core.SerializationException;
+import com.pjr22.serialization.core.Serializer;
+import com.pjr22.serialization.test.data.Roster;
+import com.pjr22.serialization.test.data.RosterFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.Pipe;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Tests for serializing to byte arrays, ByteBuffers and WritableByteChannels.
+ */
+public class ChannelOutputTest extends TestCase {
+
+    public void testBytesMatchStreamOutput() throws SerializationException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new Serializer("CH", 1).serialize(RosterFactory.withOwnAddresses(20), out);
+        byte[] bytes = new Serializer("CH", 1).serializeToBytes(RosterFactory.withOwnAddresses(20));
+        assertTrue(Arrays.equals(out.toByteArray(), bytes), "serializeToBytes should match the stream output");
+
+        byte[] compressed = new Serializer("CH", 1).withCompression(true).serializeToBytes(RosterFactory.withOwnAddresses(20));
+        Roster result = new Deserializer<>(Roster.class).deserialize(new ByteArrayInputStream(compressed));
+        assertEquals(20, result.getMembers().size(), "Compressed bytes should deserialize");
+    }
+
+    public void testBufferOverflowHandler() throws SerializationException {
+        byte[] expected = new Serializer("CH", 1).serializeToBytes(RosterFactory.withOwnAddresses(50));
+
+        // Grow: copy into a buffer twice the size
+        ByteBuffer grown = new Serializer("CH", 1).serialize(RosterFactory.withOwnAddresses(50), ByteBuffer.allocate(64), full -> {
+            full.flip();
+            return ByteBuffer.allocate(full.capacity() * 2).put(full);
+        });
+        grown.flip();
+        byte[] actual = new byte[grown.remaining()];
+        grown.get(actual);
+        assertTrue(Arrays.equals(expected, actual), "Grown buffer should hold the whole document");
+
+        // Drain: send the contents elsewhere and reuse the buffer
+        ByteArrayOutputStream sink = new ByteArrayOutputStream();
+        ByteBuffer last = new Serializer("CH", 1).serialize(RosterFactory.withOwnAddresses(50), ByteBuffer.allocateDirect(100), full -> {
+            drain(full, sink);
+            return full;
+        });
+        drain(last, sink);
+        assertTrue(Arrays.equals(expected, sink.toByteArray()), "Drained chunks should form the whole document");
+
+        try {
+            new Serializer("CH", 1).serialize(RosterFactory.withOwnAddresses(50), ByteBuffer.allocate(64));
+            fail("A document larger than the buffer should be rejected without a handler");
+        } catch (SerializationException e) {
+            assertTrue(e.getMessage().contains("does not fit"), "Overflow should be reported: " + e.getMessage());
+        }
+    }
+
+    public void testChannelOutput() throws IOException, SerializationException {
+        // Large enough for several batches of pooled buffers
+        Roster roster = RosterFactory.withOwnAddresses(20000);
+        byte[] expected = new Serializer("CH", 1).serializeToBytes(roster);
+        assertTrue(expected.length > 16 * 64 * 1024, "Document should span more than one gathering write");
+
+        Path file = Files.createTempFile("channel", ".json");
+        try {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                new Serializer("CH", 1).serialize(roster, channel);
+            }
+            assertTrue(Arrays.equals(expected, Files.readAllBytes(file)), "File channel should receive the document");
+        } finally {
+            Files.deleteIfExists(file);
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new Serializer("CH", 1).serialize(RosterFactory.withOwnAddresses(5), Channels.newChannel(out));
+        Roster result = new Deserializer<>(Roster.class).deserialize(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(5, result.getMembers().size(), "Non-gathering channels should receive the document");
+    }
+
+    public void testNonBlockingChannelRejected() throws IOException, SerializationException {
+        Pipe pipe = Pipe.open();
+        try {
+            pipe.sink().configureBlocking(false);
+            new Serializer("CH", 1).serialize(RosterFactory.withOwnAddresses(5), pipe.sink());
+            fail("Non-blocking channel should be rejected");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("newTask"), "Message should point to tasks: " + e.getMessage());
+        } finally {
+            pipe.sink().close();
+            pipe.source().close();
+        }
+    }
+
+    private static void drain(ByteBuffer buffer, ByteArrayOutputStream sink) {
+        buffer.flip();
+        byte[] chunk = new byte[buffer.remaining()];
+        buffer.get(chunk);
+        sink.writeBytes(chunk);
+        buffer.clear();
+    }
+
+    public static void main(String[] args) {
+        ChannelOutputTest test = new ChannelOutputTest();
+        test.run();
+    }
+}
@@ -0,0 +1,129 @@
+package com.pjr22.serialization.test;
+
+import com.pjr22.serialization.compress.LzBlockCodec;
+import com.pjr22.serialization.compress.LzBlockInputStream;
+import com.pjr22.serialization.compress.LzBlockOutputStream;
+import com.pjr22.serialization.core.Deserializer;
+import com.pjr22.serialization.core.DeserializerStream;
+import com.pjr22.serialization.core.SerializationException;
+import com.pjr22.serialization.core.Serializer;
+import com.pjr22.serialization.core.SerializerStream;
+import com.pjr22.serialization.test.data.Roster;
+import com.pjr22.serialization.test.data.RosterFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+/**
+ * Tests for the LZ block codec, its framed streams and the compression options of the
+ * Serializer and SerializerStream.
+ */
+public class CompressionTest extends TestCase {
+
+    public void testCodecRoundTrip() throws IOException {
+        Random random = new Random(42);
+        byte[] noise = new byte[10000];
+        random.nextBytes(noise);
+        byte[] repetitive = "{\"$class\":\"com.example.Item\",\"fields\":{\"name\":\"sword\"}}".repeat(200)
+            .getBytes(StandardCharsets.UTF_8);
+        byte[] runs = new byte[5000];
+        Arrays.fill(runs, 1000, 4000, (byte) 'x');
+
+        for (byte[] data : Arrays.asList(new byte[0], new byte[] {7}, noise, repetitive, runs)) {
+            byte[] compressed = new byte[LzBlockCodec.maxCompressedLength(data.length)];
+            int length = new LzBlockCodec().compress(data, 0, data.length, compressed, 0);
+            byte[] restored = new byte[data.length];
+            LzBlockCodec.decompress(compressed, 0, length, restored, 0, data.length);
+            assertTrue(Arrays.equals(data, restored), "Block of " + data.length + " bytes should round trip");
+        }
+    }
+
+    public void testStreamRoundTripAcrossBlocks() throws IOException {
+        byte[] data = "The quick brown fox jumps over the lazy dog. ".repeat(5000).getBytes(StandardCharsets.UTF_8);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (LzBlockOutputStream compressor = new LzBlockOutputStream(out, 4096)) {
+            compressor.write(data, 0, 1000);
+            compressor.flush();
+            compressor.write(data, 1000, data.length - 1000);
+        }
+        byte[] compressed = out.toByteArray();
+        assertTrue(compressed.length * 5 < data.length, "Repetitive text should compress well");
+
+        try (LzBlockInputStream in = new LzBlockInputStream(new ByteArrayInputStream(compressed))) {
+            assertTrue(Arrays.equals(data, in.readAllBytes()), "Data should round trip across many blocks");
+        }
+    }
+
+    public void testCorruptionIsDetected() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (LzBlockOutputStream compressor = new LzBlockOutputStream(out)) {
+            compressor.write("payload payload payload payload".getBytes(StandardCharsets.UTF_8));
+        }
+        byte[] compressed = out.toByteArray();
+
+        byte[] corrupted = compressed.clone();
+        corrupted[corrupted.length - 6] ^= 0x01;
+        try (LzBlockInputStream in = new LzBlockInputStream(new ByteArrayInputStream(corrupted))) {
+            in.readAllBytes();
+            fail("Corrupted block should be rejected");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("Malformed") || e.getMessage().contains("checksum"),
+                "Corruption should be reported: " + e.getMessage());
+        }
+
+        try (LzBlockInputStream in = new LzBlockInputStream(new ByteArrayInputStream(Arrays.copyOf(compressed, compressed.length - 2)))) {
+            in.readAllBytes();
+            fail("Missing end marker should be rejected");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("Unexpected end"), "Truncation should be reported");
+        }
+    }
+
+    public void testCompressedSerializerRoundTrip() throws SerializationException {
+        Roster roster = RosterFactory.withOwnAddresses(200);
+
+        ByteArrayOutputStream plain = new ByteArrayOutputStream();
+        new Serializer("LZ", 1).serialize(roster, plain);
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        new Serializer("LZ", 1).withCompression(true).serialize(roster, compressed);
+
+        assertTrue(compressed.size() * 3 < plain.size(), "Compressed output (" + compressed.size()
+            + " bytes) should be much smaller than JSON (" + plain.size() + " bytes)");
+
+        Roster result = new Deserializer<>(Roster.class).deserialize(new ByteArrayInputStream(compressed.toByteArray()));
+        assertEquals(200, result.getMembers().size(), "Members should be loaded from compressed input");
+        assertEquals("Member 199", result.getMembers().get(199).getName(), "Member order should be preserved");
+    }
+
+    public void testCompressedRecordStream() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (SerializerStream stream = new SerializerStream(out, "LZ", 1, SerializerStream.Framing.NEWLINE)
+                .withCompression(true)) {
+            for (int i = 0; i < 50; i++) {
+                stream.write(RosterFactory.withOwnAddresses(3));
+            }
+        } catch (SerializationException e) {
+            fail("Serialization failed: " + e.getMessage());
+        }
+        assertTrue(LzBlockInputStream.isCompressed(out.toByteArray()), "Stream should start with the compressed header");
+
+        try (DeserializerStream<Roster> records = new DeserializerStream<>(
+                new ByteArrayInputStream(out.toByteArray()), Roster.class, SerializerStream.Framing.NEWLINE)) {
+            List<Integer> sizes = records.stream().map(r -> r.getMembers().size()).collect(Collectors.toList());
+            assertEquals(50, sizes.size(), "All records should be read back");
+            assertEquals(Integer.valueOf(3), sizes.get(49), "Records should be complete");
+        }
+    }
+
+    public static void main(String[] args) {
+        CompressionTest test = new CompressionTest();
+        test.run();
+    }
+}
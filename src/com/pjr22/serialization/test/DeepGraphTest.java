@@ -0,0 +1,104 @@
+package com.pjr22.serialization.test;
+
+import com.pjr22.serialization.core.Deserializer;
+import com.pjr22.serialization.core.Serializer;
+import com.pjr22.serialization.core.SerializationException;
+import com.pjr22.serialization.format.JsonParser;
+import com.pjr22.serialization.test.data.ChainNode;
+import com.pjr22.serialization.test.data.PersonWithCircularReference;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Tests that deep object graphs and deeply nested JSON are handled without
+ * running out of thread stack.
+ */
+public class DeepGraphTest extends TestCase {
+
+    private static final int DEPTH = 50000;
+
+    public void testLongChainRoundTrip() throws SerializationException {
+        ChainNode head = null;
+        for (int i = DEPTH - 1; i >= 0; i--) {
+            head = new ChainNode(i, head);
+        }
+
+        String json = serialize(head);
+        ChainNode result = new Deserializer<>(ChainNode.class).deserialize(toStream(json));
+
+        int count = 0;
+        for (ChainNode node = result; node != null; node = node.getNext()) {
+            assertEquals(count, node.getSequence(), "Chain order should be preserved");
+            count++;
+        }
+        assertEquals(DEPTH, count, "Every node should be loaded");
+    }
+
+    public void testDeepParentChildTreeRoundTrip() throws SerializationException {
+        PersonWithCircularReference root = new PersonWithCircularReference("node0");
+        PersonWithCircularReference current = root;
+        for (int i = 1; i < DEPTH; i++) {
+            PersonWithCircularReference child = new PersonWithCircularReference("node" + i, current);
+            current.addChild(child);
+            current = child;
+        }
+
+        String json = serialize(root);
+        PersonWithCircularReference result = new Deserializer<>(PersonWithCircularReference.class).deserialize(toStream(json));
+
+        PersonWithCircularReference node = result;
+        for (int i = 1; i < DEPTH; i++) {
+            PersonWithCircularReference child = node.getChildren().get(0);
+            assertTrue(child.getParent() == node, "Child " + i + " should point back to its parent");
+            node = child;
+        }
+        assertEquals("node" + (DEPTH - 1), node.getName(), "Deepest node should be loaded");
+        assertTrue(node.getChildren().isEmpty(), "Deepest node should have no children");
+    }
+
+    public void testDeeplyNestedArraysParse() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < DEPTH; i++) {
+            sb.append('[');
+        }
+        sb.append("{\"leaf\":true}");
+        for (int i = 0; i < DEPTH; i++) {
+            sb.append(']');
+        }
+
+        Object parsed = JsonParser.parse(sb.toString());
+        int depth = 0;
+        while (parsed instanceof List) {
+            parsed = ((List<?>) parsed).get(0);
+            depth++;
+        }
+        assertEquals(DEPTH, depth, "Every nesting level should be parsed");
+    }
+
+    public void testUnterminatedNestingIsRejected() {
+        try {
+            JsonParser.parse("{\"a\":[1,{\"b\":[\"x\"");
+            fail("Unterminated containers should be rejected");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    private String serialize(Object object) throws SerializationException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new Serializer("DEEP", 1).serialize(object, out);
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private ByteArrayInputStream toStream(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static void main(String[] args) {
+        DeepGraphTest test = new DeepGraphTest();
+        test.run();
+    }
+}
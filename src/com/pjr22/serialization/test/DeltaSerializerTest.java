@@ -0,0 +1,151 @@
+package com.pjr22.serialization.test;
+
+import com.pjr22.serialization.core.DeltaSerializer;
+import com.pjr22.serialization.core.Deserializer;
+import com.pjr22.serialization.core.SerializationException;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests for delta serialization and applying patches to a live graph.
+ */
+public class DeltaSerializerTest extends TestCase {
+
+    static class Unit {
+        private String name;
+        private int hp;
+        private Unit target;
+
+        Unit() {
+        }
+
+        Unit(String name, int hp) {
+            this.name = name;
+            this.hp = hp;
+        }
+    }
+
+    static class World {
+        private long tick;
+        private List<Unit> units = new ArrayList<>();
+        private Map<String, Integer> scores = new LinkedHashMap<>();
+        private Unit leader;
+
+        World() {
+        }
+    }
+
+    private World createWorld(int size) {
+        World world = new World();
+        for (int i = 0; i < size; i++) {
+            world.units.add(new Unit("unit " + i, 100));
+            world.scores.put("team " + i, i);
+        }
+        world.leader = world.units.get(0);
+        return world;
+    }
+
+    private World apply(Deserializer<World> receiver, byte[] document) throws SerializationException {
+        return receiver.deserialize(new ByteArrayInputStream(document));
+    }
+
+    public void testPatchUpdatesLiveGraph() throws SerializationException {
+        World world = createWorld(200);
+        DeltaSerializer sender = new DeltaSerializer("DLT", 1);
+        Deserializer<World> receiver = new Deserializer<>(World.class);
+        byte[] full = sender.serializeToBytes(world);
+        World replica = apply(receiver, full);
+        Unit replicaUnit = replica.units.get(3);
+
+        world.tick++;
+        world.units.get(3).hp -= 25;
+        world.units.get(3).target = world.units.get(7);
+        Unit spawned = new Unit("spawned", 50);
+        spawned.target = world.units.get(1);
+        world.units.add(spawned);
+        world.scores.put("team 5", 99);
+        world.leader = world.units.get(2);
+        byte[] patch = sender.serializeToBytes(world);
+
+        assertTrue(patch.length * 20 < full.length, "Patch should be much smaller than the document ("
+            + patch.length + " vs " + full.length + " bytes)");
+        String text = new String(patch, StandardCharsets.UTF_8);
+        assertTrue(text.contains("\"$append\""), "Grown list should be written as an append");
+        assertTrue(text.contains("\"$put\""), "Map with one changed entry should be written as an edit");
+
+        World patched = apply(receiver, patch);
+        assertTrue(patched == replica, "Patch should update the graph read before");
+        assertEquals(1L, replica.tick, "Changed scalar should be set");
+        assertTrue(replica.units.get(3) == replicaUnit, "Changed objects should keep their identity");
+        assertEquals(75, replicaUnit.hp, "Changed field should be set");
+        assertTrue(replicaUnit.target == replica.units.get(7), "Changed reference should resolve to the existing object");
+        assertEquals(201, replica.units.size(), "Appended element should be added");
+        assertEquals("spawned", replica.units.get(200).name, "New object should be defined by the patch");
+        assertTrue(replica.units.get(200).target == replica.units.get(1), "New object should refer to existing objects");
+        assertEquals(Integer.valueOf(99), replica.scores.get("team 5"), "Map entry should be put");
+        assertEquals(200, replica.scores.size(), "Other map entries should be kept");
+        assertTrue(replica.leader == replica.units.get(2), "Changed object field should be set");
+    }
+
+    public void testUnchangedGraphWritesEmptyPatch() throws SerializationException {
+        World world = createWorld(50);
+        DeltaSerializer sender = new DeltaSerializer("DLT", 1);
+        sender.serializeToBytes(world);
+
+        String patch = new String(sender.serializeToBytes(world), StandardCharsets.UTF_8);
+        assertTrue(patch.contains("\"changes\":[]"), "No changes should be written: " + patch);
+        assertTrue(patch.contains("\"released\":[]"), "No objects should be released: " + patch);
+    }
+
+    public void testRemovedObjectsAreReleased() throws SerializationException {
+        World world = createWorld(10);
+        DeltaSerializer sender = new DeltaSerializer("DLT", 1);
+        Deserializer<World> receiver = new Deserializer<>(World.class);
+        World replica = apply(receiver, sender.serializeToBytes(world));
+
+        Unit removed = world.units.remove(4);
+        world.scores.remove("team 4");
+        String patch = new String(sender.serializeToBytes(world), StandardCharsets.UTF_8);
+        assertTrue(!patch.contains("\"released\":[]"), "Unreachable object should be released: " + patch);
+        apply(receiver, patch.getBytes(StandardCharsets.UTF_8));
+        assertEquals(9, replica.units.size(), "Removed element should be gone");
+        assertEquals("unit 5", replica.units.get(4).name, "Following elements should move up");
+        assertTrue(!replica.scores.containsKey("team 4"), "Removed key should be gone");
+
+        // A released object that comes back is written again as a new object
+        removed.hp = 1;
+        world.units.add(removed);
+        apply(receiver, sender.serializeToBytes(world));
+        assertEquals("unit 4", replica.units.get(9).name, "Returning object should be defined again");
+        assertEquals(1, replica.units.get(9).hp, "Returning object should have its current state");
+    }
+
+    public void testResetWritesFullDocument() throws SerializationException {
+        World world = createWorld(5);
+        DeltaSerializer sender = new DeltaSerializer("DLT", 1);
+        sender.serializeToBytes(world);
+        sender.reset();
+        world.tick = 42;
+
+        World copy = new Deserializer<>(World.class).deserialize(new ByteArrayInputStream(sender.serializeToBytes(world)));
+        assertEquals(42L, copy.tick, "Document after a reset should be complete");
+        assertEquals(5, copy.units.size(), "Document after a reset should hold the whole graph");
+
+        try {
+            sender.serializeToBytes(new ArrayList<>());
+            fail("Collection root should be rejected");
+        } catch (SerializationException e) {
+            assertTrue(e.getMessage().contains("object root"), "Message should explain the root requirement");
+        }
+    }
+
+    public static void main(String[] args) {
+        DeltaSerializerTest test = new DeltaSerializerTest();
+        test.run();
+    }
+}
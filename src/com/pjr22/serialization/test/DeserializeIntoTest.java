@@ -0,0 +1,147 @@
+package com.pjr22.serialization.test;
+
+import com.pjr22.serialization.core.Deserializer;
+import com.pjr22.serialization.core.SerializationException;
+import com.pjr22.serialization.core.Serializer;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests for deserializing into an existing object graph.
+ */
+public class DeserializeIntoTest extends TestCase {
+
+    static class Position {
+        private double x;
+        private double y;
+
+        Position() {
+        }
+
+        Position(double x, double y) {
+            this.x = x;
+            this.y = y;
+        }
+    }
+
+    static class Player {
+        private String name;
+        private int hp;
+        private Position position;
+
+        Player() {
+        }
+
+        Player(String name, int hp) {
+            this.name = name;
+            this.hp = hp;
+            this.position = new Position(0, 0);
+        }
+    }
+
+    static class State {
+        private long tick;
+        private List<Player> players = new ArrayList<>();
+        private Map<String, Player> byName = new LinkedHashMap<>();
+        private List<String> log = new ArrayList<>();
+
+        State() {
+        }
+    }
+
+    private State createState(int players) {
+        State state = new State();
+        for (int i = 0; i < players; i++) {
+            Player player = new Player("player " + i, 100);
+            state.players.add(player);
+            state.byName.put(player.name, player);
+        }
+        state.log.add("started");
+        return state;
+    }
+
+    private ByteArrayInputStream write(State state) throws SerializationException {
+        return new ByteArrayInputStream(new Serializer("TICK", 1).serializeToBytes(state));
+    }
+
+    public void testUpdatesExistingGraph() throws SerializationException {
+        State source = createState(3);
+        Deserializer<State> deserializer = new Deserializer<>(State.class);
+        State state = deserializer.deserialize(write(source));
+        List<Player> players = state.players;
+        Map<String, Player> byName = state.byName;
+        Player first = players.get(0);
+        Position position = first.position;
+
+        source.tick = 7;
+        source.players.get(0).hp = 55;
+        source.players.get(0).position.x = 12.5;
+        source.log.add("tick 7");
+        State result = deserializer.deserializeInto(state, write(source));
+
+        assertTrue(result == state, "Root should be the existing object");
+        assertEquals(7L, state.tick, "Root field should be overwritten");
+        assertTrue(state.players == players, "List should be refilled in place");
+        assertTrue(state.byName == byName, "Map should be refilled in place");
+        assertTrue(state.players.get(0) == first, "Element should be bound into the existing object");
+        assertTrue(first.position == position, "Nested object should be bound into the existing object");
+        assertEquals(55, first.hp, "Element field should be overwritten");
+        assertEquals(12.5, position.x, "Nested field should be overwritten");
+        assertTrue(state.byName.get("player 0") == first, "Map values should resolve to the same objects");
+        assertEquals(2, state.log.size(), "String list should be refilled");
+    }
+
+    public void testCollectionsGrowAndShrink() throws SerializationException {
+        State source = createState(3);
+        Deserializer<State> deserializer = new Deserializer<>(State.class);
+        State state = deserializer.deserialize(write(source));
+        Player second = state.players.get(1);
+
+        source.players.remove(2);
+        source.byName.remove("player 2");
+        Player added = new Player("added", 10);
+        source.players.add(added);
+        source.byName.put(added.name, added);
+        deserializer.deserializeInto(state, write(source));
+
+        assertEquals(3, state.players.size(), "List should have the document's elements");
+        assertTrue(state.players.get(1) == second, "Unchanged position should keep its object");
+        assertEquals("added", state.players.get(2).name, "Element at a reused position should be overwritten");
+        assertEquals(3, state.byName.size(), "Map should have the document's entries");
+        assertTrue(state.byName.get("added") == state.players.get(2), "Map value should resolve to the list element");
+        assertTrue(!state.byName.containsKey("player 2"), "Removed entry should be gone");
+    }
+
+    public void testObjectsWithoutPositionMatchedById() throws SerializationException {
+        State source = createState(2);
+        Deserializer<State> deserializer = new Deserializer<>(State.class);
+        State earlier = deserializer.deserialize(write(source));
+
+        // A new root has empty collections, so its elements are matched by ID
+        State state = deserializer.deserializeInto(new State(), write(source));
+        assertEquals(2, state.players.size(), "Elements should be bound");
+        assertTrue(state.players.get(0) == earlier.players.get(0), "Object with the same ID should be reused");
+        assertTrue(state.players.get(1).position == earlier.players.get(1).position,
+            "Nested objects should be reused too");
+    }
+
+    public void testRootClassMustMatch() throws SerializationException {
+        byte[] data = new Serializer("TICK", 1).serializeToBytes(new Player("solo", 1));
+        try {
+            new Deserializer<>(State.class).deserializeInto(new State(), new ByteArrayInputStream(data));
+            fail("Root of another class should be rejected");
+        } catch (SerializationException e) {
+            assertTrue(String.valueOf(e.getMessage()).contains("Player")
+                || String.valueOf(e.getCause()).contains("Player"), "Message should name the document's class");
+        }
+    }
+
+    public static void main(String[] args) {
+        DeserializeIntoTest test = new DeserializeIntoTest();
+        test.run();
+    }
+}
@@ -0,0 +1,181 @@
+package com.pjr22.serialization.test;
+
+import com.pjr22.serialization.core.Deserializer;
+import com.pjr22.serialization.core.SerializationException;
+import com.pjr22.serialization.core.Serializer;
+import com.pjr22.serialization.test.data.Address;
+import com.pjr22.serialization.test.data.Effect;
+import com.pjr22.serialization.test.data.PersonWithReferences;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Flow;
+
+/**
+ * Tests for publishing the elements of a top-level array through Flow with backpressure.
+ */
+public class ElementPublisherTest extends TestCase {
+
+    public void testDemandDrivesParsing() throws SerializationException {
+        List<Effect> effects = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            effects.add(new Effect("effect " + i, Effect.Attribute.Strength, i * 0.01, 1200, i,
+                Effect.Type.FORTIFY_ATTRIBUTE, 0, 5));
+        }
+        byte[] data = new Serializer("PUB", 1).serializeToBytes(effects);
+        CountingInputStream input = new CountingInputStream(new ByteArrayInputStream(data));
+
+        RecordingSubscriber<Effect> subscriber = new RecordingSubscriber<>();
+        new Deserializer<>(Effect.class).publishElements(input).subscribe(subscriber);
+        assertEquals(0L, input.count, "Nothing should be read before there is demand");
+
+        subscriber.subscription.request(3);
+        assertEquals(3, subscriber.items.size(), "Requested elements should be delivered");
+        assertEquals("effect 2", subscriber.items.get(2).getDescription(), "Elements should arrive in order");
+        assertTrue(input.count < 20000, "Only the start of the document should be read, but " + input.count
+            + " of " + data.length + " bytes were");
+
+        subscriber.subscription.request(Long.MAX_VALUE);
+        assertEquals(5000, subscriber.items.size(), "All elements should be delivered");
+        assertTrue(subscriber.completed, "Publisher should complete");
+        assertTrue(input.closed, "Input should be closed on completion");
+    }
+
+    public void testReferencesBetweenElements() throws SerializationException {
+        Address shared = new Address("1 Main St", "Springfield", "12345");
+        List<PersonWithReferences> people = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            people.add(new PersonWithReferences("Person " + i, shared, null));
+        }
+        byte[] data = new Serializer("PUB", 1).withCompression(true).serializeToBytes(people);
+
+        RecordingSubscriber<PersonWithReferences> subscriber = new RecordingSubscriber<>();
+        new Deserializer<>(PersonWithReferences.class).publishElements(new ByteArrayInputStream(data)).subscribe(subscriber);
+        for (int i = 0; i < 10; i++) {
+            subscriber.subscription.request(1);
+        }
+        subscriber.subscription.request(1);
+        assertEquals(10, subscriber.items.size(), "All elements should be delivered from compressed input");
+        assertTrue(subscriber.items.get(0).getAddress() == subscriber.items.get(9).getAddress(),
+            "Shared objects should resolve across elements");
+        assertTrue(subscriber.completed, "Publisher should complete");
+    }
+
+    public void testValueDefinitionsAsElements() throws SerializationException {
+        List<UUID> ids = Arrays.asList(UUID.randomUUID(), UUID.randomUUID());
+        byte[] data = new Serializer("PUB", 1).serializeToBytes(ids);
+
+        RecordingSubscriber<UUID> subscriber = new RecordingSubscriber<>();
+        new Deserializer<>(UUID.class).publishElements(new ByteArrayInputStream(data)).subscribe(subscriber);
+        subscriber.subscription.request(10);
+        assertEquals(ids, subscriber.items, "Value definitions in an array should be separated correctly");
+    }
+
+    public void testErrorsAndCancellation() {
+        RecordingSubscriber<Effect> broken = new RecordingSubscriber<>();
+        new Deserializer<>(Effect.class).publishElements(
+            new ByteArrayInputStream("[{\"$id\": 1,".getBytes(StandardCharsets.UTF_8))).subscribe(broken);
+        broken.subscription.request(5);
+        assertTrue(broken.error instanceof SerializationException, "Malformed input should be reported");
+
+        CountingInputStream input = new CountingInputStream(new ByteArrayInputStream("[1, 2, 3]".getBytes(StandardCharsets.UTF_8)));
+        RecordingSubscriber<Integer> cancelled = new RecordingSubscriber<>();
+        new Deserializer<>(Integer.class).publishElements(input).subscribe(cancelled);
+        cancelled.subscription.request(1);
+        cancelled.subscription.cancel();
+        cancelled.subscription.request(5);
+        assertEquals(1, cancelled.items.size(), "Nothing should be delivered after cancellation");
+        assertTrue(input.closed, "Input should be closed on cancellation");
+    }
+
+    public void testInvalidRequestIsSignalledSerially() {
+        CountingInputStream input = new CountingInputStream(new ByteArrayInputStream("[1, 2, 3]".getBytes(StandardCharsets.UTF_8)));
+        boolean[] overlapped = new boolean[1];
+        RecordingSubscriber<Integer> subscriber = new RecordingSubscriber<>() {
+            private boolean inOnNext;
+
+            @Override
+            public void onNext(Integer item) {
+                inOnNext = true;
+                super.onNext(item);
+                subscription.request(0);
+                inOnNext = false;
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                overlapped[0] |= inOnNext;
+                super.onError(throwable);
+            }
+        };
+        new Deserializer<>(Integer.class).publishElements(input).subscribe(subscriber);
+        subscriber.subscription.request(5);
+        assertTrue(subscriber.error instanceof IllegalArgumentException, "Non-positive request should be reported");
+        assertTrue(!overlapped[0], "Error should not be signalled while onNext is running");
+        assertEquals(1, subscriber.items.size(), "Nothing should be delivered after the invalid request");
+        assertTrue(input.closed, "Input should be closed after the invalid request");
+    }
+
+    private static class RecordingSubscriber<T> implements Flow.Subscriber<T> {
+        final List<T> items = new ArrayList<>();
+        Flow.Subscription subscription;
+        Throwable error;
+        boolean completed;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(T item) {
+            items.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+        }
+    }
+
+    private static class CountingInputStream extends FilterInputStream {
+        long count;
+        boolean closed;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            closed = true;
+            super.close();
+        }
+    }
+
+    public static void main(String[] args) {
+        ElementPublisherTest test = new ElementPublisherTest();
+        test.run();
+    }
+}
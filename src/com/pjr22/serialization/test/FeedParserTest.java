@@ -0,0 +1,137 @@
+package com.pjr22.serialization.test;
+
+import com.pjr22.serialization.core.DeserializerFeed;
+import com.pjr22.serialization.core.SerializationException;
+import com.pjr22.serialization.core.SerializerStream;
+import com.pjr22.serialization.format.JsonFeedParser;
+import com.pjr22.serialization.format.JsonParser;
+import com.pjr22.serialization.format.NumericList;
+import com.pjr22.serialization.test.data.Roster;
+import com.pjr22.serialization.test.data.RosterFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Tests for the incremental JsonFeedParser and the DeserializerFeed built on it.
+ */
+public class FeedParserTest extends TestCase {
+
+    private static final String DOCUMENT = "{\"name\": \"caf\u00e9 \\\"\u4e2d\\u00e9\\n\", \"n\": [1, -20, 300],"
+        + " \"d\": [0.5, 1e3], \"mixed\": [1, \"a\", 2.5, null], \"flags\": [true, false], \"empty\": {}, \"none\": []}";
+
+    public void testByteAtATimeMatchesParser() {
+        Object expected = JsonParser.parse(DOCUMENT);
+        byte[] bytes = DOCUMENT.getBytes(StandardCharsets.UTF_8);
+
+        List<Object> results = new ArrayList<>();
+        JsonFeedParser parser = new JsonFeedParser(results::add);
+        for (int i = 0; i < bytes.length; i++) {
+            parser.feed(ByteBuffer.wrap(bytes, i, 1));
+            assertEquals(i < bytes.length - 1 ? 0 : 1, results.size(), "Document should complete with its last byte");
+        }
+        parser.finish();
+        assertEquals(expected, results.get(0), "Byte-at-a-time parse should match JsonParser");
+    }
+
+    @SuppressWarnings("unchecked")
+    public void testSequenceInRandomChunks() {
+        String input = DOCUMENT + "\n" + DOCUMENT + "  [1,2]\n\"text\" 42 true ";
+        byte[] bytes = input.getBytes(StandardCharsets.UTF_8);
+        Random random = new Random(7);
+
+        for (int round = 0; round < 20; round++) {
+            List<Object> results = new ArrayList<>();
+            JsonFeedParser parser = new JsonFeedParser(results::add);
+            int offset = 0;
+            while (offset < bytes.length) {
+                int n = Math.min(bytes.length - offset, 1 + random.nextInt(12));
+                ByteBuffer chunk = ByteBuffer.allocateDirect(n).put(bytes, offset, n).flip();
+                parser.feed(chunk);
+                offset += n;
+            }
+            parser.finish();
+            assertEquals(6, results.size(), "All documents should be delivered");
+            assertEquals(JsonParser.parse(DOCUMENT), results.get(1), "Documents should parse independently");
+            assertTrue(((Map<String, Object>) results.get(0)).get("n") instanceof NumericList,
+                "Integral arrays should be NumericLists");
+            assertTrue(results.get(2) instanceof NumericList, "Top-level numeric arrays should be NumericLists");
+            assertEquals("text", results.get(3), "Top-level strings should be delivered");
+            assertEquals(Integer.valueOf(42), results.get(4), "Top-level numbers should be delivered");
+            assertEquals(Boolean.TRUE, results.get(5), "Top-level literals should be delivered");
+        }
+    }
+
+    public void testMalformedInput() {
+        String[] inputs = {"{\"a\" 1}", "[1 2]", "{\"a\": tru}", "[01]", "{\"a\": \"\\uZZZZ\"}", "}"};
+        for (String input : inputs) {
+            JsonFeedParser parser = new JsonFeedParser(value -> { });
+            try {
+                parser.feed(ByteBuffer.wrap(input.getBytes(StandardCharsets.UTF_8)));
+                parser.finish();
+                fail("Malformed input should be rejected: " + input);
+            } catch (IllegalArgumentException e) {
+                assertTrue(e.getMessage().contains("position"), "Error should report a position: " + e.getMessage());
+            }
+            try {
+                parser.feed(ByteBuffer.wrap(new byte[] {' '}));
+                fail("Failed parser should reject more input");
+            } catch (IllegalStateException e) {
+                // expected
+            }
+        }
+
+        JsonFeedParser parser = new JsonFeedParser(value -> { });
+        parser.feed(ByteBuffer.wrap("{\"a\": [1".getBytes(StandardCharsets.UTF_8)));
+        assertTrue(parser.hasPartialDocument(), "Incomplete document should be pending");
+        try {
+            parser.finish();
+            fail("End of input inside a document should be rejected");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("Unexpected end"), "Truncation should be reported");
+        }
+    }
+
+    public void testDeserializerFeed() throws SerializationException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (SerializerStream stream = new SerializerStream(out, "FEED", 1, SerializerStream.Framing.NEWLINE)) {
+            for (int i = 0; i < 30; i++) {
+                stream.write(RosterFactory.withSharedAddress(i % 4 + 1));
+            }
+        } catch (IOException e) {
+            fail("Serialization failed: " + e.getMessage());
+        }
+        byte[] bytes = out.toByteArray();
+
+        List<Roster> rosters = new ArrayList<>();
+        DeserializerFeed<Roster> feed = new DeserializerFeed<>(Roster.class, rosters::add);
+        for (int offset = 0; offset < bytes.length; offset += 100) {
+            feed.feed(ByteBuffer.wrap(bytes, offset, Math.min(100, bytes.length - offset)));
+        }
+        feed.finish();
+
+        assertEquals(30, rosters.size(), "All records should be delivered");
+        assertEquals(4, rosters.get(3).getMembers().size(), "Records should be complete");
+        assertTrue(rosters.get(3).getMembers().get(0).getAddress() == rosters.get(3).getMembers().get(3).getAddress(),
+            "References should resolve within a record");
+
+        DeserializerFeed<Roster> broken = new DeserializerFeed<>(Roster.class, rosters::add);
+        try {
+            broken.feed(ByteBuffer.wrap("{\"$class\": ]".getBytes(StandardCharsets.UTF_8)));
+            fail("Malformed input should be rejected");
+        } catch (SerializationException e) {
+            assertTrue(e.getCause() instanceof IllegalArgumentException, "Parse errors should be the cause");
+        }
+    }
+
+    public static void main(String[] args) {
+        FeedParserTest test = new FeedParserTest();
+        test.run();
+    }
+}
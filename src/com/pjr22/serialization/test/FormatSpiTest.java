@@ -0,0 +1,232 @@
+package com.pjr22.serialization.test;
+
+import com.pjr22.serialization.core.Deserializer;
+import com.pjr22.serialization.core.SerializationException;
+import com.pjr22.serialization.core.Serializer;
+import com.pjr22.serialization.format.FormatReader;
+import com.pjr22.serialization.format.FormatReader.Token;
+import com.pjr22.serialization.format.FormatWriter;
+import com.pjr22.serialization.format.JsonFormatReader;
+import com.pjr22.serialization.format.JsonFormatWriter;
+import com.pjr22.serialization.test.data.Roster;
+import com.pjr22.serialization.test.data.RosterFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tests for the FormatWriter/FormatReader SPI and its JSON implementations.
+ */
+public class FormatSpiTest extends TestCase {
+
+    public void testJsonFormatWriterMatchesStreamOutput() throws SerializationException {
+        Roster roster = RosterFactory.withSharedAddress(2);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new Serializer("SPI", 1).serialize(roster, out);
+        String expected = new String(out.toByteArray(), StandardCharsets.UTF_8);
+
+        StringBuilder sb = new StringBuilder();
+        new Serializer("SPI", 1).serialize(roster, new JsonFormatWriter(sb));
+
+        assertEquals(expected, sb.toString(), "JsonFormatWriter should produce the stream output");
+    }
+
+    public void testWriterReceivesGraphEvents() throws SerializationException {
+        RecordingWriter writer = new RecordingWriter();
+        new Serializer("SPI", 1).serialize(RosterFactory.withSharedAddress(2), writer);
+
+        assertEquals("beginObject(SPI_1)", writer.events.get(0), "Root definition should come first");
+        assertTrue(writer.events.contains("field(members)"), "Fields should be named");
+        assertTrue(writer.events.contains("beginArray(2)"), "Collections should report their size");
+        assertTrue(writer.events.contains("reference(SPI_3)"), "Shared address should be written as a reference");
+        assertEquals("endObject", writer.events.get(writer.events.size() - 1), "Root definition should end last");
+        assertEquals(0, writer.depth, "Events should be balanced");
+    }
+
+    public void testJsonFormatReaderTokens() throws IOException {
+        FormatReader reader = new JsonFormatReader("{\"a\":[1,2.5,\"x\"],\"b\":null,\"c\":true}");
+
+        List<Token> tokens = new ArrayList<>();
+        Token token;
+        while ((token = reader.next()) != Token.END_DOCUMENT) {
+            tokens.add(token);
+        }
+
+        assertEquals(Arrays.asList(Token.BEGIN_OBJECT, Token.NAME, Token.BEGIN_ARRAY, Token.INTEGER, Token.FLOAT,
+            Token.STRING, Token.END_ARRAY, Token.NAME, Token.NULL, Token.NAME, Token.BOOLEAN, Token.END_OBJECT), tokens,
+            "Reader should produce the logical token stream");
+    }
+
+    public void testSkipValue() throws IOException {
+        FormatReader reader = new JsonFormatReader("[{\"a\":[1,{\"b\":2}]},3]");
+        assertEquals(Token.BEGIN_ARRAY, reader.next(), "Array should start");
+        reader.skipValue(reader.next());
+        assertEquals(Token.INTEGER, reader.next(), "Skipping should stop after the nested object");
+        assertEquals(3L, reader.getLong(), "Value after the skipped object should be read");
+    }
+
+    public void testDeserializeFromFormatReader() throws SerializationException {
+        StringBuilder sb = new StringBuilder();
+        new Serializer("SPI", 1).serialize(RosterFactory.withSharedAddress(2), new JsonFormatWriter(sb));
+
+        Roster result = new Deserializer<>(Roster.class).deserialize(new JsonFormatReader(sb.toString()));
+
+        assertEquals("Team", result.getName(), "Roster name should match");
+        assertEquals(2, result.getMembers().size(), "Both members should be loaded");
+        assertTrue(result.getMembers().get(0).getAddress() == result.getMembers().get(1).getAddress(),
+            "Shared address should be one instance");
+    }
+
+    public void testReaderRejectsMalformedInput() throws IOException {
+        FormatReader reader = new JsonFormatReader("[1 2]");
+        reader.next();
+        reader.next();
+        try {
+            reader.next();
+            fail("Missing separator should be rejected");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("Expected ',' or ']'"), "Error should report the missing separator");
+        }
+    }
+
+    /**
+     * Records the structural events it receives and tracks nesting depth.
+     */
+    private static class RecordingWriter implements FormatWriter {
+        final List<String> events = new ArrayList<>();
+        int depth;
+
+        @Override
+        public void beginObject(String id, String className) {
+            events.add("beginObject(" + id + ")");
+            depth++;
+        }
+
+        @Override
+        public void serialVersionUID(long serialVersionUID) {
+        }
+
+        @Override
+        public void beginFields() {
+            depth++;
+        }
+
+        @Override
+        public void field(String name) {
+            events.add("field(" + name + ")");
+        }
+
+        @Override
+        public void endFields() {
+            depth--;
+        }
+
+        @Override
+        public void beginMapKeys() {
+            depth++;
+        }
+
+        @Override
+        public void mapKey(String id) {
+        }
+
+        @Override
+        public void endMapKeys() {
+            depth--;
+        }
+
+        @Override
+        public void simpleValue() {
+        }
+
+        @Override
+        public void endObject() {
+            events.add("endObject");
+            depth--;
+        }
+
+        @Override
+        public void reference(String id) {
+            events.add("reference(" + id + ")");
+        }
+
+        @Override
+        public void beginArray(int size) {
+            events.add("beginArray(" + size + ")");
+            depth++;
+        }
+
+        @Override
+        public void endArray() {
+            depth--;
+        }
+
+        @Override
+        public void beginMap(int size) {
+            depth++;
+        }
+
+        @Override
+        public void key(String key) {
+        }
+
+        @Override
+        public void referenceKey(String id) {
+        }
+
+        @Override
+        public void endMap() {
+            depth--;
+        }
+
+        @Override
+        public void writeNull() {
+        }
+
+        @Override
+        public void writeBoolean(boolean value) {
+        }
+
+        @Override
+        public void writeLong(long value) {
+        }
+
+        @Override
+        public void writeFloat(float value) {
+        }
+
+        @Override
+        public void writeDouble(double value) {
+        }
+
+        @Override
+        public void writeNumber(Number value) {
+        }
+
+        @Override
+        public void writeString(String value) {
+        }
+
+        @Override
+        public void writeBinary(byte[] value) {
+        }
+
+        @Override
+        public void writeTaggedBinary(byte[] value) {
+        }
+
+        @Override
+        public void flush() {
+        }
+    }
+
+    public static void main(String[] args) {
+        FormatSpiTest test = new FormatSpiTest();
+        test.run();
+    }
+}
@@ -0,0 +1,174 @@
+package com.pjr22.serialization.test;
+
+import com.pjr22.serialization.core.Deserializer;
+import com.pjr22.serialization.core.FragmentCache;
+import com.pjr22.serialization.core.SerializationException;
+import com.pjr22.serialization.core.Serializer;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests for cached fragments of unchanged objects.
+ */
+public class FragmentCacheTest extends TestCase {
+
+    static class Item {
+        private String name;
+        private int price;
+
+        Item() {
+        }
+
+        Item(String name, int price) {
+            this.name = name;
+            this.price = price;
+        }
+    }
+
+    static class Catalog {
+        private List<Item> items = new ArrayList<>();
+
+        Catalog() {
+        }
+    }
+
+    static class Config implements FragmentCache.Versioned {
+        private int maxPlayers;
+        private transient long version;
+
+        Config() {
+        }
+
+        @Override
+        public long fragmentVersion() {
+            return version;
+        }
+    }
+
+    static class Player {
+        private String name;
+        private Item favourite;
+
+        Player() {
+        }
+    }
+
+    static class World {
+        private Catalog catalog;
+        private Config config;
+        private List<Player> players = new ArrayList<>();
+
+        World() {
+        }
+    }
+
+    private World createWorld() {
+        World world = new World();
+        world.catalog = new Catalog();
+        for (int i = 0; i < 50; i++) {
+            world.catalog.items.add(new Item("item " + i, i * 10));
+        }
+        world.config = new Config();
+        world.config.maxPlayers = 8;
+        for (int i = 0; i < 3; i++) {
+            Player player = new Player();
+            player.name = "player " + i;
+            player.favourite = world.catalog.items.get(i * 10);
+            world.players.add(player);
+        }
+        return world;
+    }
+
+    private World roundTrip(World world, FragmentCache cache, int startingId) throws SerializationException {
+        byte[] data = new Serializer("W", startingId).withFragmentCache(cache).serializeToBytes(world);
+        return new Deserializer<>(World.class).deserialize(new ByteArrayInputStream(data));
+    }
+
+    public void testFragmentIsReused() throws SerializationException {
+        World world = createWorld();
+        FragmentCache cache = new FragmentCache(1 << 20);
+        cache.markCacheable(world.catalog);
+
+        World first = roundTrip(world, cache, 1);
+        assertEquals(2, cache.size(), "Catalog and versioned config should be cached");
+        assertEquals(50, first.catalog.items.size(), "First document should be complete");
+
+        // Unreported changes are not seen, which shows the cached text was used
+        world.catalog.items.get(0).price = 999;
+        World second = roundTrip(world, cache, 500);
+        assertEquals(0, second.catalog.items.get(0).price, "Cached text should be copied");
+        assertTrue(second.players.get(2).favourite == second.catalog.items.get(20),
+            "References to cached objects should resolve to them");
+        assertEquals("item 10", second.players.get(1).favourite.name, "Referenced object should be intact");
+
+        cache.markDirty(world.catalog.items.get(0));
+        assertEquals(1, cache.size(), "Marking a defined object dirty should drop its fragment");
+        World third = roundTrip(world, cache, 1);
+        assertEquals(999, third.catalog.items.get(0).price, "Dirty fragment should be written again");
+        assertEquals(2, cache.size(), "Fragment should be cached again");
+    }
+
+    public void testVersionedObjectsAreCached() throws SerializationException {
+        World world = createWorld();
+        FragmentCache cache = new FragmentCache(1 << 20);
+
+        roundTrip(world, cache, 1);
+        assertEquals(1, cache.size(), "Versioned object should be cached without marking");
+
+        world.config.maxPlayers = 16;
+        assertEquals(8, roundTrip(world, cache, 1).config.maxPlayers, "Same version should reuse the fragment");
+        world.config.version++;
+        assertEquals(16, roundTrip(world, cache, 1).config.maxPlayers, "New version should be written again");
+    }
+
+    public void testReferencesOutsideAreNotCached() throws SerializationException {
+        World world = createWorld();
+        FragmentCache cache = new FragmentCache(1 << 20);
+        // Refers to catalog items defined before it
+        cache.markCacheable(world.players.get(1));
+
+        World copy = roundTrip(world, cache, 1);
+        assertEquals(1, cache.size(), "Only the versioned config should be cached");
+        assertTrue(copy.players.get(1).favourite == copy.catalog.items.get(10), "Reference should be written normally");
+    }
+
+    public void testSpliceSkippedWhenAlreadyDefined() throws SerializationException {
+        World world = createWorld();
+        FragmentCache cache = new FragmentCache(1 << 20);
+        cache.markCacheable(world.catalog);
+        roundTrip(world, cache, 1);
+
+        // The player now defines an item before the catalog is reached
+        Player first = new Player();
+        first.favourite = world.catalog.items.get(5);
+        List<Object> root = new ArrayList<>();
+        root.add(first);
+        root.add(world.catalog);
+        String json = new String(new Serializer("W", 1).withFragmentCache(cache).serializeToBytes(root),
+            StandardCharsets.UTF_8);
+        assertEquals(json.indexOf("\"item 5\""), json.lastIndexOf("\"item 5\""), "Object should be defined once");
+    }
+
+    public void testEvictionWithinBudget() throws SerializationException {
+        FragmentCache cache = new FragmentCache(600);
+        List<Catalog> catalogs = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            Catalog catalog = new Catalog();
+            catalog.items.add(new Item("item " + i, i));
+            cache.markCacheable(catalog);
+            catalogs.add(catalog);
+        }
+        new Serializer("W", 1).withFragmentCache(cache).serializeToBytes(catalogs);
+
+        assertTrue(cache.size() > 0 && cache.size() < 10, "Some fragments should be evicted: " + cache.size());
+        assertTrue(cache.getCachedChars() <= 600, "Cached text should stay within the budget");
+    }
+
+    public static void main(String[] args) {
+        FragmentCacheTest test = new FragmentCacheTest();
+        test.run();
+    }
+}
@@ -0,0 +1,157 @@
+package com.pjr22.serialization.test;
+
+import com.pjr22.serialization.core.GraphCopier;
+import com.pjr22.serialization.core.SerializationException;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests for in-memory deep copies with GraphCopier.
+ */
+public class GraphCopierTest extends TestCase {
+
+    static class Node {
+        private String name;
+        private int weight;
+        private double score;
+        private boolean visited;
+        private Node next;
+        private List<Node> children = new ArrayList<>();
+
+        Node() {
+        }
+
+        Node(String name, int weight) {
+            this.name = name;
+            this.weight = weight;
+        }
+    }
+
+    static class Point {
+        private final int x;
+        private final int y;
+
+        Point(int x, int y) {
+            this.x = x;
+            this.y = y;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Point && ((Point) other).x == x && ((Point) other).y == y;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * x + y;
+        }
+    }
+
+    static class Board {
+        private final String title;
+        private Map<Point, Node> cells = new HashMap<>();
+        private Set<Point> marked = new HashSet<>();
+        private TreeSet<String> names = new TreeSet<>(Comparator.reverseOrder());
+        private long[] history = {1, 2, 3};
+        private Node[] slots = new Node[2];
+        private AtomicInteger counter = new AtomicInteger();
+
+        Board(String title) {
+            this.title = title;
+        }
+    }
+
+    public void testCopiesFieldsAndKeepsIdentity() throws SerializationException {
+        Node root = new Node("root", 3);
+        root.score = 1.5;
+        root.visited = true;
+        Node child = new Node("child", 1);
+        root.children.add(child);
+        root.children.add(child);
+        root.next = child;
+
+        Node copy = GraphCopier.deepCopy(root);
+        assertTrue(copy != root, "Root should be a new object");
+        assertEquals("root", copy.name, "String field should be copied");
+        assertEquals(3, copy.weight, "Int field should be copied");
+        assertEquals(1.5, copy.score, "Double field should be copied");
+        assertTrue(copy.visited, "Boolean field should be copied");
+        assertTrue(copy.children != root.children, "List should be copied");
+        assertTrue(copy.next != child, "Child should be copied");
+        assertTrue(copy.children.get(0) == copy.next && copy.children.get(1) == copy.next,
+            "Shared object should be copied once");
+
+        copy.next.weight = 99;
+        assertEquals(1, child.weight, "Original should not change with the copy");
+    }
+
+    public void testCopiesCycles() throws SerializationException {
+        Node first = new Node("first", 1);
+        Node second = new Node("second", 2);
+        first.next = second;
+        second.next = first;
+        first.children.add(first);
+
+        Node copy = GraphCopier.deepCopy(first);
+        assertTrue(copy.next.next == copy, "Cycle should lead back to the copy");
+        assertTrue(copy.children.get(0) == copy, "Self reference should be the copy");
+        assertEquals("second", copy.next.name, "Object in the cycle should be copied");
+    }
+
+    public void testCopiesLongChainsWithoutRecursion() throws SerializationException {
+        Node head = new Node("0", 0);
+        Node tail = head;
+        for (int i = 1; i < 100_000; i++) {
+            tail.next = new Node(String.valueOf(i), i);
+            tail = tail.next;
+        }
+
+        Node copy = GraphCopier.deepCopy(head);
+        int count = 0;
+        for (Node node = copy; node != null; node = node.next) {
+            count++;
+        }
+        assertEquals(100_000, count, "Every node of the chain should be copied");
+    }
+
+    public void testCopiesContainersAndConstructorOnlyClasses() throws SerializationException {
+        Board board = new Board("board");
+        Point shared = new Point(1, 2);
+        Node cell = new Node("cell", 5);
+        board.cells.put(shared, cell);
+        board.cells.put(new Point(3, 4), new Node("other", 6));
+        board.marked.add(shared);
+        board.names.add("a");
+        board.names.add("c");
+        board.names.add("b");
+        board.slots[1] = cell;
+        board.counter.set(7);
+
+        Board copy = GraphCopier.deepCopy(board);
+        assertEquals("board", copy.title, "Final field should be passed to the constructor");
+        assertEquals(2, copy.cells.size(), "Map entries should be copied");
+        assertEquals("cell", copy.cells.get(new Point(1, 2)).name, "Complex key should find its value");
+        Point key = copy.marked.iterator().next();
+        assertTrue(key != shared, "Complex key should be copied");
+        assertTrue(copy.cells.containsKey(key) && copy.cells.keySet().stream().anyMatch(k -> k == key),
+            "Key shared between the map and the set should be copied once");
+        assertTrue(copy.slots[1] == copy.cells.get(key), "Array element should be the copied object");
+        assertEquals("c", copy.names.first(), "Sorted set should keep its comparator");
+        assertTrue(copy.history != board.history && copy.history[2] == 3, "Primitive array should be cloned");
+        assertEquals(7, copy.counter.get(), "Atomic value should be copied");
+        assertTrue(copy.counter != board.counter, "Atomic should be a new object");
+    }
+
+    public static void main(String[] args) {
+        GraphCopierTest test = new GraphCopierTest();
+        test.run();
+    }
+}
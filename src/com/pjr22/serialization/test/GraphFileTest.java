@@ -0,0 +1,132 @@
+package com.pjr22.serialization.test;
+
+import com.pjr22.serialization.core.GraphFile;
+import com.pjr22.serialization.core.SerializationException;
+import com.pjr22.serialization.core.Serializer;
+import com.pjr22.serialization.test.data.Address;
+import com.pjr22.serialization.test.data.Department;
+import com.pjr22.serialization.test.data.PersonWithCircularReference;
+import com.pjr22.serialization.test.data.PersonWithReferences;
+import com.pjr22.serialization.test.data.Roster;
+import com.pjr22.serialization.test.data.RosterFactory;
+import com.pjr22.serialization.test.data.SimplePerson;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests for indexed files and loading single objects from them with GraphFile.
+ */
+public class GraphFileTest extends TestCase {
+
+    public void testPointLookupFollowsReferences() throws IOException, SerializationException {
+        Department sales = new Department("Sales", new BigDecimal("1000.00"), new SimplePerson("Boss", 50, 90000, true));
+        Roster roster = RosterFactory.withOwnAddresses(1000, "Member ", sales);
+        Path file = Files.createTempFile("graph", ".json");
+        try {
+            new Serializer("IDX", 1).withIndex(true).serialize(roster, file);
+
+            try (GraphFile graph = GraphFile.open(file).withCacheSize(100)) {
+                // IDs are assigned in document order: the roster, then each member followed by
+                // its address, with the shared department defined inside the first member
+                assertTrue(graph.contains("IDX_1004"), "Index should list nested objects");
+                PersonWithReferences member = graph.get("IDX_1004", PersonWithReferences.class);
+                assertEquals("Member 500", member.getName(), "Requested object should be loaded");
+                assertEquals(new Address("500 Main St", "Springfield", "12345"), member.getAddress(),
+                    "Objects defined inside the requested object should be loaded");
+                assertEquals("Sales", member.getDepartment().getName(), "References should be followed through the index");
+
+                PersonWithReferences next = graph.get("IDX_1006", PersonWithReferences.class);
+                assertTrue(member.getDepartment() == next.getDepartment(), "Cached objects should be shared between loads");
+                assertTrue(graph.get("IDX_1004") == member, "Loaded objects should be cached");
+
+                try {
+                    graph.get("IDX_1004", Roster.class);
+                    fail("Wrong type should be rejected");
+                } catch (SerializationException e) {
+                    assertTrue(e.getMessage().contains("not a"), "Type mismatch should be reported");
+                }
+            }
+        } finally {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(file.resolveSibling(file.getFileName() + ".idx"));
+        }
+    }
+
+    public void testReferenceToEnclosingObject() throws IOException, SerializationException {
+        PersonWithCircularReference root = new PersonWithCircularReference("Root");
+        List<PersonWithCircularReference> children = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            children.add(new PersonWithCircularReference("Child " + i, root));
+        }
+        root.setChildren(children);
+        Path file = Files.createTempFile("graph", ".json");
+        try {
+            new Serializer("IDX", 1).withIndex(true).serialize(root, file);
+
+            try (GraphFile graph = GraphFile.open(file)) {
+                PersonWithCircularReference child = graph.get("IDX_3", PersonWithCircularReference.class);
+                assertEquals("Child 1", child.getName(), "Requested object should be loaded");
+                assertEquals("Root", child.getParent().getName(), "Enclosing object should be loaded by reference");
+                assertTrue(child.getParent().getChildren().get(1) == child,
+                    "The enclosing object should reuse the object already loaded");
+            }
+        } finally {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(file.resolveSibling(file.getFileName() + ".idx"));
+        }
+    }
+
+    public void testPositionalFieldsAndMultiByteText() throws IOException, SerializationException {
+        Roster roster = RosterFactory.withOwnAddresses(20, "Jos\u00e9 \u6771\u4eac ", null);
+        Path file = Files.createTempFile("graph", ".json");
+        try {
+            new Serializer("IDX", 1).withIndex(true).withPositionalFields(true).serialize(roster, file);
+
+            try (GraphFile graph = GraphFile.open(file)) {
+                PersonWithReferences member = graph.get("IDX_22", PersonWithReferences.class);
+                assertEquals("Jos\u00e9 \u6771\u4eac 10", member.getName(),
+                    "Offsets should be byte offsets and schemas should come from the index");
+                assertEquals("10 Main St", member.getAddress().getStreet(), "Nested object should be bound");
+            }
+        } finally {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(file.resolveSibling(file.getFileName() + ".idx"));
+        }
+    }
+
+    public void testMissingOrStaleIndexIsRejected() throws IOException, SerializationException {
+        Path file = Files.createTempFile("graph", ".json");
+        Path index = file.resolveSibling(file.getFileName() + ".idx");
+        try {
+            new Serializer("IDX", 1).serialize(RosterFactory.withOwnAddresses(2, "Member ", null), file);
+            try {
+                GraphFile.open(file);
+                fail("File without an index should be rejected");
+            } catch (SerializationException e) {
+                assertTrue(e.getMessage().contains("No index"), "Missing index should be reported");
+            }
+
+            new Serializer("IDX", 1).withIndex(true).serialize(RosterFactory.withOwnAddresses(2, "Member ", null), file);
+            new Serializer("IDX", 1).serialize(RosterFactory.withOwnAddresses(3, "Member ", null), file);
+            try {
+                GraphFile.open(file);
+                fail("Index of another version of the file should be rejected");
+            } catch (SerializationException e) {
+                assertTrue(e.getMessage().contains("does not match"), "Stale index should be reported");
+            }
+        } finally {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(index);
+        }
+    }
+
+    public static void main(String[] args) {
+        GraphFileTest test = new GraphFileTest();
+        test.run();
+    }
+}
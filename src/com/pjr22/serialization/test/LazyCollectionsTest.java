@@ -0,0 +1,143 @@
+package com.pjr22.serialization.test;
+
+import com.pjr22.serialization.core.Deserializer;
+import com.pjr22.serialization.core.SerializationException;
+import com.pjr22.serialization.core.Serializer;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests for lazy collection and map fields, which bind their contents on first access.
+ */
+public class LazyCollectionsTest extends TestCase {
+
+    /**
+     * Counts the instances the deserializer creates.
+     */
+    static class Item {
+        static int created;
+        private String label;
+
+        Item() {
+            created++;
+        }
+
+        Item(String label) {
+            this.label = label;
+            created++;
+        }
+
+        String getLabel() {
+            return label;
+        }
+    }
+
+    static class Inventory {
+        private String owner;
+        private List<Item> items = new ArrayList<>();
+        private Map<String, Item> byLabel = new LinkedHashMap<>();
+        // Written after items, so it is a reference into the lazy list
+        private Item favourite;
+
+        Inventory() {
+        }
+    }
+
+    private byte[] createInventory(int size) throws SerializationException {
+        Inventory inventory = new Inventory();
+        inventory.owner = "Ann";
+        for (int i = 0; i < size; i++) {
+            Item item = new Item("item " + i);
+            inventory.items.add(item);
+            inventory.byLabel.put(item.label, item);
+        }
+        inventory.favourite = inventory.items.get(size / 2);
+        return new Serializer("LZY", 1).serializeToBytes(inventory);
+    }
+
+    public void testElementsBindOnAccess() throws SerializationException {
+        byte[] data = createInventory(100);
+        Item.created = 0;
+        Inventory inventory = new Deserializer<>(Inventory.class).withLazyCollections(true)
+            .deserialize(new ByteArrayInputStream(data));
+
+        assertEquals("Ann", inventory.owner, "Other fields should be bound");
+        assertEquals(100, inventory.items.size(), "Size should be known without binding");
+        assertEquals(1, Item.created, "Only the object referenced from outside the list should be bound");
+
+        assertEquals("item 7", inventory.items.get(7).getLabel(), "Element should be bound when read");
+        assertEquals(2, Item.created, "Reading an element should bind only that element");
+        assertTrue(inventory.items.get(7) == inventory.items.get(7), "A bound element should be kept");
+
+        int count = 0;
+        for (Item item : inventory.items) {
+            assertEquals("item " + count++, item.getLabel(), "Iteration should bind elements in order");
+        }
+        assertEquals(100, Item.created, "Every element should be bound once");
+    }
+
+    public void testReferencesIntoLazyFields() throws SerializationException {
+        byte[] data = createInventory(10);
+        Inventory inventory = new Deserializer<>(Inventory.class).withLazyCollections(true)
+            .deserialize(new ByteArrayInputStream(data));
+
+        assertEquals("item 5", inventory.favourite.getLabel(), "Reference into a lazy list should resolve");
+        assertTrue(inventory.favourite == inventory.items.get(5), "Referenced element should keep its identity");
+        assertEquals(10, inventory.byLabel.size(), "Map size should be known without binding");
+        assertTrue(inventory.byLabel.get("item 3") == inventory.items.get(3),
+            "Map values should be the list elements");
+    }
+
+    public void testModificationBindsEverything() throws SerializationException {
+        byte[] data = createInventory(5);
+        Item.created = 0;
+        Inventory inventory = new Deserializer<>(Inventory.class).withLazyCollections(true)
+            .deserialize(new ByteArrayInputStream(data));
+
+        inventory.items.add(0, null);
+        assertEquals(5, Item.created, "Adding should bind the existing elements");
+        assertEquals(6, inventory.items.size(), "Added element should be counted");
+        assertEquals("item 4", inventory.items.remove(5).getLabel(), "Removal should return the element");
+        inventory.byLabel.remove("item 0");
+        assertEquals(4, inventory.byLabel.size(), "Map should be modifiable");
+    }
+
+    public void testConcurrentReaders() throws Exception {
+        byte[] data = createInventory(2000);
+        Inventory inventory = new Deserializer<>(Inventory.class).withLazyCollections(true)
+            .deserialize(new ByteArrayInputStream(data));
+
+        Item[][] seen = new Item[4][];
+        Thread[] threads = new Thread[seen.length];
+        for (int t = 0; t < threads.length; t++) {
+            int reader = t;
+            threads[t] = new Thread(() -> {
+                seen[reader] = inventory.items.toArray(new Item[0]);
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        for (int t = 1; t < seen.length; t++) {
+            for (int i = 0; i < seen[0].length; i++) {
+                assertTrue(seen[t][i] == seen[0][i], "Every reader should see the same instances");
+            }
+        }
+    }
+
+    public void testEagerByDefault() throws SerializationException {
+        Inventory inventory = new Deserializer<>(Inventory.class)
+            .deserialize(new ByteArrayInputStream(createInventory(3)));
+        assertEquals(ArrayList.class, inventory.items.getClass(), "Lists should be bound eagerly by default");
+    }
+
+    public static void main(String[] args) {
+        LazyCollectionsTest test = new LazyCollectionsTest();
+        test.run();
+    }
+}
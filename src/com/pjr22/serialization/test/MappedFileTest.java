@@ -0,0 +1,101 @@
+package com.pjr22.serialization.test;
+
+import com.pjr22.serialization.core.Deserializer;
+import com.pjr22.serialization.core.SerializationException;
+import com.pjr22.serialization.core.Serializer;
+import com.pjr22.serialization.format.BinaryFormatWriter;
+import com.pjr22.serialization.format.JsonFormatReader;
+import com.pjr22.serialization.format.JsonParser;
+import com.pjr22.serialization.format.TreeBuilder;
+import com.pjr22.serialization.test.data.Roster;
+import com.pjr22.serialization.test.data.RosterFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+/**
+ * Tests for deserializing memory-mapped files and for parsing JSON held in ByteBuffer segments.
+ */
+public class MappedFileTest extends TestCase {
+
+    public void testJsonFile() throws IOException, SerializationException {
+        Path file = Files.createTempFile("mapped", ".json");
+        try {
+            try (OutputStream out = Files.newOutputStream(file)) {
+                new Serializer("MAP", 1).serialize(RosterFactory.withSharedAddress(100, "Membre \u00e9\u4e2d "), out);
+            }
+            Roster result = new Deserializer<>(Roster.class).deserialize(file);
+            assertEquals(100, result.getMembers().size(), "All members should be loaded from the mapped file");
+            assertEquals("Membre \u00e9\u4e2d 99", result.getMembers().get(99).getName(), "Non-ASCII names should be decoded");
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    public void testBinaryAndCompressedFiles() throws IOException, SerializationException {
+        Path binary = Files.createTempFile("mapped", ".bin");
+        Path compressed = Files.createTempFile("mapped", ".lz");
+        try {
+            try (OutputStream out = Files.newOutputStream(binary)) {
+                new Serializer("MAP", 1).serialize(RosterFactory.withSharedAddress(10, "Membre \u00e9\u4e2d "), new BinaryFormatWriter(out));
+            }
+            try (OutputStream out = Files.newOutputStream(compressed)) {
+                new Serializer("MAP", 1).withCompression(true).serialize(RosterFactory.withSharedAddress(10, "Membre \u00e9\u4e2d "), out);
+            }
+            assertEquals(10, new Deserializer<>(Roster.class).deserialize(binary).getMembers().size(),
+                "Binary files should be detected and loaded");
+            assertEquals(10, new Deserializer<>(Roster.class).deserialize(compressed).getMembers().size(),
+                "Compressed files should be detected and loaded");
+        } finally {
+            Files.deleteIfExists(binary);
+            Files.deleteIfExists(compressed);
+        }
+    }
+
+    public void testMalformedFileIsRejected() throws IOException {
+        Path file = Files.createTempFile("mapped", ".json");
+        try {
+            Files.write(file, "{\"name\": \"unterminated".getBytes(StandardCharsets.UTF_8));
+            new Deserializer<>(Roster.class).deserialize(file);
+            fail("Malformed file should be rejected");
+        } catch (SerializationException e) {
+            assertTrue(e.getMessage().contains(file.toString()), "Error should name the file");
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public void testValuesSpanningSegments() throws IOException {
+        // One-byte segments exercise the same addressing as 1 GB mapped segments
+        String json = "{\"text\": \"caf\u00e9 \\\"quoted\\\" \u4e2d\u6587\", \"values\": [1, -2, 3.5e2, true, null]}";
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer[] segments = new ByteBuffer[bytes.length];
+        for (int i = 0; i < bytes.length; i++) {
+            segments[i] = ByteBuffer.wrap(bytes, i, 1);
+        }
+        Map<String, Object> fromSegments = (Map<String, Object>) TreeBuilder.build(new JsonFormatReader(segments, 1));
+        Map<String, Object> fromString = (Map<String, Object>) JsonParser.parse(json);
+
+        assertEquals(fromString.get("text"), fromSegments.get("text"), "Strings should decode across segment boundaries");
+        assertEquals(fromString.get("values"), fromSegments.get("values"), "Values should match the string parser");
+        assertEquals("caf\u00e9 \"quoted\" \u4e2d\u6587", fromSegments.get("text"), "Escapes and multi-byte characters should decode");
+
+        try {
+            JsonParser.parse(ByteBuffer.wrap("[\"a\"] x".getBytes(StandardCharsets.UTF_8)));
+            fail("Trailing content should be rejected");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("position 6"), "Error should report the byte position: " + e.getMessage());
+        }
+    }
+
+    public static void main(String[] args) {
+        MappedFileTest test = new MappedFileTest();
+        test.run();
+    }
+}
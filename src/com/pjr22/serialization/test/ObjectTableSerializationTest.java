@@ -0,0 +1,179 @@
+package com.pjr22.serialization.test;
+
+import com.pjr22.serialization.core.Deserializer;
+import com.pjr22.serialization.core.Serializer;
+import com.pjr22.serialization.core.SerializationException;
+import com.pjr22.serialization.test.data.Address;
+import com.pjr22.serialization.test.data.Effect;
+import com.pjr22.serialization.test.data.ImmutablePerson;
+import com.pjr22.serialization.test.data.PersonWithCircularReference;
+import com.pjr22.serialization.test.data.PersonWithEffectMap;
+import com.pjr22.serialization.test.data.PersonWithReferences;
+import com.pjr22.serialization.test.data.PersonWithUUID;
+import com.pjr22.serialization.test.data.ReplayRecord;
+import com.pjr22.serialization.test.data.Roster;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Tests for the flat object-table layout of the Serializer.
+ */
+public class ObjectTableSerializationTest extends TestCase {
+
+    static class Untyped {
+        private Object list;
+        private Object map;
+        private Object bytes;
+        private Object person;
+
+        Untyped() {
+        }
+    }
+
+    public void testTableLayoutIsFlat() throws SerializationException {
+        Address address = new Address("1 Main St", "Springfield", "12345");
+        PersonWithReferences person = new PersonWithReferences("Alice", address, null);
+
+        String json = serializeTable(person);
+
+        assertTrue(json.startsWith("{\"objects\":["), "Output should be an objects table");
+        assertTrue(!json.contains("\"$id\""), "Table entries should not contain nested definitions");
+        assertTrue(json.contains("\"references\":{\"address\":"), "Direct references should be listed by ID");
+    }
+
+    public void testSharedReferencesRoundTrip() throws SerializationException {
+        Address shared = new Address("1 Main St", "Springfield", "12345");
+        Roster roster = new Roster("Team");
+        roster.addMember(new PersonWithReferences("Alice", shared, null));
+        roster.addMember(new PersonWithReferences("Bob", shared, null));
+
+        Roster result = roundTrip(roster, Roster.class);
+
+        assertEquals("Team", result.getName(), "Roster name should match");
+        List<PersonWithReferences> members = result.getMembers();
+        assertEquals(2, members.size(), "Both members should be loaded");
+        assertEquals("Bob", members.get(1).getName(), "Member order should be preserved");
+        assertEquals("1 Main St", members.get(0).getAddress().getStreet(), "Address should be bound");
+        assertTrue(members.get(0).getAddress() == members.get(1).getAddress(), "Shared address should be one instance");
+    }
+
+    public void testCircularReferencesRoundTrip() throws SerializationException {
+        PersonWithCircularReference parent = new PersonWithCircularReference("Parent");
+        PersonWithCircularReference child = new PersonWithCircularReference("Child", parent);
+        parent.addChild(child);
+
+        PersonWithCircularReference result = roundTrip(parent, PersonWithCircularReference.class);
+
+        assertEquals("Parent", result.getName(), "Root should be the parent");
+        assertEquals(1, result.getChildren().size(), "Child should be loaded");
+        assertTrue(result.getChildren().get(0).getParent() == result, "Child should point back to the parent");
+    }
+
+    public void testComplexMapKeysRoundTrip() throws SerializationException {
+        PersonWithEffectMap person = new PersonWithEffectMap();
+        person.setName("Hero");
+        Effect effect = new Effect("increased strength", Effect.Attribute.Strength, 0.02, 1200, 123456,
+            Effect.Type.FORTIFY_ATTRIBUTE, 0, 5);
+        person.getActiveEffects().put(effect, 7);
+
+        String json = serializeTable(person);
+        assertTrue(json.contains("\"$ref:"), "Complex keys should refer to table entries");
+        assertTrue(!json.contains("$mapKeys"), "Table layout should not need a $mapKeys section");
+
+        PersonWithEffectMap result = deserialize(json, PersonWithEffectMap.class);
+        assertEquals(Integer.valueOf(7), result.getActiveEffects().get(effect), "Effect key should hash to its value");
+    }
+
+    public void testValueTypesAndByteArrays() throws SerializationException {
+        PersonWithUUID person = new PersonWithUUID("Carol", UUID.randomUUID(), UUID.randomUUID());
+        PersonWithUUID uuidResult = roundTrip(person, PersonWithUUID.class);
+        assertEquals(person.getId(), uuidResult.getId(), "UUID field should round trip");
+
+        Map<String, byte[]> attachments = new HashMap<>();
+        attachments.put("icon", new byte[] {1, 2, 3});
+        ReplayRecord record = new ReplayRecord("replay", new byte[] {9, 8, 7}, Arrays.asList(new byte[] {4, 5}), attachments);
+        ReplayRecord result = roundTrip(record, ReplayRecord.class);
+        assertTrue(Arrays.equals(record.getPayload(), result.getPayload()), "Payload should round trip");
+        assertTrue(Arrays.equals(new byte[] {4, 5}, result.getFrames().get(0)), "Frames should round trip");
+        assertTrue(Arrays.equals(new byte[] {1, 2, 3}, result.getAttachments().get("icon")), "Attachments should round trip");
+    }
+
+    public void testUntypedFieldsHoldingContainers() throws SerializationException {
+        Untyped untyped = new Untyped();
+        untyped.list = new ArrayList<>(List.of(1, 2));
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("hp", 10);
+        untyped.map = map;
+        untyped.bytes = new byte[] {1, 2};
+        untyped.person = new Address("1 Main St", "Springfield", "12345");
+
+        String json = serializeTable(untyped);
+        assertTrue(!json.contains("\"className\":\"java.util.ArrayList\""), "List should be written inline");
+        assertTrue(!json.contains("\"className\":\"[B\""), "Byte array should be written inline");
+
+        Untyped result = deserialize(json, Untyped.class);
+        assertEquals(2, ((List<?>) result.list).size(), "List elements should round trip");
+        assertEquals(1, ((Map<?, ?>) result.map).size(), "Map entries should round trip");
+        assertTrue(Arrays.equals(new byte[] {1, 2}, (byte[]) result.bytes), "Byte array should round trip");
+        assertEquals("1 Main St", ((Address) result.person).getStreet(), "Objects should still be table entries");
+    }
+
+    public void testImmutableObjectsRoundTrip() throws SerializationException {
+        ImmutablePerson result = roundTrip(new ImmutablePerson("Dana", 41, true), ImmutablePerson.class);
+        assertEquals("Dana", result.getName(), "Constructor-bound name should match");
+        assertEquals(41, result.getAge(), "Constructor-bound age should match");
+    }
+
+    public void testWriterOutputLoadsInParallel() throws SerializationException {
+        Roster roster = new Roster("Large");
+        for (int i = 0; i < 2000; i++) {
+            Address address = new Address(i + " Main St", "Springfield", "12345");
+            roster.addMember(new PersonWithReferences("p" + i, address, null));
+        }
+        String json = serializeTable(roster);
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            Roster result = new Deserializer<>(Roster.class).withParallelism(pool)
+                .deserialize(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+            assertEquals(2000, result.getMembers().size(), "All members should be loaded");
+            assertEquals("1999 Main St", result.getMembers().get(1999).getAddress().getStreet(), "Addresses should be bound");
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    public void testNonObjectRootFallsBackToNestedLayout() throws SerializationException {
+        String json = serializeTable(Arrays.asList("a", "b"));
+        assertTrue(!json.contains("\"objects\""), "Collections at the root should use the nested layout");
+    }
+
+    private String serializeTable(Object object) throws SerializationException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new Serializer("TBL", 1).withLayout(Serializer.Layout.OBJECT_TABLE).serialize(object, out);
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private <T> T roundTrip(T object, Class<T> type) throws SerializationException {
+        return deserialize(serializeTable(object), type);
+    }
+
+    private <T> T deserialize(String json, Class<T> type) throws SerializationException {
+        return new Deserializer<>(type).deserialize(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    public static void main(String[] args) {
+        ObjectTableSerializationTest test = new ObjectTableSerializationTest();
+        test.run();
+    }
+}
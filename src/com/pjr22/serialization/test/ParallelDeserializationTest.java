@@ -0,0 +1,185 @@
+package com.pjr22.serialization.test;
+
+import com.pjr22.serialization.core.Deserializer;
+import com.pjr22.serialization.core.SerializationException;
+import com.pjr22.serialization.core.Serializer;
+import com.pjr22.serialization.test.data.PersonWithReferences;
+import com.pjr22.serialization.test.data.Roster;
+import com.pjr22.serialization.test.data.SimplePerson;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Tests for parallel loading of the flat "objects" table format.
+ */
+public class ParallelDeserializationTest extends TestCase {
+
+    private static final int PEOPLE = 3000;
+
+    // Only a no-arg constructor, so the name is bound with the other fields
+    static class Tag {
+        private String name;
+
+        Tag() {
+        }
+
+        static Tag named(String name) {
+            Tag tag = new Tag();
+            tag.name = name;
+            return tag;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Tag && Objects.equals(((Tag) other).name, name);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(name);
+        }
+    }
+
+    static class TagIndex {
+        private Set<Tag> tags = new HashSet<>();
+        private Set<Tag> featured = new HashSet<>();
+        private Map<String, Tag> byName = new HashMap<>();
+
+        TagIndex() {
+        }
+    }
+
+    public void testParallelLoadMatchesSequentialLoad() throws SerializationException {
+        String json = buildRosterTable(PEOPLE);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            Roster sequential = new Deserializer<>(Roster.class).deserialize(toStream(json));
+            Roster parallel = new Deserializer<>(Roster.class).withParallelism(pool).deserialize(toStream(json));
+
+            assertEquals(PEOPLE, parallel.getMembers().size(), "All members should be loaded");
+            for (int i = 0; i < PEOPLE; i++) {
+                PersonWithReferences expected = sequential.getMembers().get(i);
+                PersonWithReferences actual = parallel.getMembers().get(i);
+                assertEquals(expected.getName(), actual.getName(), "Member order should be deterministic");
+                assertEquals(expected.getAddress().getStreet(), actual.getAddress().getStreet(), "Address should match");
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    public void testParallelLoadPreservesSharedIdentity() throws SerializationException {
+        String json = buildRosterTable(PEOPLE);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            Roster roster = new Deserializer<>(Roster.class).withParallelism(pool).deserialize(toStream(json));
+
+            List<PersonWithReferences> members = roster.getMembers();
+            for (int i = 0; i < PEOPLE; i += 2) {
+                assertTrue(members.get(i).getAddress() == members.get(i + 1).getAddress(),
+                    "People sharing an address ID should share the same instance");
+            }
+            assertTrue(members.get(0).getAddress() != members.get(2).getAddress(), "Different IDs should be different instances");
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    public void testParallelLoadFillsHashedCollections() throws SerializationException {
+        TagIndex index = new TagIndex();
+        for (int i = 0; i < PEOPLE; i++) {
+            Tag tag = Tag.named("tag" + i);
+            index.tags.add(tag);
+            index.byName.put(tag.name, tag);
+            if (i % 10 == 0) {
+                index.featured.add(tag);
+            }
+        }
+        byte[] data = new Serializer("PAR", 1).withLayout(Serializer.Layout.OBJECT_TABLE).serializeToBytes(index);
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            TagIndex loaded = new Deserializer<>(TagIndex.class).withParallelism(pool)
+                .deserialize(new ByteArrayInputStream(data));
+            assertEquals(PEOPLE, loaded.tags.size(), "Set elements should be hashed after their fields are bound");
+            assertTrue(loaded.tags.contains(Tag.named("tag7")), "Set should find its elements by value");
+            assertEquals(PEOPLE / 10, loaded.featured.size(), "Every set should hold all its elements");
+            assertEquals(PEOPLE, loaded.byName.size(), "Map entries should be loaded");
+            assertTrue(loaded.featured.contains(loaded.byName.get("tag30")), "Set and map should share elements");
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    public void testParallelLoadReportsErrors() {
+        StringBuilder sb = new StringBuilder("{\"objects\":[");
+        for (int i = 0; i < 2000; i++) {
+            if (i > 0) sb.append(',');
+            sb.append("{\"id\":\"P_").append(i).append("\",\"className\":\"com.pjr22.serialization.test.data.SimplePerson\",")
+              .append("\"fields\":{\"name\":\"p").append(i).append("\",\"age\":")
+              .append(i == 1500 ? "\"not a number\"" : String.valueOf(i)).append("}}");
+        }
+        sb.append("]}");
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            new Deserializer<>(SimplePerson.class).withParallelism(pool).deserialize(toStream(sb.toString()));
+            fail("Invalid field value should fail the parallel load");
+        } catch (SerializationException e) {
+            // expected
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    public void testForwardReferencesInSequentialLoad() throws SerializationException {
+        // The roster refers to people that appear later in the table
+        Roster roster = new Deserializer<>(Roster.class).deserialize(toStream(buildRosterTable(10)));
+
+        assertEquals(10, roster.getMembers().size(), "Forward references in fields should resolve");
+        assertNotNull(roster.getMembers().get(9).getAddress(), "Reference section should resolve");
+    }
+
+    /**
+     * Builds a flat table with a roster first, then people, then addresses.
+     * Every two people share one address.
+     */
+    private String buildRosterTable(int people) {
+        StringBuilder sb = new StringBuilder("{\"objects\":[");
+        sb.append("{\"id\":\"R_0\",\"className\":\"com.pjr22.serialization.test.data.Roster\",")
+          .append("\"fields\":{\"name\":\"everyone\",\"members\":[");
+        for (int i = 0; i < people; i++) {
+            if (i > 0) sb.append(',');
+            sb.append("{\"$ref\":\"P_").append(i).append("\"}");
+        }
+        sb.append("]}}");
+        for (int i = 0; i < people; i++) {
+            sb.append(",{\"id\":\"P_").append(i).append("\",\"className\":\"com.pjr22.serialization.test.data.PersonWithReferences\",")
+              .append("\"fields\":{\"name\":\"person").append(i).append("\"},")
+              .append("\"references\":{\"address\":\"A_").append(i / 2).append("\"}}");
+        }
+        for (int i = 0; i < people / 2; i++) {
+            sb.append(",{\"id\":\"A_").append(i).append("\",\"className\":\"com.pjr22.serialization.test.data.Address\",")
+              .append("\"fields\":{\"street\":\"").append(i).append(" Main St\",\"city\":\"Springfield\",\"zipCode\":\"12345\"}}");
+        }
+        sb.append("]}");
+        return sb.toString();
+    }
+
+    private ByteArrayInputStream toStream(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static void main(String[] args) {
+        ParallelDeserializationTest test = new ParallelDeserializationTest();
+        test.run();
+    }
+}
@@ -0,0 +1,126 @@
+package com.pjr22.serialization.test;
+
+import com.pjr22.serialization.core.Deserializer;
+import com.pjr22.serialization.core.SerializationException;
+import com.pjr22.serialization.core.Serializer;
+import com.pjr22.serialization.test.data.Address;
+import com.pjr22.serialization.test.data.ImmutablePerson;
+import com.pjr22.serialization.test.data.PersonWithReferences;
+import com.pjr22.serialization.test.data.Roster;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Flow;
+
+/**
+ * Tests for the positional fields mode, where each class's field names are written once per
+ * document and objects carry their field values as arrays.
+ */
+public class PositionalFieldsTest extends TestCase {
+
+    public void testRosterRoundTrip() throws SerializationException {
+        Roster roster = new Roster("Team");
+        Address shared = new Address("1 Main St", "Springfield", "12345");
+        for (int i = 0; i < 100; i++) {
+            roster.addMember(new PersonWithReferences("Member " + i,
+                i % 2 == 0 ? shared : new Address(i + " Elm St", "Shelbyville", "54321"), null));
+        }
+
+        String named = new String(new Serializer("POS", 1).serializeToBytes(roster), StandardCharsets.UTF_8);
+        String positional = new String(new Serializer("POS", 1).withPositionalFields(true).serializeToBytes(roster),
+            StandardCharsets.UTF_8);
+
+        assertEquals(3, count(positional, "\"$fields\""), "Each class should declare its field names once");
+        assertEquals(0, count(positional, "\"zipCode\":"), "Field names should not be repeated per object");
+        assertTrue(positional.length() * 10 < named.length() * 9, "Positional output (" + positional.length()
+            + " chars) should be smaller than named output (" + named.length() + " chars)");
+
+        Roster result = deserialize(positional, Roster.class);
+        assertEquals("Team", result.getName(), "Root fields should be bound");
+        assertEquals(100, result.getMembers().size(), "All members should be loaded");
+        assertEquals("Member 99", result.getMembers().get(99).getName(), "Member order should be preserved");
+        assertEquals(new Address("99 Elm St", "Shelbyville", "54321"), result.getMembers().get(99).getAddress(),
+            "Nested objects should be bound");
+        assertTrue(result.getMembers().get(0).getAddress() == result.getMembers().get(2).getAddress(),
+            "Shared references should be preserved");
+    }
+
+    public void testRootListAndConstructorBinding() throws SerializationException {
+        List<ImmutablePerson> people = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            people.add(new ImmutablePerson("Person " + i, 20 + i, i % 2 == 0));
+        }
+        String json = new String(new Serializer("POS", 1).withPositionalFields(true).serializeToBytes(people),
+            StandardCharsets.UTF_8);
+        assertEquals(1, count(json, "\"$fields\""), "The element class should declare its field names once");
+
+        // Elements are bound one at a time; later elements use the schema of the first
+        List<ImmutablePerson> result = new ArrayList<>();
+        new Deserializer<>(ImmutablePerson.class)
+            .publishElements(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)))
+            .subscribe(new Flow.Subscriber<ImmutablePerson>() {
+                @Override
+                public void onSubscribe(Flow.Subscription subscription) {
+                    subscription.request(Long.MAX_VALUE);
+                }
+
+                @Override
+                public void onNext(ImmutablePerson item) {
+                    result.add(item);
+                }
+
+                @Override
+                public void onError(Throwable throwable) {
+                    fail("Publishing failed: " + throwable);
+                }
+
+                @Override
+                public void onComplete() {
+                }
+            });
+        assertEquals(5, result.size(), "All elements should be loaded");
+        assertEquals(new ImmutablePerson("Person 4", 24, true), result.get(4),
+            "Constructor arguments should be found by name and bound by position");
+    }
+
+    public void testSchemaInDifferentOrder() throws SerializationException {
+        String json = "{\"$id\":\"A_1\",\"$class\":\"com.pjr22.serialization.test.data.Address\","
+            + "\"$fields\":[\"zipCode\",\"removed\",\"street\"],\"$values\":[\"12345\",true,\"1 Main St\"]}";
+
+        Address result = deserialize(json, Address.class);
+        assertEquals("1 Main St", result.getStreet(), "Values should bind to the named field");
+        assertEquals("12345", result.getZipCode(), "Values should bind to the named field");
+        assertEquals(null, result.getCity(), "Fields missing from the schema should be left unset");
+    }
+
+    public void testMissingSchemaIsRejected() {
+        String json = "{\"$id\":\"A_1\",\"$class\":\"com.pjr22.serialization.test.data.Address\","
+            + "\"$values\":[\"1 Main St\",\"Springfield\",\"12345\"]}";
+        try {
+            deserialize(json, Address.class);
+            fail("Positional values without a schema should be rejected");
+        } catch (SerializationException e) {
+            assertTrue(String.valueOf(e.getMessage()).contains("schema")
+                || String.valueOf(e.getCause()).contains("schema"), "Missing schema should be reported: " + e.getMessage());
+        }
+    }
+
+    private static <T> T deserialize(String json, Class<T> type) throws SerializationException {
+        return new Deserializer<>(type).deserialize(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static int count(String text, String token) {
+        int count = 0;
+        for (int i = text.indexOf(token); i >= 0; i = text.indexOf(token, i + 1)) {
+            count++;
+        }
+        return count;
+    }
+
+    public static void main(String[] args) {
+        PositionalFieldsTest test = new PositionalFieldsTest();
+        test.run();
+    }
+}
@@ -0,0 +1,142 @@
+package com.pjr22.serialization.test;
+
+import com.pjr22.serialization.core.Deserializer;
+import com.pjr22.serialization.core.SerializationException;
+import com.pjr22.serialization.core.Serializer;
+import com.pjr22.serialization.format.JsonParser;
+import com.pjr22.serialization.format.JsonSerializer;
+import com.pjr22.serialization.format.NumericList;
+import com.pjr22.serialization.test.data.PersonWithArray;
+import com.pjr22.serialization.test.data.StatTable;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tests for the primitive array fast paths in serialization and deserialization.
+ */
+public class PrimitiveArrayTest extends TestCase {
+
+    public void testAllPrimitiveArrayTypesRoundTrip() throws SerializationException {
+        StatTable original = new StatTable("stats",
+            new int[]{1, -2, Integer.MAX_VALUE, Integer.MIN_VALUE},
+            new long[]{0L, Long.MAX_VALUE, Long.MIN_VALUE},
+            new double[]{0.5, -1.25, 1e300, 3.0},
+            new float[]{1.5f, -0.25f},
+            new short[]{7, -7, Short.MAX_VALUE},
+            new boolean[]{true, false, true},
+            new char[]{'a', '"', '\n'});
+
+        StatTable result = roundTrip(original, StatTable.class);
+
+        assertTrue(Arrays.equals(original.getHeights(), result.getHeights()), "int[] should match");
+        assertTrue(Arrays.equals(original.getTimestamps(), result.getTimestamps()), "long[] should match");
+        assertTrue(Arrays.equals(original.getWeights(), result.getWeights()), "double[] should match");
+        assertTrue(Arrays.equals(original.getRatios(), result.getRatios()), "float[] should match");
+        assertTrue(Arrays.equals(original.getLevels(), result.getLevels()), "short[] should match");
+        assertTrue(Arrays.equals(original.getFlags(), result.getFlags()), "boolean[] should match");
+        assertTrue(Arrays.equals(original.getCodes(), result.getCodes()), "char[] should match");
+    }
+
+    public void testEmptyPrimitiveArraysRoundTrip() throws SerializationException {
+        StatTable original = new StatTable("empty", new int[0], new long[0], new double[0],
+            new float[0], new short[0], new boolean[0], new char[0]);
+
+        StatTable result = roundTrip(original, StatTable.class);
+
+        assertEquals(0, result.getHeights().length, "int[] should be empty");
+        assertEquals(0, result.getWeights().length, "double[] should be empty");
+        assertEquals(0, result.getCodes().length, "char[] should be empty");
+    }
+
+    public void testLargeIntArrayRoundTrip() throws SerializationException {
+        int[] heights = new int[1_000_000];
+        for (int i = 0; i < heights.length; i++) {
+            heights[i] = (i * 31) % 4096 - 2048;
+        }
+        PersonWithArray original = new PersonWithArray("heightmap", heights);
+
+        PersonWithArray result = roundTrip(original, PersonWithArray.class);
+
+        assertTrue(Arrays.equals(heights, result.getValues()), "Large int[] should round trip");
+    }
+
+    public void testPrimitiveArrayOutputMatchesJsonSerializer() {
+        assertEquals("[1,2,3]", JsonSerializer.serialize(new int[]{1, 2, 3}), "int[] output");
+        assertEquals("[1.5,-2.0]", JsonSerializer.serialize(new double[]{1.5, -2.0}), "double[] output");
+        assertEquals("[true,false]", JsonSerializer.serialize(new boolean[]{true, false}), "boolean[] output");
+        assertEquals("[\"a\",\"\\n\"]", JsonSerializer.serialize(new char[]{'a', '\n'}), "char[] output");
+    }
+
+    public void testParserReturnsNumericListForIntegralArray() {
+        Object parsed = JsonParser.parse("[1, 2, 3000000000, -4]");
+
+        assertTrue(parsed instanceof NumericList, "Integral array should parse to NumericList");
+        NumericList list = (NumericList) parsed;
+        assertFalse(list.isFloatingPoint(), "Integral array should not be floating point");
+        assertEquals(4, list.size(), "Size should match");
+        assertEquals(1, list.get(0), "Small values should box to Integer");
+        assertEquals(3000000000L, list.get(2), "Large values should box to Long");
+        assertEquals(-4L, list.getLong(3), "getLong should return the raw value");
+    }
+
+    public void testParserReturnsNumericListForFloatingArray() {
+        Object parsed = JsonParser.parse("[1.5,-2.25,1e3]");
+
+        assertTrue(parsed instanceof NumericList, "Floating point array should parse to NumericList");
+        NumericList list = (NumericList) parsed;
+        assertTrue(list.isFloatingPoint(), "Array should be floating point");
+        assertEquals(1000.0, list.get(2), "Exponent value should parse as Double");
+    }
+
+    public void testParserFallsBackForMixedArrays() {
+        Object mixed = JsonParser.parse("[1, 2.5, \"x\"]");
+
+        assertFalse(mixed instanceof NumericList, "Mixed array should use a regular list");
+        List<?> list = (List<?>) mixed;
+        assertEquals(1, list.get(0), "First element should be Integer");
+        assertEquals(2.5, list.get(1), "Second element should be Double");
+        assertEquals("x", list.get(2), "Third element should be String");
+
+        Object numbersThenObject = JsonParser.parse("[1,2,{\"a\":3}]");
+        assertEquals(3, ((List<?>) numbersThenObject).size(), "Array with trailing object should parse fully");
+    }
+
+    public void testParserHandlesLongBounds() {
+        assertEquals(Long.MIN_VALUE, JsonParser.parse("-9223372036854775808"), "Long.MIN_VALUE should parse");
+        assertEquals(Long.MAX_VALUE, JsonParser.parse("9223372036854775807"), "Long.MAX_VALUE should parse");
+        try {
+            JsonParser.parse("[9223372036854775808]");
+            fail("Overflowing integer should be rejected");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("Invalid number"), "Error should report invalid number");
+        }
+    }
+
+    public void testNumericListIsMutable() {
+        NumericList list = (NumericList) JsonParser.parse("[1,2,3]");
+
+        list.add("four");
+        list.set(0, 10);
+
+        assertEquals(4, list.size(), "Size should grow after add");
+        assertEquals(10, list.get(0), "Set should replace element");
+        assertEquals("four", list.get(3), "Added element should be present");
+    }
+
+    private <T> T roundTrip(Object original, Class<T> type) throws SerializationException {
+        Serializer serializer = new Serializer("ARR", 1);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        serializer.serialize(original, outputStream);
+
+        Deserializer<T> deserializer = new Deserializer<>(type);
+        return deserializer.deserialize(new ByteArrayInputStream(outputStream.toByteArray()));
+    }
+
+    public static void main(String[] args) {
+        PrimitiveArrayTest test = new PrimitiveArrayTest();
+        test.run();
+    }
+}
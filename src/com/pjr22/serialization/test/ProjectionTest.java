@@ -0,0 +1,140 @@
+package com.pjr22.serialization.test;
+
+import com.pjr22.serialization.core.Deserializer;
+import com.pjr22.serialization.core.SerializationException;
+import com.pjr22.serialization.core.Serializer;
+import com.pjr22.serialization.format.FormatReader.Token;
+import com.pjr22.serialization.format.JsonFormatReader;
+import com.pjr22.serialization.test.data.Address;
+import com.pjr22.serialization.test.data.Department;
+import com.pjr22.serialization.test.data.PersonWithCircularReference;
+import com.pjr22.serialization.test.data.PersonWithReferences;
+import com.pjr22.serialization.test.data.Roster;
+import com.pjr22.serialization.test.data.SimplePerson;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Tests for projection deserialization, which binds only selected field paths.
+ */
+public class ProjectionTest extends TestCase {
+
+    public void testOnlySelectedPathsAreBound() throws SerializationException {
+        Roster roster = new Roster("Team");
+        Department sales = new Department("Sales", new BigDecimal("1000.00"), new SimplePerson("Boss", 50, 90000, true));
+        for (int i = 0; i < 10; i++) {
+            roster.addMember(new PersonWithReferences("Member " + i, new Address(i + " Main St", "City " + i, "12345"), sales));
+        }
+        byte[] data = new Serializer("PRJ", 1).serializeToBytes(roster);
+
+        Roster result = new Deserializer<>(Roster.class)
+            .withProjection("name", "members[*].address.city")
+            .deserialize(new ByteArrayInputStream(data));
+
+        assertEquals("Team", result.getName(), "Selected root field should be bound");
+        assertEquals(10, result.getMembers().size(), "Collection on a selected path should be loaded");
+        PersonWithReferences last = result.getMembers().get(9);
+        assertEquals("City 9", last.getAddress().getCity(), "Selected nested field should be bound");
+        assertEquals(null, last.getAddress().getStreet(), "Unselected sibling field should keep its default");
+        assertEquals(null, last.getName(), "Unselected field should keep its default");
+        assertEquals(null, last.getDepartment(), "Unselected object field should not be loaded");
+    }
+
+    public void testSelectingAFieldSelectsItsContents() throws SerializationException {
+        Roster roster = new Roster("Team");
+        roster.addMember(new PersonWithReferences("Ann", new Address("1 Main St", "Springfield", "12345"), null));
+        byte[] data = new Serializer("PRJ", 1).withCompression(true).serializeToBytes(roster);
+
+        Roster result = new Deserializer<>(Roster.class)
+            .withProjection("members[*].address", "members[*].address.city")
+            .deserialize(new ByteArrayInputStream(data));
+
+        assertEquals(new Address("1 Main St", "Springfield", "12345"), result.getMembers().get(0).getAddress(),
+            "A selected object should be bound in full");
+        assertEquals(null, result.getName(), "Unselected root field should keep its default");
+    }
+
+    public void testReferencesIntoSkippedFields() throws SerializationException {
+        // The grandparent is defined inside the root's parent field, which the projection skips
+        PersonWithCircularReference grandparent = new PersonWithCircularReference("Grandparent");
+        PersonWithCircularReference root = new PersonWithCircularReference("Root", grandparent);
+        PersonWithCircularReference child = new PersonWithCircularReference("Child", grandparent);
+        root.setChildren(Arrays.asList(child));
+        byte[] data = new Serializer("PRJ", 1).serializeToBytes(root);
+
+        PersonWithCircularReference resolved = new Deserializer<>(PersonWithCircularReference.class)
+            .withProjection("children[*].name", "children[*].parent")
+            .deserialize(new ByteArrayInputStream(data));
+        assertEquals(null, resolved.getParent(), "Skipped field should not be bound");
+        assertEquals("Child", resolved.getChildren().get(0).getName(), "Selected field should be bound");
+        assertEquals("Grandparent", resolved.getChildren().get(0).getParent().getName(),
+            "Reference into a skipped field should resolve by default");
+
+        Deserializer<PersonWithCircularReference> nulling = new Deserializer<>(PersonWithCircularReference.class)
+            .withProjection(Deserializer.SkippedReferences.NULL, "children[*].name", "children[*].parent");
+        PersonWithCircularReference unresolved = nulling.deserialize(new ByteArrayInputStream(data));
+        assertEquals(null, unresolved.getChildren().get(0).getParent(),
+            "Reference into a skipped field should be null under the NULL policy");
+        assertEquals(1, nulling.getWarnings().size(), "The null reference should be reported");
+    }
+
+    public void testReusedDeserializerReadsSkippedDefinitionsAgain() throws SerializationException {
+        Deserializer<PersonWithCircularReference> deserializer = new Deserializer<>(PersonWithCircularReference.class)
+            .withProjection("children[*].name", "children[*].parent");
+        // One serializer, so the second document uses new IDs
+        Serializer serializer = new Serializer("PRJ", 1);
+        for (String name : new String[] {"First", "Second"}) {
+            PersonWithCircularReference grandparent = new PersonWithCircularReference(name);
+            PersonWithCircularReference root = new PersonWithCircularReference("Root", grandparent);
+            root.setChildren(Arrays.asList(new PersonWithCircularReference("Child", grandparent)));
+            byte[] data = serializer.serializeToBytes(root);
+
+            PersonWithCircularReference result = deserializer.deserialize(new ByteArrayInputStream(data));
+            assertEquals(name, result.getChildren().get(0).getParent().getName(),
+                "Reference into a skipped field should resolve against the current document");
+        }
+    }
+
+    public void testPublishingElementsRejectsProjection() {
+        Deserializer<SimplePerson> deserializer = new Deserializer<>(SimplePerson.class).withProjection("name");
+        try {
+            deserializer.publishElements(new ByteArrayInputStream("[]".getBytes(StandardCharsets.UTF_8)));
+            fail("Publishing elements with a projection should be rejected");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage().contains("Projection"), "Message should name the projection");
+        }
+    }
+
+    public void testMalformedPathIsRejected() {
+        try {
+            new Deserializer<>(Roster.class).withProjection("members[0].name");
+            fail("Indexed path should be rejected");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("members[0].name"), "Message should name the path");
+        }
+    }
+
+    public void testSkipNextValueScansBytes() throws IOException {
+        JsonFormatReader reader = new JsonFormatReader(
+            "{\"a\":{\"s\":\"]}\\\"[{\",\"n\":[1,-2.5e3,true,null]},\"b\":-12,\"c\":\"kept\"}");
+        assertEquals(Token.BEGIN_OBJECT, reader.next(), "Object should start");
+        assertEquals(Token.NAME, reader.next(), "First member should be named");
+        reader.skipNextValue();
+        assertEquals(Token.NAME, reader.next(), "Skipping should stop after the nested object");
+        assertEquals("b", reader.getString(), "Next member should follow the skipped value");
+        reader.skipNextValue();
+        assertEquals(Token.NAME, reader.next(), "Skipping should stop after the number");
+        assertEquals(Token.STRING, reader.next(), "Value after the skipped number should be read");
+        assertEquals("kept", reader.getString(), "Value should be intact");
+        assertEquals(Token.END_OBJECT, reader.next(), "Object should end");
+    }
+
+    public static void main(String[] args) {
+        ProjectionTest test = new ProjectionTest();
+        test.run();
+    }
+}
@@ -0,0 +1,70 @@
+package com.pjr22.serialization.test;
+
+import com.pjr22.serialization.core.Deserializer;
+import com.pjr22.serialization.core.SerializationException;
+import com.pjr22.serialization.core.SerializationTask;
+import com.pjr22.serialization.core.Serializer;
+import com.pjr22.serialization.test.data.PersonWithCircularReference;
+import com.pjr22.serialization.test.data.RosterFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Tests for SerializationTask, which produces a document in bounded chunks.
+ */
+public class SerializationTaskTest extends TestCase {
+
+    public void testChunksFormTheDocument() throws SerializationException {
+        for (int chunkSize : new int[] {1, 7, 100, 4096}) {
+            byte[] expected = new Serializer("TASK", 1).serializeToBytes(RosterFactory.withOwnAddresses(50));
+            byte[] actual = produceAll(new Serializer("TASK", 1).newTask(RosterFactory.withOwnAddresses(50)), chunkSize);
+            assertTrue(Arrays.equals(expected, actual), "Chunks of " + chunkSize + " bytes should form the document");
+        }
+
+        PersonWithCircularReference parent = new PersonWithCircularReference("Parent \u00e9\u4e2d");
+        parent.addChild(new PersonWithCircularReference("Child", parent));
+        byte[] bytes = produceAll(new Serializer("TASK", 1).newTask(parent), 3);
+        PersonWithCircularReference result = new Deserializer<>(PersonWithCircularReference.class)
+            .deserialize(new ByteArrayInputStream(bytes));
+        assertEquals("Parent \u00e9\u4e2d", result.getName(), "Multi-byte characters should survive chunking");
+        assertTrue(result.getChildren().get(0).getParent() == result, "References should survive chunking");
+    }
+
+    public void testWalkSuspendsBetweenChunks() throws SerializationException {
+        Serializer serializer = new Serializer("TASK", 1);
+        SerializationTask task = serializer.newTask(RosterFactory.withOwnAddresses(10000));
+
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        assertTrue(!task.produce(buffer), "A large document should not fit in one chunk");
+        assertEquals(1024L, task.getBytesProduced(), "The chunk should be filled");
+        assertTrue(serializer.getCounter() < 100, "Only the start of the graph should have been walked, but "
+            + serializer.getCounter() + " IDs were assigned");
+
+        buffer.clear();
+        while (!task.produce(buffer)) {
+            buffer.clear();
+        }
+        assertTrue(task.isComplete(), "Task should complete");
+        assertTrue(serializer.getCounter() > 10000, "The whole graph should have been walked");
+    }
+
+    private byte[] produceAll(SerializationTask task, int chunkSize) throws SerializationException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteBuffer buffer = ByteBuffer.allocate(chunkSize);
+        boolean done;
+        do {
+            buffer.clear();
+            done = task.produce(buffer);
+            out.write(buffer.array(), 0, buffer.position());
+        } while (!done);
+        return out.toByteArray();
+    }
+
+    public static void main(String[] args) {
+        SerializationTaskTest test = new SerializationTaskTest();
+        test.run();
+    }
+}
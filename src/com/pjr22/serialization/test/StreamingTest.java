@@ -0,0 +1,150 @@
+package com.pjr22.serialization.test;
+
+import com.pjr22.serialization.core.DeserializerStream;
+import com.pjr22.serialization.core.SerializationException;
+import com.pjr22.serialization.core.SerializerStream;
+import com.pjr22.serialization.core.UncheckedSerializationException;
+import com.pjr22.serialization.test.data.Address;
+import com.pjr22.serialization.test.data.PersonWithReferences;
+import com.pjr22.serialization.test.data.Roster;
+import com.pjr22.serialization.test.data.SimplePerson;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Tests for writing and reading many documents on one stream.
+ */
+public class StreamingTest extends TestCase {
+
+    public void testNewlineFramingRoundTrip() throws Exception {
+        byte[] data = writeRecords(SerializerStream.Framing.NEWLINE, 500);
+
+        String text = new String(data, StandardCharsets.UTF_8);
+        assertEquals(500, text.split("\n").length, "Each record should be one line");
+
+        try (DeserializerStream<Roster> in = openStream(data, SerializerStream.Framing.NEWLINE)) {
+            int count = 0;
+            for (Roster roster : in) {
+                assertEquals("roster" + count, roster.getName(), "Records should be read in order");
+                List<PersonWithReferences> members = roster.getMembers();
+                assertTrue(members.get(0).getAddress() == members.get(1).getAddress(), "References should be shared within a record");
+                count++;
+            }
+            assertEquals(500, count, "All records should be read");
+        }
+    }
+
+    public void testLengthPrefixedFramingRoundTrip() throws Exception {
+        byte[] data = writeRecords(SerializerStream.Framing.LENGTH_PREFIXED, 50);
+
+        try (DeserializerStream<Roster> in = openStream(data, SerializerStream.Framing.LENGTH_PREFIXED)) {
+            List<Roster> rosters = in.stream().collect(Collectors.toList());
+            assertEquals(50, rosters.size(), "All records should be read");
+            assertEquals("roster49", rosters.get(49).getName(), "Last record should match");
+        }
+    }
+
+    public void testStringsWithLineBreaks() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (SerializerStream stream = new SerializerStream(out, "LB", 1, SerializerStream.Framing.NEWLINE)) {
+            stream.write(new SimplePerson("first\nline\r\nbreaks", 1, 0, true));
+            stream.write(new SimplePerson("second", 2, 0, true));
+        }
+
+        try (DeserializerStream<SimplePerson> in = new DeserializerStream<>(
+                new ByteArrayInputStream(out.toByteArray()), SimplePerson.class, SerializerStream.Framing.NEWLINE)) {
+            Iterator<SimplePerson> it = in.iterator();
+            assertEquals("first\nline\r\nbreaks", it.next().getName(), "Line breaks inside strings should survive");
+            assertEquals("second", it.next().getName(), "Second record should follow");
+            assertTrue(!it.hasNext(), "There should be no more records");
+        }
+    }
+
+    public void testIdsAreUniqueAcrossRecords() throws Exception {
+        String text = new String(writeRecords(SerializerStream.Framing.NEWLINE, 20), StandardCharsets.UTF_8);
+
+        Set<String> ids = new HashSet<>();
+        Matcher matcher = Pattern.compile("\"\\$id\":\"([^\"]+)\"").matcher(text);
+        while (matcher.find()) {
+            assertTrue(ids.add(matcher.group(1)), "Duplicate ID in stream: " + matcher.group(1));
+        }
+        assertEquals(80, ids.size(), "Each record should define four objects");
+    }
+
+    public void testUnderlyingStreamStaysOpenBetweenRecords() throws Exception {
+        TrackingOutputStream out = new TrackingOutputStream();
+        SerializerStream stream = new SerializerStream(out, "OPEN", 1, SerializerStream.Framing.NEWLINE);
+        stream.write(new SimplePerson("a", 1, 0, true));
+        stream.write(new SimplePerson("b", 2, 0, true));
+        stream.flush();
+        assertTrue(!out.closed, "Writing records should not close the stream");
+        stream.close();
+        assertTrue(out.closed, "Closing the SerializerStream should close the stream");
+    }
+
+    public void testRecordsAreReadLazily() throws Exception {
+        byte[] valid = writeRecords(SerializerStream.Framing.NEWLINE, 3);
+        byte[] corrupt = "{\"$id\":\"X_1\",\"$class\":\"no.such.Class\",\"fields\":{}}\n".getBytes(StandardCharsets.UTF_8);
+        byte[] data = new byte[valid.length + corrupt.length];
+        System.arraycopy(valid, 0, data, 0, valid.length);
+        System.arraycopy(corrupt, 0, data, valid.length, corrupt.length);
+
+        try (DeserializerStream<Roster> in = openStream(data, SerializerStream.Framing.NEWLINE)) {
+            long count = in.stream().limit(3).count();
+            assertEquals(3L, count, "Records before the corrupt one should be readable");
+        }
+
+        try (DeserializerStream<Roster> in = openStream(data, SerializerStream.Framing.NEWLINE)) {
+            in.stream().forEach(roster -> { });
+            fail("The corrupt record should fail when it is reached");
+        } catch (UncheckedSerializationException e) {
+            assertTrue(e.getCause() instanceof SerializationException, "Cause should be the SerializationException");
+        }
+    }
+
+    private byte[] writeRecords(SerializerStream.Framing framing, int count) throws SerializationException, IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (SerializerStream stream = new SerializerStream(out, "REC", 1, framing)) {
+            for (int i = 0; i < count; i++) {
+                Address address = new Address(i + " Main St", "Springfield", "12345");
+                Roster roster = new Roster("roster" + i);
+                roster.addMember(new PersonWithReferences("a" + i, address, null));
+                roster.addMember(new PersonWithReferences("b" + i, address, null));
+                stream.write(roster);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private DeserializerStream<Roster> openStream(byte[] data, SerializerStream.Framing framing) {
+        return new DeserializerStream<>(new ByteArrayInputStream(data), Roster.class, framing);
+    }
+
+    /**
+     * Output stream that records whether it has been closed.
+     */
+    private static class TrackingOutputStream extends ByteArrayOutputStream {
+        boolean closed;
+
+        @Override
+        public void close() throws IOException {
+            closed = true;
+            super.close();
+        }
+    }
+
+    public static void main(String[] args) {
+        StreamingTest test = new StreamingTest();
+        test.run();
+    }
+}
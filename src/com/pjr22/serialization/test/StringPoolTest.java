@@ -0,0 +1,119 @@
+package com.pjr22.serialization.test;
+
+import com.pjr22.serialization.core.Deserializer;
+import com.pjr22.serialization.core.SerializationException;
+import com.pjr22.serialization.core.Serializer;
+import com.pjr22.serialization.util.StringPool;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests for StringPool and string canonicalization in the Deserializer.
+ */
+public class StringPoolTest extends TestCase {
+
+    static class Item {
+        private String name;
+        private List<String> tags = new ArrayList<>();
+        private Map<String, String> labels = new LinkedHashMap<>();
+
+        Item() {
+        }
+    }
+
+    static class Bag {
+        private List<Item> items = new ArrayList<>();
+
+        Bag() {
+        }
+    }
+
+    public void testPoolReturnsOneInstance() {
+        StringPool pool = new StringPool(64, 32);
+        String first = pool.intern(new String("sword"));
+        String second = pool.intern(new String("sword"));
+
+        assertTrue(first == second, "Equal strings should map to one instance");
+        assertEquals(1L, pool.getHits(), "Second lookup should hit");
+        assertEquals(1L, pool.getMisses(), "First lookup should miss");
+
+        String tooLong = new String("a description longer than the limit");
+        assertTrue(pool.intern(tooLong) == tooLong, "Long strings should be returned as they are");
+        assertEquals(2L, pool.getHits() + pool.getMisses(), "Long strings should not be counted");
+        assertTrue(pool.intern(null) == null, "Null should be returned as null");
+    }
+
+    public void testPoolIsBounded() {
+        StringPool pool = new StringPool(100, 32);
+        for (int i = 0; i < 10_000; i++) {
+            pool.intern("name " + i);
+        }
+        assertTrue(pool.size() <= 64, "Pool should keep at most its rounded capacity: " + pool.size());
+        assertEquals(10_000L, pool.getMisses(), "Every distinct string should miss");
+
+        pool.clear();
+        assertEquals(0, pool.size(), "Cleared pool should be empty");
+        assertEquals(0L, pool.getMisses(), "Clearing should reset the statistics");
+    }
+
+    public void testConcurrentLookups() throws Exception {
+        StringPool pool = new StringPool(1024, 32);
+        String canonical = pool.intern("shared");
+        Thread[] threads = new Thread[4];
+        boolean[] same = new boolean[threads.length];
+        for (int t = 0; t < threads.length; t++) {
+            int index = t;
+            threads[t] = new Thread(() -> {
+                boolean all = true;
+                for (int i = 0; i < 10_000; i++) {
+                    all &= pool.intern(new String("shared")) == canonical;
+                    pool.intern("other " + (i % 100));
+                }
+                same[index] = all;
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        for (boolean all : same) {
+            assertTrue(all, "Hot string should stay pooled under concurrent lookups");
+        }
+    }
+
+    public void testDeserializerCanonicalizesStrings() throws SerializationException {
+        Bag bag = new Bag();
+        for (int i = 0; i < 100; i++) {
+            Item item = new Item();
+            item.name = i % 2 == 0 ? "sword" : "shield";
+            item.tags.add("weapon");
+            item.labels.put("rarity", "common");
+            bag.items.add(item);
+        }
+        byte[] data = new Serializer("SP", 1).serializeToBytes(bag);
+
+        StringPool pool = new StringPool(1024, 64);
+        Bag copy = new Deserializer<>(Bag.class).withStringPool(pool).deserialize(new ByteArrayInputStream(data));
+        Item first = copy.items.get(0);
+        Item third = copy.items.get(2);
+        assertEquals("sword", first.name, "Field value should be read");
+        assertTrue(first.name == third.name, "Field values should share one instance");
+        assertTrue(first.tags.get(0) == third.tags.get(0), "Collection elements should share one instance");
+        assertTrue(first.labels.get("rarity") == third.labels.get("rarity"), "Map values should share one instance");
+        assertTrue(first.labels.keySet().iterator().next() == third.labels.keySet().iterator().next(),
+            "Map keys should share one instance");
+        assertTrue(pool.getHits() > 300, "Repeated strings should hit the pool: " + pool.getHits());
+
+        Bag unpooled = new Deserializer<>(Bag.class).deserialize(new ByteArrayInputStream(data));
+        assertTrue(unpooled.items.get(0).name != unpooled.items.get(2).name, "Strings should not be pooled by default");
+    }
+
+    public static void main(String[] args) {
+        StringPoolTest test = new StringPoolTest();
+        test.run();
+    }
+}
@@ -0,0 +1,120 @@
+package com.pjr22.serialization.test;
+
+import com.pjr22.serialization.core.Deserializer;
+import com.pjr22.serialization.core.SerializationException;
+import com.pjr22.serialization.core.Serializer;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests for the string table mode, which writes repeated string values once.
+ */
+public class StringTableTest extends TestCase {
+
+    static class Effect {
+        private String type;
+        private String description;
+        private List<String> tags = new ArrayList<>();
+
+        Effect() {
+        }
+
+        Effect(String type, String description, String... tags) {
+            this.type = type;
+            this.description = description;
+            this.tags.addAll(List.of(tags));
+        }
+    }
+
+    static class Spellbook {
+        private String owner;
+        private List<Effect> effects = new ArrayList<>();
+        private Map<String, String> notes = new LinkedHashMap<>();
+        private Map<String, Integer> counters = new LinkedHashMap<>();
+
+        Spellbook() {
+        }
+    }
+
+    private Spellbook createSpellbook(int size) {
+        Spellbook book = new Spellbook();
+        book.owner = "Ann";
+        for (int i = 0; i < size; i++) {
+            book.effects.add(new Effect(i % 2 == 0 ? "FIRE" : "FROST",
+                i % 2 == 0 ? "Deals fire damage over time to every enemy in range"
+                    : "Slows movement and attack speed of the target",
+                "damage", "area-of-effect", "magic"));
+            book.notes.put("note " + i, "Reviewed by the \"guild\"\\council\n");
+        }
+        return book;
+    }
+
+    private Spellbook read(byte[] data) throws SerializationException {
+        return new Deserializer<>(Spellbook.class).deserialize(new ByteArrayInputStream(data));
+    }
+
+    public void testRepeatedStringsAreWrittenOnce() throws SerializationException {
+        Spellbook book = createSpellbook(200);
+        byte[] plain = new Serializer("ST", 1).serializeToBytes(book);
+        byte[] tabled = new Serializer("ST", 1).withStringTable(true).serializeToBytes(book);
+
+        assertTrue(tabled.length < plain.length * 3 / 4, "Table should shrink the document ("
+            + tabled.length + " vs " + plain.length + " bytes)");
+        String json = new String(tabled, StandardCharsets.UTF_8);
+        assertTrue(json.startsWith("{\"$strings\":["), "Document should start with the string table");
+        assertEquals(json.indexOf("Deals fire damage"), json.lastIndexOf("Deals fire damage"),
+            "Repeated string should be written once");
+        assertTrue(json.contains("\"Ann\""), "String used once should stay in place");
+    }
+
+    public void testStringsAreSharedOnRead() throws SerializationException {
+        Spellbook book = createSpellbook(50);
+        Spellbook copy = read(new Serializer("ST", 1).withStringTable(true).serializeToBytes(book));
+
+        assertEquals("Ann", copy.owner, "Inline string should be read");
+        assertEquals(50, copy.effects.size(), "All objects should be read");
+        for (int i = 0; i < 50; i++) {
+            assertEquals(book.effects.get(i).description, copy.effects.get(i).description, "Description should match");
+            assertEquals(book.effects.get(i).tags, copy.effects.get(i).tags, "Collection strings should match");
+        }
+        assertEquals(book.notes, copy.notes, "Escaped map values should match");
+        assertTrue(copy.effects.get(0).description == copy.effects.get(2).description,
+            "Uses of a string should share one instance");
+        assertTrue(copy.effects.get(1).tags.get(1) == copy.effects.get(3).tags.get(1),
+            "Collection elements should share one instance");
+    }
+
+    public void testUserMapLikeReferenceIsNotResolved() throws SerializationException {
+        Spellbook book = createSpellbook(20);
+        book.counters.put("$s", 0);
+        book.counters.put("$strings", 1);
+
+        byte[] tabled = new Serializer("ST", 1).withStringTable(true).serializeToBytes(book);
+        assertTrue(new String(tabled, StandardCharsets.UTF_8).startsWith("{\"$strings\":["), "Document should use the table");
+        Spellbook copy = read(tabled);
+        assertEquals(Integer.valueOf(0), copy.counters.get("$s"), "Map entry shaped like a reference should round trip");
+        assertEquals(Integer.valueOf(1), copy.counters.get("$strings"), "Map entry named like the table should round trip");
+        assertEquals(book.effects.get(0).description, copy.effects.get(0).description, "Tabled strings should still resolve");
+    }
+
+    public void testDocumentWithoutRepeatsIsUnchanged() throws SerializationException {
+        Spellbook book = new Spellbook();
+        book.owner = "Ann";
+        book.effects.add(new Effect("FIRE", "Burns", "a", "a", "a"));
+
+        byte[] plain = new Serializer("ST", 1).serializeToBytes(book);
+        byte[] tabled = new Serializer("ST", 1).withStringTable(true).serializeToBytes(book);
+        assertEquals(new String(plain, StandardCharsets.UTF_8), new String(tabled, StandardCharsets.UTF_8),
+            "Short repeats should not be worth a table entry");
+    }
+
+    public static void main(String[] args) {
+        StringTableTest test = new StringTableTest();
+        test.run();
+    }
+}
@@ -33,6 +33,31 @@ public class TestRunner {
         runTest("AtomicMapValueTest", AtomicMapValueTest::new);
         runTest("MapValueObjectDeserializationTest", MapValueObjectDeserializationTest::new);
         runTest("ComplexObjectMapKeyTest", ComplexObjectMapKeyTest::new);
+        runTest("PrimitiveArrayTest", PrimitiveArrayTest::new);
+        runTest("ByteArrayTest", ByteArrayTest::new);
+        runTest("ParallelDeserializationTest", ParallelDeserializationTest::new);
+        runTest("ObjectTableSerializationTest", ObjectTableSerializationTest::new);
+        runTest("DeepGraphTest", DeepGraphTest::new);
+        runTest("StreamingTest", StreamingTest::new);
+        runTest("FormatSpiTest", FormatSpiTest::new);
+        runTest("BinaryFormatTest", BinaryFormatTest::new);
+        runTest("CompressionTest", CompressionTest::new);
+        runTest("MappedFileTest", MappedFileTest::new);
+        runTest("ChannelOutputTest", ChannelOutputTest::new);
+        runTest("FeedParserTest", FeedParserTest::new);
+        runTest("SerializationTaskTest", SerializationTaskTest::new);
+        runTest("AsyncSerializationTest", AsyncSerializationTest::new);
+        runTest("ElementPublisherTest", ElementPublisherTest::new);
+        runTest("PositionalFieldsTest", PositionalFieldsTest::new);
+        runTest("ProjectionTest", ProjectionTest::new);
+        runTest("GraphFileTest", GraphFileTest::new);
+        runTest("LazyCollectionsTest", LazyCollectionsTest::new);
+        runTest("DeltaSerializerTest", DeltaSerializerTest::new);
+        runTest("FragmentCacheTest", FragmentCacheTest::new);
+        runTest("StringTableTest", StringTableTest::new);
+        runTest("StringPoolTest", StringPoolTest::new);
+        runTest("DeserializeIntoTest", DeserializeIntoTest::new);
+        runTest("GraphCopierTest", GraphCopierTest::new);
 
         System.out.println();
         System.out.println("========================================");
@@ -0,0 +1,25 @@
+package com.pjr22.serialization.test.data;
+
+/**
+ * Test class for long linked chains of objects.
+ */
+public class ChainNode {
+    private int sequence;
+    private ChainNode next;
+
+    public ChainNode() {
+    }
+
+    public ChainNode(int sequence, ChainNode next) {
+        this.sequence = sequence;
+        this.next = next;
+    }
+
+    public int getSequence() {
+        return sequence;
+    }
+
+    public ChainNode getNext() {
+        return next;
+    }
+}
@@ -0,0 +1,38 @@
+package com.pjr22.serialization.test.data;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Test class with byte[] fields, including byte arrays inside collections and maps.
+ * Binary fields are bound through the constructor.
+ */
+public class ReplayRecord {
+    private final String name;
+    private final byte[] payload;
+    private final List<byte[]> frames;
+    private final Map<String, byte[]> attachments;
+
+    public ReplayRecord(String name, byte[] payload, List<byte[]> frames, Map<String, byte[]> attachments) {
+        this.name = name;
+        this.payload = payload;
+        this.frames = frames;
+        this.attachments = attachments;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public byte[] getPayload() {
+        return payload;
+    }
+
+    public List<byte[]> getFrames() {
+        return frames;
+    }
+
+    public Map<String, byte[]> getAttachments() {
+        return attachments;
+    }
+}
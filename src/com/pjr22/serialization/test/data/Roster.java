@@ -0,0 +1,32 @@
+package com.pjr22.serialization.test.data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Test class holding a list of people, used for large object graphs.
+ */
+public class Roster {
+    private String name;
+    private List<PersonWithReferences> members;
+
+    public Roster() {
+    }
+
+    public Roster(String name) {
+        this.name = name;
+        this.members = new ArrayList<>();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public List<PersonWithReferences> getMembers() {
+        return members;
+    }
+
+    public void addMember(PersonWithReferences member) {
+        members.add(member);
+    }
+}
@@ -0,0 +1,61 @@
+package com.pjr22.serialization.test.data;
+
+/**
+ * Builds rosters of numbered members, used by tests that need large object graphs.
+ */
+public final class RosterFactory {
+
+    private RosterFactory() {
+    }
+
+    /**
+     * Creates a roster whose members each have their own address.
+     */
+    public static Roster withOwnAddresses(int size) {
+        return withOwnAddresses(size, "Member ", null);
+    }
+
+    /**
+     * Creates a roster whose members each have their own address, named by a prefix and
+     * their position, and all in the given department (may be null).
+     */
+    public static Roster withOwnAddresses(int size, String namePrefix, Department department) {
+        Roster roster = new Roster("Team");
+        for (int i = 0; i < size; i++) {
+            roster.addMember(new PersonWithReferences(namePrefix + i, new Address(i + " Main St", "Springfield", "12345"), department));
+        }
+        return roster;
+    }
+
+    /**
+     * Creates a roster whose members all share one address.
+     */
+    public static Roster withSharedAddress(int size) {
+        return withSharedAddress(size, "Member ");
+    }
+
+    /**
+     * Creates a roster whose members all share one address, named by a prefix and their position.
+     */
+    public static Roster withSharedAddress(int size, String namePrefix) {
+        Address shared = new Address("1 Main St", "Springfield", "12345");
+        Roster roster = new Roster("Team");
+        for (int i = 0; i < size; i++) {
+            roster.addMember(new PersonWithReferences(namePrefix + i, shared, null));
+        }
+        return roster;
+    }
+
+    /**
+     * Creates a roster whose members at even positions share one address and whose other
+     * members have their own.
+     */
+    public static Roster withMixedAddresses(int size) {
+        Address shared = new Address("1 Main St", "Springfield", "12345");
+        Roster roster = new Roster("Team");
+        for (int i = 0; i < size; i++) {
+            roster.addMember(new PersonWithReferences("Member " + i, i % 2 == 0 ? shared : new Address(i + " Oak Ave", "Ogdenville", "99999"), null));
+        }
+        return roster;
+    }
+}
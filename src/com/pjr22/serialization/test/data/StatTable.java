@@ -0,0 +1,62 @@
+package com.pjr22.serialization.test.data;
+
+/**
+ * Test class with one field of every primitive array type.
+ */
+public class StatTable {
+    private String name;
+    private int[] heights;
+    private long[] timestamps;
+    private double[] weights;
+    private float[] ratios;
+    private short[] levels;
+    private boolean[] flags;
+    private char[] codes;
+
+    public StatTable() {
+    }
+
+    public StatTable(String name, int[] heights, long[] timestamps, double[] weights,
+                     float[] ratios, short[] levels, boolean[] flags, char[] codes) {
+        this.name = name;
+        this.heights = heights;
+        this.timestamps = timestamps;
+        this.weights = weights;
+        this.ratios = ratios;
+        this.levels = levels;
+        this.flags = flags;
+        this.codes = codes;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int[] getHeights() {
+        return heights;
+    }
+
+    public long[] getTimestamps() {
+        return timestamps;
+    }
+
+    public double[] getWeights() {
+        return weights;
+    }
+
+    public float[] getRatios() {
+        return ratios;
+    }
+
+    public short[] getLevels() {
+        return levels;
+    }
+
+    public boolean[] getFlags() {
+        return flags;
+    }
+
+    public char[] getCodes() {
+        return codes;
+    }
+}
@@ -0,0 +1,80 @@
+package com.pjr22.serialization.util;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Bounded pool of fixed-size direct ByteBuffers.
+ * Direct buffers are expensive to allocate and are only freed by the garbage collector, so
+ * buffers used for channel I/O are recycled rather than allocated per write. When the pool is
+ * empty a new buffer is allocated; buffers released to a full pool are dropped.
+ * <p>
+ * The pool is thread-safe.
+ */
+public class DirectBufferPool {
+
+    /** Buffer size of the shared pool. */
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private static final DirectBufferPool SHARED = new DirectBufferPool(DEFAULT_BUFFER_SIZE, 64);
+
+    private final int bufferSize;
+    private final ArrayBlockingQueue<ByteBuffer> buffers;
+
+    /**
+     * Creates a pool.
+     *
+     * @param bufferSize the capacity of each buffer
+     * @param maxPooled the maximum number of idle buffers kept
+     */
+    public DirectBufferPool(int bufferSize, int maxPooled) {
+        if (bufferSize <= 0 || maxPooled <= 0) {
+            throw new IllegalArgumentException("Buffer size and pool size must be positive");
+        }
+        this.bufferSize = bufferSize;
+        this.buffers = new ArrayBlockingQueue<>(maxPooled);
+    }
+
+    /**
+     * Returns the pool shared by the library, with buffers of {@link #DEFAULT_BUFFER_SIZE} bytes.
+     *
+     * @return the shared pool
+     */
+    public static DirectBufferPool shared() {
+        return SHARED;
+    }
+
+    /**
+     * Takes a cleared buffer from the pool, allocating one if none is idle.
+     *
+     * @return a direct buffer of {@link #getBufferSize()} bytes
+     */
+    public ByteBuffer acquire() {
+        ByteBuffer buffer = buffers.poll();
+        if (buffer == null) {
+            return ByteBuffer.allocateDirect(bufferSize);
+        }
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * Returns a buffer to the pool. Buffers of another size or kind are ignored.
+     *
+     * @param buffer the buffer to return
+     */
+    public void release(ByteBuffer buffer) {
+        if (buffer != null && buffer.isDirect() && buffer.capacity() == bufferSize) {
+            buffers.offer(buffer);
+        }
+    }
+
+    /**
+     * Returns the capacity of the buffers in this pool.
+     *
+     * @return the buffer size in bytes
+     */
+    public int getBufferSize() {
+        return bufferSize;
+    }
+}
@@ -0,0 +1,135 @@
+package com.pjr22.serialization.util;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded pool of canonical String instances. Deserialized graphs often hold many equal
+ * strings, such as names and tags, each a separate allocation; passing them through a pool
+ * keeps one instance of each and lets the others be collected.
+ * <p>
+ * The pool is a hash table of sets of four entries. A string is looked for in its set only,
+ * and a miss replaces an entry of the set chosen by the clock algorithm: entries that were
+ * found since the hand last passed them get a second chance. Strings longer than the maximum
+ * length are returned as they are and not counted.
+ * <p>
+ * The pool is thread-safe. Lookups take no locks; concurrent misses may replace each other's
+ * entries, which only costs a later miss.
+ */
+public class StringPool {
+
+    private static final int WAYS = 4;
+
+    private final int maxLength;
+    private final int setMask;
+    private final AtomicReferenceArray<String> entries;
+    // 1 if the entry was found since the clock hand of its set last passed it
+    private final AtomicIntegerArray referenced;
+    // Clock hand of each set; races between misses only move a hand less far
+    private final int[] hands;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Creates a pool.
+     *
+     * @param maxEntries the maximum number of strings kept; rounded down to a power of two
+     * @param maxLength the length of the longest string pooled
+     */
+    public StringPool(int maxEntries, int maxLength) {
+        if (maxEntries < WAYS || maxLength < 0) {
+            throw new IllegalArgumentException("Pool must hold at least " + WAYS + " entries: " + maxEntries);
+        }
+        int capacity = Integer.highestOneBit(maxEntries);
+        this.maxLength = maxLength;
+        this.setMask = capacity / WAYS - 1;
+        this.entries = new AtomicReferenceArray<>(capacity);
+        this.referenced = new AtomicIntegerArray(capacity);
+        this.hands = new int[capacity / WAYS];
+    }
+
+    /**
+     * Returns the pooled instance equal to a string, adding the string if there is none.
+     *
+     * @param value the string, or null
+     * @return the pooled instance, or the string itself if it was added or is too long
+     */
+    public String intern(String value) {
+        if (value == null || value.length() > maxLength) {
+            return value;
+        }
+        int hash = value.hashCode();
+        int set = (hash ^ (hash >>> 16)) & setMask;
+        int base = set * WAYS;
+        for (int i = base; i < base + WAYS; i++) {
+            String entry = entries.get(i);
+            if (entry != null && entry.equals(value)) {
+                hits.increment();
+                if (referenced.get(i) == 0) {
+                    referenced.set(i, 1);
+                }
+                return entry;
+            }
+        }
+
+        misses.increment();
+        int hand = hands[set];
+        for (int step = 0; step < WAYS * 2; step++) {
+            int slot = base + (hand + step) % WAYS;
+            if (entries.get(slot) == null || referenced.get(slot) == 0) {
+                entries.set(slot, value);
+                hands[set] = (hand + step + 1) % WAYS;
+                return value;
+            }
+            referenced.set(slot, 0);
+        }
+        return value;
+    }
+
+    /**
+     * Returns the number of lookups that found a pooled instance.
+     *
+     * @return the number of hits
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the number of lookups that added the string instead.
+     *
+     * @return the number of misses
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Returns the number of pooled strings. The count is taken without locking, so it may
+     * miss concurrent changes.
+     *
+     * @return the number of strings in the pool
+     */
+    public int size() {
+        int count = 0;
+        for (int i = 0; i < entries.length(); i++) {
+            if (entries.get(i) != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Empties the pool and resets the statistics.
+     */
+    public void clear() {
+        for (int i = 0; i < entries.length(); i++) {
+            entries.set(i, null);
+            referenced.set(i, 0);
+        }
+        hits.reset();
+        misses.reset();
+    }
+}